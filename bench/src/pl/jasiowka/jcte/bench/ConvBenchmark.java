@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.jasiowka.jcte.filter.RampFilter;
+import pl.jasiowka.jcte.struct.ConvStrategy;
+import pl.jasiowka.jcte.struct.CtVector;
+import pl.jasiowka.jcte.struct.CtVectorFactory;
+
+/**
+ * Measures the convolution of a sinogram row with the ramp filter kernel
+ * (<code>ArrayCtVector.conv</code>) done directly and through the FFT.
+ * 
+ * @author Piotr Jasiowka
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ConvBenchmark {
+
+  @Param({ "128", "256", "512", "1024", "2048" })
+  public int width;
+
+  @Param({ "DIRECT", "FFT" })
+  public ConvStrategy strategy;
+
+  private CtVector row;
+
+  private CtVector kernel;
+
+  @Setup
+  public void setUp() {
+    double[] values = new double[width];
+    for (int x = 0; x < width; x++)
+      values[x] = Math.sin(x * 0.1) + 1;
+    row = CtVectorFactory.createArrayCtVector(values);
+    kernel = CtVectorFactory.createArrayCtVector(RampFilter.forWidth(width).getKernel());
+  }
+
+  @Benchmark
+  public CtVector conv() {
+    return row.conv(kernel, strategy);
+  }
+
+}
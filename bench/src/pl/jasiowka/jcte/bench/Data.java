@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.bench;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+/**
+ * Input data shared by the benchmarks.
+ * 
+ * @author Piotr Jasiowka
+ */
+class Data {
+
+  /**
+   * @param size Phantom width and height
+   * @return Phantom made of a few ellipses of different densities
+   */
+  static CtMatrix phantom(int size) {
+    CtMatrix m = CtMatrixFactory.createCtMatrix(size, size);
+    double[][] ellipses = { // x, y, a, b, density (relative to the size)
+        { 0, 0, 0.45, 0.4, 1 },
+        { -0.15, 0, 0.1, 0.2, 0.5 },
+        { 0.15, 0.05, 0.08, 0.15, 0.5 },
+        { 0, -0.25, 0.05, 0.05, 2 } };
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++) {
+        double xx = (x + 0.5) / size - 0.5;
+        double yy = (y + 0.5) / size - 0.5;
+        double val = 0;
+        for (double[] e : ellipses) {
+          double dx = (xx - e[0]) / e[2];
+          double dy = (yy - e[1]) / e[3];
+          if (dx * dx + dy * dy <= 1) val += e[4];
+        }
+        m.update(x, y, val);
+      }
+    return m;
+  }
+
+  /**
+   * @param matrix Matrix to copy
+   * @param target Matrix of the same size to copy to
+   */
+  static void copy(CtMatrix matrix, CtMatrix target) {
+    for (int y = 0; y < matrix.getHeight(); y++)
+      for (int x = 0; x < matrix.getWidth(); x++)
+        target.update(x, y, matrix.get(x, y));
+  }
+
+}
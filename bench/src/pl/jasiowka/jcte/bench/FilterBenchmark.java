@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.jasiowka.jcte.Jcte;
+import pl.jasiowka.jcte.projection.Interpolation;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+/**
+ * Measures {@link Jcte#applyFilter(CtMatrix)}, the ramp filtering of a whole
+ * sinogram. The sinogram is filtered in place, so it is restored before
+ * every call; it takes a fraction of the filtering time.
+ * 
+ * @author Piotr Jasiowka
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class FilterBenchmark {
+
+  @Param({ "128", "256", "512", "1024", "2048" })
+  public int width;
+
+  @Param({ "180", "360" })
+  public int projections;
+
+  private final Jcte jcte = new Jcte();
+
+  private CtMatrix original;
+
+  private CtMatrix sinogram;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    original = jcte.makeSinogram(Data.phantom(width), 180, projections, Interpolation.LINEAR);
+    sinogram = CtMatrixFactory.createCtMatrix(width, projections);
+  }
+
+  @Setup(Level.Invocation)
+  public void restore() {
+    Data.copy(original, sinogram);
+  }
+
+  @Benchmark
+  public CtMatrix applyFilter() {
+    jcte.applyFilter(sinogram);
+    return sinogram;
+  }
+
+}
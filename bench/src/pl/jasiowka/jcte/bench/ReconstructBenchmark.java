@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.jasiowka.jcte.Jcte;
+import pl.jasiowka.jcte.projection.Interpolation;
+import pl.jasiowka.jcte.projection.Partitioning;
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+/**
+ * Measures the backprojection of a filtered sinogram, in the calling thread
+ * ({@link Jcte#reconstruct(CtMatrix, int, Interpolation)}) and on all
+ * processors ({@link Jcte#reconstruct(CtMatrix, int, Interpolation, Partitioning)}).
+ * 
+ * @author Piotr Jasiowka
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ReconstructBenchmark {
+
+  @Param({ "128", "256", "512", "1024", "2048" })
+  public int width;
+
+  @Param({ "180", "360" })
+  public int projections;
+
+  @Param({ "NEAREST", "LINEAR" })
+  public Interpolation interpolation;
+
+  private final Jcte jcte = new Jcte();
+
+  private CtMatrix sinogram;
+
+  @Setup
+  public void setUp() {
+    sinogram = jcte.makeSinogram(Data.phantom(width), 180, projections, Interpolation.LINEAR);
+    jcte.applyFilter(sinogram);
+  }
+
+  @Benchmark
+  public CtMatrix reconstruct() {
+    return jcte.reconstruct(sinogram, 180, interpolation);
+  }
+
+  @Benchmark
+  public CtMatrix reconstructParallel() {
+    return jcte.reconstruct(sinogram, 180, interpolation, Partitioning.TILES);
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.bench;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.jasiowka.jcte.Jcte;
+import pl.jasiowka.jcte.io.SinogramBuilder;
+import pl.jasiowka.jcte.projection.Interpolation;
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+/**
+ * Measures both ways of making a sinogram: projecting a phantom
+ * ({@link Jcte#makeSinogram(CtMatrix, int, int, Interpolation)}) and
+ * reading a slice out of a stack of projection images, the way
+ * {@link Jcte#makeSinogram(int)} does. The stack is generated in a
+ * temporary directory, every projection is a <b>width</b> x
+ * {@value #SLICES} image.
+ * 
+ * @author Piotr Jasiowka
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SinogramBenchmark {
+
+  private static final int SLICES = 16;
+
+  @Param({ "128", "256", "512", "1024", "2048" })
+  public int width;
+
+  @Param({ "180", "360" })
+  public int projections;
+
+  private final Jcte jcte = new Jcte();
+
+  private CtMatrix phantom;
+
+  private File directory;
+
+  private SinogramBuilder builder;
+
+  @Setup
+  public void setUp() throws IOException {
+    phantom = Data.phantom(width);
+    directory = Files.createTempDirectory("jcte-bench").toFile();
+    BufferedImage image = new BufferedImage(width, SLICES, BufferedImage.TYPE_BYTE_GRAY);
+    for (int i = 0; i < projections; i++) {
+      for (int y = 0; y < SLICES; y++)
+        for (int x = 0; x < width; x++)
+          image.getRaster().setSample(x, y, 0, (x + y + i) & 0xff);
+      ImageIO.write(image, "png", new File(directory, String.format("%03d.png", i)));
+    }
+    builder = new SinogramBuilder(new File(directory, "%03d.png").getPath(), projections);
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (File file : directory.listFiles())
+      file.delete();
+    directory.delete();
+  }
+
+  @Benchmark
+  public CtMatrix makeSinogramFromPhantom() {
+    return jcte.makeSinogram(phantom, 180, projections, Interpolation.LINEAR);
+  }
+
+  @Benchmark
+  public CtMatrix makeSinogramFromFiles() throws IOException {
+    return builder.build(SLICES / 2);
+  }
+
+}
@@ -21,8 +21,21 @@ import java.io.IOException;
 
 public class GoJcte {
 
+  /**
+   * Runs the sample reconstruction, or with arguments
+   * <code>firstSlice lastSlice volumeFile [workers [heap [shardSize]]]</code>
+   * reconstructs a range of slices of the sample data set into a volume on
+   * worker processes.
+   */
   public static void main(String[] args) {
     try {
+      if (args.length >= 3) {
+        int workers = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        String heap = args.length > 4 ? args[4] : null;
+        int shardSize = args.length > 5 ? Integer.parseInt(args[5]) : 16;
+        (new Jcte()).reconstructVolume(args[2], Integer.parseInt(args[0]), Integer.parseInt(args[1]), workers, heap, shardSize);
+        return;
+      }
       (new Jcte()).test();
     } catch (IllegalArgumentException | IOException e) {
       e.printStackTrace();
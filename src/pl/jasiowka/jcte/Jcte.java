@@ -18,12 +18,31 @@
 package pl.jasiowka.jcte;
 
 import java.io.IOException;
-import java.text.DecimalFormat;
 
+import pl.jasiowka.jcte.filter.RampFilter;
+import pl.jasiowka.jcte.io.MatrixCache;
+import pl.jasiowka.jcte.io.SinogramBuilder;
+import pl.jasiowka.jcte.metrics.Metrics;
+import pl.jasiowka.jcte.metrics.MetricsRecorder;
+import pl.jasiowka.jcte.metrics.Probe;
+import pl.jasiowka.jcte.pipeline.ShardCoordinator;
+import pl.jasiowka.jcte.pipeline.VolumeReconstruction;
+import pl.jasiowka.jcte.projection.Backprojector;
+import pl.jasiowka.jcte.projection.BackprojectorFactory;
+import pl.jasiowka.jcte.projection.Interpolation;
+import pl.jasiowka.jcte.projection.LazyCtMatrix;
+import pl.jasiowka.jcte.projection.Partitioning;
+import pl.jasiowka.jcte.projection.PreviewListener;
+import pl.jasiowka.jcte.projection.ProgressiveReconstructor;
+import pl.jasiowka.jcte.projection.ProjectionGeometry;
+import pl.jasiowka.jcte.projection.ProjectorFactory;
+import pl.jasiowka.jcte.projection.Region;
+import pl.jasiowka.jcte.projection.RotationPlan;
 import pl.jasiowka.jcte.struct.CtMatrix;
 import pl.jasiowka.jcte.struct.CtMatrixFactory;
 import pl.jasiowka.jcte.struct.CtVector;
 import pl.jasiowka.jcte.struct.CtVectorFactory;
+import pl.jasiowka.jcte.struct.Precision;
 
 /**
  * Jcte (Java Computed Tomography Example) is a simple class that shares
@@ -35,18 +54,14 @@ import pl.jasiowka.jcte.struct.CtVectorFactory;
  */
 public class Jcte {
 
-  /**
-   * @param t Angle in radians
-   * @return Sinc(t) function value
-   */
-  private double sinc(double t) { 
-    if (t == 0)
-      return 1.0;
-    else {
-      double b = Math.PI * t;
-      return Math.sin(b) / b;
-    }
-  }
+  /** Pattern of names of the sample projection files */
+  private static final String DATA_PATTERN = "./data/%03d.png";
+
+  /** Number of the sample projection files */
+  private static final int DATA_PROJECTIONS = 180;
+
+  /** Stack file converted from the sample projection files */
+  private static final String DATA_STACK = "./data/projections.jcs";
 
   /** 
    * @param matrix Matrix to extend
@@ -63,7 +78,7 @@ public class Jcte {
     if (matrix.getHeight()%2 != h%2) h++;
     int startx = (w - matrix.getWidth()) / 2;
     int starty = (h - matrix.getHeight()) / 2;
-    CtMatrix nfl = CtMatrixFactory.createArrayCtMatrix(w, h);
+    CtMatrix nfl = CtMatrixFactory.createCtMatrix(w, h);
     nfl.paste(startx, starty, matrix);
     return nfl;
   }
@@ -75,31 +90,72 @@ public class Jcte {
    *         can be changed by giving the angle value with a minus
    */
   public CtMatrix rotate(CtMatrix matrix, double angle) {
-    if (matrix == null) throw new IllegalArgumentException();
-    CtMatrix out = CtMatrixFactory.createArrayCtMatrix(matrix.getWidth(), matrix.getHeight());
-    int inXCenter = matrix.getWidth() / 2;
-    int inYCenter = matrix.getHeight() / 2;
-    double alpha = (-angle) * Math.PI / 180;
-    double alphaSin = Math.sin(alpha);
-    double alphaCos = Math.cos(alpha);
-    for (int y = 0; y < matrix.getHeight(); y++) {
-      int elY = 2 * (y - inYCenter) + 1;
-      for (int x = 0; x < matrix.getWidth(); x++) {
-        int elX = 2 * (x - inXCenter) + 1;
-        int rotX = (int) Math.round(elX * alphaCos - elY * alphaSin);
-        int rotY = (int) Math.round(elX * alphaSin + elY * alphaCos);
-        int orgX = (rotX - 1) / 2 + inXCenter;
-        int orgY = (rotY - 1) / 2 + inYCenter;
-        if (orgX >= 0 && orgX < matrix.getWidth() && orgY >= 0 && orgY < matrix.getHeight())
-          out.update(x, y, matrix.get(orgX, orgY));
-        else
-          out.update(x, y, 0);
-      }
-    }
+    return rotate(matrix, angle, Interpolation.NEAREST);
+  }
+
+  /**
+   * @param matrix Matrix to be rotated
+   * @param angle Rotation angle in degrees
+   * @param interpolation Interpolation of source pixels
+   * @return Rotated matrix. Rotation plans are cached, so rotating many
+   *         matrices of the same size by the same angle is cheap
+   * @see pl.jasiowka.jcte.projection.RotationPlan
+   */
+  public CtMatrix rotate(CtMatrix matrix, double angle, Interpolation interpolation) {
+    if (matrix == null || interpolation == null) throw new IllegalArgumentException();
+    Probe probe = Metrics.start(Metrics.ROTATE);
+    CtMatrix out = RotationPlan.forGeometry(matrix.getWidth(), matrix.getHeight(), angle, interpolation).apply(matrix);
+    probe.stop(1);
     return out;
   }
 
   /**
+   * Rotates a matrix into another one, which saves allocating the result.
+   * 
+   * @param matrix Matrix to be rotated
+   * @param angle Rotation angle in degrees
+   * @param dst Matrix of the same size to put the rotated one to. It can be
+   *        <b>matrix</b>
+   */
+  public void rotate(CtMatrix matrix, double angle, CtMatrix dst) {
+    rotate(matrix, angle, Interpolation.NEAREST, dst);
+  }
+
+  /**
+   * Rotates a matrix into another one, which saves allocating the result.
+   * Rotating matrices of the same size over and over allocates nothing.
+   * 
+   * @param matrix Matrix to be rotated
+   * @param angle Rotation angle in degrees
+   * @param interpolation Interpolation of source pixels
+   * @param dst Matrix of the same size to put the rotated one to. It can be
+   *        <b>matrix</b>
+   */
+  public void rotate(CtMatrix matrix, double angle, Interpolation interpolation, CtMatrix dst) {
+    if (matrix == null || interpolation == null || dst == null) throw new IllegalArgumentException();
+    Probe probe = Metrics.start(Metrics.ROTATE);
+    RotationPlan.forGeometry(matrix.getWidth(), matrix.getHeight(), angle, interpolation).apply(matrix, dst);
+    probe.stop(1);
+  }
+
+  /**
+   * @param matrix Source matrix
+   * @return Lazy expression over the matrix, i.e.
+   *         <code>lazy(matrix).rotate(angle).sumCols()</code> sums the
+   *         columns of the rotated matrix without making it
+   * @see pl.jasiowka.jcte.projection.LazyCtMatrix
+   */
+  public LazyCtMatrix lazy(CtMatrix matrix) {
+    return LazyCtMatrix.of(matrix);
+  }
+
+  /**
+   * Sums columns of the phantom rotated with the nearest interpolation, the
+   * angle growing by <code>range / projections</code> truncated to an
+   * integer. Rotated phantoms are never made, but the results are the same
+   * as rotating and summing. Use
+   * {@link #makeSinogram(CtMatrix, int, int, Interpolation)} for the faster
+   * pixel-driven projector matching the backprojector.
    * 
    * @param matrix Matrix with a phantom image (should be extended before)
    * @param range Range of projections to do (a number from range [0..360])
@@ -111,33 +167,35 @@ public class Jcte {
   public CtMatrix makeSinogram(CtMatrix matrix, int range, int projections) {
     if (matrix == null) throw new IllegalArgumentException();
     if (range < 1 || range > 360) throw new IllegalArgumentException();
-    if (projections < 0) throw new IllegalArgumentException();
-    CtMatrix sinogram = CtMatrixFactory.createArrayCtMatrix(matrix.getWidth(), projections);
+    if (projections < 1) throw new IllegalArgumentException();
+    CtMatrix sinogram = CtMatrixFactory.createCtMatrix(matrix.getWidth(), projections);
+    CtVector line = CtVectorFactory.createArrayCtVector(matrix.getWidth());
     double step = range / projections;
     double angle = 0;
     for (int i = 0; i < projections; i++) {
-      sinogram.pasteVector(i, rotate(matrix, angle).sumCols());
+      LazyCtMatrix.of(matrix).rotate(angle).sumCols(line);
+      sinogram.pasteVector(i, line);
       angle += step;
     }
     return sinogram;
   }
 
   /**
-   * @param size Size of a vector for which an answer will be calculated
-   * @return Calculates an filter's answer for a vector
+   * 
+   * @param matrix Matrix with a phantom image (should be extended before)
+   * @param range Range of projections to do (a number from range [0..360])
+   * @param projections Number of projections within a given range
+   * @param interpolation Interpolation used for distributing pixels over
+   *        detectors
+   * @return Sinogram made from projections obtained from a phantom by Radon
+   *         Transformation
    */
-  private CtVector computeFiler(int size) {
-	int outSize = (2 * size) + 1;
-	CtVector out = CtVectorFactory.createArrayCtVector(outSize);
-    for (int i = -size; i <= size; i++)
-      out.update(i + size, i);
-    for (int i = 0; i <= outSize - 1; i++) {
-      double sinca = sinc(out.get(i));
-      double sincb = sinc(out.get(i) / 2);
-      double sincc = sincb * sincb;
-      out.update(i, (sinca / 2) - (sincc / 4));
-    }
-    return out;
+  public CtMatrix makeSinogram(CtMatrix matrix, int range, int projections, Interpolation interpolation) {
+    if (matrix == null) throw new IllegalArgumentException();
+    if (range < 1 || range > 360) throw new IllegalArgumentException();
+    if (projections < 1) throw new IllegalArgumentException();
+    ProjectionGeometry geometry = new ProjectionGeometry(matrix.getWidth(), projections, range);
+    return ProjectorFactory.createPixelDrivenProjector(geometry, interpolation).project(matrix);
   }
 
   /**
@@ -147,15 +205,10 @@ public class Jcte {
    * @param matrix Matrix to be filtered (in CT it is normally a sinogram 
    *        matrix)
    */
-  private void applyFilter(CtMatrix matrix) {
-    CtVector filter = computeFiler(matrix.getWidth());
-    for (int y = 0; y < matrix.getHeight(); y++) {
-      CtVector tmp = matrix.getVector(y).conv(filter);
-      int start = (tmp.getSize() - matrix.getWidth()) / 2;
-      int end = tmp.getSize() - start - 1;
-      for (int i = start; i <= end; i++) {
-        matrix.update(i - start, y, tmp.get(i));}
-    }
+  public void applyFilter(CtMatrix matrix) {
+    Probe probe = Metrics.start(Metrics.FILTER);
+    RampFilter.forWidth(matrix.getWidth()).apply(matrix);
+    probe.stop(1);
   }
 
   /**
@@ -164,47 +217,225 @@ public class Jcte {
    * @return Reconstructed CT slice using a back propagation method
    */
   public CtMatrix reconstruct(CtMatrix matrix, int range) {
-    CtMatrix out = CtMatrixFactory.createArrayCtMatrix(matrix.getWidth(), matrix.getWidth());
-    CtMatrix smoothedFilter = CtMatrixFactory.createArrayCtMatrix(matrix.getWidth(), matrix.getWidth());
+    return reconstruct(matrix, range, Interpolation.NEAREST);
+  }
+
+  /**
+   * @param matrix Sinogram matrix
+   * @param range Range of projections in degrees
+   * @param interpolation Interpolation of detector values
+   * @return Reconstructed CT slice using a back propagation method
+   */
+  public CtMatrix reconstruct(CtMatrix matrix, int range, Interpolation interpolation) {
+    if (matrix == null || interpolation == null) throw new IllegalArgumentException();
+    Probe probe = Metrics.start(Metrics.RECONSTRUCT);
+    CtMatrix out = CtMatrixFactory.createCtMatrix(matrix.getWidth(), matrix.getWidth());
     if (range >= 0 && range < 361) {
-    	double step = range / matrix.getHeight();
-        double angle = 0;
-        for (int y = 0; y < matrix.getHeight(); y++) {
-          for (int z = 0; z < matrix.getWidth(); z++)
-            smoothedFilter.pasteVector(z, matrix.getVector(y));
-          out.sum(rotate(smoothedFilter, -angle));
-          angle += step;
-        }
+      ProjectionGeometry geometry = new ProjectionGeometry(matrix.getWidth(), matrix.getHeight(), range);
+      BackprojectorFactory.createPixelDrivenBackprojector(geometry, interpolation).backproject(matrix, out);
     }
+    probe.stop(1);
     return out;
   }
 
   /**
-   * @param slice Number of a slice
-   * @return Sinogram made from projections
-   */
-  public CtMatrix makeSinogram(int slice) {
-    DecimalFormat df = new DecimalFormat("000");
-    CtMatrix sin = CtMatrixFactory.createArrayCtMatrix(256, 180);
-    for (int p = 0; p < 180; p++) {
-      String name = "./data/" + df.format(p) + ".png";
-      CtMatrix mx;
-      try {
-        mx = CtMatrixFactory.createArrayCtMatrix(name);
-        sin.pasteVector(p, mx.getVector(slice));
-      } catch (IllegalArgumentException e) {
-        e.printStackTrace();
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
+   * Reconstructs a slice into a given matrix, which saves allocating the
+   * result. The sinogram copy and the image buffer are reused as well, so
+   * reconstructing slices of the same size over and over produces no
+   * garbage of the image size.
+   * 
+   * @param matrix Sinogram matrix
+   * @param range Range of projections in degrees
+   * @param interpolation Interpolation of detector values
+   * @param dst Square matrix of the sinogram width to put the reconstructed
+   *        slice to. Its content is replaced
+   */
+  public void reconstruct(CtMatrix matrix, int range, Interpolation interpolation, CtMatrix dst) {
+    if (matrix == null || interpolation == null || dst == null) throw new IllegalArgumentException();
+    if (range < 0 || range > 360) throw new IllegalArgumentException();
+    Probe probe = Metrics.start(Metrics.RECONSTRUCT);
+    ProjectionGeometry geometry = new ProjectionGeometry(matrix.getWidth(), matrix.getHeight(), range);
+    Backprojector backprojector = BackprojectorFactory.createPixelDrivenBackprojector(geometry, interpolation);
+    for (int y = 0; y < dst.getHeight(); y++)
+      for (int x = 0; x < dst.getWidth(); x++)
+        dst.update(x, y, 0);
+    backprojector.backproject(matrix, dst);
+    probe.stop(1);
+  }
+
+  /**
+   * Reconstructs a region of a slice only.
+   * 
+   * @param matrix Sinogram matrix
+   * @param range Range of projections in degrees
+   * @param interpolation Interpolation of detector values
+   * @param region Region to reconstruct, i.e.
+   *        {@link Region#fieldOfView(int)} to skip the corners of the image
+   *        which hold no valid data
+   * @return Reconstructed region of a CT slice
+   */
+  public CtMatrix reconstruct(CtMatrix matrix, int range, Interpolation interpolation, Region region) {
+    if (matrix == null || interpolation == null || region == null) throw new IllegalArgumentException();
+    if (range < 0 || range > 360) throw new IllegalArgumentException();
+    Probe probe = Metrics.start(Metrics.RECONSTRUCT);
+    ProjectionGeometry geometry = new ProjectionGeometry(matrix.getWidth(), matrix.getHeight(), range);
+    CtMatrix out = BackprojectorFactory.createPixelDrivenBackprojector(geometry, interpolation).backproject(matrix, region);
+    probe.stop(1);
+    return out;
+  }
+
+  /**
+   * Reconstructs a slice in several passes of increasing resolution, handing
+   * every pass to a listener as soon as it is ready.
+   * 
+   * @param matrix Sinogram matrix
+   * @param range Range of projections in degrees
+   * @param interpolation Interpolation of detector values
+   * @param levels Number of passes, each one with half the binning factor
+   *        of the previous one
+   * @param listener Listener to hand previews and the final image to
+   * @return Reconstructed CT slice, the same as the one of
+   *         {@link #reconstruct(CtMatrix, int, Interpolation)}
+   * @see pl.jasiowka.jcte.projection.ProgressiveReconstructor
+   */
+  public CtMatrix reconstructProgressive(CtMatrix matrix, int range, Interpolation interpolation, int levels, PreviewListener listener) {
+    if (matrix == null || interpolation == null) throw new IllegalArgumentException();
+    if (range < 0 || range > 360) throw new IllegalArgumentException();
+    Probe probe = Metrics.start(Metrics.RECONSTRUCT);
+    ProjectionGeometry geometry = new ProjectionGeometry(matrix.getWidth(), matrix.getHeight(), range);
+    Backprojector backprojector = BackprojectorFactory.createPixelDrivenBackprojector(geometry, interpolation);
+    CtMatrix out = new ProgressiveReconstructor(backprojector, levels).reconstruct(matrix, listener);
+    probe.stop(1);
+    return out;
+  }
+
+  /**
+   * Reconstructs a batch of slices which share the geometry (i.e.
+   * neighbouring slices of a volume) at once. Geometry work is done once for
+   * the whole batch, so it is faster than reconstructing the slices one by
+   * one, and gives the same results.
+   * 
+   * @param matrices Sinogram matrices of the same size
+   * @param range Range of projections in degrees
+   * @param interpolation Interpolation of detector values
+   * @return Reconstructed CT slices, one for every sinogram
+   */
+  public CtMatrix[] reconstruct(CtMatrix[] matrices, int range, Interpolation interpolation) {
+    if (matrices == null || matrices.length == 0 || matrices[0] == null || interpolation == null) throw new IllegalArgumentException();
+    if (range < 0 || range > 360) throw new IllegalArgumentException();
+    Probe probe = Metrics.start(Metrics.RECONSTRUCT);
+    ProjectionGeometry geometry = new ProjectionGeometry(matrices[0].getWidth(), matrices[0].getHeight(), range);
+    CtMatrix[] out = BackprojectorFactory.createPixelDrivenBackprojector(geometry, interpolation).backproject(matrices);
+    probe.stop(out.length);
+    return out;
+  }
+
+  /**
+   * Reconstructs a slice using all available processors.
+   * 
+   * @param matrix Sinogram matrix
+   * @param range Range of projections in degrees
+   * @param interpolation Interpolation of detector values
+   * @param partitioning The way the work is split between threads
+   * @return Reconstructed CT slice using a back propagation method
+   */
+  public CtMatrix reconstruct(CtMatrix matrix, int range, Interpolation interpolation, Partitioning partitioning) {
+    if (matrix == null || interpolation == null || partitioning == null) throw new IllegalArgumentException();
+    Probe probe = Metrics.start(Metrics.RECONSTRUCT);
+    CtMatrix out = CtMatrixFactory.createCtMatrix(matrix.getWidth(), matrix.getWidth());
+    if (range >= 0 && range < 361) {
+      ProjectionGeometry geometry = new ProjectionGeometry(matrix.getWidth(), matrix.getHeight(), range);
+      BackprojectorFactory.createParallelBackprojector(geometry, interpolation, partitioning).backproject(matrix, out);
     }
-    return sin;
+    probe.stop(1);
+    return out;
+  }
+
+  /**
+   * @param slice Number of a slice
+   * @return Sinogram made from projections. The projection files are
+   *         converted once into a {@link pl.jasiowka.jcte.io.ProjectionStack}
+   *         next to them, from which only the rows of the slice are read.
+   *         Sinograms are kept in the default
+   *         {@link pl.jasiowka.jcte.io.MatrixCache}, so asking for the same
+   *         slice again doesn't read the stack again
+   * @throws IllegalArgumentException If <b>slice</b> is out of projection
+   *         images bounds
+   * @throws IOException If an error occurs during reading a file
+   */
+  public CtMatrix makeSinogram(int slice) throws IllegalArgumentException, IOException {
+    return new SinogramBuilder(DATA_PATTERN, DATA_PROJECTIONS, Precision.DOUBLE, MatrixCache.getDefault(), DATA_STACK).build(slice);
+  }
+
+  /**
+   * Makes sinograms of a range of slices reading every projection file once.
+   * 
+   * @param pattern Pattern of projection file names, formatted with a
+   *        projection number (i.e. "./data/%03d.png")
+   * @param projections Number of projections
+   * @param firstSlice Number of the first slice
+   * @param lastSlice Number of the slice following the last one
+   * @return Sinograms made from projections, one for every slice. They are
+   *         kept in the default {@link pl.jasiowka.jcte.io.MatrixCache}
+   * @throws IllegalArgumentException If the range is out of projection images
+   *         bounds
+   * @throws IOException If an error occurs during reading a file
+   */
+  public CtMatrix[] makeSinograms(String pattern, int projections, int firstSlice, int lastSlice) throws IllegalArgumentException, IOException {
+    return new SinogramBuilder(pattern, projections, Precision.DOUBLE, MatrixCache.getDefault()).build(firstSlice, lastSlice);
+  }
+
+  /**
+   * Reconstructs a range of slices of the sample data set, writing every
+   * slice into its own file. Reading, filtering, backprojection and writing
+   * run at the same time as stages of a
+   * {@link pl.jasiowka.jcte.pipeline.VolumeReconstruction}.
+   * 
+   * @param outputPattern Pattern of slice file names, formatted with a slice
+   *        number (i.e. "./output/%03d.png")
+   * @param firstSlice Number of the first slice
+   * @param lastSlice Number of the slice following the last one
+   * @throws IllegalArgumentException If the range is out of projection images
+   *         bounds
+   * @throws IOException If an error occurs during reading or writing a file
+   */
+  public void reconstructVolume(String outputPattern, int firstSlice, int lastSlice) throws IllegalArgumentException, IOException {
+    new VolumeReconstruction(DATA_PATTERN, DATA_PROJECTIONS, 180, outputPattern).run(firstSlice, lastSlice);
+  }
+
+  /**
+   * Reconstructs a range of slices of the sample data set into a volume file
+   * on several worker processes, each reconstructing shards of a given number
+   * of slices with its own heap. See
+   * {@link pl.jasiowka.jcte.pipeline.ShardCoordinator}.
+   * 
+   * @param volumeFile Full path with a name of the volume file
+   * @param firstSlice Number of the first slice
+   * @param lastSlice Number of the slice following the last one
+   * @param workers Number of worker processes
+   * @param heap Maximum heap of every worker (i.e. "2g"), or null for the
+   *        JVM default
+   * @param shardSize Number of slices in a shard
+   * @throws IllegalArgumentException If the range is out of projection images
+   *         bounds or <b>workers</b> or <b>shardSize</b> is < 1
+   * @throws IOException If an error occurs during reading or writing a file
+   *         or a shard couldn't be reconstructed
+   */
+  public void reconstructVolume(String volumeFile, int firstSlice, int lastSlice, int workers, String heap, int shardSize) throws IllegalArgumentException, IOException {
+    ShardCoordinator coordinator = new ShardCoordinator(DATA_PATTERN, DATA_PROJECTIONS, 180);
+    coordinator.setWorkers(workers);
+    coordinator.setHeap(heap);
+    coordinator.setShardSize(shardSize);
+    coordinator.run(firstSlice, lastSlice, volumeFile);
   }
 
   public void test() throws IllegalArgumentException, IOException {
     String path = "./output/";
     int sliceNumber = 137;
 
+    MetricsRecorder recorder = new MetricsRecorder();
+    Metrics.addListener(recorder);
+
     System.out.println("Processing slice No " + sliceNumber + ":");
 
     System.out.println("--> Building sinogram..");
@@ -231,6 +462,9 @@ public class Jcte {
     System.out.println("--> Saving a filtered slice..");
     slicef.save(path + sliceNumber + "slicef.png");
 
+    Metrics.removeListener(recorder);
+    System.out.print(recorder);
+
     System.out.println("Done!");
   }
 
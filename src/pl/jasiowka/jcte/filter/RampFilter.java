@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.filter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import pl.jasiowka.jcte.struct.ConvStrategy;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.Fft;
+import pl.jasiowka.jcte.struct.ScratchBuffers;
+
+/**
+ * RampFilter is the filter of the filtered back propagation method. It
+ * convolves every sinogram row with a (2N + 1) taps kernel and keeps the
+ * central N samples of the result, where N is the sinogram width.
+ * <p>
+ * The kernel and its spectrum depend only on the sinogram width, so they are
+ * computed once per width and shared: use {@link #forWidth(int)} to get a
+ * filter. In the frequency domain two rows are filtered with a single
+ * complex transform (one as the real and the other as the imaginary part),
+ * which is possible because both the rows and the kernel are real.
+ * Working rows are taken from {@link ScratchBuffers}, so filtering sinograms
+ * of the same size over and over allocates nothing.
+ * RampFilter objects are immutable and can be shared between threads.
+ * 
+ * @author Piotr Jasiowka
+ */
+public final class RampFilter {
+
+  private static final ConcurrentMap<Integer, RampFilter> filters = new ConcurrentHashMap<Integer, RampFilter>();
+
+  private final int width;
+
+  private final double[] kernel;
+
+  private final double[] spectrumRe;
+
+  private final double[] spectrumIm;
+
+  private RampFilter(int width) {
+    this.width = width;
+    kernel = kernel(width);
+    int length = Fft.nextPowerOfTwo(width + kernel.length - 1);
+    spectrumRe = new double[length];
+    spectrumIm = new double[length];
+    System.arraycopy(kernel, 0, spectrumRe, 0, kernel.length);
+    Fft.transform(spectrumRe, spectrumIm, false);
+  }
+
+  /**
+   * @param width Width of sinograms to filter
+   * @return Filter for sinograms of a given width
+   * @throws IllegalArgumentException If <b>width</b> is < 1
+   */
+  public static RampFilter forWidth(int width) throws IllegalArgumentException {
+    if (width < 1) throw new IllegalArgumentException();
+    RampFilter filter = filters.get(width);
+    if (filter == null) {
+      filter = new RampFilter(width);
+      RampFilter old = filters.putIfAbsent(width, filter);
+      if (old != null) filter = old;
+    }
+    return filter;
+  }
+
+  /**
+   * @param t Angle in radians
+   * @return Sinc(t) function value
+   */
+  private static double sinc(double t) {
+    if (t == 0)
+      return 1.0;
+    else {
+      double b = Math.PI * t;
+      return Math.sin(b) / b;
+    }
+  }
+
+  /**
+   * @param size Size of a vector for which an answer will be calculated
+   * @return Calculates an filter's answer for a vector
+   */
+  private static double[] kernel(int size) {
+    double[] out = new double[(2 * size) + 1];
+    for (int i = -size; i <= size; i++) {
+      double sinca = sinc(i);
+      double sincb = sinc(i / 2.0);
+      double sincc = sincb * sincb;
+      out[i + size] = (sinca / 2) - (sincc / 4);
+    }
+    return out;
+  }
+
+  /** @return Width of sinograms this filter works on */
+  public int getWidth() {
+    return width;
+  }
+
+  /** @return Copy of the filter's kernel, it has (2 * width + 1) taps */
+  public double[] getKernel() {
+    return kernel.clone();
+  }
+
+  /**
+   * Filters every row of a given matrix in place. The way the convolution is
+   * computed is chosen by {@link ConvStrategy#AUTO}.
+   * 
+   * @param matrix Matrix to be filtered (in CT it is normally a sinogram
+   *        matrix)
+   * @throws IllegalArgumentException If <b>matrix</b> is null or its width
+   *         differs from the filter's one
+   */
+  public void apply(CtMatrix matrix) throws IllegalArgumentException {
+    apply(matrix, ConvStrategy.AUTO);
+  }
+
+  /**
+   * Filters every row of a given matrix in place.
+   * 
+   * @param matrix Matrix to be filtered (in CT it is normally a sinogram
+   *        matrix)
+   * @param strategy The way the convolution is computed
+   * @throws IllegalArgumentException If <b>matrix</b> or <b>strategy</b> is
+   *         null or the matrix width differs from the filter's one
+   */
+  public void apply(CtMatrix matrix, ConvStrategy strategy) throws IllegalArgumentException {
+    if (matrix == null || strategy == null) throw new IllegalArgumentException();
+    if (matrix.getWidth() != width) throw new IllegalArgumentException();
+    double[] a = ScratchBuffers.acquire(width);
+    double[] b = ScratchBuffers.acquire(width);
+    try {
+      for (int y = 0; y < matrix.getHeight(); y += 2) {
+        boolean pair = y + 1 < matrix.getHeight();
+        read(matrix, y, a);
+        if (pair) read(matrix, y + 1, b);
+        if (strategy.useFft(width, kernel.length)) {
+          applyFft(a, pair ? b : null);
+        } else {
+          applyDirect(a);
+          if (pair) applyDirect(b);
+        }
+        write(matrix, y, a);
+        if (pair) write(matrix, y + 1, b);
+      }
+    } finally {
+      ScratchBuffers.release(a);
+      ScratchBuffers.release(b);
+    }
+  }
+
+  /**
+   * Filters a single row in place.
+   * 
+   * @param row Row to be filtered
+   * @param strategy The way the convolution is computed
+   * @throws IllegalArgumentException If <b>row</b> or <b>strategy</b> is
+   *         null or the row length differs from the filter's width
+   */
+  public void apply(double[] row, ConvStrategy strategy) throws IllegalArgumentException {
+    if (row == null || strategy == null) throw new IllegalArgumentException();
+    if (row.length != width) throw new IllegalArgumentException();
+    if (strategy.useFft(width, kernel.length))
+      applyFft(row, null);
+    else
+      applyDirect(row);
+  }
+
+  private void applyDirect(double[] row) {
+    double[] in = ScratchBuffers.acquire(width);
+    System.arraycopy(row, 0, in, 0, width);
+    for (int i = 0; i < width; i++) {
+      double sum = 0;
+      int k = i + width;
+      for (int j = 0; j < width; j++)
+        sum += in[j] * kernel[k - j];
+      row[i] = sum;
+    }
+    ScratchBuffers.release(in);
+  }
+
+  private void applyFft(double[] a, double[] b) {
+    int length = spectrumRe.length;
+    double[] re = ScratchBuffers.acquireZeroed(length);
+    double[] im = ScratchBuffers.acquireZeroed(length);
+    System.arraycopy(a, 0, re, 0, width);
+    if (b != null) System.arraycopy(b, 0, im, 0, width);
+    Fft.transform(re, im, false);
+    for (int k = 0; k < length; k++) {
+      double r = re[k] * spectrumRe[k] - im[k] * spectrumIm[k];
+      double i = re[k] * spectrumIm[k] + im[k] * spectrumRe[k];
+      re[k] = r;
+      im[k] = i;
+    }
+    Fft.transform(re, im, true);
+    System.arraycopy(re, width, a, 0, width);
+    if (b != null) System.arraycopy(im, width, b, 0, width);
+    ScratchBuffers.release(re);
+    ScratchBuffers.release(im);
+  }
+
+  private static void read(CtMatrix matrix, int y, double[] row) {
+    for (int x = 0; x < row.length; x++)
+      row[x] = matrix.get(x, y);
+  }
+
+  private static void write(CtMatrix matrix, int y, double[] row) {
+    for (int x = 0; x < row.length; x++)
+      matrix.update(x, y, row[x]);
+  }
+
+}
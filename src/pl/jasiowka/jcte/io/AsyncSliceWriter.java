@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+/**
+ * AsyncSliceWriter hands matrices over to a background thread which writes
+ * them with a given {@link SliceWriter}, so encoding and output I/O don't
+ * stall the computation. Writes wait in a bounded queue; when the queue is
+ * full {@link #write(CtMatrix, String)} blocks until there is room.
+ * <p>
+ * A matrix passed to the writer must not be changed until it is written,
+ * i.e. until {@link #flush()} or {@link #close()} returns. The first error
+ * of the background thread is reported by the next call of any method.
+ * 
+ * @author Piotr Jasiowka
+ */
+public class AsyncSliceWriter implements Closeable {
+
+  /** A single write waiting in the queue */
+  private static final class Job {
+
+    final CtMatrix matrix;
+
+    final String filename;
+
+    Job(CtMatrix matrix, String filename) {
+      this.matrix = matrix;
+      this.filename = filename;
+    }
+
+  }
+
+  private static final Job END = new Job(null, null);
+
+  private final SliceWriter writer;
+
+  private final BlockingQueue<Job> queue;
+
+  private final Thread thread;
+
+  private int queued, written;
+
+  private IOException error;
+
+  private boolean closed;
+
+  /**
+   * @param writer Writer which does the work
+   * @param capacity Maximum number of matrices waiting to be written
+   * @throws IllegalArgumentException If <b>writer</b> is null or
+   *         <b>capacity</b> is < 1
+   */
+  public AsyncSliceWriter(SliceWriter writer, int capacity) throws IllegalArgumentException {
+    if (writer == null || capacity < 1) throw new IllegalArgumentException();
+    this.writer = writer;
+    queue = new ArrayBlockingQueue<Job>(capacity);
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        drain();
+      }
+    }, "jcte-writer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void drain() {
+    try {
+      for (Job job = queue.take(); job != END; job = queue.take()) {
+        IOException failure = null;
+        try {
+          writer.write(job.matrix, job.filename);
+        } catch (IOException e) {
+          failure = e;
+        } catch (RuntimeException e) {
+          failure = new IOException(e);
+        }
+        synchronized (this) {
+          if (failure != null && error == null) error = failure;
+          written++;
+          notifyAll();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Queues a matrix to be written.
+   * 
+   * @param matrix Matrix to write, it must not be changed until it is written
+   * @param filename Full path with a file name and extension
+   * @throws IllegalArgumentException If any of arguments is null
+   * @throws IllegalStateException If the writer is closed
+   * @throws IOException If a previous write failed or the calling thread was
+   *         interrupted
+   */
+  public void write(CtMatrix matrix, String filename) throws IllegalArgumentException, IllegalStateException, IOException {
+    if (matrix == null || filename == null) throw new IllegalArgumentException();
+    synchronized (this) {
+      if (closed) throw new IllegalStateException();
+      check();
+      queued++;
+    }
+    try {
+      queue.put(new Job(matrix, filename));
+    } catch (InterruptedException e) {
+      // the job never made it into the queue, so flush() must not wait for it
+      synchronized (this) {
+        queued--;
+        notifyAll();
+      }
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Waits until all queued matrices are written.
+   * 
+   * @throws IOException If any write failed or the calling thread was
+   *         interrupted
+   */
+  public synchronized void flush() throws IOException {
+    try {
+      while (written < queued && thread.isAlive())
+        wait();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    check();
+  }
+
+  private void check() throws IOException {
+    if (error != null) {
+      IOException e = error;
+      error = null;
+      throw e;
+    }
+  }
+
+  /**
+   * Writes all queued matrices and stops the background thread.
+   * 
+   * @throws IOException If any write failed or the calling thread was
+   *         interrupted
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) return;
+      closed = true;
+    }
+    try {
+      queue.put(END);
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    flush();
+  }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+import pl.jasiowka.jcte.struct.Precision;
+
+/**
+ * MatrixCache keeps recently used projections decoded from image files and
+ * sinograms built of them in memory, so slices which are reconstructed
+ * again, i.e. with another filter or interpolation, don't have to be
+ * decoded from disk again. A projection is identified by the path of its
+ * file, a sinogram by the pattern of projection files, its precision and
+ * the slice number; both include the modification time and length of every
+ * file they were made of, so changed files are decoded again and the stale
+ * entries are dropped as the least recently used ones.
+ * <p>
+ * The cache is bounded by the number of bytes the matrices occupy. When an
+ * entry doesn't fit, the least recently used entries are dropped; an entry
+ * larger than the whole budget isn't cached at all. Matrices are copied
+ * both in and out of the cache, so callers are free to change what they get,
+ * i.e. filter sinograms in place.
+ * <p>
+ * All methods are thread-safe. Decoding is done outside the lock, so two
+ * threads asking for the same missing projection may both decode it.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.io.SinogramBuilder
+ * @see pl.jasiowka.jcte.io.ProjectionStackLoader
+ */
+public class MatrixCache {
+
+  /** Name of the system property with the budget of the default cache */
+  public static final String PROPERTY = "jcte.cache.bytes";
+
+  /** Budget of the default cache if the property isn't set, 256 MiB */
+  public static final long DEFAULT_BUDGET = 256L << 20;
+
+  private static MatrixCache defaultCache;
+
+  private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+  private long budget, bytes;
+
+  private long hits, misses, evictions;
+
+  /**
+   * @param budget Maximum number of bytes of cached matrices, 0 disables
+   *        caching
+   * @throws IllegalArgumentException If <b>budget</b> is < 0
+   */
+  public MatrixCache(long budget) throws IllegalArgumentException {
+    if (budget < 0) throw new IllegalArgumentException();
+    this.budget = budget;
+  }
+
+  /**
+   * @return Cache shared by the whole JVM, with the budget given by the
+   *         <code>jcte.cache.bytes</code> system property
+   * @throws IllegalStateException If the property is not a non-negative
+   *         number
+   */
+  public static synchronized MatrixCache getDefault() throws IllegalStateException {
+    if (defaultCache == null) {
+      Long budget = Long.getLong(PROPERTY, DEFAULT_BUDGET);
+      if (budget < 0) throw new IllegalStateException("Invalid " + PROPERTY + " value: " + budget);
+      defaultCache = new MatrixCache(budget);
+    }
+    return defaultCache;
+  }
+
+  /**
+   * @param filename Full path with a name of the projection image file
+   * @return New matrix with the projection, decoded from the file or copied
+   *         from the cache if the file didn't change since it was cached
+   * @throws IllegalArgumentException If <b>filename</b> is null
+   * @throws IOException If an error occurs during reading a file
+   */
+  public CtMatrix getProjection(String filename) throws IllegalArgumentException, IOException {
+    if (filename == null) throw new IllegalArgumentException();
+    Key key = new Key(new File(filename).getCanonicalPath(), -1, stamps(new String[] { filename }));
+    CtMatrix out = get(key);
+    if (out != null) return out;
+    out = ProjectionStackLoader.decode(filename);
+    put(key, out, Precision.DOUBLE);
+    return out;
+  }
+
+  /**
+   * @param key Key of an entry
+   * @return New copy of the cached matrix, or null if there is none
+   */
+  synchronized CtMatrix get(Key key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return copy(entry.matrix, entry.precision);
+  }
+
+  /**
+   * Caches a copy of a matrix, dropping the least recently used entries if
+   * it doesn't fit.
+   * 
+   * @param key Key of the entry
+   * @param matrix Matrix to cache. It isn't changed
+   * @param precision Precision the copy is stored in
+   */
+  void put(Key key, CtMatrix matrix, Precision precision) {
+    long size = (long) matrix.getWidth() * matrix.getHeight() * precision.getBytes();
+    if (size > getBudget()) return;
+    Entry entry = new Entry(copy(matrix, precision), precision, size);
+    synchronized (this) {
+      Entry old = entries.put(key, entry);
+      if (old != null) bytes -= old.bytes;
+      bytes += size;
+      trim();
+    }
+  }
+
+  /** Drops the least recently used entries until the cache fits the budget */
+  private void trim() {
+    Iterator<Entry> it = entries.values().iterator();
+    while (bytes > budget && it.hasNext()) {
+      bytes -= it.next().bytes;
+      it.remove();
+      evictions++;
+    }
+  }
+
+  /** @return Maximum number of bytes of cached matrices */
+  public synchronized long getBudget() {
+    return budget;
+  }
+
+  /**
+   * Sets the maximum number of bytes of cached matrices, dropping the least
+   * recently used entries if the cache doesn't fit it.
+   * 
+   * @param budget Maximum number of bytes, 0 disables caching
+   * @throws IllegalArgumentException If <b>budget</b> is < 0
+   */
+  public synchronized void setBudget(long budget) throws IllegalArgumentException {
+    if (budget < 0) throw new IllegalArgumentException();
+    this.budget = budget;
+    trim();
+  }
+
+  /** @return Number of bytes of cached matrices */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /** @return Number of cached matrices */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** @return Number of requests served from the cache */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /** @return Number of requests which had to decode or build a matrix */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /** @return Number of entries dropped to fit the budget */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /** @return Ratio of hits to all requests, 0 if there were none */
+  public synchronized double getHitRatio() {
+    return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+  }
+
+  /** Drops all entries, statistics are kept */
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /** Resets hit, miss and eviction counters */
+  public synchronized void resetStatistics() {
+    hits = misses = evictions = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%d entries, %d of %d bytes, %d hits, %d misses, %d evictions", entries.size(), bytes, budget, hits, misses, evictions);
+  }
+
+  /**
+   * @param filenames Names of files
+   * @return Modification time and length of every file, two numbers per
+   *         file. Both are 0 for a file which doesn't exist
+   */
+  static long[] stamps(String[] filenames) {
+    long[] out = new long[2 * filenames.length];
+    for (int i = 0; i < filenames.length; i++) {
+      File file = new File(filenames[i]);
+      out[2 * i] = file.lastModified();
+      out[2 * i + 1] = file.length();
+    }
+    return out;
+  }
+
+  private static CtMatrix copy(CtMatrix matrix, Precision precision) {
+    CtMatrix out = CtMatrixFactory.createCtMatrix(matrix.getWidth(), matrix.getHeight(), precision);
+    out.paste(0, 0, matrix);
+    return out;
+  }
+
+  /** Cached matrix */
+  private static final class Entry {
+
+    final CtMatrix matrix;
+
+    final Precision precision;
+
+    final long bytes;
+
+    Entry(CtMatrix matrix, Precision precision, long bytes) {
+      this.matrix = matrix;
+      this.precision = precision;
+      this.bytes = bytes;
+    }
+
+  }
+
+  /**
+   * Cache key: a name of the source, an index within it and the stamps of
+   * the files an entry was made of
+   */
+  static final class Key {
+
+    private final String name;
+
+    private final int index;
+
+    private final long[] stamps;
+
+    /**
+     * @param name Name of the source, i.e. a path or a pattern of paths
+     * @param index Index within the source, i.e. a slice number, or -1
+     * @param stamps Stamps of the source files, see {@link #stamps(String[])}
+     */
+    Key(String name, int index, long[] stamps) {
+      this.name = name;
+      this.index = index;
+      this.stamps = stamps;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) return false;
+      Key k = (Key) o;
+      return index == k.index && name.equals(k.name) && Arrays.equals(stamps, k.stamps);
+    }
+
+    @Override
+    public int hashCode() {
+      return (name.hashCode() * 31 + index) * 31 + Arrays.hashCode(stamps);
+    }
+
+  }
+
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import pl.jasiowka.jcte.metrics.Metrics;
+import pl.jasiowka.jcte.metrics.Probe;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+import pl.jasiowka.jcte.struct.Precision;
+
+/**
+ * ProjectionStack is a single file holding a whole stack of projection
+ * images, converted once from the image files, from which any rows can be
+ * read without decoding whole images. Every projection is cut into chunks
+ * of a given number of rows (one by default); chunks are stored one after
+ * another, projection by projection, and located through an index, so the
+ * sinogram of a slice takes a single positioned read and a small inflate
+ * per projection, and the sinograms of a range of slices take the same.
+ * <p>
+ * Samples are stored as 16-bit unsigned numbers of the [0..1] range, which
+ * holds 8-bit and 16-bit images exactly. Chunks are either stored as they
+ * are or compressed with the fastest deflate level, after every row was
+ * replaced by the differences of neighbouring samples, which deflate
+ * compresses much better than the samples of a smooth image.
+ * <p>
+ * All numbers in the file are little-endian. The header holds: the magic
+ * "JCTESTK" followed by a zero byte, the format version, width, height,
+ * number of projections, rows per chunk and compression code (32-bit
+ * integers). It is followed by the index of chunk offsets (64-bit integers,
+ * one more than chunks, the last one is the end of data) and the chunks.
+ * <p>
+ * Reads are thread-safe.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.io.SinogramBuilder
+ */
+public class ProjectionStack implements Closeable {
+
+  private static final byte[] MAGIC = { 'J', 'C', 'T', 'E', 'S', 'T', 'K', 0 };
+
+  private static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = MAGIC.length + 24;
+
+  private final String filename;
+
+  private final RandomAccessFile file;
+
+  private final FileChannel channel;
+
+  private final int width, height, projections, rowsPerChunk;
+
+  private final boolean compressed;
+
+  private final long[] index;
+
+  /**
+   * Opens a stack file.
+   * 
+   * @param filename Full path with a name of the stack file
+   * @throws IllegalArgumentException If <b>filename</b> is null
+   * @throws IOException If an error occurs during reading the file or it is
+   *         not a stack file
+   */
+  public ProjectionStack(String filename) throws IllegalArgumentException, IOException {
+    if (filename == null) throw new IllegalArgumentException();
+    this.filename = filename;
+    file = new RandomAccessFile(filename, "r");
+    channel = file.getChannel();
+    try {
+      ByteBuffer header = read(0, HEADER_SIZE);
+      byte[] magic = new byte[MAGIC.length];
+      header.get(magic);
+      if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a projection stack file: " + filename);
+      if (header.getInt() != VERSION) throw new IOException("Unsupported projection stack version: " + filename);
+      width = header.getInt();
+      height = header.getInt();
+      projections = header.getInt();
+      rowsPerChunk = header.getInt();
+      int compression = header.getInt();
+      if (width < 1 || height < 1 || projections < 1 || rowsPerChunk < 1 || compression < 0 || compression > 1)
+        throw new IOException("Broken projection stack file: " + filename);
+      compressed = compression == 1;
+      long chunks = (long) projections * getChunks();
+      if (chunks >= Integer.MAX_VALUE / 8) throw new IOException("Broken projection stack file: " + filename);
+      ByteBuffer buffer = read(HEADER_SIZE, 8 * ((int) chunks + 1));
+      index = new long[(int) chunks + 1];
+      buffer.asLongBuffer().get(index);
+      if (index[0] != HEADER_SIZE + 8L * index.length || index[index.length - 1] != channel.size())
+        throw new IOException("Broken projection stack file: " + filename);
+      for (int i = 0; i < chunks; i++)
+        if (index[i] > index[i + 1]) throw new IOException("Broken projection stack file: " + filename);
+    } catch (IOException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Converts a numbered stack of projection images into a stack file,
+   * overwriting an existing one. Images are decoded in the background by a
+   * {@link ProjectionStackLoader}.
+   * 
+   * @param pattern Pattern of projection file names, formatted with
+   *        {@link String#format(String, Object...)} and a projection number
+   *        (i.e. "./data/%03d.png")
+   * @param projections Number of projections, they are numbered from 0
+   * @param filename Full path with a name of the stack file
+   * @param rowsPerChunk Number of image rows in a chunk
+   * @param compressed Whether chunks are compressed
+   * @throws IllegalArgumentException If <b>pattern</b> or <b>filename</b> is
+   *         null, the pattern is not a valid format, <b>projections</b> or
+   *         <b>rowsPerChunk</b> is < 1 or projection images differ in size
+   * @throws IOException If an error occurs during reading or writing a file
+   */
+  public static void convert(String pattern, int projections, String filename, int rowsPerChunk, boolean compressed) throws IllegalArgumentException, IOException {
+    if (filename == null || rowsPerChunk < 1) throw new IllegalArgumentException();
+    ProjectionStackLoader loader = new ProjectionStackLoader(pattern, projections);
+    RandomAccessFile raf = null;
+    try {
+      CtMatrix projection = loader.next();
+      int width = projection.getWidth();
+      int height = projection.getHeight();
+      int chunks = (height + rowsPerChunk - 1) / rowsPerChunk;
+      long[] index = new long[projections * chunks + 1];
+      raf = new RandomAccessFile(filename, "rw");
+      raf.setLength(0);
+      FileChannel channel = raf.getChannel();
+      long position = HEADER_SIZE + 8L * index.length;
+      Deflater deflater = compressed ? new Deflater(Deflater.BEST_SPEED) : null;
+      byte[] raw = new byte[2 * width * rowsPerChunk];
+      byte[] packed = new byte[raw.length + raw.length / 100 + 64];
+      try {
+        for (int p = 0; p < projections; p++) {
+          if (p > 0) projection = loader.next();
+          if (projection.getWidth() != width || projection.getHeight() != height) throw new IllegalArgumentException();
+          for (int c = 0; c < chunks; c++) {
+            index[p * chunks + c] = position;
+            int rows = Math.min(rowsPerChunk, height - c * rowsPerChunk);
+            int length = encode(projection, c * rowsPerChunk, rows, compressed, raw);
+            ByteBuffer chunk = ByteBuffer.wrap(raw, 0, length);
+            if (compressed) {
+              deflater.reset();
+              deflater.setInput(raw, 0, length);
+              deflater.finish();
+              length = 0;
+              while (!deflater.finished()) {
+                if (length == packed.length) packed = Arrays.copyOf(packed, 2 * packed.length);
+                length += deflater.deflate(packed, length, packed.length - length);
+              }
+              chunk = ByteBuffer.wrap(packed, 0, length);
+            }
+            write(channel, chunk, position);
+            position += length;
+          }
+        }
+      } finally {
+        if (deflater != null) deflater.end();
+      }
+      index[index.length - 1] = position;
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + 8 * index.length).order(ByteOrder.LITTLE_ENDIAN);
+      header.put(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(projections).putInt(rowsPerChunk).putInt(compressed ? 1 : 0);
+      for (long offset : index)
+        header.putLong(offset);
+      header.flip();
+      write(channel, header, 0);
+    } finally {
+      loader.close();
+      if (raf != null) raf.close();
+    }
+  }
+
+  /**
+   * Opens a stack file converted from a numbered stack of projection
+   * images, converting the images first if the file doesn't exist or is
+   * older than any of them. Chunks hold single rows and are compressed.
+   * 
+   * @param pattern Pattern of projection file names
+   * @param projections Number of projections, they are numbered from 0
+   * @param filename Full path with a name of the stack file
+   * @return Opened stack
+   * @throws IllegalArgumentException If any of arguments is invalid
+   * @throws IOException If an error occurs during reading or writing a file
+   */
+  public static ProjectionStack ingest(String pattern, int projections, String filename) throws IllegalArgumentException, IOException {
+    if (pattern == null || filename == null || projections < 1) throw new IllegalArgumentException();
+    long modified = new File(filename).lastModified();
+    boolean stale = modified == 0;
+    for (int p = 0; p < projections && !stale; p++)
+      stale = new File(String.format(pattern, p)).lastModified() >= modified;
+    if (!stale) {
+      try {
+        ProjectionStack stack = new ProjectionStack(filename);
+        if (stack.getProjections() == projections) return stack;
+        stack.close();
+      } catch (IOException e) {
+        // broken or foreign file, convert it again
+      }
+    }
+    convert(pattern, projections, filename, 1, true);
+    return new ProjectionStack(filename);
+  }
+
+  /** Stores rows of a projection as 16-bit samples, or their differences */
+  private static int encode(CtMatrix projection, int firstRow, int rows, boolean delta, byte[] out) {
+    int width = projection.getWidth();
+    int i = 0;
+    for (int y = firstRow; y < firstRow + rows; y++) {
+      int previous = 0;
+      for (int x = 0; x < width; x++) {
+        double val = projection.get(x, y);
+        int sample = val <= 0 ? 0 : val >= 1 ? 65535 : (int) Math.round(val * 65535);
+        int stored = delta ? sample - previous : sample;
+        previous = sample;
+        out[i++] = (byte) stored;
+        out[i++] = (byte) (stored >> 8);
+      }
+    }
+    return i;
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining())
+      position += channel.write(buffer, position);
+  }
+
+  private ByteBuffer read(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining())
+      if (channel.read(buffer, position + buffer.position()) < 0)
+        throw new IOException("Truncated projection stack file: " + filename);
+    buffer.flip();
+    return buffer;
+  }
+
+  /** @return Width of projection images */
+  public int getWidth() {
+    return width;
+  }
+
+  /** @return Height of projection images */
+  public int getHeight() {
+    return height;
+  }
+
+  /** @return Number of projections */
+  public int getProjections() {
+    return projections;
+  }
+
+  /** @return Number of image rows in a chunk */
+  public int getRowsPerChunk() {
+    return rowsPerChunk;
+  }
+
+  /** @return Whether chunks are compressed */
+  public boolean isCompressed() {
+    return compressed;
+  }
+
+  /** @return Number of chunks of a single projection */
+  private int getChunks() {
+    return (height + rowsPerChunk - 1) / rowsPerChunk;
+  }
+
+  /**
+   * @param projection Projection number
+   * @param row Image row
+   * @return New array with the samples of a given row of a projection
+   * @throws IllegalArgumentException If <b>projection</b> or <b>row</b> is
+   *         out of bounds
+   * @throws IOException If an error occurs during reading the file
+   */
+  public double[] readRow(int projection, int row) throws IllegalArgumentException, IOException {
+    if (projection < 0 || projection >= projections || row < 0 || row >= height) throw new IllegalArgumentException();
+    double[][] out = new double[1][width];
+    Inflater inflater = compressed ? new Inflater() : null;
+    try {
+      read(projection, row, row + 1, inflater, out);
+    } finally {
+      if (inflater != null) inflater.end();
+    }
+    return out[0];
+  }
+
+  /**
+   * @param slice Number of a slice
+   * @param precision Precision in which the sinogram is stored
+   * @return Sinogram of a given slice, made of its rows of all projections
+   * @throws IllegalArgumentException If <b>precision</b> is null or
+   *         <b>slice</b> is out of bounds
+   * @throws IOException If an error occurs during reading the file
+   */
+  public CtMatrix sinogram(int slice, Precision precision) throws IllegalArgumentException, IOException {
+    return sinograms(slice, slice + 1, precision)[0];
+  }
+
+  /**
+   * @param firstSlice Number of the first slice
+   * @param lastSlice Number of the slice following the last one
+   * @param precision Precision in which sinograms are stored
+   * @return Sinograms of slices from a given range, one for every slice. The
+   *         width of a sinogram equals the width of projection images and its
+   *         height equals the number of projections
+   * @throws IllegalArgumentException If <b>precision</b> is null or the
+   *         range is empty or out of bounds
+   * @throws IOException If an error occurs during reading the file
+   */
+  public CtMatrix[] sinograms(int firstSlice, int lastSlice, Precision precision) throws IllegalArgumentException, IOException {
+    if (precision == null || firstSlice < 0 || lastSlice <= firstSlice || lastSlice > height) throw new IllegalArgumentException();
+    Probe probe = Metrics.start(Metrics.SINOGRAM);
+    CtMatrix[] out = new CtMatrix[lastSlice - firstSlice];
+    for (int s = 0; s < out.length; s++)
+      out[s] = CtMatrixFactory.createCtMatrix(width, projections, precision);
+    double[][] rows = new double[out.length][width];
+    long bytes = 0;
+    Inflater inflater = compressed ? new Inflater() : null;
+    try {
+      for (int p = 0; p < projections; p++) {
+        bytes += read(p, firstSlice, lastSlice, inflater, rows);
+        for (int s = 0; s < out.length; s++)
+          for (int x = 0; x < width; x++)
+            out[s].update(x, p, rows[s][x]);
+      }
+    } finally {
+      if (inflater != null) inflater.end();
+    }
+    probe.stop(out.length, bytes, 0);
+    return out;
+  }
+
+  /**
+   * Reads a range of rows of a projection with a single positioned read of
+   * all chunks they lie in.
+   * 
+   * @return Number of bytes read
+   */
+  private long read(int projection, int firstRow, int lastRow, Inflater inflater, double[][] out) throws IOException {
+    int chunks = getChunks();
+    int first = firstRow / rowsPerChunk;
+    int last = (lastRow - 1) / rowsPerChunk + 1;
+    int base = projection * chunks;
+    long start = index[base + first];
+    long length = index[base + last] - start;
+    if (length > Integer.MAX_VALUE) throw new IOException("Broken projection stack file: " + filename);
+    ByteBuffer data = read(start, (int) length);
+    byte[] raw = compressed ? new byte[2 * width * rowsPerChunk] : data.array();
+    for (int c = first; c < last; c++) {
+      int rows = Math.min(rowsPerChunk, height - c * rowsPerChunk);
+      int offset = (int) (index[base + c] - start);
+      int size = 2 * width * rows;
+      if (compressed) {
+        inflater.reset();
+        inflater.setInput(data.array(), offset, (int) (index[base + c + 1] - index[base + c]));
+        try {
+          if (inflater.inflate(raw, 0, size) != size || !inflater.finished())
+            throw new IOException("Broken projection stack file: " + filename);
+        } catch (DataFormatException e) {
+          throw new IOException("Broken projection stack file: " + filename, e);
+        }
+        offset = 0;
+      } else if (index[base + c + 1] - index[base + c] != size) {
+        throw new IOException("Broken projection stack file: " + filename);
+      }
+      for (int r = 0; r < rows; r++) {
+        int row = c * rowsPerChunk + r;
+        if (row < firstRow || row >= lastRow) continue;
+        double[] dst = out[row - firstRow];
+        int i = offset + 2 * width * r;
+        int sample = 0;
+        for (int x = 0; x < width; x++, i += 2) {
+          int stored = (raw[i] & 0xff) | (raw[i + 1] & 0xff) << 8;
+          sample = compressed ? (sample + stored) & 0xffff : stored;
+          dst[x] = sample / 65535.0;
+        }
+      }
+    }
+    return length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+
+}
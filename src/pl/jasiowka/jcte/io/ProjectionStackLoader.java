@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IllegalFormatException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import pl.jasiowka.jcte.metrics.Metrics;
+import pl.jasiowka.jcte.metrics.Probe;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+/**
+ * ProjectionStackLoader decodes a numbered stack of projection images on a
+ * bounded pool of threads. Projections are handed out in order, one by one,
+ * while the following ones are already being decoded in the background: at
+ * most <b>readAhead</b> projections are decoded ahead of the consumer, so
+ * decoding overlaps with whatever the consumer does and memory use stays
+ * bounded.
+ * <p>
+ * A loader is meant to be consumed by a single thread. It has to be closed
+ * after use, which stops its threads.
+ * 
+ * @author Piotr Jasiowka
+ */
+public class ProjectionStackLoader implements Closeable {
+
+  private final String pattern;
+
+  private final int projections;
+
+  private final int readAhead;
+
+  private final ExecutorService executor;
+
+  private final MatrixCache cache;
+
+  private final Deque<Future<CtMatrix>> pending = new ArrayDeque<Future<CtMatrix>>();
+
+  private int submitted, taken;
+
+  /**
+   * Creates a loader with one thread per available processor and a
+   * read-ahead of two projections per thread.
+   * 
+   * @param pattern Pattern of projection file names, formatted with
+   *        {@link String#format(String, Object...)} and a projection number
+   *        (i.e. "./data/%03d.png")
+   * @param projections Number of projections, they are numbered from 0
+   * @throws IllegalArgumentException If <b>pattern</b> is null or is not a
+   *         valid format, or <b>projections</b> is < 1
+   */
+  public ProjectionStackLoader(String pattern, int projections) throws IllegalArgumentException {
+    this(pattern, projections, Runtime.getRuntime().availableProcessors(), 2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param pattern Pattern of projection file names, formatted with
+   *        {@link String#format(String, Object...)} and a projection number
+   *        (i.e. "./data/%03d.png")
+   * @param projections Number of projections, they are numbered from 0
+   * @param threads Number of decoding threads
+   * @param readAhead Maximum number of projections decoded ahead of the
+   *        consumer
+   * @throws IllegalArgumentException If <b>pattern</b> is null or is not a
+   *         valid format, or any of numbers is < 1
+   */
+  public ProjectionStackLoader(String pattern, int projections, int threads, int readAhead) throws IllegalArgumentException {
+    this(pattern, projections, threads, readAhead, null);
+  }
+
+  /**
+   * @param pattern Pattern of projection file names, formatted with
+   *        {@link String#format(String, Object...)} and a projection number
+   *        (i.e. "./data/%03d.png")
+   * @param projections Number of projections, they are numbered from 0
+   * @param threads Number of decoding threads
+   * @param readAhead Maximum number of projections decoded ahead of the
+   *        consumer
+   * @param cache Cache of decoded projections, or null to decode every file
+   * @throws IllegalArgumentException If <b>pattern</b> is null or is not a
+   *         valid format, or any of numbers is < 1
+   */
+  public ProjectionStackLoader(String pattern, int projections, int threads, int readAhead, MatrixCache cache) throws IllegalArgumentException {
+    if (pattern == null || projections < 1 || threads < 1 || readAhead < 1) throw new IllegalArgumentException();
+    try {
+      String.format(pattern, 0);
+    } catch (IllegalFormatException e) {
+      throw new IllegalArgumentException(e);
+    }
+    this.pattern = pattern;
+    this.projections = projections;
+    this.readAhead = readAhead;
+    this.cache = cache;
+    executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "jcte-loader");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /** @return Number of projections */
+  public int getProjections() {
+    return projections;
+  }
+
+  /**
+   * @param projection Projection number
+   * @return Name of the file holding a given projection
+   */
+  public String getFileName(int projection) {
+    return String.format(pattern, projection);
+  }
+
+  /** @return Whether there are projections which weren't handed out yet */
+  public boolean hasNext() {
+    return taken < projections;
+  }
+
+  /**
+   * @return The next projection, decoded into a new matrix
+   * @throws NoSuchElementException If all projections were handed out
+   * @throws IOException If an error occurs during reading a file
+   */
+  public CtMatrix next() throws NoSuchElementException, IOException {
+    if (!hasNext()) throw new NoSuchElementException();
+    fill();
+    Future<CtMatrix> f = pending.poll();
+    taken++;
+    fill();
+    try {
+      return f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * @return All projections which weren't handed out yet, in order
+   * @throws IOException If an error occurs during reading a file
+   */
+  public CtMatrix[] loadAll() throws IOException {
+    CtMatrix[] out = new CtMatrix[projections - taken];
+    for (int p = 0; p < out.length; p++)
+      out[p] = next();
+    return out;
+  }
+
+  private void fill() {
+    while (submitted < projections && pending.size() < readAhead) {
+      final String filename = getFileName(submitted++);
+      pending.add(executor.submit(new Callable<CtMatrix>() {
+        @Override
+        public CtMatrix call() throws IOException {
+          return cache == null ? decode(filename) : cache.getProjection(filename);
+        }
+      }));
+    }
+  }
+
+  /**
+   * @param filename Full path with a name of the projection image file
+   * @return New matrix with the decoded projection
+   * @throws IOException If an error occurs during reading a file
+   */
+  static CtMatrix decode(String filename) throws IOException {
+    Probe probe = Metrics.start(Metrics.DECODE);
+    CtMatrix out = CtMatrixFactory.createCtMatrix(filename);
+    probe.stop(1, new File(filename).length(), 0);
+    return out;
+  }
+
+  @Override
+  public void close() {
+    for (Future<CtMatrix> f : pending)
+      f.cancel(true);
+    pending.clear();
+    executor.shutdownNow();
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.io;
+
+import java.io.IOException;
+import java.util.IllegalFormatException;
+
+import pl.jasiowka.jcte.metrics.Metrics;
+import pl.jasiowka.jcte.metrics.Probe;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+import pl.jasiowka.jcte.struct.Precision;
+
+/**
+ * SinogramBuilder makes sinograms from a stack of projection images. Every
+ * image row is a single detector line, so the sinogram of a slice k consists
+ * of the k-th rows of all projections. Sinograms of a whole range of slices
+ * are built in a single pass: every projection file is decoded exactly once
+ * and its rows are scattered into all sinograms of the range. Projections
+ * are decoded in the background by a {@link ProjectionStackLoader}, so
+ * decoding of the following files overlaps with scattering.
+ * <p>
+ * A builder given a {@link MatrixCache} takes sinograms it has already
+ * built, and projections it has already decoded, from the cache as long as
+ * the projection files don't change.
+ * <p>
+ * A builder given the name of a {@link ProjectionStack} file reads the rows
+ * of the slices straight from it instead of decoding whole images. The
+ * stack is converted from the projection files the first time it is
+ * needed, and again whenever any of them changes.
+ * 
+ * @author Piotr Jasiowka
+ */
+public class SinogramBuilder {
+
+  private final String pattern;
+
+  private final int projections;
+
+  private final Precision precision;
+
+  private final MatrixCache cache;
+
+  private final String stack;
+
+  /**
+   * @param pattern Pattern of projection file names, formatted with
+   *        {@link String#format(String, Object...)} and a projection number
+   *        (i.e. "./data/%03d.png")
+   * @param projections Number of projections, they are numbered from 0
+   * @throws IllegalArgumentException If <b>pattern</b> is null or is not a
+   *         valid format, or <b>projections</b> is < 1
+   */
+  public SinogramBuilder(String pattern, int projections) throws IllegalArgumentException {
+    this(pattern, projections, Precision.DOUBLE);
+  }
+
+  /**
+   * @param pattern Pattern of projection file names, formatted with
+   *        {@link String#format(String, Object...)} and a projection number
+   *        (i.e. "./data/%03d.png")
+   * @param projections Number of projections, they are numbered from 0
+   * @param precision Precision in which sinograms are stored. Projection
+   *        images hold values from [0..1] range, so sinograms made of them
+   *        are stored exactly in {@link Precision#FIXED16} at a quarter of
+   *        memory
+   * @throws IllegalArgumentException If <b>pattern</b> or <b>precision</b> is
+   *         null, the pattern is not a valid format, or <b>projections</b> is
+   *         < 1
+   */
+  public SinogramBuilder(String pattern, int projections, Precision precision) throws IllegalArgumentException {
+    this(pattern, projections, precision, null);
+  }
+
+  /**
+   * @param pattern Pattern of projection file names, formatted with
+   *        {@link String#format(String, Object...)} and a projection number
+   *        (i.e. "./data/%03d.png")
+   * @param projections Number of projections, they are numbered from 0
+   * @param precision Precision in which sinograms are stored
+   * @param cache Cache of sinograms and decoded projections, or null to
+   *        build every sinogram from the files
+   * @throws IllegalArgumentException If <b>pattern</b> or <b>precision</b> is
+   *         null, the pattern is not a valid format, or <b>projections</b> is
+   *         < 1
+   */
+  public SinogramBuilder(String pattern, int projections, Precision precision, MatrixCache cache) throws IllegalArgumentException {
+    this(pattern, projections, precision, cache, null);
+  }
+
+  /**
+   * @param pattern Pattern of projection file names, formatted with
+   *        {@link String#format(String, Object...)} and a projection number
+   *        (i.e. "./data/%03d.png")
+   * @param projections Number of projections, they are numbered from 0
+   * @param precision Precision in which sinograms are stored
+   * @param cache Cache of sinograms and decoded projections, or null to
+   *        build every sinogram from the files
+   * @param stack Full path with a name of the {@link ProjectionStack} file
+   *        converted from the projection files, or null to decode the
+   *        projection files
+   * @throws IllegalArgumentException If <b>pattern</b> or <b>precision</b> is
+   *         null, the pattern is not a valid format, or <b>projections</b> is
+   *         < 1
+   */
+  public SinogramBuilder(String pattern, int projections, Precision precision, MatrixCache cache, String stack) throws IllegalArgumentException {
+    if (pattern == null || precision == null || projections < 1) throw new IllegalArgumentException();
+    try {
+      String.format(pattern, 0);
+    } catch (IllegalFormatException e) {
+      throw new IllegalArgumentException(e);
+    }
+    this.pattern = pattern;
+    this.projections = projections;
+    this.precision = precision;
+    this.cache = cache;
+    this.stack = stack;
+  }
+
+  /** @return Number of projections */
+  public int getProjections() {
+    return projections;
+  }
+
+  /**
+   * @param projection Projection number
+   * @return Name of the file holding a given projection
+   */
+  public String getFileName(int projection) {
+    return String.format(pattern, projection);
+  }
+
+  /**
+   * @param slice Number of a slice
+   * @return Sinogram of a given slice
+   * @throws IllegalArgumentException If <b>slice</b> is out of projection
+   *         images bounds or projection images differ in size
+   * @throws IOException If an error occurs during reading a file
+   */
+  public CtMatrix build(int slice) throws IllegalArgumentException, IOException {
+    return build(slice, slice + 1)[0];
+  }
+
+  /**
+   * @param firstSlice Number of the first slice
+   * @param lastSlice Number of the slice following the last one
+   * @return Sinograms of slices from a given range, one for every slice. The
+   *         width of a sinogram equals the width of projection images and its
+   *         height equals the number of projections
+   * @throws IllegalArgumentException If the range is empty or out of
+   *         projection images bounds or projection images differ in size
+   * @throws IOException If an error occurs during reading a file
+   */
+  public CtMatrix[] build(int firstSlice, int lastSlice) throws IllegalArgumentException, IOException {
+    if (firstSlice < 0 || lastSlice <= firstSlice) throw new IllegalArgumentException();
+    if (cache == null) return load(firstSlice, lastSlice);
+    String[] filenames = new String[projections];
+    for (int p = 0; p < projections; p++)
+      filenames[p] = getFileName(p);
+    long[] stamps = MatrixCache.stamps(filenames);
+    String name = pattern + ":" + precision;
+    CtMatrix[] sinograms = new CtMatrix[lastSlice - firstSlice];
+    int first = lastSlice, last = firstSlice;
+    for (int s = firstSlice; s < lastSlice; s++) {
+      sinograms[s - firstSlice] = cache.get(new MatrixCache.Key(name, s, stamps));
+      if (sinograms[s - firstSlice] == null) {
+        first = Math.min(first, s);
+        last = s + 1;
+      }
+    }
+    if (first < last) {
+      CtMatrix[] built = load(first, last);
+      for (int s = first; s < last; s++) {
+        if (sinograms[s - firstSlice] != null) continue;
+        sinograms[s - firstSlice] = built[s - first];
+        cache.put(new MatrixCache.Key(name, s, stamps), built[s - first], precision);
+      }
+    }
+    return sinograms;
+  }
+
+  /**
+   * @param firstSlice Number of the first slice
+   * @param lastSlice Number of the slice following the last one
+   * @return Sinograms of slices from a given range built from the projection
+   *         files
+   */
+  private CtMatrix[] load(int firstSlice, int lastSlice) throws IllegalArgumentException, IOException {
+    if (stack != null) {
+      ProjectionStack in = ProjectionStack.ingest(pattern, projections, stack);
+      try {
+        if (lastSlice > in.getHeight()) throw new IllegalArgumentException();
+        return in.sinograms(firstSlice, lastSlice, precision);
+      } finally {
+        in.close();
+      }
+    }
+    Probe probe = Metrics.start(Metrics.SINOGRAM);
+    CtMatrix[] sinograms = new CtMatrix[lastSlice - firstSlice];
+    int width = -1;
+    int threads = Runtime.getRuntime().availableProcessors();
+    ProjectionStackLoader loader = new ProjectionStackLoader(pattern, projections, threads, 2 * threads, cache);
+    try {
+      for (int p = 0; p < projections; p++) {
+        CtMatrix projection = loader.next();
+        if (width < 0) {
+          width = projection.getWidth();
+          if (lastSlice > projection.getHeight()) throw new IllegalArgumentException();
+          for (int s = 0; s < sinograms.length; s++)
+            sinograms[s] = CtMatrixFactory.createCtMatrix(width, projections, precision);
+        } else if (projection.getWidth() != width || projection.getHeight() < lastSlice) {
+          throw new IllegalArgumentException();
+        }
+        for (int s = firstSlice; s < lastSlice; s++)
+          sinograms[s - firstSlice].pasteVector(p, projection.getVector(s));
+      }
+    } finally {
+      loader.close();
+    }
+    probe.stop(sinograms.length);
+    return sinograms;
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.io;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferUShort;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import javax.imageio.ImageIO;
+
+import pl.jasiowka.jcte.metrics.Metrics;
+import pl.jasiowka.jcte.metrics.Probe;
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+/**
+ * SliceWriter stores matrices (slices, sinograms) in files. Unlike
+ * {@link CtMatrix#save(String)} it keeps the sign of values and lets you
+ * choose the output format and the window of values mapped to the output
+ * levels. Values below the window are written as the lowest level, values
+ * above it as the highest one. Without a given window the minimum and the
+ * maximum of a matrix are used, found in a single pass before writing.
+ * Samples are written straight into the image data buffer.
+ * <p>
+ * SliceWriter objects are immutable and can be shared between threads.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.io.AsyncSliceWriter
+ */
+public class SliceWriter {
+
+  /** Output file format */
+  public enum Format {
+
+    /** 8-bit grayscale PNG image, the window is mapped to [0..255] */
+    PNG8,
+
+    /** 16-bit grayscale PNG image, the window is mapped to [0..65535] */
+    PNG16,
+
+    /**
+     * Raw 32-bit floating point numbers, little-endian, row-major, with no
+     * header and no windowing: values are written as they are
+     */
+    RAW_FLOAT
+
+  }
+
+  private static final int RAW_BUFFER_SIZE = 1 << 16;
+
+  private final Format format;
+
+  private final boolean auto;
+
+  private final double low, high;
+
+  /**
+   * Creates a writer which maps the range of values of every matrix to the
+   * output levels.
+   * 
+   * @param format Output file format
+   * @throws IllegalArgumentException If <b>format</b> is null
+   */
+  public SliceWriter(Format format) throws IllegalArgumentException {
+    if (format == null) throw new IllegalArgumentException();
+    this.format = format;
+    auto = true;
+    low = 0;
+    high = 0;
+  }
+
+  /**
+   * Creates a writer which maps a fixed window of values to the output
+   * levels.
+   * 
+   * @param format Output file format
+   * @param low Value written as the lowest level
+   * @param high Value written as the highest level
+   * @throws IllegalArgumentException If <b>format</b> is null or the window
+   *         is empty
+   */
+  public SliceWriter(Format format, double low, double high) throws IllegalArgumentException {
+    if (format == null || !(high > low)) throw new IllegalArgumentException();
+    this.format = format;
+    auto = false;
+    this.low = low;
+    this.high = high;
+  }
+
+  /**
+   * @param format Output file format
+   * @param level Value in the center of the window
+   * @param window Width of the window
+   * @return Writer which maps a window given by its level and width to the
+   *         output levels, the way CT viewers do
+   * @throws IllegalArgumentException If <b>format</b> is null or
+   *         <b>window</b> is not positive
+   */
+  public static SliceWriter withWindowLevel(Format format, double level, double window) throws IllegalArgumentException {
+    return new SliceWriter(format, level - window / 2, level + window / 2);
+  }
+
+  /** @return Output file format */
+  public Format getFormat() {
+    return format;
+  }
+
+  /**
+   * Writes a matrix into a file.
+   * 
+   * @param matrix Matrix to write
+   * @param filename Full path with a file name and extension
+   *        (i.e. "/home/wallie/images/output.png")
+   * @throws IllegalArgumentException If any of arguments is null
+   * @throws IOException If an error occurs during writing a file
+   */
+  public void write(CtMatrix matrix, String filename) throws IllegalArgumentException, IOException {
+    if (matrix == null || filename == null) throw new IllegalArgumentException();
+    Probe probe = Metrics.start(Metrics.WRITE);
+    switch (format) {
+    case PNG8:
+      writePng(matrix, filename, BufferedImage.TYPE_BYTE_GRAY, 0xff);
+      break;
+    case PNG16:
+      writePng(matrix, filename, BufferedImage.TYPE_USHORT_GRAY, 0xffff);
+      break;
+    default:
+      writeRaw(matrix, filename);
+    }
+    probe.stop(1, 0, new File(filename).length());
+  }
+
+  private void writePng(CtMatrix matrix, String filename, int type, int levels) throws IOException {
+    int width = matrix.getWidth();
+    int height = matrix.getHeight();
+    double min = low, max = high;
+    if (auto) {
+      min = max = matrix.get(0, 0);
+      for (int y = 0; y < height; y++)
+        for (int x = 0; x < width; x++) {
+          double val = matrix.get(x, y);
+          if (val < min) min = val;
+          if (val > max) max = val;
+        }
+    }
+    double scale = max > min ? levels / (max - min) : 0;
+    BufferedImage bi = new BufferedImage(width, height, type);
+    byte[] bytes = null;
+    short[] shorts = null;
+    if (type == BufferedImage.TYPE_BYTE_GRAY)
+      bytes = ((DataBufferByte) bi.getRaster().getDataBuffer()).getData();
+    else
+      shorts = ((DataBufferUShort) bi.getRaster().getDataBuffer()).getData();
+    for (int y = 0, i = 0; y < height; y++)
+      for (int x = 0; x < width; x++, i++) {
+        double level = (matrix.get(x, y) - min) * scale;
+        int sample = level <= 0 ? 0 : level >= levels ? levels : (int) (level + 0.5);
+        if (bytes != null)
+          bytes[i] = (byte) sample;
+        else
+          shorts[i] = (short) sample;
+      }
+    if (!ImageIO.write(bi, "png", new File(filename)))
+      throw new IOException("No PNG writer available");
+  }
+
+  private void writeRaw(CtMatrix matrix, String filename) throws IOException {
+    int width = matrix.getWidth();
+    int height = matrix.getHeight();
+    ByteBuffer buffer = ByteBuffer.allocate(RAW_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    FileOutputStream out = new FileOutputStream(filename);
+    try {
+      FileChannel channel = out.getChannel();
+      for (int y = 0; y < height; y++)
+        for (int x = 0; x < width; x++) {
+          if (!buffer.hasRemaining()) drain(buffer, channel);
+          buffer.putFloat((float) matrix.get(x, y));
+        }
+      drain(buffer, channel);
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+    buffer.clear();
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Metrics is the instrumentation entry point of jcte. Time-consuming
+ * operations (decoding projections, building sinograms, rotation,
+ * filtering, reconstruction and writing slices) are wrapped in a
+ * {@link Probe}, which measures the wall time and the bytes allocated by
+ * the calling thread, and reports them together with item and byte counts
+ * to registered {@link MetricsListener}s and as a
+ * <code>pl.jasiowka.jcte.Stage</code> flight recorder event.
+ * <p>
+ * When there are no listeners and the event is not recorded,
+ * {@link #start(String)} returns a shared probe which does nothing, so
+ * disabled instrumentation costs a few field reads per operation.
+ * 
+ * @author Piotr Jasiowka
+ */
+public final class Metrics {
+
+  /** Decoding a projection image */
+  public static final String DECODE = "decode";
+
+  /** Building sinograms from projections */
+  public static final String SINOGRAM = "sinogram";
+
+  /** Rotating a matrix */
+  public static final String ROTATE = "rotate";
+
+  /** Filtering a sinogram */
+  public static final String FILTER = "filter";
+
+  /** Reconstructing slices from sinograms */
+  public static final String RECONSTRUCT = "reconstruct";
+
+  /** Encoding and writing a slice */
+  public static final String WRITE = "write";
+
+  private static final CopyOnWriteArrayList<MetricsListener> listeners = new CopyOnWriteArrayList<MetricsListener>();
+
+  private static final com.sun.management.ThreadMXBean threads = threads();
+
+  private Metrics() {
+  }
+
+  private static com.sun.management.ThreadMXBean threads() {
+    try {
+      Object bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+          return threads;
+      }
+    } catch (LinkageError e) {
+      // no jdk.management module
+    }
+    return null;
+  }
+
+  /**
+   * @param listener Listener to notify about completed stages
+   * @throws IllegalArgumentException If <b>listener</b> is null
+   */
+  public static void addListener(MetricsListener listener) throws IllegalArgumentException {
+    if (listener == null) throw new IllegalArgumentException();
+    listeners.addIfAbsent(listener);
+  }
+
+  /**
+   * @param listener Listener to remove. Nothing happens if it wasn't
+   *        registered
+   */
+  public static void removeListener(MetricsListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Starts measuring a stage. The returned probe has to be stopped by the
+   * same thread once the stage is done; a probe of a stage which failed may
+   * simply be dropped.
+   * 
+   * @param stage Name of the stage
+   * @return New probe, or a shared one which does nothing if
+   *         instrumentation is disabled
+   */
+  public static Probe start(String stage) {
+    StageEvent event = new StageEvent();
+    boolean recorded = event.isEnabled();
+    if (!recorded && listeners.isEmpty()) return Probe.DISABLED;
+    if (recorded) event.begin();
+    return new Probe(stage, recorded ? event : null, allocatedBytes());
+  }
+
+  /**
+   * @return Number of bytes allocated so far by the calling thread, or -1
+   *         if the JVM doesn't measure it
+   */
+  static long allocatedBytes() {
+    return threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+  }
+
+  static void report(String stage, long nanos, long items, long bytesRead, long bytesWritten, long bytesAllocated) {
+    for (MetricsListener listener : listeners)
+      listener.stageCompleted(stage, nanos, items, bytesRead, bytesWritten, bytesAllocated);
+  }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.metrics;
+
+/**
+ * MetricsListener is notified about every completed stage of the
+ * processing, i.e. a decoded projection, a filtered sinogram or a
+ * reconstructed slice. Listeners are registered with
+ * {@link Metrics#addListener(MetricsListener)} and are called on the thread
+ * which did the work, so they have to be thread-safe and should be quick.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.metrics.MetricsRecorder
+ */
+public interface MetricsListener {
+
+  /**
+   * @param stage Name of the stage, one of the {@link Metrics} constants
+   * @param nanos Wall time of the stage in nanoseconds
+   * @param items Number of items processed (slices, projections or rows)
+   * @param bytesRead Number of bytes read from files
+   * @param bytesWritten Number of bytes written to files
+   * @param bytesAllocated Number of bytes allocated by the calling thread
+   *        during the stage, or -1 if the JVM doesn't measure it. Work done
+   *        by other threads (i.e. a parallel backprojection) isn't counted
+   */
+  void stageCompleted(String stage, long nanos, long items, long bytesRead, long bytesWritten, long bytesAllocated);
+
+}
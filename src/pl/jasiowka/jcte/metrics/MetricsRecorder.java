@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.metrics;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * MetricsRecorder is a MetricsListener which sums up the reports of every
+ * stage: the number of runs, the time, items and bytes. Throughput is
+ * computed from the summed time, so for a stage run by several threads at
+ * once it is the throughput of a single thread.
+ * 
+ * @author Piotr Jasiowka
+ */
+public class MetricsRecorder implements MetricsListener {
+
+  /** Totals of a single stage */
+  private static final class Totals {
+
+    long runs, nanos, items, bytesRead, bytesWritten, bytesAllocated;
+
+  }
+
+  private final Map<String, Totals> stages = new TreeMap<String, Totals>();
+
+  @Override
+  public synchronized void stageCompleted(String stage, long nanos, long items, long bytesRead, long bytesWritten, long bytesAllocated) {
+    Totals totals = stages.get(stage);
+    if (totals == null) {
+      totals = new Totals();
+      stages.put(stage, totals);
+    }
+    totals.runs++;
+    totals.nanos += nanos;
+    totals.items += items;
+    totals.bytesRead += bytesRead;
+    totals.bytesWritten += bytesWritten;
+    if (bytesAllocated > 0) totals.bytesAllocated += bytesAllocated;
+  }
+
+  /** @return Names of all reported stages, sorted */
+  public synchronized Set<String> getStages() {
+    return new TreeSet<String>(stages.keySet());
+  }
+
+  private Totals get(String stage) {
+    Totals totals = stages.get(stage);
+    return totals == null ? new Totals() : totals;
+  }
+
+  /**
+   * @param stage Name of a stage
+   * @return Number of reported runs of the stage
+   */
+  public synchronized long getRuns(String stage) {
+    return get(stage).runs;
+  }
+
+  /**
+   * @param stage Name of a stage
+   * @return Total time of the stage in nanoseconds
+   */
+  public synchronized long getNanos(String stage) {
+    return get(stage).nanos;
+  }
+
+  /**
+   * @param stage Name of a stage
+   * @return Total number of items processed by the stage
+   */
+  public synchronized long getItems(String stage) {
+    return get(stage).items;
+  }
+
+  /**
+   * @param stage Name of a stage
+   * @return Total number of bytes read by the stage
+   */
+  public synchronized long getBytesRead(String stage) {
+    return get(stage).bytesRead;
+  }
+
+  /**
+   * @param stage Name of a stage
+   * @return Total number of bytes written by the stage
+   */
+  public synchronized long getBytesWritten(String stage) {
+    return get(stage).bytesWritten;
+  }
+
+  /**
+   * @param stage Name of a stage
+   * @return Total number of bytes allocated by the stage, 0 if the JVM
+   *         doesn't measure it
+   */
+  public synchronized long getBytesAllocated(String stage) {
+    return get(stage).bytesAllocated;
+  }
+
+  /**
+   * @param stage Name of a stage
+   * @return Items processed by the stage per second, 0 if it wasn't
+   *         reported
+   */
+  public synchronized double getThroughput(String stage) {
+    Totals totals = get(stage);
+    return totals.nanos == 0 ? 0 : totals.items * 1e9 / totals.nanos;
+  }
+
+  /** Forgets all reports */
+  public synchronized void reset() {
+    stages.clear();
+  }
+
+  /** @return Table with totals of every stage, one stage per line */
+  @Override
+  public synchronized String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%-12s %8s %10s %10s %12s %12s %12s%n", "stage", "runs", "ms", "items/s", "read", "written", "allocated"));
+    for (Map.Entry<String, Totals> e : stages.entrySet()) {
+      Totals t = e.getValue();
+      double throughput = t.nanos == 0 ? 0 : t.items * 1e9 / t.nanos;
+      sb.append(String.format("%-12s %8d %10.1f %10.1f %12d %12d %12d%n", e.getKey(), t.runs, t.nanos / 1e6, throughput, t.bytesRead, t.bytesWritten, t.bytesAllocated));
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.metrics;
+
+/**
+ * Probe measures a single run of a stage. Probes are obtained from
+ * {@link Metrics#start(String)} and reported with one of the
+ * <code>stop</code> methods.
+ * 
+ * @author Piotr Jasiowka
+ */
+public final class Probe {
+
+  /** Probe returned while instrumentation is disabled */
+  static final Probe DISABLED = new Probe(null, null, -1);
+
+  private final String stage;
+
+  private final StageEvent event;
+
+  private final long start;
+
+  private final long allocated;
+
+  Probe(String stage, StageEvent event, long allocated) {
+    this.stage = stage;
+    this.event = event;
+    this.allocated = allocated;
+    start = stage == null ? 0 : System.nanoTime();
+  }
+
+  /**
+   * Stops the probe and reports a stage which didn't do any I/O.
+   * 
+   * @param items Number of processed items
+   */
+  public void stop(long items) {
+    stop(items, 0, 0);
+  }
+
+  /**
+   * Stops the probe and reports the stage.
+   * 
+   * @param items Number of processed items
+   * @param bytesRead Number of bytes read from files
+   * @param bytesWritten Number of bytes written to files
+   */
+  public void stop(long items, long bytesRead, long bytesWritten) {
+    if (stage == null) return;
+    long nanos = System.nanoTime() - start;
+    long bytesAllocated = allocated < 0 ? -1 : Metrics.allocatedBytes() - allocated;
+    if (event != null && event.shouldCommit()) {
+      event.stage = stage;
+      event.items = items;
+      event.bytesRead = bytesRead;
+      event.bytesWritten = bytesWritten;
+      event.bytesAllocated = bytesAllocated;
+      event.commit();
+    }
+    Metrics.report(stage, nanos, items, bytesRead, bytesWritten, bytesAllocated);
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event committed for every completed stage while the
+ * <code>pl.jasiowka.jcte.Stage</code> event is enabled in a recording.
+ * 
+ * @author Piotr Jasiowka
+ */
+@Name("pl.jasiowka.jcte.Stage")
+@Label("Stage")
+@Category("jcte")
+@Description("A completed stage of the CT processing")
+class StageEvent extends Event {
+
+  @Label("Stage")
+  String stage;
+
+  @Label("Items")
+  long items;
+
+  @Label("Bytes Read")
+  @DataAmount
+  long bytesRead;
+
+  @Label("Bytes Written")
+  @DataAmount
+  long bytesWritten;
+
+  @Label("Bytes Allocated")
+  @DataAmount
+  long bytesAllocated;
+
+}
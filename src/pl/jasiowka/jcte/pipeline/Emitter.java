@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.pipeline;
+
+/**
+ * Emitter passes items from a {@link Stage} to the following one.
+ * 
+ * @author Piotr Jasiowka
+ * @param <T> Type of emitted items
+ */
+public interface Emitter<T> {
+
+  /**
+   * Puts an item into the queue of the next stage, waiting while the queue
+   * is full.
+   * 
+   * @param item Item to pass on
+   * @throws IllegalArgumentException If <b>item</b> is null
+   * @throws InterruptedException If the pipeline is being stopped
+   */
+  void emit(T item) throws IllegalArgumentException, InterruptedException;
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.pipeline;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipeline runs a chain of {@link Stage}s over the items of a source. Every
+ * stage has its own workers and takes items from a bounded queue filled by
+ * the previous stage, so all stages work at the same time while the number
+ * of items in flight, and the memory they take, stays bounded: a stage
+ * which is faster than the following one blocks until there is room in the
+ * queue (backpressure).
+ * <p>
+ * Every stage has its own parallelism. Stages which mostly wait for I/O
+ * should be marked as blocking; their workers are virtual threads on Java
+ * 21 or newer and platform threads otherwise. Items of a stage run with a
+ * parallelism greater than 1 may reach the next stage in any order.
+ * <p>
+ * Pipelines are immutable: {@link #then(String, Stage, int, boolean)}
+ * returns a new pipeline with one more stage, and a pipeline can be run any
+ * number of times.
+ * 
+ * @author Piotr Jasiowka
+ * @param <T> Type of items emitted by the last stage
+ */
+public final class Pipeline<T> {
+
+  /** A stage with its settings */
+  private static final class Step {
+
+    final String name;
+
+    final Stage<Object, Object> stage;
+
+    final int parallelism;
+
+    final boolean blocking;
+
+    @SuppressWarnings("unchecked")
+    Step(String name, Stage<?, ?> stage, int parallelism, boolean blocking) {
+      this.name = name;
+      this.stage = (Stage<Object, Object>) stage;
+      this.parallelism = parallelism;
+      this.blocking = blocking;
+    }
+
+  }
+
+  /** Marks the end of items in a queue, one per worker of the next stage */
+  private static final Object END = new Object();
+
+  private final Iterable<?> source;
+
+  private final int capacity;
+
+  private final List<Step> steps;
+
+  private Pipeline(Iterable<?> source, int capacity, List<Step> steps) {
+    this.source = source;
+    this.capacity = capacity;
+    this.steps = steps;
+  }
+
+  /**
+   * @param source Items to feed the first stage with. The source is
+   *        iterated on a separate thread, so it may block (e.g. read a file)
+   * @param capacity Capacity of every queue between stages
+   * @return New pipeline with no stages
+   * @throws IllegalArgumentException If <b>source</b> is null or
+   *         <b>capacity</b> is < 1
+   */
+  public static <T> Pipeline<T> from(Iterable<? extends T> source, int capacity) throws IllegalArgumentException {
+    if (source == null || capacity < 1) throw new IllegalArgumentException();
+    return new Pipeline<T>(source, capacity, Collections.<Step> emptyList());
+  }
+
+  /**
+   * @param name Name of the stage, used for naming its threads
+   * @param stage Stage to append
+   * @param parallelism Number of workers running the stage
+   * @param blocking True if the stage mostly waits for I/O
+   * @return New pipeline with a given stage appended
+   * @throws IllegalArgumentException If <b>name</b> or <b>stage</b> is null
+   *         or <b>parallelism</b> is < 1
+   */
+  public <O> Pipeline<O> then(String name, Stage<? super T, ? extends O> stage, int parallelism, boolean blocking) throws IllegalArgumentException {
+    if (name == null || stage == null || parallelism < 1) throw new IllegalArgumentException();
+    List<Step> out = new ArrayList<Step>(steps);
+    out.add(new Step(name, stage, parallelism, blocking));
+    return new Pipeline<O>(source, capacity, Collections.unmodifiableList(out));
+  }
+
+  /** @return Number of stages */
+  public int getStages() {
+    return steps.size();
+  }
+
+  /** @return Capacity of every queue between stages */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return True if blocking stages run on virtual threads in the running
+   *         JVM
+   */
+  public static boolean isVirtualAvailable() {
+    return Threads.isVirtualAvailable();
+  }
+
+  /**
+   * Runs all stages and waits until every item went through the pipeline.
+   * Items emitted by the last stage are dropped. When any stage fails, the
+   * remaining workers are interrupted and the first failure is reported.
+   * 
+   * @throws IllegalStateException If the pipeline has no stages or a stage
+   *         failed with a checked exception other than IOException
+   * @throws IOException If a stage failed with an IOException or the
+   *         calling thread was interrupted
+   */
+  public void run() throws IllegalStateException, IOException {
+    if (steps.isEmpty()) throw new IllegalStateException();
+    new Run().execute();
+  }
+
+  /** State of a single run */
+  private final class Run {
+
+    private final List<BlockingQueue<Object>> queues = new ArrayList<BlockingQueue<Object>>();
+
+    private final List<Thread> threads = new ArrayList<Thread>();
+
+    private Throwable failure;
+
+    void execute() throws IOException {
+      for (int s = 0; s < steps.size(); s++)
+        queues.add(new ArrayBlockingQueue<Object>(capacity));
+      threads.add(Threads.newThread("jcte-source", new Runnable() {
+        @Override
+        public void run() {
+          feed();
+        }
+      }, true));
+      for (int s = 0; s < steps.size(); s++) {
+        final int stage = s;
+        final AtomicInteger active = new AtomicInteger(steps.get(s).parallelism);
+        for (int w = 0; w < steps.get(s).parallelism; w++)
+          threads.add(Threads.newThread("jcte-" + steps.get(s).name + "-" + w, new Runnable() {
+            @Override
+            public void run() {
+              work(stage, active);
+            }
+          }, steps.get(s).blocking));
+      }
+      for (Thread thread : threads)
+        thread.start();
+      try {
+        for (Thread thread : threads)
+          thread.join();
+      } catch (InterruptedException e) {
+        cancel();
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+      Throwable t;
+      synchronized (this) {
+        t = failure;
+      }
+      if (t == null) return;
+      if (t instanceof IOException) throw (IOException) t;
+      if (t instanceof RuntimeException) throw (RuntimeException) t;
+      if (t instanceof Error) throw (Error) t;
+      throw new IllegalStateException(t);
+    }
+
+    private void feed() {
+      try {
+        BlockingQueue<Object> queue = queues.get(0);
+        for (Object item : source) {
+          if (item == null) throw new IllegalArgumentException();
+          queue.put(item);
+        }
+        end(0);
+      } catch (Throwable t) {
+        fail(t);
+      }
+    }
+
+    private void work(int stage, AtomicInteger active) {
+      try {
+        final BlockingQueue<Object> next = stage + 1 < queues.size() ? queues.get(stage + 1) : null;
+        Emitter<Object> output = new Emitter<Object>() {
+          @Override
+          public void emit(Object item) throws IllegalArgumentException, InterruptedException {
+            if (item == null) throw new IllegalArgumentException();
+            if (next != null) next.put(item);
+          }
+        };
+        BlockingQueue<Object> queue = queues.get(stage);
+        Stage<Object, Object> s = steps.get(stage).stage;
+        for (Object item = queue.take(); item != END; item = queue.take())
+          s.process(item, output);
+        if (active.decrementAndGet() == 0 && next != null) end(stage + 1);
+      } catch (Throwable t) {
+        fail(t);
+      }
+    }
+
+    /** Tells every worker of a given stage that there are no more items */
+    private void end(int stage) throws InterruptedException {
+      for (int w = 0; w < steps.get(stage).parallelism; w++)
+        queues.get(stage).put(END);
+    }
+
+    private void fail(Throwable t) {
+      synchronized (this) {
+        if (failure != null) return;
+        failure = t;
+      }
+      cancel();
+    }
+
+    private void cancel() {
+      for (Thread thread : threads)
+        if (thread != Thread.currentThread()) thread.interrupt();
+    }
+
+  }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+
+import pl.jasiowka.jcte.filter.RampFilter;
+import pl.jasiowka.jcte.metrics.Metrics;
+import pl.jasiowka.jcte.metrics.Probe;
+import pl.jasiowka.jcte.projection.BackprojectionAccumulator;
+import pl.jasiowka.jcte.projection.Interpolation;
+import pl.jasiowka.jcte.projection.ProjectionGeometry;
+import pl.jasiowka.jcte.struct.ConvStrategy;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+/**
+ * ReconstructionSession reconstructs a range of slices while the
+ * projections are being acquired. Every projection is handed to the session
+ * as soon as it is available, as an image file or a matrix; its rows of
+ * the reconstructed slices are filtered and backprojected into per-slice
+ * sums right away, so when the last projection arrives the slices are
+ * ready, and a partial volume can be looked at any time before.
+ * <p>
+ * Sessions are thread-safe. Decoding and filtering of projections added
+ * from several threads overlap, backprojection is done one projection at a
+ * time on all processors.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.BackprojectionAccumulator
+ */
+public class ReconstructionSession {
+
+  private final int firstSlice;
+
+  private final int lastSlice;
+
+  private final BackprojectionAccumulator accumulator;
+
+  /**
+   * @param geometry Geometry of the acquisition. Its number of detectors
+   *        equals the width of projection images
+   * @param interpolation Interpolation of detector values
+   * @param firstSlice Number of the first slice (a row of projection
+   *        images)
+   * @param lastSlice Number of the slice following the last one
+   * @throws IllegalArgumentException If <b>geometry</b> or
+   *         <b>interpolation</b> is null or the range is empty
+   */
+  public ReconstructionSession(ProjectionGeometry geometry, Interpolation interpolation, int firstSlice, int lastSlice) throws IllegalArgumentException {
+    if (firstSlice < 0 || lastSlice <= firstSlice) throw new IllegalArgumentException();
+    this.firstSlice = firstSlice;
+    this.lastSlice = lastSlice;
+    accumulator = new BackprojectionAccumulator(geometry, interpolation, lastSlice - firstSlice);
+  }
+
+  /** @return Geometry of the acquisition */
+  public ProjectionGeometry getGeometry() {
+    return accumulator.getGeometry();
+  }
+
+  /** @return Number of the first slice */
+  public int getFirstSlice() {
+    return firstSlice;
+  }
+
+  /** @return Number of the slice following the last one */
+  public int getLastSlice() {
+    return lastSlice;
+  }
+
+  /** @return Number of projections added so far */
+  public int getAdded() {
+    return accumulator.getAdded();
+  }
+
+  /** @return True if every projection was added */
+  public boolean isComplete() {
+    return accumulator.isComplete();
+  }
+
+  /**
+   * Filters and backprojects a projection.
+   * 
+   * @param projection Projection number
+   * @param image Projection image. It isn't changed
+   * @throws IllegalArgumentException If <b>image</b> is null, its width
+   *         differs from the number of detectors or it has no rows of the
+   *         slices, or <b>projection</b> is out of bounds or was already
+   *         added
+   */
+  public void addProjection(int projection, CtMatrix image) throws IllegalArgumentException {
+    if (image == null) throw new IllegalArgumentException();
+    int width = getGeometry().getDetectors();
+    if (image.getWidth() != width || image.getHeight() < lastSlice) throw new IllegalArgumentException();
+    checkProjection(projection);
+    Probe probe = Metrics.start(Metrics.FILTER);
+    RampFilter filter = RampFilter.forWidth(width);
+    double[][] rows = new double[lastSlice - firstSlice][width];
+    for (int s = 0; s < rows.length; s++) {
+      for (int x = 0; x < width; x++)
+        rows[s][x] = image.get(x, firstSlice + s);
+      filter.apply(rows[s], ConvStrategy.AUTO);
+    }
+    probe.stop(rows.length);
+    probe = Metrics.start(Metrics.RECONSTRUCT);
+    accumulator.add(projection, rows);
+    probe.stop(rows.length);
+  }
+
+  /**
+   * Rejects a projection before any work is done for it. The accumulator
+   * checks it again, for projections added from several threads at once.
+   */
+  private void checkProjection(int projection) throws IllegalArgumentException {
+    if (projection < 0 || projection >= getGeometry().getProjections()) throw new IllegalArgumentException();
+    if (accumulator.isAdded(projection)) throw new IllegalArgumentException();
+  }
+
+  /**
+   * Decodes, filters and backprojects a projection.
+   * 
+   * @param projection Projection number
+   * @param filename Full path with a name of the projection image file
+   * @throws IllegalArgumentException If <b>filename</b> is null, the image
+   *         doesn't match the session or <b>projection</b> is out of bounds
+   *         or was already added
+   * @throws IOException If an error occurs during reading a file
+   */
+  public void addProjection(int projection, String filename) throws IllegalArgumentException, IOException {
+    if (filename == null) throw new IllegalArgumentException();
+    checkProjection(projection);
+    Probe probe = Metrics.start(Metrics.DECODE);
+    CtMatrix image = CtMatrixFactory.createCtMatrix(filename);
+    probe.stop(1, new File(filename).length(), 0);
+    addProjection(projection, image);
+  }
+
+  /**
+   * @param slice Slice number, within the range of the session
+   * @return New matrix with the slice reconstructed from the projections
+   *         added so far, scaled to the intensity of the final image
+   * @throws IllegalArgumentException If <b>slice</b> is out of the range
+   */
+  public CtMatrix snapshot(int slice) throws IllegalArgumentException {
+    if (slice < firstSlice || slice >= lastSlice) throw new IllegalArgumentException();
+    return accumulator.snapshot(slice - firstSlice);
+  }
+
+  /**
+   * @return New matrices with all slices of the session, reconstructed from
+   *         the projections added so far
+   */
+  public CtMatrix[] snapshot() {
+    CtMatrix[] out = new CtMatrix[lastSlice - firstSlice];
+    synchronized (accumulator) {
+      for (int s = 0; s < out.length; s++)
+        out[s] = accumulator.snapshot(s);
+    }
+    return out;
+  }
+
+}
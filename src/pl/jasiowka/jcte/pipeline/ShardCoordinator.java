@@ -0,0 +1,482 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.pipeline;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+import pl.jasiowka.jcte.struct.CtVolume;
+import pl.jasiowka.jcte.struct.CtVolumeFactory;
+import pl.jasiowka.jcte.struct.Precision;
+
+/**
+ * ShardCoordinator reconstructs a range of slices on several local worker
+ * processes, each a separate JVM with its own heap and garbage collector,
+ * so a large volume doesn't need one huge heap with long collection pauses.
+ * The range is split into shards of a given number of slices, handed out
+ * to {@link ShardWorker}s one at a time over their standard input and
+ * output. A worker writes the slices of a shard as raw float files into a
+ * working directory next to the volume file; once the shard is done, the
+ * coordinator copies them into a {@link CtVolume} and deletes them.
+ * <p>
+ * A shard which fails, or whose worker dies, doesn't start or doesn't
+ * finish it in a given time, is tried again up to a given number of times;
+ * a worker which died or was stopped is started again. When a shard fails
+ * every time, the remaining shards are not started and the reconstruction
+ * fails. Progress can be read from other threads while it runs.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.pipeline.VolumeReconstruction
+ */
+public class ShardCoordinator {
+
+  /** A range of slices and the number of its failed attempts */
+  private static final class Shard {
+
+    final int first, last;
+
+    int failures;
+
+    Shard(int first, int last) {
+      this.first = first;
+      this.last = last;
+    }
+
+  }
+
+  private final String inputPattern;
+
+  private final int projections;
+
+  private final double range;
+
+  private int workers = 2;
+
+  private String heap;
+
+  private int shardSize = 16;
+
+  private int retries = 2;
+
+  private long shardTimeout = 30 * 60 * 1000;
+
+  private int threadsPerWorker = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+  private String[] jvmOptions = new String[0];
+
+  private volatile int totalSlices, completedSlices, completedShards, retried;
+
+  /**
+   * @param inputPattern Pattern of projection file names, formatted with
+   *        {@link String#format(String, Object...)} and a projection number
+   *        (i.e. "./data/%03d.png")
+   * @param projections Number of projections, they are numbered from 0
+   * @param range Range of projections in degrees
+   * @throws IllegalArgumentException If <b>inputPattern</b> is null or is
+   *         not a valid format, <b>projections</b> is < 1 or <b>range</b> is
+   *         out of [0..360]
+   */
+  public ShardCoordinator(String inputPattern, int projections, double range) throws IllegalArgumentException {
+    if (inputPattern == null || projections < 1 || range < 0 || range > 360) throw new IllegalArgumentException();
+    try {
+      String.format(inputPattern, 0);
+    } catch (IllegalFormatException e) {
+      throw new IllegalArgumentException(e);
+    }
+    this.inputPattern = new File(inputPattern).getAbsolutePath();
+    this.projections = projections;
+    this.range = range;
+  }
+
+  /**
+   * @param workers Number of worker processes, 2 by default
+   * @throws IllegalArgumentException If <b>workers</b> is < 1
+   */
+  public void setWorkers(int workers) throws IllegalArgumentException {
+    if (workers < 1) throw new IllegalArgumentException();
+    this.workers = workers;
+  }
+
+  /**
+   * @param heap Maximum heap of every worker in the <code>-Xmx</code>
+   *        notation (i.e. "2g"), or null for the JVM default, which is the
+   *        default
+   */
+  public void setHeap(String heap) {
+    this.heap = heap;
+  }
+
+  /**
+   * @param shardSize Number of slices in a shard, 16 by default
+   * @throws IllegalArgumentException If <b>shardSize</b> is < 1
+   */
+  public void setShardSize(int shardSize) throws IllegalArgumentException {
+    if (shardSize < 1) throw new IllegalArgumentException();
+    this.shardSize = shardSize;
+  }
+
+  /**
+   * @param retries Number of times a failed shard is tried again, 2 by
+   *        default
+   * @throws IllegalArgumentException If <b>retries</b> is < 0
+   */
+  public void setRetries(int retries) throws IllegalArgumentException {
+    if (retries < 0) throw new IllegalArgumentException();
+    this.retries = retries;
+  }
+
+  /**
+   * @param shardTimeout Time in milliseconds a worker has to start or to
+   *        finish a shard before it is stopped and the shard is tried again,
+   *        30 minutes by default, 0 for no limit
+   * @throws IllegalArgumentException If <b>shardTimeout</b> is < 0
+   */
+  public void setShardTimeout(long shardTimeout) throws IllegalArgumentException {
+    if (shardTimeout < 0) throw new IllegalArgumentException();
+    this.shardTimeout = shardTimeout;
+  }
+
+  /**
+   * @param threadsPerWorker Number of threads of every compute stage of a
+   *        worker, half of the available processors by default
+   * @throws IllegalArgumentException If <b>threadsPerWorker</b> is < 1
+   */
+  public void setThreadsPerWorker(int threadsPerWorker) throws IllegalArgumentException {
+    if (threadsPerWorker < 1) throw new IllegalArgumentException();
+    this.threadsPerWorker = threadsPerWorker;
+  }
+
+  /**
+   * @param jvmOptions Additional options of the worker JVMs (i.e. garbage
+   *        collector settings)
+   * @throws IllegalArgumentException If <b>jvmOptions</b> is null
+   */
+  public void setJvmOptions(String... jvmOptions) throws IllegalArgumentException {
+    if (jvmOptions == null) throw new IllegalArgumentException();
+    this.jvmOptions = jvmOptions.clone();
+  }
+
+  /** @return Number of slices of the running or the last reconstruction */
+  public int getTotalSlices() {
+    return totalSlices;
+  }
+
+  /** @return Number of slices already copied into the volume */
+  public int getCompletedSlices() {
+    return completedSlices;
+  }
+
+  /** @return Number of shards already copied into the volume */
+  public int getCompletedShards() {
+    return completedShards;
+  }
+
+  /** @return Number of times a failed shard was tried again */
+  public int getRetried() {
+    return retried;
+  }
+
+  /**
+   * @param outputPattern Pattern of slice file names of a worker
+   * @return Command line starting a worker process. It runs the JVM of the
+   *         coordinator, with its class path and incubator modules
+   */
+  List<String> command(String outputPattern) {
+    List<String> out = new ArrayList<String>();
+    out.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+    if (heap != null) out.add("-Xmx" + heap);
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+      out.add("--add-modules");
+      out.add("jdk.incubator.vector");
+    }
+    out.addAll(Arrays.asList(jvmOptions));
+    out.add("-cp");
+    out.add(System.getProperty("java.class.path"));
+    out.add(ShardWorker.class.getName());
+    out.add(inputPattern);
+    out.add(String.valueOf(projections));
+    out.add(String.valueOf(range));
+    out.add(outputPattern);
+    out.add(String.valueOf(threadsPerWorker));
+    return out;
+  }
+
+  /**
+   * Reconstructs a range of slices into a new volume file of 32-bit floating
+   * point numbers, overwriting an existing one.
+   * 
+   * @param firstSlice Number of the first slice
+   * @param lastSlice Number of the slice following the last one
+   * @param volumeFile Full path with a name of the volume file
+   * @throws IllegalArgumentException If <b>volumeFile</b> is null or the
+   *         range is empty or out of projection images bounds
+   * @throws IOException If an error occurs during reading or writing a file,
+   *         or a shard failed every time it was tried
+   */
+  public void run(int firstSlice, int lastSlice, String volumeFile) throws IllegalArgumentException, IOException {
+    if (volumeFile == null || firstSlice < 0 || lastSlice <= firstSlice) throw new IllegalArgumentException();
+    CtMatrix first = CtMatrixFactory.createCtMatrix(String.format(inputPattern, 0));
+    if (lastSlice > first.getHeight()) throw new IllegalArgumentException();
+    final int size = first.getWidth();
+    final Queue<Shard> shards = new ConcurrentLinkedQueue<Shard>();
+    for (int s = firstSlice; s < lastSlice; s += shardSize)
+      shards.add(new Shard(s, Math.min(s + shardSize, lastSlice)));
+    totalSlices = lastSlice - firstSlice;
+    completedSlices = 0;
+    completedShards = 0;
+    retried = 0;
+    File directory = new File(volumeFile + ".shards");
+    if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+    final String outputPattern = new File(directory, "%06d.raw").getAbsolutePath();
+    final CtVolume volume = CtVolumeFactory.createMappedCtVolume(volumeFile, size, size, lastSlice - firstSlice, Precision.FLOAT, new double[] { 1, 1, 1 });
+    final int offset = firstSlice;
+    final IOException[] failure = new IOException[1];
+    try {
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int w = 0; w < Math.min(workers, shards.size()); w++) {
+        Thread thread = Threads.newThread("shard-worker-" + w, new Runnable() {
+          @Override
+          public void run() {
+            try {
+              drain(shards, outputPattern, size, volume, offset, failure);
+            } catch (IOException e) {
+              fail(failure, e);
+            }
+          }
+        }, true);
+        threads.add(thread);
+        thread.start();
+      }
+      for (Thread thread : threads)
+        thread.join();
+      synchronized (failure) {
+        if (failure[0] != null) throw failure[0];
+      }
+      volume.flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } finally {
+      volume.close();
+      // slices of shards which failed or weren't collected
+      File[] leftovers = directory.listFiles();
+      if (leftovers != null)
+        for (File file : leftovers)
+          if (file.getName().endsWith(".raw")) file.delete();
+      directory.delete();
+    }
+  }
+
+  private static void fail(IOException[] failure, IOException e) {
+    synchronized (failure) {
+      if (failure[0] == null) failure[0] = e;
+    }
+  }
+
+  private static boolean failed(IOException[] failure) {
+    synchronized (failure) {
+      return failure[0] != null;
+    }
+  }
+
+  /**
+   * Runs shards from a queue on a single worker process, starting it again
+   * whenever it dies, until the queue is empty or some shard failed for
+   * good.
+   */
+  private void drain(Queue<Shard> shards, String outputPattern, int size, CtVolume volume, int offset, IOException[] failure) throws IOException {
+    Process process = null;
+    BufferedReader replies = null;
+    Writer commands = null;
+    try {
+      for (Shard shard; !failed(failure) && (shard = shards.poll()) != null;) {
+        String reply = null;
+        if (process == null) {
+          process = new ProcessBuilder(command(outputPattern)).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+          replies = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+          commands = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+          Deadline deadline = new Deadline(process);
+          String ready;
+          try {
+            ready = replies.readLine();
+          } catch (IOException e) {
+            ready = null;
+          } finally {
+            deadline.cancel();
+          }
+          if (!"READY".equals(ready)) {
+            stop(process);
+            process = null;
+            reply = "Worker didn't start" + (deadline.expired ? " in time" : "") + ": " + command(outputPattern);
+          }
+        }
+        if (process != null) {
+          Deadline deadline = new Deadline(process);
+          try {
+            commands.write("SHARD " + shard.first + " " + shard.last + "\n");
+            commands.flush();
+            reply = replies.readLine();
+          } catch (IOException e) {
+            reply = null;
+          } finally {
+            deadline.cancel();
+          }
+          if (reply != null && reply.equals("DONE " + shard.first + " " + shard.last)) {
+            collect(shard, outputPattern, size, volume, offset);
+            if (deadline.expired) {
+              // stopped just after it replied
+              stop(process);
+              process = null;
+            }
+            continue;
+          }
+          if (reply == null) {
+            stop(process);
+            process = null;
+            reply = deadline.expired ? "Worker timed out" : "Worker died";
+          }
+        }
+        if (++shard.failures > retries) {
+          fail(failure, new IOException("Shard " + shard.first + ".." + shard.last + " failed: " + reply));
+        } else {
+          synchronized (this) {
+            retried++;
+          }
+          shards.add(shard);
+        }
+      }
+    } finally {
+      if (process != null) {
+        try {
+          commands.write("QUIT\n");
+          commands.close();
+        } catch (IOException e) {
+          // the worker is stopped anyway
+        }
+        stop(process);
+      }
+    }
+  }
+
+  private static void stop(Process process) {
+    try {
+      if (!process.waitFor(10, TimeUnit.SECONDS)) process.destroyForcibly();
+    } catch (InterruptedException e) {
+      process.destroyForcibly();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Deadline of a single reply of a worker. When it passes, the worker is
+   * destroyed, so waiting for its reply ends as if it died.
+   */
+  private final class Deadline implements Runnable {
+
+    private final Process process;
+
+    private final Thread thread;
+
+    volatile boolean expired;
+
+    Deadline(Process process) {
+      this.process = process;
+      if (shardTimeout == 0) {
+        thread = null;
+        return;
+      }
+      thread = Threads.newThread("shard-deadline", this, true);
+      thread.start();
+    }
+
+    @Override
+    public void run() {
+      try {
+        if (!process.waitFor(shardTimeout, TimeUnit.MILLISECONDS)) {
+          expired = true;
+          process.destroyForcibly();
+        }
+      } catch (InterruptedException e) {
+        // the reply came in time
+      }
+    }
+
+    void cancel() {
+      if (thread != null) thread.interrupt();
+    }
+
+  }
+
+  /** Copies slices of a finished shard into the volume */
+  private void collect(Shard shard, String outputPattern, int size, CtVolume volume, int offset) throws IOException {
+    for (int s = shard.first; s < shard.last; s++) {
+      File file = new File(String.format(outputPattern, s));
+      volume.setSlice(s - offset, readRaw(file, size));
+      file.delete();
+    }
+    synchronized (this) {
+      completedSlices += shard.last - shard.first;
+      completedShards++;
+    }
+  }
+
+  /**
+   * @param file File written by {@link pl.jasiowka.jcte.io.SliceWriter} in
+   *        the raw float format
+   * @param size Width and height of the slice
+   * @return New matrix with the slice
+   * @throws IOException If an error occurs during reading the file or its
+   *         size doesn't match
+   */
+  static CtMatrix readRaw(File file, int size) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() != 4L * size * size) throw new IOException("Broken slice file: " + file);
+      ByteBuffer buffer = ByteBuffer.allocate(4 * size * size).order(ByteOrder.LITTLE_ENDIAN);
+      while (buffer.hasRemaining())
+        if (channel.read(buffer) < 0) throw new IOException("Truncated slice file: " + file);
+      buffer.flip();
+      double[] data = new double[size * size];
+      for (int i = 0; i < data.length; i++)
+        data[i] = buffer.getFloat();
+      return CtMatrixFactory.createFlatCtMatrix(size, size, data);
+    } finally {
+      raf.close();
+    }
+  }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.pipeline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import pl.jasiowka.jcte.io.SliceWriter;
+
+/**
+ * ShardWorker is the main class of a worker process started by a
+ * {@link ShardCoordinator}. It reconstructs shards, i.e. ranges of slices,
+ * with a {@link VolumeReconstruction} writing every slice as a raw float
+ * file, and talks to the coordinator with single text lines: it reads
+ * commands from the standard input and writes replies to the standard
+ * output, which is reserved for them (anything else printed goes to the
+ * standard error).
+ * <ul>
+ * <li>the worker says <code>READY</code> once it is started,</li>
+ * <li><code>SHARD first last</code> reconstructs slices from <i>first</i>
+ * up to <i>last</i> (exclusive), answered by <code>DONE first last</code>
+ * or <code>FAILED first last message</code>,</li>
+ * <li><code>QUIT</code>, or the end of the input, stops the worker.</li>
+ * </ul>
+ * Arguments: the projection file pattern, number of projections, range in
+ * degrees, slice file pattern and number of threads of every compute stage.
+ * 
+ * @author Piotr Jasiowka
+ */
+public final class ShardWorker {
+
+  private ShardWorker() {
+  }
+
+  public static void main(String[] args) {
+    PrintStream replies = new PrintStream(System.out, true, StandardCharsets.UTF_8);
+    System.setOut(System.err);
+    VolumeReconstruction reconstruction;
+    try {
+      if (args.length != 5) throw new IllegalArgumentException("Usage: ShardWorker inputPattern projections range outputPattern threads");
+      reconstruction = new VolumeReconstruction(args[0], Integer.parseInt(args[1]), Double.parseDouble(args[2]), args[3]);
+      int threads = Integer.parseInt(args[4]);
+      reconstruction.setParallelism(threads, threads, threads, 2);
+      reconstruction.setWriter(new SliceWriter(SliceWriter.Format.RAW_FLOAT));
+    } catch (IllegalArgumentException e) {
+      e.printStackTrace();
+      System.exit(2);
+      return;
+    }
+    replies.println("READY");
+    BufferedReader commands = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+    try {
+      for (String line; (line = commands.readLine()) != null;) {
+        String[] words = line.trim().split(" +");
+        if (words[0].equals("QUIT")) break;
+        if (!words[0].equals("SHARD") || words.length != 3) {
+          replies.println("FAILED 0 0 Unknown command: " + line);
+          continue;
+        }
+        try {
+          reconstruction.run(Integer.parseInt(words[1]), Integer.parseInt(words[2]));
+          replies.println("DONE " + words[1] + " " + words[2]);
+        } catch (Exception e) {
+          e.printStackTrace();
+          replies.println("FAILED " + words[1] + " " + words[2] + " " + String.valueOf(e).replace('\n', ' '));
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    System.exit(0);
+  }
+
+}
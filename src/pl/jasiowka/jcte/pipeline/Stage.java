@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.pipeline;
+
+/**
+ * Stage is a single step of a {@link Pipeline}. It takes items of one type
+ * and emits any number of items of another type for every item it takes.
+ * A stage run with a parallelism greater than 1 is called from several
+ * threads at once, so it has to be thread-safe; a stage run by a single
+ * worker may keep state between items.
+ * 
+ * @author Piotr Jasiowka
+ * @param <I> Type of taken items
+ * @param <O> Type of emitted items
+ */
+public interface Stage<I, O> {
+
+  /**
+   * @param item Item taken from the previous stage
+   * @param output Output to emit results to. Emitting blocks while the next
+   *        stage is busy and its queue is full
+   * @throws Exception If the item can't be processed, which stops the whole
+   *         pipeline
+   */
+  void process(I item, Emitter<? super O> output) throws Exception;
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.pipeline;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates worker threads of pipeline stages. Stages doing blocking I/O get
+ * virtual threads when the running JVM has them (Java 21 or newer); they
+ * are looked up reflectively, so the library still runs on Java 17, where
+ * platform threads are used instead.
+ * 
+ * @author Piotr Jasiowka
+ */
+class Threads {
+
+  private static final Method OF_VIRTUAL, NAME, UNSTARTED;
+
+  static {
+    Method ofVirtual = null, name = null, unstarted = null;
+    try {
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      name = builder.getMethod("name", String.class);
+      unstarted = builder.getMethod("unstarted", Runnable.class);
+      ofVirtual.invoke(null);
+    } catch (Exception | LinkageError e) {
+      ofVirtual = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    NAME = name;
+    UNSTARTED = unstarted;
+  }
+
+  /** @return True if blocking stages run on virtual threads */
+  static boolean isVirtualAvailable() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * @param name Name of the thread
+   * @param task Task the thread runs
+   * @param blocking True for a virtual thread, if available
+   * @return New, unstarted daemon thread
+   */
+  static Thread newThread(String name, Runnable task, boolean blocking) {
+    if (blocking && OF_VIRTUAL != null) {
+      try {
+        Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+        return (Thread) UNSTARTED.invoke(builder, task);
+      } catch (ReflectiveOperationException e) {
+        // fall back to a platform thread
+      }
+    }
+    Thread thread = new Thread(task, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+}
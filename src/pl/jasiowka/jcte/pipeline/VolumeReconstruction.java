@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.IllegalFormatException;
+import java.util.Map;
+
+import pl.jasiowka.jcte.filter.RampFilter;
+import pl.jasiowka.jcte.io.SliceWriter;
+import pl.jasiowka.jcte.metrics.Metrics;
+import pl.jasiowka.jcte.metrics.Probe;
+import pl.jasiowka.jcte.projection.BackprojectorFactory;
+import pl.jasiowka.jcte.projection.Interpolation;
+import pl.jasiowka.jcte.projection.ProjectionGeometry;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+/**
+ * VolumeReconstruction reconstructs a range of slices from a numbered stack
+ * of projection images and writes every slice into its own file. The work
+ * is done by a {@link Pipeline} of five stages:
+ * <ol>
+ * <li><i>decode</i> reads projection images (blocking),</li>
+ * <li><i>assemble</i> copies rows of the projections into sinograms of the
+ * slices,</li>
+ * <li><i>filter</i> applies the {@link RampFilter} to sinograms,</li>
+ * <li><i>backproject</i> reconstructs slices from filtered sinograms,</li>
+ * <li><i>write</i> encodes and writes slices with a {@link SliceWriter}
+ * (blocking).</li>
+ * </ol>
+ * A sinogram needs a row of every projection, so the range is reconstructed
+ * in slabs of a given number of slices, and every slab decodes all
+ * projections again. Slices of a slab leave the assemble stage once its last
+ * projection was decoded; from then on they are filtered, backprojected and
+ * written while projections of the next slab are decoded. As long as the
+ * queues and decoders hold fewer projections than there are in a slab, the
+ * assemble stage holds sinograms of at most two slabs, so memory is bounded by
+ * about <code>2 * slabSize * width * projections * 8</code> bytes - about 360
+ * MiB for the default slab of 64 slices of 1024 pixels and 360 projections -
+ * plus the items in the bounded queues between stages, whatever the range.
+ * Larger slabs decode projections less often.
+ * <p>
+ * Parallelism of every stage can be set before the reconstruction is run.
+ * By default compute stages have one worker per available processor.
+ * 
+ * @author Piotr Jasiowka
+ */
+public class VolumeReconstruction {
+
+  /** A decoded projection */
+  private static final class Projection {
+
+    final int slab;
+
+    final int number;
+
+    final CtMatrix matrix;
+
+    Projection(int slab, int number, CtMatrix matrix) {
+      this.slab = slab;
+      this.number = number;
+      this.matrix = matrix;
+    }
+
+  }
+
+  /** Sinograms of a slab being assembled */
+  private static final class Slab {
+
+    final CtMatrix[] sinograms;
+
+    int assembled;
+
+    Slab(int slices, int width, int projections) {
+      sinograms = new CtMatrix[slices];
+      for (int s = 0; s < slices; s++)
+        sinograms[s] = CtMatrixFactory.createCtMatrix(width, projections);
+    }
+
+  }
+
+  /** A sinogram or a reconstructed image of a single slice */
+  private static final class Slice {
+
+    final int number;
+
+    final CtMatrix matrix;
+
+    Slice(int number, CtMatrix matrix) {
+      this.number = number;
+      this.matrix = matrix;
+    }
+
+  }
+
+  private final String inputPattern;
+
+  private final int projections;
+
+  private final double range;
+
+  private final String outputPattern;
+
+  private SliceWriter writer = new SliceWriter(SliceWriter.Format.PNG16);
+
+  private Interpolation interpolation = Interpolation.LINEAR;
+
+  private int decoders, filters, backprojectors, writers, capacity;
+
+  private int slabSize = 64;
+
+  /**
+   * @param inputPattern Pattern of projection file names, formatted with
+   *        {@link String#format(String, Object...)} and a projection number
+   *        (i.e. "./data/%03d.png")
+   * @param projections Number of projections, they are numbered from 0
+   * @param range Range of projections in degrees
+   * @param outputPattern Pattern of slice file names, formatted with a slice
+   *        number (i.e. "./output/%03d.png")
+   * @throws IllegalArgumentException If any of patterns is null or is not a
+   *         valid format, <b>projections</b> is < 1 or <b>range</b> is out
+   *         of [0..360]
+   */
+  public VolumeReconstruction(String inputPattern, int projections, double range, String outputPattern) throws IllegalArgumentException {
+    if (inputPattern == null || outputPattern == null) throw new IllegalArgumentException();
+    if (projections < 1 || range < 0 || range > 360) throw new IllegalArgumentException();
+    try {
+      String.format(inputPattern, 0);
+      String.format(outputPattern, 0);
+    } catch (IllegalFormatException e) {
+      throw new IllegalArgumentException(e);
+    }
+    this.inputPattern = inputPattern;
+    this.projections = projections;
+    this.range = range;
+    this.outputPattern = outputPattern;
+    int cpus = Runtime.getRuntime().availableProcessors();
+    decoders = cpus;
+    filters = cpus;
+    backprojectors = cpus;
+    writers = 2;
+    capacity = 2 * cpus;
+  }
+
+  /**
+   * @param writer Writer used for writing slices, PNG16 with automatic
+   *        levels by default
+   * @throws IllegalArgumentException If <b>writer</b> is null
+   */
+  public void setWriter(SliceWriter writer) throws IllegalArgumentException {
+    if (writer == null) throw new IllegalArgumentException();
+    this.writer = writer;
+  }
+
+  /**
+   * @param interpolation Interpolation of detector values, LINEAR by default
+   * @throws IllegalArgumentException If <b>interpolation</b> is null
+   */
+  public void setInterpolation(Interpolation interpolation) throws IllegalArgumentException {
+    if (interpolation == null) throw new IllegalArgumentException();
+    this.interpolation = interpolation;
+  }
+
+  /**
+   * Sets the number of workers of every stage. The assemble stage always has
+   * a single worker.
+   * 
+   * @param decoders Number of threads decoding projections
+   * @param filters Number of threads filtering sinograms
+   * @param backprojectors Number of threads backprojecting sinograms
+   * @param writers Number of threads writing slices
+   * @throws IllegalArgumentException If any of arguments is < 1
+   */
+  public void setParallelism(int decoders, int filters, int backprojectors, int writers) throws IllegalArgumentException {
+    if (decoders < 1 || filters < 1 || backprojectors < 1 || writers < 1) throw new IllegalArgumentException();
+    this.decoders = decoders;
+    this.filters = filters;
+    this.backprojectors = backprojectors;
+    this.writers = writers;
+  }
+
+  /**
+   * @param capacity Capacity of every queue between stages, twice the number
+   *        of available processors by default
+   * @throws IllegalArgumentException If <b>capacity</b> is < 1
+   */
+  public void setCapacity(int capacity) throws IllegalArgumentException {
+    if (capacity < 1) throw new IllegalArgumentException();
+    this.capacity = capacity;
+  }
+
+  /**
+   * @param slabSize Number of slices whose sinograms are assembled from a
+   *        single pass over the projections, 64 by default
+   * @throws IllegalArgumentException If <b>slabSize</b> is < 1
+   */
+  public void setSlabSize(int slabSize) throws IllegalArgumentException {
+    if (slabSize < 1) throw new IllegalArgumentException();
+    this.slabSize = slabSize;
+  }
+
+  /**
+   * @param slice Number of a slice
+   * @return Name of the file the slice is written to
+   */
+  public String getFileName(int slice) {
+    return String.format(outputPattern, slice);
+  }
+
+  /**
+   * Reconstructs a range of slices and writes them into files.
+   * 
+   * @param firstSlice Number of the first slice
+   * @param lastSlice Number of the slice following the last one
+   * @throws IllegalArgumentException If the range is empty or out of
+   *         projection images bounds, or projections differ in size
+   * @throws IOException If an error occurs during reading or writing a file
+   */
+  public void run(final int firstSlice, final int lastSlice) throws IllegalArgumentException, IOException {
+    if (firstSlice < 0 || lastSlice <= firstSlice) throw new IllegalArgumentException();
+    final SliceWriter writer = this.writer;
+    final Interpolation interpolation = this.interpolation;
+    final int slabSize = this.slabSize;
+    final int slabs = (lastSlice - firstSlice + slabSize - 1) / slabSize;
+    // every projection once per slab, slab after slab
+    Pipeline<Integer> numbers = Pipeline.from(new AbstractList<Integer>() {
+      @Override
+      public Integer get(int index) {
+        return index;
+      }
+
+      @Override
+      public int size() {
+        return slabs * projections;
+      }
+    }, capacity);
+    Pipeline<Projection> decoded = numbers.then("decode", new Stage<Integer, Projection>() {
+      @Override
+      public void process(Integer index, Emitter<? super Projection> output) throws IOException, InterruptedException {
+        int number = index % projections;
+        String filename = String.format(inputPattern, number);
+        Probe probe = Metrics.start(Metrics.DECODE);
+        CtMatrix matrix = CtMatrixFactory.createCtMatrix(filename);
+        probe.stop(1, new File(filename).length(), 0);
+        output.emit(new Projection(index / projections, number, matrix));
+      }
+    }, decoders, true);
+    Pipeline<Slice> sinograms = decoded.then("assemble", new Stage<Projection, Slice>() {
+      private final Map<Integer, Slab> assembling = new HashMap<Integer, Slab>();
+
+      private int width;
+
+      @Override
+      public void process(Projection projection, Emitter<? super Slice> output) throws InterruptedException {
+        CtMatrix matrix = projection.matrix;
+        if (width == 0) {
+          width = matrix.getWidth();
+          if (lastSlice > matrix.getHeight()) throw new IllegalArgumentException();
+        } else if (matrix.getWidth() != width || matrix.getHeight() < lastSlice) {
+          throw new IllegalArgumentException();
+        }
+        int first = firstSlice + projection.slab * slabSize;
+        int last = Math.min(first + slabSize, lastSlice);
+        Slab slab = assembling.get(projection.slab);
+        if (slab == null) {
+          slab = new Slab(last - first, width, projections);
+          assembling.put(projection.slab, slab);
+        }
+        for (int s = first; s < last; s++)
+          slab.sinograms[s - first].pasteVector(projection.number, matrix.getVector(s));
+        if (++slab.assembled < projections) return;
+        assembling.remove(projection.slab);
+        for (int s = 0; s < slab.sinograms.length; s++) {
+          Slice slice = new Slice(first + s, slab.sinograms[s]);
+          slab.sinograms[s] = null;
+          output.emit(slice);
+        }
+      }
+    }, 1, false);
+    Pipeline<Slice> filtered = sinograms.then("filter", new Stage<Slice, Slice>() {
+      @Override
+      public void process(Slice slice, Emitter<? super Slice> output) throws InterruptedException {
+        Probe probe = Metrics.start(Metrics.FILTER);
+        RampFilter.forWidth(slice.matrix.getWidth()).apply(slice.matrix);
+        probe.stop(1);
+        output.emit(slice);
+      }
+    }, filters, false);
+    Pipeline<Slice> images = filtered.then("backproject", new Stage<Slice, Slice>() {
+      @Override
+      public void process(Slice slice, Emitter<? super Slice> output) throws InterruptedException {
+        Probe probe = Metrics.start(Metrics.RECONSTRUCT);
+        ProjectionGeometry geometry = new ProjectionGeometry(slice.matrix.getWidth(), projections, range);
+        CtMatrix image = BackprojectorFactory.createPixelDrivenBackprojector(geometry, interpolation).backproject(slice.matrix);
+        probe.stop(1);
+        output.emit(new Slice(slice.number, image));
+      }
+    }, backprojectors, false);
+    images.then("write", new Stage<Slice, Void>() {
+      @Override
+      public void process(Slice slice, Emitter<? super Void> output) throws IOException {
+        writer.write(slice.matrix, getFileName(slice.number));
+      }
+    }, writers, true).run();
+  }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+/**
+ * BackprojectionAccumulator keeps running backprojection sums of a batch of
+ * slices, to which projections are added one at a time and in any order,
+ * i.e. as they come from a scanner. Every projection is backprojected into
+ * all slices at once with the batched kernels, split into bands of image
+ * rows run in parallel. A snapshot of the sums can be taken at any time;
+ * once every projection was added it equals the batched backprojection of
+ * the whole sinograms, up to the rounding caused by the order the
+ * projections came in.
+ * <p>
+ * All methods are thread-safe; projections are added one after another.
+ * 
+ * @author Piotr Jasiowka
+ */
+public final class BackprojectionAccumulator {
+
+  private final PixelDrivenBackprojector backprojector;
+
+  private final int slices;
+
+  private final int partitions;
+
+  private final ExecutorService executor;
+
+  private final Region whole;
+
+  private final double[] images;
+
+  private final boolean[] added;
+
+  private int count;
+
+  /**
+   * @param geometry Geometry of the projections
+   * @param interpolation Interpolation of detector values
+   * @param slices Number of slices
+   * @throws IllegalArgumentException If <b>geometry</b> or
+   *         <b>interpolation</b> is null or <b>slices</b> is < 1
+   */
+  public BackprojectionAccumulator(ProjectionGeometry geometry, Interpolation interpolation, int slices) throws IllegalArgumentException {
+    this(geometry, interpolation, slices, Tasks.getDefaultPartitions(), Tasks.getDefaultPool());
+  }
+
+  /**
+   * @param geometry Geometry of the projections
+   * @param interpolation Interpolation of detector values
+   * @param slices Number of slices
+   * @param partitions Number of bands of image rows
+   * @param executor Executor which runs the bands
+   * @throws IllegalArgumentException If any of arguments is null or
+   *         <b>slices</b> or <b>partitions</b> is < 1
+   */
+  public BackprojectionAccumulator(ProjectionGeometry geometry, Interpolation interpolation, int slices, int partitions, ExecutorService executor) throws IllegalArgumentException {
+    if (slices < 1 || partitions < 1 || executor == null) throw new IllegalArgumentException();
+    backprojector = new PixelDrivenBackprojector(geometry, interpolation);
+    this.slices = slices;
+    this.partitions = partitions;
+    this.executor = executor;
+    int size = geometry.getDetectors();
+    whole = Region.full(size);
+    images = new double[size * size * slices];
+    added = new boolean[geometry.getProjections()];
+  }
+
+  /** @return Geometry of the projections */
+  public ProjectionGeometry getGeometry() {
+    return backprojector.getGeometry();
+  }
+
+  /** @return Number of slices */
+  public int getSlices() {
+    return slices;
+  }
+
+  /** @return Number of projections added so far */
+  public synchronized int getAdded() {
+    return count;
+  }
+
+  /**
+   * @param projection Projection number
+   * @return True if a given projection was already added
+   * @throws IndexOutOfBoundsException If <b>projection</b> is out of bounds
+   */
+  public synchronized boolean isAdded(int projection) throws IndexOutOfBoundsException {
+    return added[projection];
+  }
+
+  /** @return True if every projection of the geometry was added */
+  public synchronized boolean isComplete() {
+    return count == added.length;
+  }
+
+  /**
+   * Backprojects a single projection into all slices.
+   * 
+   * @param projection Projection number
+   * @param rows Detector values of the projection, one array per slice. For
+   *        the filtered backprojection they have to be filtered already
+   * @throws IllegalArgumentException If <b>projection</b> is out of bounds
+   *         or was already added, or <b>rows</b> doesn't hold one row of
+   *         the detectors length for every slice
+   */
+  public synchronized void add(int projection, double[][] rows) throws IllegalArgumentException {
+    if (projection < 0 || projection >= added.length || added[projection]) throw new IllegalArgumentException();
+    int size = getGeometry().getDetectors();
+    if (rows == null || rows.length != slices) throw new IllegalArgumentException();
+    final double[][] sinogram = new double[added.length][];
+    double[] row = slices == 1 ? rows[0] : new double[size * slices];
+    for (int k = 0; k < slices; k++) {
+      if (rows[k] == null || rows[k].length != size) throw new IllegalArgumentException();
+      if (slices > 1)
+        for (int d = 0; d < size; d++)
+          row[d * slices + k] = rows[k][d];
+    }
+    sinogram[projection] = row;
+    final int angle = projection;
+    int bands = Math.min(partitions, size);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bands);
+    for (int p = 0; p < bands; p++) {
+      final int first = ParallelBackprojector.split(size, bands, p);
+      final int last = ParallelBackprojector.split(size, bands, p + 1);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          backprojector.accumulate(sinogram, slices, angle, angle + 1, first, last, whole, images);
+          return null;
+        }
+      });
+    }
+    Tasks.invokeAll(executor, tasks);
+    added[projection] = true;
+    count++;
+  }
+
+  /**
+   * @param slice Slice number, counted from 0
+   * @return New matrix with the sums of a given slice, scaled by the ratio of
+   *         all projections to the added ones, so partial images have the
+   *         intensity of the final one. It is all zeros if no projection
+   *         was added yet
+   * @throws IndexOutOfBoundsException If <b>slice</b> is out of bounds
+   */
+  public synchronized CtMatrix snapshot(int slice) throws IndexOutOfBoundsException {
+    if (slice < 0 || slice >= slices) throw new IndexOutOfBoundsException();
+    int size = getGeometry().getDetectors();
+    double scale = count == 0 ? 0 : (double) added.length / count;
+    double[] image = new double[size * size];
+    for (int i = 0; i < image.length; i++)
+      image[i] = images[i * slices + slice] * scale;
+    return CtMatrixFactory.createFlatCtMatrix(size, size, image);
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+/**
+ * Backprojector smears every projection of a sinogram back over the image
+ * plane and sums the results, which is the reconstruction step of the
+ * (filtered) back propagation method. A sinogram is a matrix which has one
+ * row per projection and one column per detector cell, so its size has to
+ * match the {@link ProjectionGeometry} the backprojector was created for.
+ * Whatever precision sinograms and output matrices are stored in, detector
+ * values are accumulated in double precision and rounded only once, when
+ * the result is added to the output matrix.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.BackprojectorFactory
+ */
+public interface Backprojector {
+
+  /** @return Geometry of sinograms this backprojector works on */
+  ProjectionGeometry getGeometry();
+
+  /** @return Interpolation used for reading detector values */
+  Interpolation getInterpolation();
+
+  /**
+   * @param sinogram Sinogram matrix
+   * @return New, square matrix with the backprojected sinogram. Its size
+   *         equals the number of detectors
+   * @throws IllegalArgumentException If <b>sinogram</b> is null or its size
+   *         doesn't match the geometry
+   */
+  CtMatrix backproject(CtMatrix sinogram) throws IllegalArgumentException;
+
+  /**
+   * Backprojects a sinogram and adds the result to a given matrix.
+   * 
+   * @param sinogram Sinogram matrix
+   * @param out Square matrix to add the result to. Its size has to equal the
+   *        number of detectors
+   * @throws IllegalArgumentException If <b>sinogram</b> or <b>out</b> is
+   *         null or any of them doesn't match the geometry
+   */
+  void backproject(CtMatrix sinogram, CtMatrix out) throws IllegalArgumentException;
+
+  /**
+   * Backprojects a sinogram into a region of the image only.
+   * 
+   * @param sinogram Sinogram matrix
+   * @param region Region to reconstruct
+   * @return New matrix of the region size. Its pixel (0, 0) is pixel
+   *         (<code>region.getX()</code>, <code>region.getY()</code>) of the
+   *         whole image; pixels outside the field of view of a clipped
+   *         region are 0
+   * @throws IllegalArgumentException If any of arguments is null, the
+   *         sinogram size doesn't match the geometry or the region doesn't
+   *         fit in the image
+   */
+  CtMatrix backproject(CtMatrix sinogram, Region region) throws IllegalArgumentException;
+
+  /**
+   * Backprojects a batch of sinograms of slices which share the geometry,
+   * i.e. neighbouring slices of a parallel-beam volume. The detector
+   * coordinate and interpolation weights of every pixel are computed once
+   * per projection for the whole batch and the sinograms are read from an
+   * interleaved copy, which makes it faster than backprojecting the
+   * sinograms one by one. Results are the same as the ones of
+   * {@link #backproject(CtMatrix)}.
+   * 
+   * @param sinograms Sinogram matrices
+   * @return New, square matrices with the backprojected sinograms, one for
+   *         every sinogram
+   * @throws IllegalArgumentException If <b>sinograms</b> is null or empty,
+   *         or any of sinograms is null or doesn't match the geometry
+   */
+  CtMatrix[] backproject(CtMatrix[] sinograms) throws IllegalArgumentException;
+
+  /**
+   * Backprojects a batch of sinograms and adds the results to given
+   * matrices.
+   * 
+   * @param sinograms Sinogram matrices
+   * @param out Square matrices to add the results to, one for every
+   *        sinogram
+   * @throws IllegalArgumentException If any of arrays is null or empty, they
+   *         differ in length, or any of matrices is null or doesn't match
+   *         the geometry
+   */
+  void backproject(CtMatrix[] sinograms, CtMatrix[] out) throws IllegalArgumentException;
+
+}
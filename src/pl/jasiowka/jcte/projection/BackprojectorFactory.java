@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Factory for Backprojector objects.
+ * 
+ * @author Piotr Jasiowka
+ */
+public class BackprojectorFactory {
+
+  /**
+   * @param geometry Geometry of sinograms to backproject
+   * @param interpolation Interpolation of detector values
+   * @return New instance of a pixel-driven backprojector which accumulates
+   *         detector values straight into the output image
+   * @throws IllegalArgumentException If <b>geometry</b> or
+   *         <b>interpolation</b> is null
+   */
+  public static Backprojector createPixelDrivenBackprojector(ProjectionGeometry geometry, Interpolation interpolation) throws IllegalArgumentException {
+    return new PixelDrivenBackprojector(geometry, interpolation);
+  }
+
+  /**
+   * @param geometry Geometry of sinograms to backproject
+   * @param interpolation Interpolation of detector values
+   * @param partitioning The way the work is split between threads
+   * @return New instance of a parallel backprojector running on a shared
+   *         pool with one partition per available processor
+   * @throws IllegalArgumentException If any of arguments is null
+   */
+  public static Backprojector createParallelBackprojector(ProjectionGeometry geometry, Interpolation interpolation, Partitioning partitioning) throws IllegalArgumentException {
+    return new ParallelBackprojector(geometry, interpolation, partitioning, Tasks.getDefaultPartitions(), Tasks.getDefaultPool());
+  }
+
+  /**
+   * @param geometry Geometry of sinograms to backproject
+   * @param interpolation Interpolation of detector values
+   * @param partitioning The way the work is split between threads
+   * @param partitions Number of partitions. For a fixed number of partitions
+   *        the result doesn't depend on the executor
+   * @param executor Executor which runs partitions
+   * @return New instance of a parallel backprojector
+   * @throws IllegalArgumentException If any of arguments is null or
+   *         <b>partitions</b> is < 1
+   */
+  public static Backprojector createParallelBackprojector(ProjectionGeometry geometry, Interpolation interpolation, Partitioning partitioning, int partitions, ExecutorService executor) throws IllegalArgumentException {
+    return new ParallelBackprojector(geometry, interpolation, partitioning, partitions, executor);
+  }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+/**
+ * Interpolation used when a continuous detector (or image) coordinate has to
+ * be turned into a value read from discrete samples.
+ * 
+ * @author Piotr Jasiowka
+ */
+public enum Interpolation {
+
+  /** The value of the closest sample is taken */
+  NEAREST,
+
+  /**
+   * The value is linearly interpolated between two neighbouring samples (or
+   * bilinearly between four neighbouring pixels of an image)
+   */
+  LINEAR
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+/**
+ * IterativeReconstructor reconstructs an image by repeatedly projecting the
+ * current estimate, comparing the result with the measured sinogram and
+ * backprojecting the correction. Projections are split into ordered
+ * subsets and the estimate is updated after every subset, so a single
+ * iteration brings about as much as <i>subsets</i> iterations of the plain
+ * algorithm. Both the estimate and the sinogram sizes have to match the
+ * {@link SystemMatrix} the reconstructor was created for.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.IterativeReconstructorFactory
+ */
+public interface IterativeReconstructor {
+
+  /** @return System matrix the reconstructor works with */
+  SystemMatrix getSystemMatrix();
+
+  /** @return Number of ordered subsets */
+  int getSubsets();
+
+  /**
+   * @param sinogram Measured sinogram
+   * @param iterations Number of iterations, each going through all subsets
+   * @return New, square matrix with the reconstructed image, started from
+   *         the default initial estimate of the algorithm
+   * @throws IllegalArgumentException If <b>sinogram</b> is null or its size
+   *         doesn't match the geometry, or <b>iterations</b> is < 0
+   */
+  CtMatrix reconstruct(CtMatrix sinogram, int iterations) throws IllegalArgumentException;
+
+  /**
+   * Improves a given estimate.
+   * 
+   * @param sinogram Measured sinogram
+   * @param image Initial estimate, replaced by the result
+   * @param iterations Number of iterations, each going through all subsets
+   * @throws IllegalArgumentException If <b>sinogram</b> or <b>image</b> is
+   *         null or any of them doesn't match the geometry, or
+   *         <b>iterations</b> is < 0
+   */
+  void reconstruct(CtMatrix sinogram, CtMatrix image, int iterations) throws IllegalArgumentException;
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Factory for IterativeReconstructor objects.
+ * 
+ * @author Piotr Jasiowka
+ */
+public class IterativeReconstructorFactory {
+
+  /**
+   * @param matrix System matrix
+   * @param subsets Number of ordered subsets, 1 gives the plain SART
+   * @param relaxation Relaxation factor from range (0..2), typically about 1
+   * @return New instance of an OS-SART reconstructor running on a shared
+   *         pool with one partition per available processor
+   * @throws IllegalArgumentException If <b>matrix</b> is null,
+   *         <b>subsets</b> is out of [1..projections] or <b>relaxation</b>
+   *         is out of (0..2)
+   */
+  public static IterativeReconstructor createSartReconstructor(SystemMatrix matrix, int subsets, double relaxation) throws IllegalArgumentException {
+    return new SartReconstructor(matrix, subsets, relaxation, Tasks.getDefaultPartitions(), Tasks.getDefaultPool());
+  }
+
+  /**
+   * @param matrix System matrix
+   * @param subsets Number of ordered subsets, 1 gives the plain SART
+   * @param relaxation Relaxation factor from range (0..2), typically about 1
+   * @param partitions Number of partitions run in parallel
+   * @param executor Executor which runs partitions
+   * @return New instance of an OS-SART reconstructor
+   * @throws IllegalArgumentException If any of objects is null,
+   *         <b>partitions</b> is < 1, <b>subsets</b> is out of
+   *         [1..projections] or <b>relaxation</b> is out of (0..2)
+   */
+  public static IterativeReconstructor createSartReconstructor(SystemMatrix matrix, int subsets, double relaxation, int partitions, ExecutorService executor) throws IllegalArgumentException {
+    return new SartReconstructor(matrix, subsets, relaxation, partitions, executor);
+  }
+
+  /**
+   * @param matrix System matrix
+   * @param subsets Number of ordered subsets, 1 gives the plain MLEM
+   * @return New instance of an OS-EM reconstructor running on a shared pool
+   *         with one partition per available processor
+   * @throws IllegalArgumentException If <b>matrix</b> is null or
+   *         <b>subsets</b> is out of [1..projections]
+   */
+  public static IterativeReconstructor createOsemReconstructor(SystemMatrix matrix, int subsets) throws IllegalArgumentException {
+    return new OsemReconstructor(matrix, subsets, Tasks.getDefaultPartitions(), Tasks.getDefaultPool());
+  }
+
+  /**
+   * @param matrix System matrix
+   * @param subsets Number of ordered subsets, 1 gives the plain MLEM
+   * @param partitions Number of partitions run in parallel
+   * @param executor Executor which runs partitions
+   * @return New instance of an OS-EM reconstructor
+   * @throws IllegalArgumentException If any of objects is null,
+   *         <b>partitions</b> is < 1 or <b>subsets</b> is out of
+   *         [1..projections]
+   */
+  public static IterativeReconstructor createOsemReconstructor(SystemMatrix matrix, int subsets, int partitions, ExecutorService executor) throws IllegalArgumentException {
+    return new OsemReconstructor(matrix, subsets, partitions, executor);
+  }
+
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.function.DoubleUnaryOperator;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+import pl.jasiowka.jcte.struct.CtVector;
+import pl.jasiowka.jcte.struct.CtVectorFactory;
+import pl.jasiowka.jcte.struct.ScratchBuffers;
+
+/**
+ * LazyCtMatrix is an expression over a matrix: rotations, scaling, adding
+ * other matrices and mapping of elements are only recorded, and evaluated
+ * when a result is asked for - a matrix, column sums, the total sum or
+ * adding the result to another matrix - in a single pass over the output
+ * pixels. Every output pixel is traced back through the rotations to the
+ * source pixel it comes from and the element operations are applied on
+ * the way, so
+ * <pre>
+ * LazyCtMatrix.of(image).rotate(angle).sumCols()
+ * </pre>
+ * reads the image once and writes the column sums, with no rotated image
+ * in between.
+ * <p>
+ * The source is read in place, only at the pixels the output pixels are
+ * traced to, so no temporary image is made. Nearest rotations chain for
+ * free. A linear rotation needs four neighbours of the pixels it reads, so
+ * the part of the expression before it, if any, is evaluated into a pooled
+ * {@link ScratchBuffers} array first; a linear rotation of the source itself
+ * reads the neighbours from the source.
+ * Evaluation is not thread-safe with respect to changes of the source or
+ * of added matrices. LazyCtMatrix objects are immutable: every operation
+ * returns a new expression.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.RotationPlan
+ */
+public final class LazyCtMatrix {
+
+  private static final int ROTATE = 0, SCALE = 1, ADD = 2, MAP = 3;
+
+  /** A recorded operation */
+  private static final class Step {
+
+    final int kind;
+
+    final RotationPlan plan;
+
+    final double factor;
+
+    final CtMatrix matrix;
+
+    final DoubleUnaryOperator operator;
+
+    Step(int kind, RotationPlan plan, double factor, CtMatrix matrix, DoubleUnaryOperator operator) {
+      this.kind = kind;
+      this.plan = plan;
+      this.factor = factor;
+      this.matrix = matrix;
+      this.operator = operator;
+    }
+
+  }
+
+  private final CtMatrix source;
+
+  private final int width, height;
+
+  private final Step[] steps;
+
+  private LazyCtMatrix(CtMatrix source, Step[] steps) {
+    this.source = source;
+    width = source.getWidth();
+    height = source.getHeight();
+    this.steps = steps;
+  }
+
+  /**
+   * @param matrix Source matrix. It is read when the expression is evaluated,
+   *        not now
+   * @return Expression giving the matrix as it is
+   * @throws IllegalArgumentException If <b>matrix</b> is null
+   */
+  public static LazyCtMatrix of(CtMatrix matrix) throws IllegalArgumentException {
+    if (matrix == null) throw new IllegalArgumentException();
+    return new LazyCtMatrix(matrix, new Step[0]);
+  }
+
+  private LazyCtMatrix then(Step step) {
+    Step[] out = new Step[steps.length + 1];
+    System.arraycopy(steps, 0, out, 0, steps.length);
+    out[steps.length] = step;
+    return new LazyCtMatrix(source, out);
+  }
+
+  /** @return Width of the result */
+  public int getWidth() {
+    return width;
+  }
+
+  /** @return Height of the result */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * @param angle Rotation angle in degrees
+   * @return Expression rotated around the center with the nearest
+   *         interpolation, the same as
+   *         {@link pl.jasiowka.jcte.Jcte#rotate(CtMatrix, double)}
+   */
+  public LazyCtMatrix rotate(double angle) {
+    return rotate(angle, Interpolation.NEAREST);
+  }
+
+  /**
+   * @param angle Rotation angle in degrees
+   * @param interpolation Interpolation of source pixels
+   * @return Expression rotated around the center
+   * @throws IllegalArgumentException If <b>interpolation</b> is null
+   */
+  public LazyCtMatrix rotate(double angle, Interpolation interpolation) throws IllegalArgumentException {
+    return then(new Step(ROTATE, RotationPlan.forGeometry(width, height, angle, interpolation), 0, null, null));
+  }
+
+  /**
+   * @param factor Factor to multiply elements by
+   * @return Expression with every element multiplied
+   */
+  public LazyCtMatrix scale(double factor) {
+    return then(new Step(SCALE, null, factor, null, null));
+  }
+
+  /**
+   * @param matrix Matrix of the same size to add. It is read when the
+   *        expression is evaluated
+   * @return Expression with elements of a matrix added
+   * @throws IllegalArgumentException If <b>matrix</b> is null or its size
+   *         differs
+   */
+  public LazyCtMatrix add(CtMatrix matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.getWidth() != width || matrix.getHeight() != height) throw new IllegalArgumentException();
+    return then(new Step(ADD, null, 0, matrix, null));
+  }
+
+  /**
+   * @param operator Function applied to every element
+   * @return Expression with every element mapped
+   * @throws IllegalArgumentException If <b>operator</b> is null
+   */
+  public LazyCtMatrix map(DoubleUnaryOperator operator) throws IllegalArgumentException {
+    if (operator == null) throw new IllegalArgumentException();
+    return then(new Step(MAP, null, 0, null, operator));
+  }
+
+  /** @return New matrix with the evaluated expression */
+  public CtMatrix evaluate() {
+    double[] out = new double[width * height];
+    Evaluation e = new Evaluation();
+    try {
+      for (int i = 0; i < out.length; i++)
+        out[i] = e.value(i);
+    } finally {
+      e.release();
+    }
+    return CtMatrixFactory.createFlatCtMatrix(width, height, out);
+  }
+
+  /**
+   * Evaluates the expression into a given matrix.
+   * 
+   * @param dst Matrix of the same size to put the result to. It can be the
+   *        source, but not a matrix added by {@link #add(CtMatrix)}
+   * @throws IllegalArgumentException If <b>dst</b> is null or its size
+   *         differs
+   */
+  public void evaluate(CtMatrix dst) throws IllegalArgumentException {
+    checkSize(dst);
+    if (overwritesSource(dst)) {
+      double[] out = evaluateScratch();
+      try {
+        for (int y = 0; y < height; y++)
+          for (int x = 0; x < width; x++)
+            dst.update(x, y, out[y * width + x]);
+      } finally {
+        ScratchBuffers.release(out);
+      }
+      return;
+    }
+    Evaluation e = new Evaluation();
+    try {
+      for (int y = 0; y < height; y++)
+        for (int x = 0; x < width; x++)
+          dst.update(x, y, e.value(y * width + x));
+    } finally {
+      e.release();
+    }
+  }
+
+  /**
+   * Adds the evaluated expression to a given matrix.
+   * 
+   * @param dst Matrix of the same size to add the result to. It can be the
+   *        source, but not a matrix added by {@link #add(CtMatrix)}
+   * @throws IllegalArgumentException If <b>dst</b> is null or its size
+   *         differs
+   */
+  public void addInto(CtMatrix dst) throws IllegalArgumentException {
+    checkSize(dst);
+    if (overwritesSource(dst)) {
+      double[] out = evaluateScratch();
+      try {
+        for (int y = 0; y < height; y++)
+          for (int x = 0; x < width; x++)
+            dst.update(x, y, dst.get(x, y) + out[y * width + x]);
+      } finally {
+        ScratchBuffers.release(out);
+      }
+      return;
+    }
+    Evaluation e = new Evaluation();
+    try {
+      for (int y = 0; y < height; y++)
+        for (int x = 0; x < width; x++)
+          dst.update(x, y, dst.get(x, y) + e.value(y * width + x));
+    } finally {
+      e.release();
+    }
+  }
+
+  /** @return New vector with sums of all elements in every column */
+  public CtVector sumCols() {
+    CtVector out = CtVectorFactory.createArrayCtVector(width);
+    sumCols(out);
+    return out;
+  }
+
+  /**
+   * Puts sums of all elements in every column into a given vector.
+   * 
+   * @param dst Vector of the expression width to put the sums to
+   * @throws IllegalArgumentException If <b>dst</b> is null or its size
+   *         differs from the expression width
+   */
+  public void sumCols(CtVector dst) throws IllegalArgumentException {
+    if (dst == null || dst.getSize() != width) throw new IllegalArgumentException();
+    double[] sums = ScratchBuffers.acquireZeroed(width);
+    Evaluation e = new Evaluation();
+    try {
+      for (int y = 0, i = 0; y < height; y++)
+        for (int x = 0; x < width; x++, i++)
+          sums[x] += e.value(i);
+      for (int x = 0; x < width; x++)
+        dst.update(x, sums[x]);
+    } finally {
+      e.release();
+      ScratchBuffers.release(sums);
+    }
+  }
+
+  /** @return Sum of all elements */
+  public double sum() {
+    double out = 0;
+    Evaluation e = new Evaluation();
+    try {
+      for (int i = 0; i < width * height; i++)
+        out += e.value(i);
+    } finally {
+      e.release();
+    }
+    return out;
+  }
+
+  /**
+   * @param dst Matrix the result is written to
+   * @return True if writing the result pixel by pixel would change source
+   *         pixels which are still to be read, i.e. <b>dst</b> is the source
+   *         and the expression rotates it
+   */
+  private boolean overwritesSource(CtMatrix dst) {
+    if (dst != source) return false;
+    for (Step step : steps)
+      if (step.kind == ROTATE) return true;
+    return false;
+  }
+
+  /** @return Pooled scratch array with the evaluated expression */
+  private double[] evaluateScratch() {
+    double[] out = ScratchBuffers.acquire(width * height);
+    Evaluation e = new Evaluation();
+    try {
+      for (int i = 0; i < out.length; i++)
+        out[i] = e.value(i);
+    } finally {
+      e.release();
+    }
+    return out;
+  }
+
+  private void checkSize(CtMatrix matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.getWidth() != width || matrix.getHeight() != height) throw new IllegalArgumentException();
+  }
+
+  /**
+   * A single evaluation of the expression: the source, or the part of the
+   * expression before the last linear rotation evaluated into a buffer, and
+   * the steps which are left to trace pixels through.
+   */
+  private final class Evaluation {
+
+    /** Evaluated steps before <b>first</b>, null if the source is read */
+    private double[] buffer;
+
+    private int first;
+
+    private int last;
+
+    /** Pixel index at the output of every step of the traced pixel */
+    private final int[] pos = new int[steps.length];
+
+    Evaluation() {
+      for (int k = 1; k < steps.length; k++) {
+        if (steps[k].kind != ROTATE || steps[k].plan.getInterpolation() != Interpolation.LINEAR) continue;
+        last = k;
+        double[] out = ScratchBuffers.acquire(width * height);
+        for (int i = 0; i < out.length; i++)
+          out[i] = value(i);
+        release();
+        buffer = out;
+        first = k;
+      }
+      last = steps.length;
+    }
+
+    /**
+     * @param i Index of an output pixel
+     * @return Value of the pixel after steps from <b>first</b> up to
+     *         <b>last</b> applied to the buffer
+     */
+    double value(int i) {
+      int k = last - 1;
+      int p = i;
+      double v;
+      while (true) {
+        if (k < first) {
+          v = buffer == null ? source.get(p % width, p / width) : buffer[p];
+          break;
+        }
+        pos[k] = p;
+        Step step = steps[k];
+        if (step.kind == ROTATE) {
+          if (step.plan.getInterpolation() == Interpolation.LINEAR) {
+            v = buffer == null ? step.plan.sample(source, p) : step.plan.sample(buffer, p);
+            break;
+          }
+          p = step.plan.source(p);
+          if (p < 0) {
+            v = 0;
+            break;
+          }
+        }
+        k--;
+      }
+      for (k++; k < last; k++) {
+        Step step = steps[k];
+        switch (step.kind) {
+        case SCALE:
+          v *= step.factor;
+          break;
+        case ADD:
+          v += step.matrix.get(pos[k] % width, pos[k] / width);
+          break;
+        case MAP:
+          v = step.operator.applyAsDouble(v);
+          break;
+        default:
+          break;
+        }
+      }
+      return v;
+    }
+
+    void release() {
+      if (buffer != null) ScratchBuffers.release(buffer);
+    }
+
+  }
+
+}
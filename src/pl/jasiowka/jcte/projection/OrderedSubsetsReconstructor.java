@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+/**
+ * OrderedSubsetsReconstructor is the common part of iterative algorithms
+ * working on ordered subsets of projections. Subset <i>s</i> of <i>k</i>
+ * holds projections s, s + k, s + 2k, ..., so every subset covers the whole
+ * range of angles. For every subset the estimate is projected with the
+ * system matrix (in parallel over projections), the projections are turned
+ * into corrections by {@link #correct(double[], double[], double[], int)}
+ * and the corrections are backprojected and applied by
+ * {@link #update(double, double, double)} (in parallel over pixels). Each
+ * value is always computed by a single thread in the same order, so results
+ * don't depend on the number of partitions.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.IterativeReconstructorFactory
+ */
+abstract class OrderedSubsetsReconstructor implements IterativeReconstructor {
+
+  protected final SystemMatrix matrix;
+
+  private final int[][] subsets;
+
+  /**
+   * Sum of weights of all rays of a subset passing through a pixel, indexed
+   * by [subset][pixel]
+   */
+  protected final double[][] pixelSums;
+
+  private final int partitions;
+
+  private final ExecutorService executor;
+
+  /**
+   * @param matrix System matrix
+   * @param subsets Number of subsets
+   * @param partitions Number of partitions run in parallel
+   * @param executor Executor which runs partitions
+   * @throws IllegalArgumentException If any of objects is null,
+   *         <b>partitions</b> is < 1 or <b>subsets</b> is out of
+   *         [1..projections]
+   */
+  OrderedSubsetsReconstructor(SystemMatrix matrix, int subsets, int partitions, ExecutorService executor) throws IllegalArgumentException {
+    if (matrix == null || executor == null) throw new IllegalArgumentException();
+    int projections = matrix.getGeometry().getProjections();
+    if (subsets < 1 || subsets > projections || partitions < 1) throw new IllegalArgumentException();
+    this.matrix = matrix;
+    this.partitions = partitions;
+    this.executor = executor;
+    this.subsets = new int[subsets][];
+    pixelSums = new double[subsets][matrix.pixels];
+    for (int s = 0; s < subsets; s++) {
+      int count = (projections - s + subsets - 1) / subsets;
+      this.subsets[s] = new int[count];
+      for (int i = 0; i < count; i++) {
+        int a = s + i * subsets;
+        this.subsets[s][i] = a;
+        double[] sums = pixelSums[s];
+        for (int j = 0; j < matrix.pixels; j++) {
+          int row = a * matrix.pixels + j;
+          for (int k = matrix.rowPtr[row]; k < matrix.rowPtr[row + 1]; k++)
+            sums[j] += matrix.vals[k];
+        }
+      }
+    }
+  }
+
+  @Override
+  public SystemMatrix getSystemMatrix() {
+    return matrix;
+  }
+
+  @Override
+  public int getSubsets() {
+    return subsets.length;
+  }
+
+  @Override
+  public CtMatrix reconstruct(CtMatrix sinogram, int iterations) throws IllegalArgumentException {
+    int size = matrix.getGeometry().getDetectors();
+    CtMatrix image = CtMatrixFactory.createCtMatrix(size, size);
+    double[] x = new double[matrix.pixels];
+    initialize(x);
+    for (int y = 0; y < size; y++)
+      for (int xx = 0; xx < size; xx++)
+        image.update(xx, y, x[y * size + xx]);
+    reconstruct(sinogram, image, iterations);
+    return image;
+  }
+
+  @Override
+  public void reconstruct(CtMatrix sinogram, CtMatrix image, int iterations) throws IllegalArgumentException {
+    ProjectionGeometry geometry = matrix.getGeometry();
+    int size = geometry.getDetectors();
+    if (sinogram == null || image == null || iterations < 0) throw new IllegalArgumentException();
+    if (sinogram.getWidth() != size || sinogram.getHeight() != geometry.getProjections())
+      throw new IllegalArgumentException();
+    if (image.getWidth() != size || image.getHeight() != size) throw new IllegalArgumentException();
+    double[][] measured = PixelDrivenBackprojector.toArray(sinogram);
+    double[] x = new double[matrix.pixels];
+    for (int y = 0; y < size; y++)
+      for (int xx = 0; xx < size; xx++)
+        x[y * size + xx] = image.get(xx, y);
+    double[][] corrections = new double[geometry.getProjections()][size];
+    for (int it = 0; it < iterations; it++)
+      for (int s = 0; s < subsets.length; s++) {
+        project(s, x, measured, corrections);
+        backproject(s, corrections, x);
+      }
+    for (int y = 0; y < size; y++)
+      for (int xx = 0; xx < size; xx++)
+        image.update(xx, y, x[y * size + xx]);
+  }
+
+  /**
+   * Projects the estimate for all projections of a subset and turns the
+   * projections into corrections.
+   */
+  private void project(int s, final double[] x, final double[][] measured, final double[][] corrections) {
+    final int[] angles = subsets[s];
+    int count = Math.min(partitions, angles.length);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(count);
+    for (int p = 0; p < count; p++) {
+      final int first = ParallelBackprojector.split(angles.length, count, p);
+      final int last = ParallelBackprojector.split(angles.length, count, p + 1);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          int detectors = corrections[0].length;
+          for (int i = first; i < last; i++) {
+            int a = angles[i];
+            double[] row = corrections[a];
+            Arrays.fill(row, 0);
+            int base = a * matrix.pixels;
+            for (int j = 0; j < matrix.pixels; j++) {
+              double value = x[j];
+              if (value == 0) continue;
+              for (int k = matrix.rowPtr[base + j]; k < matrix.rowPtr[base + j + 1]; k++)
+                row[matrix.cols[k]] += matrix.vals[k] * value;
+            }
+            correct(row, measured[a], matrix.raySums, a * detectors);
+          }
+          return null;
+        }
+      });
+    }
+    Tasks.invokeAll(executor, tasks);
+  }
+
+  /** Backprojects corrections of a subset and updates the estimate */
+  private void backproject(int s, final double[][] corrections, final double[] x) {
+    final int[] angles = subsets[s];
+    final double[] sums = pixelSums[s];
+    int count = Math.min(partitions, matrix.pixels);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(count);
+    for (int p = 0; p < count; p++) {
+      final int first = ParallelBackprojector.split(matrix.pixels, count, p);
+      final int last = ParallelBackprojector.split(matrix.pixels, count, p + 1);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          for (int j = first; j < last; j++) {
+            double sum = 0;
+            for (int a : angles) {
+              double[] row = corrections[a];
+              int r = a * matrix.pixels + j;
+              for (int k = matrix.rowPtr[r]; k < matrix.rowPtr[r + 1]; k++)
+                sum += matrix.vals[k] * row[matrix.cols[k]];
+            }
+            x[j] = update(x[j], sum, sums[j]);
+          }
+          return null;
+        }
+      });
+    }
+    Tasks.invokeAll(executor, tasks);
+  }
+
+  /**
+   * Fills the initial estimate used by {@link #reconstruct(CtMatrix, int)}.
+   * 
+   * @param x Zeroed estimate
+   */
+  abstract void initialize(double[] x);
+
+  /**
+   * Turns a projection of the estimate into corrections, in place.
+   * 
+   * @param row Projection of the estimate, replaced by corrections
+   * @param measured Measured projection
+   * @param raySums Sums of weights of all rays
+   * @param offset Position of the first ray of the projection in
+   *        <b>raySums</b>
+   */
+  abstract void correct(double[] row, double[] measured, double[] raySums, int offset);
+
+  /**
+   * @param value Current value of a pixel
+   * @param correction Backprojected corrections of the pixel
+   * @param weight Sum of weights of the rays of the subset passing through
+   *        the pixel
+   * @return New value of the pixel
+   */
+  abstract double update(double value, double correction, double weight);
+
+}
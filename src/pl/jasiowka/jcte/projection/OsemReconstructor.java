@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * OsemReconstructor implements the Ordered Subsets Expectation Maximization
+ * algorithm. Every pixel is multiplied by the backprojected ratio of the
+ * measured and estimated projections, normalized by the sum of weights of
+ * the subset rays passing through it. Updates are multiplicative, so a
+ * non-negative estimate stays non-negative. It starts from an image of
+ * ones within the field of view.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.IterativeReconstructorFactory
+ */
+class OsemReconstructor extends OrderedSubsetsReconstructor {
+
+  /**
+   * @param matrix System matrix
+   * @param subsets Number of subsets
+   * @param partitions Number of partitions run in parallel
+   * @param executor Executor which runs partitions
+   * @throws IllegalArgumentException If any of objects is null,
+   *         <b>partitions</b> is < 1 or <b>subsets</b> is out of
+   *         [1..projections]
+   */
+  OsemReconstructor(SystemMatrix matrix, int subsets, int partitions, ExecutorService executor) throws IllegalArgumentException {
+    super(matrix, subsets, partitions, executor);
+  }
+
+  @Override
+  void initialize(double[] x) {
+    for (int j = 0; j < x.length; j++)
+      for (double[] sums : pixelSums)
+        if (sums[j] > 0) {
+          x[j] = 1;
+          break;
+        }
+  }
+
+  @Override
+  void correct(double[] row, double[] measured, double[] raySums, int offset) {
+    for (int d = 0; d < row.length; d++)
+      row[d] = row[d] > 0 ? measured[d] / row[d] : 0;
+  }
+
+  @Override
+  double update(double value, double correction, double weight) {
+    return weight > 0 ? value * correction / weight : value;
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * ParallelBackprojector is a Backprojector which splits the work of the
+ * pixel-driven kernel between threads of an executor. The split is
+ * described by a {@link Partitioning} and a number of partitions, and for a
+ * fixed pair of them the result is bit-identical from run to run and from
+ * executor to executor. With the {@link Partitioning#TILES} partitioning
+ * (or a single partition) it is also bit-identical to the serial
+ * PixelDrivenBackprojector.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.BackprojectorFactory
+ */
+class ParallelBackprojector extends PixelDrivenBackprojector {
+
+  private final Partitioning partitioning;
+
+  private final int partitions;
+
+  private final ExecutorService executor;
+
+  /**
+   * Creates a parallel backprojector. Outside this package use
+   * {@link pl.jasiowka.jcte.projection.BackprojectorFactory} static methods
+   * for creating backprojectors.
+   * 
+   * @param geometry Geometry of sinograms
+   * @param interpolation Interpolation of detector values
+   * @param partitioning The way the work is split
+   * @param partitions Number of partitions
+   * @param executor Executor which runs partitions
+   * @throws IllegalArgumentException If any of arguments is null or
+   *         <b>partitions</b> is < 1
+   */
+  ParallelBackprojector(ProjectionGeometry geometry, Interpolation interpolation, Partitioning partitioning, int partitions, ExecutorService executor) throws IllegalArgumentException {
+    super(geometry, interpolation);
+    if (partitioning == null || executor == null) throw new IllegalArgumentException();
+    if (partitions < 1) throw new IllegalArgumentException();
+    this.partitioning = partitioning;
+    this.partitions = partitions;
+    this.executor = executor;
+  }
+
+  @Override
+  void accumulateAll(double[][] sinogram, int batch, int projections, int rows, Region region, double[] image) {
+    if (partitioning == Partitioning.TILES)
+      backprojectTiles(sinogram, batch, projections, rows, region, image);
+    else
+      backprojectAngles(sinogram, batch, projections, rows, region, image);
+  }
+
+  private void backprojectTiles(final double[][] sinogram, final int batch, final int projections, int rows, final Region region, final double[] image) {
+    int bands = Math.min(partitions, rows);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bands);
+    for (int p = 0; p < bands; p++) {
+      final int first = split(rows, bands, p);
+      final int last = split(rows, bands, p + 1);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          accumulate(sinogram, batch, 0, projections, first, last, region, image);
+          return null;
+        }
+      });
+    }
+    Tasks.invokeAll(executor, tasks);
+  }
+
+  private void backprojectAngles(final double[][] sinogram, final int batch, int projections, final int rows, final Region region, final double[] image) {
+    int count = Math.min(partitions, projections);
+    final double[][] partial = new double[count][];
+    partial[0] = image;
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(count);
+    for (int p = 0; p < count; p++) {
+      final int index = p;
+      final int first = split(projections, count, p);
+      final int last = split(projections, count, p + 1);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          if (index > 0) partial[index] = new double[image.length];
+          accumulate(sinogram, batch, first, last, 0, rows, region, partial[index]);
+          return null;
+        }
+      });
+    }
+    Tasks.invokeAll(executor, tasks);
+    for (int stride = 1; stride < count; stride *= 2) {
+      tasks.clear();
+      for (int p = 0; p + stride < count; p += 2 * stride) {
+        final double[] target = partial[p];
+        final double[] source = partial[p + stride];
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int i = 0; i < target.length; i++)
+              target[i] += source[i];
+            return null;
+          }
+        });
+      }
+      Tasks.invokeAll(executor, tasks);
+    }
+  }
+
+  /**
+   * @param length Length of a range to split
+   * @param parts Number of parts
+   * @param part Part number
+   * @return First index of a given part of [0..length) range split into
+   *         nearly equal parts
+   */
+  static int split(int length, int parts, int part) {
+    return (int) ((long) length * part / parts);
+  }
+
+}
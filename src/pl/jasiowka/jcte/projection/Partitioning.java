@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+/**
+ * Describes how a parallel backprojection splits its work between threads.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.BackprojectorFactory
+ */
+public enum Partitioning {
+
+  /**
+   * Every worker backprojects a contiguous range of projections into its own
+   * partial image. Partial images are merged with a tree reduction whose
+   * shape depends only on the number of partitions, so the result is the
+   * same for a given number of partitions no matter how many threads did
+   * the work. It needs one image buffer per partition
+   */
+  ANGLES,
+
+  /**
+   * Every worker backprojects all projections into its own band of image
+   * rows. No reduction is needed and the result is identical to the serial
+   * backprojection for any number of partitions
+   */
+  TILES
+
+}
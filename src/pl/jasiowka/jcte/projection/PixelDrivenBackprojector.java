@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import pl.jasiowka.jcte.simd.Kernels;
+import pl.jasiowka.jcte.simd.KernelsFactory;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+import pl.jasiowka.jcte.struct.ScratchBuffers;
+
+/**
+ * PixelDrivenBackprojector is an implementation of Backprojector which walks
+ * over the output image and, for every pixel and every projection, reads
+ * the detector value the pixel is seen at. No intermediate matrices are
+ * created: the detector coordinate changes linearly along image rows and
+ * the values are accumulated straight into a single image buffer by the
+ * {@link pl.jasiowka.jcte.simd.Kernels} chosen for the running JVM.
+ * <p>
+ * When the geometry {@link ProjectionGeometry#isSymmetric() is symmetric}
+ * and the whole image is reconstructed, only the upper half of the image
+ * and the first half of the projections are walked over. Every projection
+ * is folded together with its mirror and with the projection 90 degrees
+ * further and its mirror into four interleaved rows, which the batched
+ * kernels read at a single detector coordinate computed for all four
+ * pixels it serves; the four partial images are unfolded into the output
+ * at the end. Otherwise, and for regions of interest, every pixel is walked
+ * over for every projection. Both ways give the same image up to rounding.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.BackprojectorFactory
+ */
+class PixelDrivenBackprojector implements Backprojector {
+
+  protected final ProjectionGeometry geometry;
+
+  protected final Interpolation interpolation;
+
+  private final Region whole;
+
+  /**
+   * Creates a backprojector for a given geometry. Outside this package use
+   * {@link pl.jasiowka.jcte.projection.BackprojectorFactory} static methods
+   * for creating backprojectors.
+   * 
+   * @param geometry Geometry of sinograms
+   * @param interpolation Interpolation of detector values
+   * @throws IllegalArgumentException If <b>geometry</b> or
+   *         <b>interpolation</b> is null
+   */
+  PixelDrivenBackprojector(ProjectionGeometry geometry, Interpolation interpolation) throws IllegalArgumentException {
+    if (geometry == null || interpolation == null) throw new IllegalArgumentException();
+    this.geometry = geometry;
+    this.interpolation = interpolation;
+    whole = Region.full(geometry.getDetectors());
+  }
+
+  @Override
+  public ProjectionGeometry getGeometry() {
+    return geometry;
+  }
+
+  @Override
+  public Interpolation getInterpolation() {
+    return interpolation;
+  }
+
+  @Override
+  public CtMatrix backproject(CtMatrix sinogram) throws IllegalArgumentException {
+    int size = geometry.getDetectors();
+    CtMatrix out = CtMatrixFactory.createCtMatrix(size, size);
+    backproject(sinogram, out);
+    return out;
+  }
+
+  @Override
+  public void backproject(CtMatrix sinogram, CtMatrix out) throws IllegalArgumentException {
+    checkSinogram(sinogram);
+    checkImage(out);
+    backproject(sinogram, whole, out);
+  }
+
+  @Override
+  public CtMatrix backproject(CtMatrix sinogram, Region region) throws IllegalArgumentException {
+    checkSinogram(sinogram);
+    if (region == null || !region.fits(geometry.getDetectors())) throw new IllegalArgumentException();
+    CtMatrix out = CtMatrixFactory.createCtMatrix(region.getWidth(), region.getHeight());
+    backproject(sinogram, region, out);
+    return out;
+  }
+
+  /**
+   * Backprojects a single sinogram into a region and adds the result to a
+   * matrix of the region size. The copy of the sinogram and the image
+   * buffer are taken from {@link ScratchBuffers}, so backprojecting
+   * sinograms of the same size over and over allocates nothing.
+   */
+  private void backproject(CtMatrix sinogram, Region region, CtMatrix out) {
+    double[][] rows = ScratchBuffers.acquire(sinogram.getHeight(), sinogram.getWidth());
+    double[] image = ScratchBuffers.acquireZeroed(region.getWidth() * region.getHeight());
+    try {
+      copy(sinogram, rows);
+      backproject(rows, 1, region, image);
+      addTo(image, out);
+    } finally {
+      ScratchBuffers.release(rows);
+      ScratchBuffers.release(image);
+    }
+  }
+
+  @Override
+  public CtMatrix[] backproject(CtMatrix[] sinograms) throws IllegalArgumentException {
+    if (sinograms == null) throw new IllegalArgumentException();
+    int size = geometry.getDetectors();
+    CtMatrix[] out = new CtMatrix[sinograms.length];
+    for (int k = 0; k < out.length; k++)
+      out[k] = CtMatrixFactory.createCtMatrix(size, size);
+    backproject(sinograms, out);
+    return out;
+  }
+
+  @Override
+  public void backproject(CtMatrix[] sinograms, CtMatrix[] out) throws IllegalArgumentException {
+    if (sinograms == null || out == null) throw new IllegalArgumentException();
+    if (sinograms.length == 0 || sinograms.length != out.length) throw new IllegalArgumentException();
+    for (int k = 0; k < sinograms.length; k++) {
+      checkSinogram(sinograms[k]);
+      checkImage(out[k]);
+    }
+    int batch = sinograms.length;
+    if (batch == 1) {
+      backproject(sinograms[0], whole, out[0]);
+      return;
+    }
+    int size = geometry.getDetectors();
+    double[] images = ScratchBuffers.acquireZeroed(size * size * batch);
+    double[] image = ScratchBuffers.acquire(size * size);
+    try {
+      backproject(interleave(sinograms), batch, whole, images);
+      for (int k = 0; k < batch; k++) {
+        for (int i = 0; i < image.length; i++)
+          image[i] = images[i * batch + k];
+        addTo(image, out[k]);
+      }
+    } finally {
+      ScratchBuffers.release(images);
+      ScratchBuffers.release(image);
+    }
+  }
+
+  /**
+   * Backprojects all projections of interleaved sinograms into a region,
+   * using the symmetries of the geometry if it can.
+   * 
+   * @param sinogram Interleaved sinogram rows, one array per projection
+   * @param batch Number of interleaved sinograms
+   * @param region Region to reconstruct
+   * @param image Zeroed, interleaved image buffer of the region size times
+   *        <b>batch</b> to put the result to
+   */
+  void backproject(double[][] sinogram, int batch, Region region, double[] image) {
+    int size = geometry.getDetectors();
+    if (!isSymmetric(region)) {
+      accumulateAll(sinogram, batch, geometry.getProjections(), region.getHeight(), region, image);
+      return;
+    }
+    double[][] folded = fold(sinogram, batch);
+    double[] quarters = ScratchBuffers.acquireZeroed(size / 2 * size * 4 * batch);
+    try {
+      accumulateAll(folded, 4 * batch, folded.length, size / 2, region, quarters);
+      unfold(quarters, batch, image);
+    } finally {
+      ScratchBuffers.release(folded);
+      ScratchBuffers.release(quarters);
+    }
+  }
+
+  /**
+   * @param region Region to reconstruct
+   * @return True if the geometry is symmetric and the region covers the
+   *         whole image, with or without the field of view clipping, which
+   *         is symmetric as well
+   */
+  boolean isSymmetric(Region region) {
+    int size = geometry.getDetectors();
+    return geometry.isSymmetric() && region.getX() == 0 && region.getY() == 0 && region.getWidth() == size && region.getHeight() == size;
+  }
+
+  /**
+   * Backprojects a number of first projections into a number of first rows
+   * of a region. Subclasses override it to split the work.
+   * 
+   * @param sinogram Interleaved sinogram rows, one array per projection
+   * @param batch Number of interleaved sinograms
+   * @param projections Number of projections to backproject
+   * @param rows Number of rows to fill
+   * @param region Region to reconstruct
+   * @param image Interleaved image buffer of the region width times
+   *        <b>rows</b> times <b>batch</b>
+   */
+  void accumulateAll(double[][] sinogram, int batch, int projections, int rows, Region region, double[] image) {
+    accumulate(sinogram, batch, 0, projections, 0, rows, region, image);
+  }
+
+  /**
+   * Folds every projection of the first half of a symmetric geometry with
+   * its mirror, the projection 90 degrees further and its mirror.
+   * 
+   * @param sinogram Interleaved sinogram rows, one array per projection
+   * @param batch Number of interleaved sinograms
+   * @return Scratch table with one row per projection of the first half.
+   *         Detector <i>d</i> of slice <i>k</i> holds four values at
+   *         <code>(4 * d + j) * batch + k</code>: for <i>j</i> = 0..3 they
+   *         are detectors <i>d</i>, N-1-<i>d</i> of the projection and
+   *         N-1-<i>d</i>, <i>d</i> of its pair
+   */
+  double[][] fold(double[][] sinogram, int batch) {
+    int size = geometry.getDetectors();
+    int half = geometry.getProjections() / 2;
+    double[][] out = ScratchBuffers.acquire(half, size * 4 * batch);
+    for (int a = 0; a < half; a++) {
+      double[] p = sinogram[a];
+      double[] q = sinogram[a + half];
+      double[] row = out[a];
+      for (int d = 0; d < size; d++) {
+        int src = d * batch;
+        int mirror = (size - 1 - d) * batch;
+        int dst = 4 * d * batch;
+        for (int k = 0; k < batch; k++) {
+          row[dst + k] = p[src + k];
+          row[dst + batch + k] = p[mirror + k];
+          row[dst + 2 * batch + k] = q[mirror + k];
+          row[dst + 3 * batch + k] = q[src + k];
+        }
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Adds four partial images backprojected from a folded sinogram to an
+   * image: pixel (x, y) of the upper half holds the sums of pixels (x, y),
+   * (N-1-x, N-1-y), (N-1-y, x) and (y, N-1-x).
+   * 
+   * @param quarters Interleaved partial images, see
+   *        {@link #fold(double[][], int)}
+   * @param batch Number of interleaved sinograms
+   * @param image Interleaved image buffer to add the partial images to
+   */
+  void unfold(double[] quarters, int batch, double[] image) {
+    int size = geometry.getDetectors();
+    int last = size - 1;
+    for (int y = 0; y < size / 2; y++) {
+      for (int x = 0; x < size; x++) {
+        int src = 4 * (y * size + x) * batch;
+        int a = (y * size + x) * batch;
+        int b = ((last - y) * size + last - x) * batch;
+        int c = (x * size + last - y) * batch;
+        int d = ((last - x) * size + y) * batch;
+        for (int k = 0; k < batch; k++) {
+          image[a + k] += quarters[src + k];
+          image[b + k] += quarters[src + batch + k];
+          image[c + k] += quarters[src + 2 * batch + k];
+          image[d + k] += quarters[src + 3 * batch + k];
+        }
+      }
+    }
+  }
+
+  /**
+   * Backprojects a range of projections into a band of image rows. This is
+   * the kernel every backprojection in this package is built on. For a given
+   * pixel the projections are always summed in the ascending order, so the
+   * result doesn't depend on how the image rows were split into bands.
+   * Pixels outside the region are skipped.
+   * 
+   * @param sinogram Sinogram rows, one array per projection. Rows of a batch
+   *        of sinograms are interleaved, see {@link #interleave(CtMatrix[])}
+   * @param batch Number of interleaved sinograms
+   * @param firstAngle First projection to backproject
+   * @param lastAngle Projection following the last one to backproject
+   * @param firstRow First row of the region to fill
+   * @param lastRow Row following the last one to fill
+   * @param region Region to reconstruct
+   * @param image Row-major, interleaved image buffer of the region size
+   *        times <b>batch</b>
+   */
+  void accumulate(double[][] sinogram, int batch, int firstAngle, int lastAngle, int firstRow, int lastRow, Region region, double[] image) {
+    int size = geometry.getDetectors();
+    double center = geometry.getCenter() - 0.5;
+    boolean linear = interpolation == Interpolation.LINEAR;
+    Kernels kernels = KernelsFactory.getKernels();
+    for (int r = firstRow; r < lastRow; r++) {
+      int y = region.getY() + r;
+      int from = region.getFirstColumn(y, size);
+      int length = region.getLastColumn(y, size) - from;
+      if (length <= 0) continue;
+      int offset = r * region.getWidth() + from - region.getX();
+      double yy = y - center;
+      for (int a = firstAngle; a < lastAngle; a++) {
+        double[] row = sinogram[a];
+        double cos = geometry.getCos(a);
+        double u = center - center * cos - yy * geometry.getSin(a);
+        if (from > 0) u += from * cos;
+        if (batch > 1) {
+          if (linear)
+            kernels.backprojectLinear(row, batch, u, cos, image, offset, length);
+          else
+            kernels.backprojectNearest(row, batch, u, cos, image, offset, length);
+        } else if (linear) {
+          kernels.backprojectLinear(row, u, cos, image, offset, length);
+        } else {
+          kernels.backprojectNearest(row, u, cos, image, offset, length);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param sinogram Sinogram to check
+   * @throws IllegalArgumentException If <b>sinogram</b> is null or its size
+   *         doesn't match the geometry
+   */
+  void checkSinogram(CtMatrix sinogram) throws IllegalArgumentException {
+    if (sinogram == null) throw new IllegalArgumentException();
+    if (sinogram.getWidth() != geometry.getDetectors() || sinogram.getHeight() != geometry.getProjections())
+      throw new IllegalArgumentException();
+  }
+
+  /**
+   * @param image Output image to check
+   * @throws IllegalArgumentException If <b>image</b> is null or its size
+   *         doesn't match the geometry
+   */
+  void checkImage(CtMatrix image) throws IllegalArgumentException {
+    if (image == null) throw new IllegalArgumentException();
+    if (image.getWidth() != geometry.getDetectors() || image.getHeight() != geometry.getDetectors())
+      throw new IllegalArgumentException();
+  }
+
+  /**
+   * @param matrix Matrix to copy
+   * @return Copy of the matrix content, one array per row
+   */
+  static double[][] toArray(CtMatrix matrix) {
+    double[][] out = new double[matrix.getHeight()][matrix.getWidth()];
+    copy(matrix, out);
+    return out;
+  }
+
+  /**
+   * @param matrix Matrix to copy
+   * @param out Rows of the matrix size to copy the content to
+   */
+  static void copy(CtMatrix matrix, double[][] out) {
+    int width = matrix.getWidth();
+    for (int y = 0; y < out.length; y++)
+      for (int x = 0; x < width; x++)
+        out[y][x] = matrix.get(x, y);
+  }
+
+  /**
+   * @param matrices Matrices of the same size
+   * @return Rows of the matrices, one array per row, with values of all
+   *         matrices interleaved: value (x, y) of the <i>k</i>-th matrix is
+   *         stored at <code>[y][x * matrices.length + k]</code>
+   */
+  static double[][] interleave(CtMatrix[] matrices) {
+    if (matrices.length == 1) return toArray(matrices[0]);
+    int batch = matrices.length;
+    int width = matrices[0].getWidth();
+    double[][] out = new double[matrices[0].getHeight()][width * batch];
+    for (int k = 0; k < batch; k++)
+      for (int y = 0; y < out.length; y++)
+        for (int x = 0; x < width; x++)
+          out[y][x * batch + k] = matrices[k].get(x, y);
+    return out;
+  }
+
+  /**
+   * Adds a row-major image buffer to a matrix of the same width.
+   * 
+   * @param image Image buffer
+   * @param out Matrix to add the buffer to
+   */
+  static void addTo(double[] image, CtMatrix out) {
+    int width = out.getWidth();
+    for (int y = 0; y < out.getHeight(); y++) {
+      int offset = y * width;
+      for (int x = 0; x < width; x++)
+        out.update(x, y, out.get(x, y) + image[offset + x]);
+    }
+  }
+
+}
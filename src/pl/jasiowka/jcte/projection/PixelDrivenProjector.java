@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+import pl.jasiowka.jcte.struct.ScratchBuffers;
+
+/**
+ * PixelDrivenProjector is an implementation of Projector which walks over
+ * the image and splats every pixel onto the detector it is seen at: whole
+ * onto the nearest detector cell, or split between the two neighbouring
+ * cells with linear weights. It is the exact adjoint of the
+ * PixelDrivenBackprojector with the same interpolation, which makes the pair
+ * suitable for consistency checks and iterative reconstruction.
+ * <p>
+ * Projections are independent, so the work is split into ranges of angles
+ * run on an executor; every range writes only its own sinogram rows. The
+ * image is read once and no memory is allocated per angle.
+ * <p>
+ * When the geometry {@link ProjectionGeometry#isSymmetric() is symmetric}
+ * and the image is square, the upper half of the image is splatted onto the
+ * first half of the projections only. Every pixel carries three more
+ * values along, of the pixels it is mirrored or rotated by 90 degrees to,
+ * so a single detector coordinate serves four pixels, and the four rows
+ * splatted at once are unfolded into the projection, its mirror, the
+ * projection 90 degrees further and its mirror.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.ProjectorFactory
+ */
+class PixelDrivenProjector implements Projector {
+
+  protected final ProjectionGeometry geometry;
+
+  protected final Interpolation interpolation;
+
+  private final int partitions;
+
+  private final ExecutorService executor;
+
+  /**
+   * Creates a projector. Outside this package use
+   * {@link pl.jasiowka.jcte.projection.ProjectorFactory} static methods for
+   * creating projectors.
+   * 
+   * @param geometry Geometry of sinograms
+   * @param interpolation Interpolation of detector values
+   * @param partitions Number of angle ranges
+   * @param executor Executor which runs angle ranges
+   * @throws IllegalArgumentException If any of arguments is null or
+   *         <b>partitions</b> is < 1
+   */
+  PixelDrivenProjector(ProjectionGeometry geometry, Interpolation interpolation, int partitions, ExecutorService executor) throws IllegalArgumentException {
+    if (geometry == null || interpolation == null || executor == null) throw new IllegalArgumentException();
+    if (partitions < 1) throw new IllegalArgumentException();
+    this.geometry = geometry;
+    this.interpolation = interpolation;
+    this.partitions = partitions;
+    this.executor = executor;
+  }
+
+  @Override
+  public ProjectionGeometry getGeometry() {
+    return geometry;
+  }
+
+  @Override
+  public Interpolation getInterpolation() {
+    return interpolation;
+  }
+
+  @Override
+  public CtMatrix project(CtMatrix image) throws IllegalArgumentException {
+    CtMatrix out = CtMatrixFactory.createCtMatrix(geometry.getDetectors(), geometry.getProjections());
+    project(image, out);
+    return out;
+  }
+
+  @Override
+  public void project(CtMatrix image, CtMatrix sinogram) throws IllegalArgumentException {
+    if (image == null || sinogram == null) throw new IllegalArgumentException();
+    if (image.getWidth() != geometry.getDetectors()) throw new IllegalArgumentException();
+    if (sinogram.getWidth() != geometry.getDetectors() || sinogram.getHeight() != geometry.getProjections())
+      throw new IllegalArgumentException();
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final boolean symmetric = geometry.isSymmetric() && height == width;
+    final double[] pixels = symmetric ? fold(image) : new double[width * height];
+    if (!symmetric)
+      for (int y = 0; y < height; y++)
+        for (int x = 0; x < width; x++)
+          pixels[y * width + x] = image.get(x, y);
+    final double[][] rows = new double[geometry.getProjections()][geometry.getDetectors()];
+    int projections = symmetric ? geometry.getProjections() / 2 : geometry.getProjections();
+    int count = Math.min(partitions, projections);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(count);
+    for (int p = 0; p < count; p++) {
+      final int first = ParallelBackprojector.split(projections, count, p);
+      final int last = ParallelBackprojector.split(projections, count, p + 1);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          if (symmetric)
+            splatSymmetric(pixels, width, first, last, rows);
+          else
+            splat(pixels, width, height, first, last, rows);
+          return null;
+        }
+      });
+    }
+    Tasks.invokeAll(executor, tasks);
+    for (int a = 0; a < rows.length; a++)
+      for (int x = 0; x < rows[a].length; x++)
+        sinogram.update(x, a, sinogram.get(x, a) + rows[a][x]);
+  }
+
+  /**
+   * Splats an image onto a range of projections.
+   * 
+   * @param pixels Row-major image buffer
+   * @param width Image width, equal to the number of detectors
+   * @param height Image height
+   * @param firstAngle First projection to compute
+   * @param lastAngle Projection following the last one to compute
+   * @param sinogram Sinogram rows to add the projections to
+   */
+  void splat(double[] pixels, int width, int height, int firstAngle, int lastAngle, double[][] sinogram) {
+    double centerX = geometry.getCenter() - 0.5;
+    double centerY = height / 2 - 0.5;
+    boolean linear = interpolation == Interpolation.LINEAR;
+    for (int a = firstAngle; a < lastAngle; a++) {
+      double[] row = sinogram[a];
+      double cos = geometry.getCos(a);
+      double sin = geometry.getSin(a);
+      for (int y = 0; y < height; y++) {
+        double u = centerX - centerX * cos - (y - centerY) * sin;
+        if (linear)
+          splatLinear(pixels, y * width, width, u, cos, 1, row);
+        else
+          splatNearest(pixels, y * width, width, u, cos, 1, row);
+      }
+    }
+  }
+
+  /**
+   * Folds a square image of a symmetric geometry into its upper half.
+   * 
+   * @param image Square image
+   * @return Buffer of the upper half, in which pixel (x, y) holds four
+   *         values at <code>4 * (y * N + x) + j</code>: for <i>j</i> = 0..3
+   *         they are pixels (x, y), (N-1-x, N-1-y), (N-1-y, x) and
+   *         (y, N-1-x) of the image
+   */
+  static double[] fold(CtMatrix image) {
+    int size = image.getWidth();
+    int last = size - 1;
+    double[] out = new double[size / 2 * size * 4];
+    for (int y = 0; y < size / 2; y++) {
+      for (int x = 0; x < size; x++) {
+        int i = 4 * (y * size + x);
+        out[i] = image.get(x, y);
+        out[i + 1] = image.get(last - x, last - y);
+        out[i + 2] = image.get(last - y, x);
+        out[i + 3] = image.get(y, last - x);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Splats a folded image onto a range of projections of the first half of
+   * a symmetric geometry, and onto their mirrors and pairs.
+   * 
+   * @param folded Folded image, see {@link #fold(CtMatrix)}
+   * @param size Image size, equal to the number of detectors
+   * @param firstAngle First projection to compute, of the first half
+   * @param lastAngle Projection following the last one to compute
+   * @param sinogram Sinogram rows to add the projections to
+   */
+  void splatSymmetric(double[] folded, int size, int firstAngle, int lastAngle, double[][] sinogram) {
+    double center = geometry.getCenter() - 0.5;
+    int half = geometry.getProjections() / 2;
+    int last = size - 1;
+    boolean linear = interpolation == Interpolation.LINEAR;
+    double[] quads = ScratchBuffers.acquire(4 * size);
+    try {
+      for (int a = firstAngle; a < lastAngle; a++) {
+        double cos = geometry.getCos(a);
+        double sin = geometry.getSin(a);
+        Arrays.fill(quads, 0);
+        for (int y = 0; y < size / 2; y++) {
+          double u = center - center * cos - (y - center) * sin;
+          if (linear)
+            splatLinear(folded, 4 * y * size, size, u, cos, 4, quads);
+          else
+            splatNearest(folded, 4 * y * size, size, u, cos, 4, quads);
+        }
+        double[] row = sinogram[a];
+        double[] pair = sinogram[a + half];
+        for (int d = 0; d < size; d++) {
+          row[d] += quads[4 * d];
+          row[last - d] += quads[4 * d + 1];
+          pair[last - d] += quads[4 * d + 2];
+          pair[d] += quads[4 * d + 3];
+        }
+      }
+    } finally {
+      ScratchBuffers.release(quads);
+    }
+  }
+
+  /**
+   * Splats a row of pixels, each of a number of interleaved values, onto
+   * the nearest detectors of a row of the same interleaving.
+   */
+  private static void splatNearest(double[] pixels, int offset, int width, double u, double du, int channels, double[] row) {
+    double limit = row.length / channels - 0.5;
+    for (int x = 0; x < width; x++, u += du) {
+      if (u > -0.5 && u < limit) {
+        int dst = (int) (u + 0.5) * channels;
+        for (int j = 0; j < channels; j++) {
+          double val = pixels[offset + x * channels + j];
+          if (val != 0) row[dst + j] += val;
+        }
+      }
+    }
+  }
+
+  /**
+   * Splats a row of pixels, each of a number of interleaved values, onto
+   * the two neighbouring detectors of a row of the same interleaving.
+   */
+  private static void splatLinear(double[] pixels, int offset, int width, double u, double du, int channels, double[] row) {
+    int size = row.length / channels;
+    int last = size - 1;
+    for (int x = 0; x < width; x++, u += du) {
+      if (u > -1 && u < size) {
+        int i = (int) (u + 1) - 1;
+        double f = u - i;
+        for (int j = 0; j < channels; j++) {
+          double val = pixels[offset + x * channels + j];
+          if (val == 0) continue;
+          if (i >= 0) row[i * channels + j] += val * (1 - f);
+          if (i < last) row[(i + 1) * channels + j] += val * f;
+        }
+      }
+    }
+  }
+
+}
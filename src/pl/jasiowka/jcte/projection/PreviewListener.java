@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+/**
+ * PreviewListener receives the successive images of a
+ * {@link ProgressiveReconstructor}, from the coarsest preview to the final
+ * image. It is called on the reconstructing thread.
+ * 
+ * @author Piotr Jasiowka
+ */
+public interface PreviewListener {
+
+  /**
+   * @param image Image of the full size. It must not be changed, as the
+   *        final image is also returned by the reconstructor
+   * @param factor Binning factor the image was reconstructed with, 1 for
+   *        the final image
+   */
+  void previewReady(CtMatrix image, int factor);
+
+}
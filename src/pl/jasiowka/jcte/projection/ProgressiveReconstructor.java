@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+/**
+ * ProgressiveReconstructor reconstructs a slice in several passes of
+ * increasing resolution, so a viewer can show a preview long before the
+ * final image is ready. A pass with a binning factor <i>f</i> averages every
+ * <i>f</i> neighbouring detector cells, takes every <i>f</i>-th projection
+ * and backprojects into an image <i>f</i> times smaller, which takes about
+ * <i>f</i><sup>3</sup> times less work than the full backprojection. The
+ * coarse image is scaled up to the full size and handed to a
+ * {@link PreviewListener}. The last pass is the full backprojection.
+ * <p>
+ * Previews are approximations: they are blurred by the binning and, for
+ * sizes which aren't multiples of 2<i>f</i>, shifted by a fraction of a
+ * coarse pixel.
+ * 
+ * @author Piotr Jasiowka
+ */
+public final class ProgressiveReconstructor {
+
+  private final Backprojector backprojector;
+
+  private final int levels;
+
+  /**
+   * @param backprojector Backprojector of the final pass. Previews are
+   *        backprojected with the same interpolation
+   * @param levels Number of passes. With <b>levels</b> = 3 previews are
+   *        made with factors 4 and 2 before the final image; 1 means no
+   *        previews
+   * @throws IllegalArgumentException If <b>backprojector</b> is null or
+   *         <b>levels</b> is out of [1..8]
+   */
+  public ProgressiveReconstructor(Backprojector backprojector, int levels) throws IllegalArgumentException {
+    if (backprojector == null || levels < 1 || levels > 8) throw new IllegalArgumentException();
+    this.backprojector = backprojector;
+    this.levels = levels;
+  }
+
+  /** @return Backprojector of the final pass */
+  public Backprojector getBackprojector() {
+    return backprojector;
+  }
+
+  /** @return Number of passes */
+  public int getLevels() {
+    return levels;
+  }
+
+  /**
+   * @param sinogram Sinogram matrix
+   * @param listener Listener to hand previews and the final image to, or
+   *        null
+   * @return Final image, the same as the one of the backprojector
+   * @throws IllegalArgumentException If <b>sinogram</b> is null or its size
+   *         doesn't match the geometry
+   */
+  public CtMatrix reconstruct(CtMatrix sinogram, PreviewListener listener) throws IllegalArgumentException {
+    ProjectionGeometry geometry = backprojector.getGeometry();
+    if (sinogram == null) throw new IllegalArgumentException();
+    if (sinogram.getWidth() != geometry.getDetectors() || sinogram.getHeight() != geometry.getProjections())
+      throw new IllegalArgumentException();
+    if (listener != null) {
+      for (int level = levels - 1; level > 0; level--) {
+        int factor = 1 << level;
+        if (2 * factor > geometry.getDetectors() || factor > geometry.getProjections()) continue;
+        listener.previewReady(preview(sinogram, factor), factor);
+      }
+    }
+    CtMatrix out = backprojector.backproject(sinogram);
+    if (listener != null) listener.previewReady(out, 1);
+    return out;
+  }
+
+  /**
+   * @param sinogram Sinogram matrix
+   * @param factor Binning factor
+   * @return Preview reconstructed with a given binning factor, scaled up to
+   *         the full size
+   */
+  CtMatrix preview(CtMatrix sinogram, int factor) {
+    ProjectionGeometry geometry = backprojector.getGeometry();
+    int size = geometry.getDetectors();
+    int coarse = (size + factor - 1) / factor;
+    int projections = (geometry.getProjections() + factor - 1) / factor;
+    double[] angles = new double[projections];
+    CtMatrix binned = CtMatrixFactory.createCtMatrix(coarse, projections);
+    for (int p = 0; p < projections; p++) {
+      int a = p * factor;
+      angles[p] = geometry.getAngle(a);
+      for (int x = 0; x < coarse; x++) {
+        int last = Math.min(size, (x + 1) * factor);
+        double sum = 0;
+        for (int i = x * factor; i < last; i++)
+          sum += sinogram.get(i, a);
+        binned.update(x, p, sum / (last - x * factor));
+      }
+    }
+    ProjectionGeometry small = new ProjectionGeometry(coarse, angles);
+    CtMatrix image = new PixelDrivenBackprojector(small, backprojector.getInterpolation()).backproject(binned);
+    // fewer projections were summed up
+    double scale = (double) geometry.getProjections() / projections;
+    CtMatrix out = CtMatrixFactory.createCtMatrix(size, size);
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++)
+        out.update(x, y, image.get(x / factor, y / factor) * scale);
+    return out;
+  }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+/**
+ * ProjectionGeometry describes a parallel-beam acquisition: the number of
+ * detector cells in a single projection and the angles at which projections
+ * were taken. Sine and cosine of every angle are computed once, so the
+ * projection and backprojection kernels never call trigonometric functions
+ * in their loops.
+ * <p>
+ * A pixel (x, y) of a <b>detectors</b> x <b>detectors</b> image is seen by a
+ * projection taken at angle <i>t</i> at the detector coordinate
+ * <code>u = (x - c + 0.5) cos(t) - (y - c + 0.5) sin(t) + c - 0.5</code>,
+ * where <code>c = detectors / 2</code>. It is the same convention the
+ * {@link pl.jasiowka.jcte.Jcte#rotate(pl.jasiowka.jcte.struct.CtMatrix, double)}
+ * method uses.
+ * <p>
+ * For an even number of detectors <code>c - 0.5</code> lies halfway between
+ * two cells, so pixel (x, y) at angle <i>t</i> and pixel
+ * (N-1-x, N-1-y) at the same angle are seen at mirrored detector
+ * coordinates <code>u</code> and <code>N-1-u</code>, and so are pixels
+ * (N-1-y, x) and (y, N-1-x) at angle <i>t</i> + 90. When every projection of
+ * the first half of the set has its pair 90 degrees further in the second
+ * half (i.e. an even number of projections evenly spread over 180 degrees)
+ * a single detector coordinate serves four pixel and angle combinations;
+ * see {@link #isSymmetric()}. ProjectionGeometry objects are immutable.
+ * 
+ * @author Piotr Jasiowka
+ */
+public final class ProjectionGeometry {
+
+  private final int detectors;
+
+  private final double[] angles;
+
+  private final double[] sin;
+
+  private final double[] cos;
+
+  private final boolean symmetric;
+
+  /**
+   * Creates a geometry with projections evenly spread over a given range,
+   * starting at angle 0.
+   * 
+   * @param detectors Number of detector cells (the sinogram width)
+   * @param projections Number of projections (the sinogram height)
+   * @param range Range of projections in degrees
+   * @throws IllegalArgumentException If <b>detectors</b> or
+   *         <b>projections</b> is < 1 or <b>range</b> is out of [0..360]
+   */
+  public ProjectionGeometry(int detectors, int projections, double range) throws IllegalArgumentException {
+    this(detectors, evenlySpaced(projections, range));
+  }
+
+  /**
+   * Creates a geometry with arbitrary projection angles.
+   * 
+   * @param detectors Number of detector cells (the sinogram width)
+   * @param angles Projection angles in degrees, one for every sinogram row
+   * @throws IllegalArgumentException If <b>detectors</b> is < 1 or
+   *         <b>angles</b> is null or empty
+   */
+  public ProjectionGeometry(int detectors, double[] angles) throws IllegalArgumentException {
+    if (detectors < 1) throw new IllegalArgumentException();
+    if (angles == null || angles.length == 0) throw new IllegalArgumentException();
+    this.detectors = detectors;
+    this.angles = angles.clone();
+    sin = new double[angles.length];
+    cos = new double[angles.length];
+    for (int i = 0; i < angles.length; i++) {
+      double alpha = angles[i] * Math.PI / 180;
+      sin[i] = Math.sin(alpha);
+      cos[i] = Math.cos(alpha);
+    }
+    symmetric = symmetric(detectors, this.angles);
+  }
+
+  private static boolean symmetric(int detectors, double[] angles) {
+    if (detectors % 2 != 0 || angles.length % 2 != 0) return false;
+    int half = angles.length / 2;
+    for (int i = 0; i < half; i++)
+      if (Math.abs(angles[i + half] - angles[i] - 90) > 1e-9) return false;
+    return true;
+  }
+
+  private static double[] evenlySpaced(int projections, double range) {
+    if (projections < 1) throw new IllegalArgumentException();
+    if (range < 0 || range > 360) throw new IllegalArgumentException();
+    double[] out = new double[projections];
+    double step = range / projections;
+    for (int i = 0; i < projections; i++)
+      out[i] = i * step;
+    return out;
+  }
+
+  /** @return Number of detector cells in a single projection */
+  public int getDetectors() {
+    return detectors;
+  }
+
+  /** @return Number of projections */
+  public int getProjections() {
+    return angles.length;
+  }
+
+  /**
+   * @param i Projection number
+   * @return Angle of the <b>i</b>-th projection in degrees
+   * @throws IndexOutOfBoundsException If <b>i</b> is out of bounds
+   */
+  public double getAngle(int i) throws IndexOutOfBoundsException {
+    return angles[i];
+  }
+
+  /**
+   * @param i Projection number
+   * @return Sine of the <b>i</b>-th projection angle
+   * @throws IndexOutOfBoundsException If <b>i</b> is out of bounds
+   */
+  public double getSin(int i) throws IndexOutOfBoundsException {
+    return sin[i];
+  }
+
+  /**
+   * @param i Projection number
+   * @return Cosine of the <b>i</b>-th projection angle
+   * @throws IndexOutOfBoundsException If <b>i</b> is out of bounds
+   */
+  public double getCos(int i) throws IndexOutOfBoundsException {
+    return cos[i];
+  }
+
+  /**
+   * @return True if the number of detectors is even and the projections of
+   *         the second half of the set are taken 90 degrees after the
+   *         corresponding ones of the first half, so the kernels can compute
+   *         a detector coordinate once for four pixel and angle combinations
+   */
+  public boolean isSymmetric() {
+    return symmetric;
+  }
+
+  /**
+   * @return Center of the detector (and of the reconstructed image) in
+   *         samples, i.e. <code>detectors / 2</code>
+   */
+  public int getCenter() {
+    return detectors / 2;
+  }
+
+}
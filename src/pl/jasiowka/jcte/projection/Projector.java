@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+/**
+ * Projector computes projections of an image, i.e. its line integrals along
+ * parallel rays, for all angles of a {@link ProjectionGeometry}. It is the
+ * Radon Transformation which turns a phantom into a sinogram, so it is the
+ * counterpart of a {@link Backprojector}. The image width has to equal the
+ * number of detectors of the geometry, its height may be any.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.ProjectorFactory
+ */
+public interface Projector {
+
+  /** @return Geometry of sinograms this projector makes */
+  ProjectionGeometry getGeometry();
+
+  /** @return Interpolation used for distributing pixels over detectors */
+  Interpolation getInterpolation();
+
+  /**
+   * @param image Image (phantom) matrix
+   * @return New sinogram with one row per projection and one column per
+   *         detector
+   * @throws IllegalArgumentException If <b>image</b> is null or its width
+   *         doesn't match the geometry
+   */
+  CtMatrix project(CtMatrix image) throws IllegalArgumentException;
+
+  /**
+   * Projects an image and adds the result to a given sinogram.
+   * 
+   * @param image Image (phantom) matrix
+   * @param sinogram Sinogram to add the result to
+   * @throws IllegalArgumentException If <b>image</b> or <b>sinogram</b> is
+   *         null or any of them doesn't match the geometry
+   */
+  void project(CtMatrix image, CtMatrix sinogram) throws IllegalArgumentException;
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Factory for Projector objects.
+ * 
+ * @author Piotr Jasiowka
+ */
+public class ProjectorFactory {
+
+  /**
+   * @param geometry Geometry of sinograms to make
+   * @param interpolation Interpolation used for distributing pixels over
+   *        detectors
+   * @return New instance of a pixel-driven projector running on a shared
+   *         pool with one range of angles per available processor
+   * @throws IllegalArgumentException If any of arguments is null
+   */
+  public static Projector createPixelDrivenProjector(ProjectionGeometry geometry, Interpolation interpolation) throws IllegalArgumentException {
+    return new PixelDrivenProjector(geometry, interpolation, Tasks.getDefaultPartitions(), Tasks.getDefaultPool());
+  }
+
+  /**
+   * @param geometry Geometry of sinograms to make
+   * @param interpolation Interpolation used for distributing pixels over
+   *        detectors
+   * @param partitions Number of ranges of angles computed in parallel
+   * @param executor Executor which runs ranges of angles
+   * @return New instance of a pixel-driven projector
+   * @throws IllegalArgumentException If any of arguments is null or
+   *         <b>partitions</b> is < 1
+   */
+  public static Projector createPixelDrivenProjector(ProjectionGeometry geometry, Interpolation interpolation, int partitions, ExecutorService executor) throws IllegalArgumentException {
+    return new PixelDrivenProjector(geometry, interpolation, partitions, executor);
+  }
+
+}
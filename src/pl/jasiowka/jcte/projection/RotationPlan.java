@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import pl.jasiowka.jcte.simd.KernelsFactory;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+import pl.jasiowka.jcte.struct.ScratchBuffers;
+
+/**
+ * RotationPlan rotates images of a given size by a given angle around their
+ * center. Everything which depends only on the geometry - source indices of
+ * all output pixels and, for the linear interpolation, their weights - is
+ * computed once, when the plan is made, so rotating an image is a single
+ * gather pass over it. Source pixels falling outside the image are taken as
+ * zeros.
+ * <p>
+ * The nearest mode gives exactly the same results as the original
+ * {@link pl.jasiowka.jcte.Jcte#rotate(CtMatrix, double)}. The linear mode
+ * interpolates bilinearly between four neighbouring pixels of the same
+ * continuous source coordinate.
+ * <p>
+ * Use {@link #forGeometry(int, int, double, Interpolation)} to get a plan:
+ * recently used plans are kept in a cache, so the same rotation applied to
+ * every slice of a volume is planned only once. A linear plan takes about 21
+ * bytes per pixel and a nearest one 4, so the cache is bounded by the number
+ * of bytes its plans occupy, given by the <code>jcte.rotation.cache.bytes</code>
+ * system property; a plan larger than the whole budget isn't cached at all.
+ * RotationPlan objects are immutable and can be shared between threads.
+ * 
+ * @author Piotr Jasiowka
+ */
+public final class RotationPlan {
+
+  /** Name of the system property with the budget of the plan cache */
+  public static final String PROPERTY = "jcte.rotation.cache.bytes";
+
+  /** Budget of the plan cache if the property isn't set, 256 MiB */
+  public static final long DEFAULT_BUDGET = 256L << 20;
+
+  private static final Map<Key, RotationPlan> plans = new LinkedHashMap<Key, RotationPlan>(16, 0.75f, true);
+
+  /** Budget of the cache, -1 until the property is read */
+  private static long budget = -1;
+
+  private static long bytes;
+
+  private final int width, height;
+
+  private final double angle;
+
+  private final Interpolation interpolation;
+
+  /**
+   * Source index of every output pixel. For the nearest mode -1 stands for
+   * a pixel outside the image. For the linear mode it is the index of the
+   * upper left neighbour, which may lie outside the image
+   */
+  private final int[] index;
+
+  /** Bit set of neighbours lying inside the image (linear mode only) */
+  private final byte[] corners;
+
+  /** Horizontal and vertical interpolation weights (linear mode only) */
+  private final double[] fx, fy;
+
+  private RotationPlan(int width, int height, double angle, Interpolation interpolation) {
+    this.width = width;
+    this.height = height;
+    this.angle = angle;
+    this.interpolation = interpolation;
+    int size = width * height;
+    index = new int[size];
+    int inXCenter = width / 2;
+    int inYCenter = height / 2;
+    double alpha = (-angle) * Math.PI / 180;
+    double alphaSin = Math.sin(alpha);
+    double alphaCos = Math.cos(alpha);
+    if (interpolation == Interpolation.NEAREST) {
+      corners = null;
+      fx = fy = null;
+      for (int y = 0; y < height; y++) {
+        int elY = 2 * (y - inYCenter) + 1;
+        for (int x = 0; x < width; x++) {
+          int elX = 2 * (x - inXCenter) + 1;
+          int rotX = (int) Math.round(elX * alphaCos - elY * alphaSin);
+          int rotY = (int) Math.round(elX * alphaSin + elY * alphaCos);
+          int orgX = (rotX - 1) / 2 + inXCenter;
+          int orgY = (rotY - 1) / 2 + inYCenter;
+          if (orgX >= 0 && orgX < width && orgY >= 0 && orgY < height)
+            index[y * width + x] = orgY * width + orgX;
+          else
+            index[y * width + x] = -1;
+        }
+      }
+    } else {
+      corners = new byte[size];
+      fx = new double[size];
+      fy = new double[size];
+      for (int y = 0; y < height; y++) {
+        double yy = y - inYCenter + 0.5;
+        for (int x = 0; x < width; x++) {
+          double xx = x - inXCenter + 0.5;
+          double sx = xx * alphaCos - yy * alphaSin + inXCenter - 0.5;
+          double sy = xx * alphaSin + yy * alphaCos + inYCenter - 0.5;
+          int i = y * width + x;
+          if (sx <= -1 || sx >= width || sy <= -1 || sy >= height) continue;
+          int x0 = (int) (sx + 1) - 1;
+          int y0 = (int) (sy + 1) - 1;
+          int mask = 0;
+          if (x0 >= 0 && y0 >= 0) mask |= 1;
+          if (x0 + 1 < width && y0 >= 0) mask |= 2;
+          if (x0 >= 0 && y0 + 1 < height) mask |= 4;
+          if (x0 + 1 < width && y0 + 1 < height) mask |= 8;
+          index[i] = y0 * width + x0;
+          corners[i] = (byte) mask;
+          fx[i] = sx - x0;
+          fy[i] = sy - y0;
+        }
+      }
+    }
+  }
+
+  /**
+   * @param width Image width
+   * @param height Image height
+   * @param angle Rotation angle in degrees
+   * @param interpolation Interpolation of source pixels
+   * @return Plan for a given geometry, taken from the cache or made and
+   *         cached if there is none
+   * @throws IllegalArgumentException If <b>width</b> or <b>height</b> is < 1
+   *         or <b>interpolation</b> is null
+   */
+  public static RotationPlan forGeometry(int width, int height, double angle, Interpolation interpolation) throws IllegalArgumentException {
+    if (width < 1 || height < 1 || interpolation == null) throw new IllegalArgumentException();
+    Key key = new Key(width, height, angle, interpolation);
+    synchronized (plans) {
+      RotationPlan plan = plans.get(key);
+      if (plan != null) return plan;
+    }
+    RotationPlan plan = new RotationPlan(width, height, angle, interpolation);
+    synchronized (plans) {
+      RotationPlan old = plans.get(key);
+      if (old != null) return old;
+      if (plan.getBytes() <= budget()) {
+        plans.put(key, plan);
+        bytes += plan.getBytes();
+        trim();
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * @return Budget of the cache, read from the property on the first call.
+   *         Must be called with the cache locked
+   * @throws IllegalStateException If the property is not a non-negative
+   *         number
+   */
+  private static long budget() throws IllegalStateException {
+    if (budget < 0) {
+      long value = Long.getLong(PROPERTY, DEFAULT_BUDGET);
+      if (value < 0) throw new IllegalStateException("Invalid " + PROPERTY + " value: " + value);
+      budget = value;
+    }
+    return budget;
+  }
+
+  /** Drops the least recently used plans until the cache fits the budget */
+  private static void trim() {
+    Iterator<RotationPlan> it = plans.values().iterator();
+    while (bytes > budget && it.hasNext()) {
+      bytes -= it.next().getBytes();
+      it.remove();
+    }
+  }
+
+  /**
+   * @return Maximum number of bytes of cached plans
+   * @throws IllegalStateException If the property is not a non-negative
+   *         number
+   */
+  public static long getCacheBudget() throws IllegalStateException {
+    synchronized (plans) {
+      return budget();
+    }
+  }
+
+  /**
+   * Sets the maximum number of bytes of cached plans, dropping the least
+   * recently used plans if the cache doesn't fit it.
+   * 
+   * @param budget Maximum number of bytes, 0 disables caching
+   * @throws IllegalArgumentException If <b>budget</b> is < 0
+   */
+  public static void setCacheBudget(long budget) throws IllegalArgumentException {
+    if (budget < 0) throw new IllegalArgumentException();
+    synchronized (plans) {
+      RotationPlan.budget = budget;
+      trim();
+    }
+  }
+
+  /** @return Number of bytes of cached plans */
+  public static long getCacheBytes() {
+    synchronized (plans) {
+      return bytes;
+    }
+  }
+
+  /** @return Number of bytes the tables of this plan occupy */
+  public long getBytes() {
+    long size = index.length;
+    return corners == null ? 4 * size : (4 + 1 + 8 + 8) * size;
+  }
+
+  /** @return Width of images this plan rotates */
+  public int getWidth() {
+    return width;
+  }
+
+  /** @return Height of images this plan rotates */
+  public int getHeight() {
+    return height;
+  }
+
+  /** @return Rotation angle in degrees */
+  public double getAngle() {
+    return angle;
+  }
+
+  /** @return Interpolation of source pixels */
+  public Interpolation getInterpolation() {
+    return interpolation;
+  }
+
+  /**
+   * @param matrix Matrix to rotate
+   * @return New, rotated matrix
+   * @throws IllegalArgumentException If <b>matrix</b> is null or its size
+   *         doesn't match the plan
+   */
+  public CtMatrix apply(CtMatrix matrix) throws IllegalArgumentException {
+    checkSize(matrix);
+    double[] in = read(matrix);
+    double[] out = new double[width * height];
+    try {
+      apply(in, out);
+    } finally {
+      ScratchBuffers.release(in);
+    }
+    return CtMatrixFactory.createFlatCtMatrix(width, height, out);
+  }
+
+  /**
+   * Rotates a matrix into another one, which saves allocating the result.
+   * Working arrays are taken from {@link ScratchBuffers}, so rotating
+   * matrices of the plan size over and over allocates nothing.
+   * 
+   * @param matrix Matrix to rotate
+   * @param dst Matrix to put the rotated image to. It can be <b>matrix</b>
+   * @throws IllegalArgumentException If any of matrices is null or its size
+   *         doesn't match the plan
+   */
+  public void apply(CtMatrix matrix, CtMatrix dst) throws IllegalArgumentException {
+    checkSize(matrix);
+    checkSize(dst);
+    double[] in = read(matrix);
+    double[] out = ScratchBuffers.acquire(width * height);
+    try {
+      apply(in, out);
+      for (int y = 0; y < height; y++)
+        for (int x = 0; x < width; x++)
+          dst.update(x, y, out[y * width + x]);
+    } finally {
+      ScratchBuffers.release(in);
+      ScratchBuffers.release(out);
+    }
+  }
+
+  private void checkSize(CtMatrix matrix) throws IllegalArgumentException {
+    if (matrix == null) throw new IllegalArgumentException();
+    if (matrix.getWidth() != width || matrix.getHeight() != height) throw new IllegalArgumentException();
+  }
+
+  /**
+   * @param matrix Matrix of the plan size
+   * @return Scratch buffer with the matrix content, row by row
+   */
+  private double[] read(CtMatrix matrix) {
+    double[] out = ScratchBuffers.acquire(width * height);
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
+        out[y * width + x] = matrix.get(x, y);
+    return out;
+  }
+
+  /**
+   * Rotates an image held in a row-major array.
+   * 
+   * @param src Source image
+   * @param dst Array to put the rotated image to, it can't be <b>src</b>
+   * @throws IllegalArgumentException If any of arrays is null, their sizes
+   *         don't match the plan or they are the same array
+   */
+  public void apply(double[] src, double[] dst) throws IllegalArgumentException {
+    if (src == null || dst == null || src == dst) throw new IllegalArgumentException();
+    if (src.length != index.length || dst.length != index.length) throw new IllegalArgumentException();
+    if (interpolation == Interpolation.NEAREST) {
+      KernelsFactory.getKernels().gather(src, index, 0, dst, 0, index.length);
+      return;
+    }
+    for (int i = 0; i < index.length; i++)
+      dst[i] = sample(src, i);
+  }
+
+  /**
+   * @param i Index of an output pixel
+   * @return Index of the source pixel a given output pixel is taken from by
+   *         the nearest mode, or -1 if it lies outside the image
+   */
+  int source(int i) {
+    return index[i];
+  }
+
+  /**
+   * @param src Row-major source image of the plan size
+   * @param i Index of an output pixel
+   * @return Value of a given pixel of the rotated image
+   */
+  double sample(double[] src, int i) {
+    if (interpolation == Interpolation.NEAREST) return index[i] < 0 ? 0 : src[index[i]];
+    int mask = corners[i];
+    if (mask == 0) return 0;
+    int j = index[i];
+    double a = (mask & 1) != 0 ? src[j] : 0;
+    double b = (mask & 2) != 0 ? src[j + 1] : 0;
+    double c = (mask & 4) != 0 ? src[j + width] : 0;
+    double d = (mask & 8) != 0 ? src[j + width + 1] : 0;
+    double wx = fx[i];
+    double top = a + (b - a) * wx;
+    double bottom = c + (d - c) * wx;
+    return top + (bottom - top) * fy[i];
+  }
+
+  /**
+   * @param src Source matrix of the plan size, read only at the pixels the
+   *        output pixel is made of
+   * @param i Index of an output pixel
+   * @return Value of a given pixel of the rotated image
+   */
+  double sample(CtMatrix src, int i) {
+    if (interpolation == Interpolation.NEAREST) return index[i] < 0 ? 0 : get(src, index[i]);
+    int mask = corners[i];
+    if (mask == 0) return 0;
+    int j = index[i];
+    double a = (mask & 1) != 0 ? get(src, j) : 0;
+    double b = (mask & 2) != 0 ? get(src, j + 1) : 0;
+    double c = (mask & 4) != 0 ? get(src, j + width) : 0;
+    double d = (mask & 8) != 0 ? get(src, j + width + 1) : 0;
+    double wx = fx[i];
+    double top = a + (b - a) * wx;
+    double bottom = c + (d - c) * wx;
+    return top + (bottom - top) * fy[i];
+  }
+
+  private double get(CtMatrix src, int i) {
+    return src.get(i % width, i / width);
+  }
+
+  /** Cache key, the geometry of a plan */
+  private static final class Key {
+
+    private final int width, height;
+
+    private final long angle;
+
+    private final Interpolation interpolation;
+
+    Key(int width, int height, double angle, Interpolation interpolation) {
+      this.width = width;
+      this.height = height;
+      this.angle = Double.doubleToLongBits(angle);
+      this.interpolation = interpolation;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) return false;
+      Key other = (Key) obj;
+      return width == other.width && height == other.height && angle == other.angle && interpolation == other.interpolation;
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = width;
+      hash = 31 * hash + height;
+      hash = 31 * hash + (int) (angle ^ (angle >>> 32));
+      return 31 * hash + interpolation.hashCode();
+    }
+
+  }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * SartReconstructor implements the Simultaneous Algebraic Reconstruction
+ * Technique with ordered subsets (OS-SART). The residual of every ray is
+ * normalized by the ray length, backprojected, normalized by the sum of
+ * weights of the subset rays passing through a pixel and added to the
+ * estimate with a relaxation factor. It starts from a zero image.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.projection.IterativeReconstructorFactory
+ */
+class SartReconstructor extends OrderedSubsetsReconstructor {
+
+  private final double relaxation;
+
+  /**
+   * @param matrix System matrix
+   * @param subsets Number of subsets
+   * @param relaxation Relaxation factor
+   * @param partitions Number of partitions run in parallel
+   * @param executor Executor which runs partitions
+   * @throws IllegalArgumentException If any of objects is null,
+   *         <b>partitions</b> is < 1, <b>subsets</b> is out of
+   *         [1..projections] or <b>relaxation</b> is out of (0..2)
+   */
+  SartReconstructor(SystemMatrix matrix, int subsets, double relaxation, int partitions, ExecutorService executor) throws IllegalArgumentException {
+    super(matrix, subsets, partitions, executor);
+    if (!(relaxation > 0 && relaxation < 2)) throw new IllegalArgumentException();
+    this.relaxation = relaxation;
+  }
+
+  @Override
+  void initialize(double[] x) {
+  }
+
+  @Override
+  void correct(double[] row, double[] measured, double[] raySums, int offset) {
+    for (int d = 0; d < row.length; d++) {
+      double length = raySums[offset + d];
+      row[d] = length > 0 ? (measured[d] - row[d]) / length : 0;
+    }
+  }
+
+  @Override
+  double update(double value, double correction, double weight) {
+    return weight > 0 ? value + relaxation * correction / weight : value;
+  }
+
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * SystemMatrix is the matrix A of the linear model <code>p = Ax</code>,
+ * where x is a <b>detectors</b> x <b>detectors</b> image and p its sinogram.
+ * Weights are the ones of the linear pixel-driven projector: a pixel is
+ * split between the two detector cells closest to the point it is seen at.
+ * <p>
+ * The matrix is stored transposed, in the compressed sparse row (CSR)
+ * format, with one row per (projection, pixel) pair listing the detector
+ * cells the pixel contributes to. Rows of a projection are consecutive, so
+ * projecting a subset of angles and backprojecting into a range of pixels
+ * both run without write conflicts between threads.
+ * <p>
+ * Computing the matrix costs about as much as a few projections, but it
+ * depends only on the geometry, so it can be saved to a file and reused for
+ * every slice scanned with the same geometry, see
+ * {@link #forGeometry(ProjectionGeometry, File)}. SystemMatrix objects are
+ * immutable and can be shared between threads.
+ * 
+ * @author Piotr Jasiowka
+ */
+public final class SystemMatrix {
+
+  private static final byte[] MAGIC = { 'J', 'C', 'T', 'E', 'S', 'Y', 'S', 0 };
+
+  private static final int VERSION = 1;
+
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private final ProjectionGeometry geometry;
+
+  /** Number of image pixels, <code>detectors^2</code> */
+  final int pixels;
+
+  /**
+   * Start of every (projection, pixel) row in {@link #cols} and
+   * {@link #vals}; row <code>a * pixels + j</code> ends where the next one
+   * starts
+   */
+  final int[] rowPtr;
+
+  /** Detector cell of every entry */
+  final int[] cols;
+
+  /** Weight of every entry */
+  final float[] vals;
+
+  /** Sum of weights of every ray, indexed by <code>a * detectors + d</code> */
+  final double[] raySums;
+
+  private SystemMatrix(ProjectionGeometry geometry, int[] rowPtr, int[] cols, float[] vals) {
+    this.geometry = geometry;
+    this.pixels = geometry.getDetectors() * geometry.getDetectors();
+    this.rowPtr = rowPtr;
+    this.cols = cols;
+    this.vals = vals;
+    int detectors = geometry.getDetectors();
+    raySums = new double[geometry.getProjections() * detectors];
+    for (int a = 0; a < geometry.getProjections(); a++)
+      for (int k = rowPtr[a * pixels]; k < rowPtr[(a + 1) * pixels]; k++)
+        raySums[a * detectors + cols[k]] += vals[k];
+  }
+
+  /**
+   * Computes a system matrix, using the shared pool for computing
+   * projections in parallel.
+   * 
+   * @param geometry Projection geometry
+   * @return New system matrix
+   * @throws IllegalArgumentException If <b>geometry</b> is null or the
+   *         matrix would have more than 2^31 - 1 entries
+   */
+  public static SystemMatrix create(ProjectionGeometry geometry) throws IllegalArgumentException {
+    if (geometry == null) throw new IllegalArgumentException();
+    final int detectors = geometry.getDetectors();
+    final int projections = geometry.getProjections();
+    final int pixels = detectors * detectors;
+    if ((long) projections * pixels >= Integer.MAX_VALUE) throw new IllegalArgumentException();
+    final ProjectionGeometry g = geometry;
+    final int[] rowPtr = new int[projections * pixels + 1];
+    int parts = Math.min(Tasks.getDefaultPartitions(), projections);
+    // the first pass stores the number of entries of every row
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(parts);
+    for (int p = 0; p < parts; p++) {
+      final int first = ParallelBackprojector.split(projections, parts, p);
+      final int last = ParallelBackprojector.split(projections, parts, p + 1);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          for (int a = first; a < last; a++)
+            fill(g, a, rowPtr, null, null);
+          return null;
+        }
+      });
+    }
+    Tasks.invokeAll(Tasks.getDefaultPool(), tasks);
+    long total = 0;
+    for (int r = 1; r < rowPtr.length; r++) {
+      total += rowPtr[r];
+      if (total > Integer.MAX_VALUE) throw new IllegalArgumentException();
+      rowPtr[r] = (int) total;
+    }
+    final int[] cols = new int[(int) total];
+    final float[] vals = new float[(int) total];
+    tasks.clear();
+    for (int p = 0; p < parts; p++) {
+      final int first = ParallelBackprojector.split(projections, parts, p);
+      final int last = ParallelBackprojector.split(projections, parts, p + 1);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          for (int a = first; a < last; a++)
+            fill(g, a, rowPtr, cols, vals);
+          return null;
+        }
+      });
+    }
+    Tasks.invokeAll(Tasks.getDefaultPool(), tasks);
+    return new SystemMatrix(geometry, rowPtr, cols, vals);
+  }
+
+  /**
+   * Computes the rows of a single projection. Without <b>cols</b> only the
+   * number of entries of row <i>r</i> is stored at <code>rowPtr[r + 1]</code>,
+   * otherwise the entries are put where <b>rowPtr</b> points.
+   */
+  private static void fill(ProjectionGeometry geometry, int a, int[] rowPtr, int[] cols, float[] vals) {
+    int size = geometry.getDetectors();
+    int pixels = size * size;
+    int last = size - 1;
+    double center = geometry.getCenter() - 0.5;
+    double cos = geometry.getCos(a);
+    double sin = geometry.getSin(a);
+    for (int y = 0; y < size; y++) {
+      double u0 = center - center * cos - (y - center) * sin;
+      for (int x = 0; x < size; x++) {
+        int r = a * pixels + y * size + x;
+        double u = u0 + x * cos;
+        int k = cols == null ? 0 : rowPtr[r];
+        if (u > -1 && u < size) {
+          int i = (int) (u + 1) - 1;
+          double f = u - i;
+          if (i >= 0) {
+            if (cols != null) {
+              cols[k] = i;
+              vals[k] = (float) (1 - f);
+            }
+            k++;
+          }
+          if (i < last && f > 0) {
+            if (cols != null) {
+              cols[k] = i + 1;
+              vals[k] = (float) f;
+            }
+            k++;
+          }
+        }
+        if (cols == null) rowPtr[r + 1] = k;
+      }
+    }
+  }
+
+  /**
+   * Returns the system matrix for a geometry, reading it from a cache
+   * directory if it was computed before or computing and saving it there
+   * otherwise.
+   * 
+   * @param geometry Projection geometry
+   * @param directory Directory for cached matrices, created if needed
+   * @return System matrix for a given geometry
+   * @throws IllegalArgumentException If any of arguments is null
+   * @throws IOException If the matrix can't be read or saved
+   */
+  public static SystemMatrix forGeometry(ProjectionGeometry geometry, File directory) throws IllegalArgumentException, IOException {
+    if (geometry == null || directory == null) throw new IllegalArgumentException();
+    File file = new File(directory, getFileName(geometry));
+    if (file.isFile()) {
+      try {
+        SystemMatrix matrix = load(file);
+        if (matrix.matches(geometry)) return matrix;
+      } catch (IOException e) {
+        // a broken or foreign file, computed again below
+      }
+    }
+    SystemMatrix matrix = create(geometry);
+    if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Can't create " + directory);
+    matrix.save(file);
+    return matrix;
+  }
+
+  /**
+   * @param geometry Projection geometry
+   * @return Name of the file a matrix for a given geometry is cached in
+   */
+  static String getFileName(ProjectionGeometry geometry) {
+    double[] angles = new double[geometry.getProjections()];
+    for (int a = 0; a < angles.length; a++)
+      angles[a] = geometry.getAngle(a);
+    return String.format("sysmat-%d-%d-%08x.bin", geometry.getDetectors(), angles.length, Arrays.hashCode(angles));
+  }
+
+  private boolean matches(ProjectionGeometry other) {
+    if (other.getDetectors() != geometry.getDetectors() || other.getProjections() != geometry.getProjections())
+      return false;
+    for (int a = 0; a < geometry.getProjections(); a++)
+      if (Double.doubleToLongBits(other.getAngle(a)) != Double.doubleToLongBits(geometry.getAngle(a))) return false;
+    return true;
+  }
+
+  /**
+   * Saves the matrix to a file: a little-endian header (magic
+   * "JCTESYS\0", version, detectors, projections, number of entries),
+   * projection angles, row pointers, detector cells and weights.
+   * 
+   * @param file File to write
+   * @throws IllegalArgumentException If <b>file</b> is null
+   * @throws IOException If an error occurs during writing
+   */
+  public void save(File file) throws IllegalArgumentException, IOException {
+    if (file == null) throw new IllegalArgumentException();
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(0);
+      FileChannel channel = raf.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.put(MAGIC).putInt(VERSION).putInt(geometry.getDetectors()).putInt(geometry.getProjections()).putInt(cols.length);
+      for (int a = 0; a < geometry.getProjections(); a++) {
+        if (buffer.remaining() < 8) drain(buffer, channel);
+        buffer.putDouble(geometry.getAngle(a));
+      }
+      for (int[] array : new int[][] { rowPtr, cols })
+        for (int i = 0; i < array.length;) {
+          if (buffer.remaining() < 4) drain(buffer, channel);
+          int n = Math.min(buffer.remaining() / 4, array.length - i);
+          buffer.asIntBuffer().put(array, i, n);
+          buffer.position(buffer.position() + 4 * n);
+          i += n;
+        }
+      for (int i = 0; i < vals.length;) {
+        if (buffer.remaining() < 4) drain(buffer, channel);
+        int n = Math.min(buffer.remaining() / 4, vals.length - i);
+        buffer.asFloatBuffer().put(vals, i, n);
+        buffer.position(buffer.position() + 4 * n);
+        i += n;
+      }
+      drain(buffer, channel);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * @param file File written by {@link #save(File)}
+   * @return Matrix read from a file
+   * @throws IllegalArgumentException If <b>file</b> is null
+   * @throws IOException If an error occurs during reading or the file is not
+   *         a valid system matrix
+   */
+  public static SystemMatrix load(File file) throws IllegalArgumentException, IOException {
+    if (file == null) throw new IllegalArgumentException();
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.flip();
+      fill(buffer, channel, MAGIC.length + 16);
+      byte[] magic = new byte[MAGIC.length];
+      buffer.get(magic);
+      if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a system matrix file: " + file);
+      if (buffer.getInt() != VERSION) throw new IOException("Unsupported system matrix version: " + file);
+      int detectors = buffer.getInt();
+      int projections = buffer.getInt();
+      int entries = buffer.getInt();
+      if (detectors < 1 || projections < 1 || entries < 0) throw new IOException("Broken system matrix file: " + file);
+      long rows = (long) projections * detectors * detectors;
+      if (rows >= Integer.MAX_VALUE) throw new IOException("Broken system matrix file: " + file);
+      if (channel.size() != MAGIC.length + 16 + 8L * projections + 4 * (rows + 1) + 8L * entries)
+        throw new IOException("Broken system matrix file: " + file);
+      double[] angles = new double[projections];
+      for (int a = 0; a < projections; a++) {
+        fill(buffer, channel, 8);
+        angles[a] = buffer.getDouble();
+      }
+      int[] rowPtr = new int[(int) rows + 1];
+      int[] cols = new int[entries];
+      float[] vals = new float[entries];
+      for (int[] array : new int[][] { rowPtr, cols })
+        for (int i = 0; i < array.length;) {
+          fill(buffer, channel, 4);
+          int n = Math.min(buffer.remaining() / 4, array.length - i);
+          buffer.asIntBuffer().get(array, i, n);
+          buffer.position(buffer.position() + 4 * n);
+          i += n;
+        }
+      for (int i = 0; i < entries;) {
+        fill(buffer, channel, 4);
+        int n = Math.min(buffer.remaining() / 4, entries - i);
+        buffer.asFloatBuffer().get(vals, i, n);
+        buffer.position(buffer.position() + 4 * n);
+        i += n;
+      }
+      for (int r = 0; r < rows; r++)
+        if (rowPtr[r] > rowPtr[r + 1]) throw new IOException("Broken system matrix file: " + file);
+      if (rowPtr[0] != 0 || rowPtr[(int) rows] != entries) throw new IOException("Broken system matrix file: " + file);
+      for (int i = 0; i < entries; i++)
+        if (cols[i] < 0 || cols[i] >= detectors) throw new IOException("Broken system matrix file: " + file);
+      return new SystemMatrix(new ProjectionGeometry(detectors, angles), rowPtr, cols, vals);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+    buffer.clear();
+  }
+
+  private static void fill(ByteBuffer buffer, FileChannel channel, int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) return;
+    buffer.compact();
+    while (buffer.position() < bytes)
+      if (channel.read(buffer) < 0) throw new IOException("Unexpected end of file");
+    buffer.flip();
+  }
+
+  /** @return Geometry of the matrix */
+  public ProjectionGeometry getGeometry() {
+    return geometry;
+  }
+
+  /** @return Number of non-zero entries */
+  public int getEntries() {
+    return cols.length;
+  }
+
+}
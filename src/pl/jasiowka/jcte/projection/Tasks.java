@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.projection;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers for running the parallel kernels of this package.
+ * 
+ * @author Piotr Jasiowka
+ */
+class Tasks {
+
+  private static ExecutorService pool;
+
+  /**
+   * @return Shared pool used when no executor is given. It has as many
+   *         threads as there are available processors
+   */
+  static synchronized ExecutorService getDefaultPool() {
+    if (pool == null)
+      pool = new ForkJoinPool();
+    return pool;
+  }
+
+  /** @return Default number of partitions */
+  static int getDefaultPartitions() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Runs all tasks and waits for them to finish.
+   * 
+   * @param executor Executor to run tasks on
+   * @param tasks Tasks to run
+   * @throws IllegalStateException If any of tasks failed or the calling
+   *         thread was interrupted
+   */
+  static void invokeAll(ExecutorService executor, List<Callable<Void>> tasks) throws IllegalStateException {
+    if (tasks.size() == 1) {
+      try {
+        tasks.get(0).call();
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+      return;
+    }
+    try {
+      for (Future<Void> f : executor.invokeAll(tasks))
+        f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.simd;
+
+/**
+ * Kernels gathers the element loops the hot paths of jcte are built on:
+ * adding and scaling arrays, searching for a maximum, gathering pixels by
+ * precomputed indices and the inner loop of the pixel-driven backprojection.
+ * All implementations give bit-identical results for the same input, so
+ * switching between them only changes the speed.
+ * <p>
+ * Operations take arrays with explicit positions and lengths and don't check
+ * bounds beyond what the JVM does, so they are meant to be called by the
+ * data structures and projectors which already validated their arguments.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.simd.KernelsFactory
+ */
+public interface Kernels {
+
+  /** @return Short name of the implementation, i.e. "scalar" */
+  String getName();
+
+  /**
+   * Adds <b>length</b> elements of <b>src</b> to <b>dst</b>.
+   * 
+   * @param src Source array
+   * @param srcPos First source element
+   * @param dst Destination array
+   * @param dstPos First destination element
+   * @param length Number of elements
+   */
+  void add(double[] src, int srcPos, double[] dst, int dstPos, int length);
+
+  /**
+   * Adds <b>length</b> elements of <b>src</b> multiplied by <b>a</b> to
+   * <b>dst</b>. The product is rounded before the addition, as in the plain
+   * <code>dst[i] += a * src[i]</code> loop.
+   * 
+   * @param a Factor
+   * @param src Source array
+   * @param srcPos First source element
+   * @param dst Destination array
+   * @param dstPos First destination element
+   * @param length Number of elements
+   */
+  void axpy(double a, double[] src, int srcPos, double[] dst, int dstPos, int length);
+
+  /**
+   * @param src Source array
+   * @param srcPos First element
+   * @param length Number of elements, at least 1
+   * @return Maximum of a given range. NaN elements are skipped unless the
+   *         first one is NaN
+   */
+  double max(double[] src, int srcPos, int length);
+
+  /**
+   * Sets <code>dst[dstPos + i] = src[index[indexPos + i]]</code>, or 0 where
+   * the index is negative.
+   * 
+   * @param src Source array
+   * @param index Array of indices
+   * @param indexPos First index
+   * @param dst Destination array
+   * @param dstPos First destination element
+   * @param length Number of elements
+   */
+  void gather(double[] src, int[] index, int indexPos, double[] dst, int dstPos, int length);
+
+  /**
+   * Adds to <b>length</b> consecutive pixels the detector values they are
+   * seen at, reading the nearest detector cell. Pixel <i>x</i> is seen at the
+   * detector coordinate <code>u + x * du</code>; pixels which are not seen by
+   * any of the <code>row.length</code> cells are left unchanged.
+   * 
+   * @param row Projection
+   * @param u Detector coordinate of the first pixel
+   * @param du Detector coordinate step between pixels
+   * @param image Image buffer
+   * @param offset Position of the first pixel in the buffer
+   * @param length Number of pixels
+   */
+  void backprojectNearest(double[] row, double u, double du, double[] image, int offset, int length);
+
+  /**
+   * Works as {@link #backprojectNearest(double[], double, double, double[], int, int)},
+   * but interpolates linearly between two neighbouring detector cells.
+   * 
+   * @param row Projection
+   * @param u Detector coordinate of the first pixel
+   * @param du Detector coordinate step between pixels
+   * @param image Image buffer
+   * @param offset Position of the first pixel in the buffer
+   * @param length Number of pixels
+   */
+  void backprojectLinear(double[] row, double u, double du, double[] image, int offset, int length);
+
+  /**
+   * Works as {@link #backprojectNearest(double[], double, double, double[], int, int)}
+   * for a batch of slices which share the geometry. The detector cell every
+   * pixel is seen at is found once and used for all slices of the batch.
+   * Projections and images of the batch are interleaved: value of slice
+   * <i>k</i> at detector cell (or pixel) <i>i</i> is stored at
+   * <code>i * batch + k</code>.
+   * 
+   * @param rows Interleaved projections, <code>detectors * batch</code>
+   *        values
+   * @param batch Number of slices
+   * @param u Detector coordinate of the first pixel
+   * @param du Detector coordinate step between pixels
+   * @param images Interleaved image buffer
+   * @param offset Number of the first pixel in the buffer
+   * @param length Number of pixels
+   */
+  void backprojectNearest(double[] rows, int batch, double u, double du, double[] images, int offset, int length);
+
+  /**
+   * Works as {@link #backprojectNearest(double[], int, double, double, double[], int, int)},
+   * but interpolates linearly between two neighbouring detector cells.
+   * 
+   * @param rows Interleaved projections, <code>detectors * batch</code>
+   *        values
+   * @param batch Number of slices
+   * @param u Detector coordinate of the first pixel
+   * @param du Detector coordinate step between pixels
+   * @param images Interleaved image buffer
+   * @param offset Number of the first pixel in the buffer
+   * @param length Number of pixels
+   */
+  void backprojectLinear(double[] rows, int batch, double u, double du, double[] images, int offset, int length);
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.simd;
+
+/**
+ * Factory for Kernels objects. The implementation used by the data
+ * structures and projectors is chosen once, on the first call of
+ * {@link #getKernels()}, from the <code>jcte.simd</code> system property:
+ * <ul>
+ * <li><code>auto</code> (default) - vector kernels if the
+ * <code>jdk.incubator.vector</code> module is available, scalar otherwise,</li>
+ * <li><code>vector</code> - vector kernels, failing if they are not
+ * available,</li>
+ * <li><code>scalar</code> - scalar kernels.</li>
+ * </ul>
+ * The Vector API is an incubator module of Java 17, so it has to be enabled
+ * with <code>--add-modules jdk.incubator.vector</code> when starting the JVM.
+ * 
+ * @author Piotr Jasiowka
+ */
+public class KernelsFactory {
+
+  /** Name of the system property which chooses the kernels */
+  public static final String PROPERTY = "jcte.simd";
+
+  private static final String VECTOR_CLASS = "pl.jasiowka.jcte.simd.VectorKernels";
+
+  private static Kernels kernels;
+
+  /**
+   * @return Kernels chosen by the <code>jcte.simd</code> system property
+   * @throws IllegalStateException If the property has an unknown value or
+   *         forces vector kernels which are not available
+   */
+  public static synchronized Kernels getKernels() throws IllegalStateException {
+    if (kernels == null) {
+      String mode = System.getProperty(PROPERTY, "auto");
+      if (mode.equals("scalar"))
+        kernels = createScalarKernels();
+      else if (mode.equals("vector"))
+        kernels = createVectorKernels();
+      else if (mode.equals("auto"))
+        kernels = isVectorAvailable() ? createVectorKernels() : createScalarKernels();
+      else
+        throw new IllegalStateException("Unknown " + PROPERTY + " value: " + mode);
+    }
+    return kernels;
+  }
+
+  /** @return New instance of portable, scalar kernels */
+  public static Kernels createScalarKernels() {
+    return new ScalarKernels();
+  }
+
+  /**
+   * @return New instance of kernels built on the Vector API
+   * @throws IllegalStateException If the Vector API is not available
+   */
+  public static Kernels createVectorKernels() throws IllegalStateException {
+    try {
+      return (Kernels) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+    } catch (Exception | LinkageError e) {
+      throw new IllegalStateException("Vector API is not available, run with --add-modules jdk.incubator.vector", e);
+    }
+  }
+
+  /** @return true if kernels built on the Vector API can be used */
+  public static boolean isVectorAvailable() {
+    try {
+      createVectorKernels();
+      return true;
+    } catch (IllegalStateException e) {
+      return false;
+    }
+  }
+
+}
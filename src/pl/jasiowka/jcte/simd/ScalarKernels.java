@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.simd;
+
+/**
+ * ScalarKernels is the portable implementation of Kernels made of plain
+ * element loops. It is the reference the other implementations are tested
+ * against and the fallback used when the Vector API is not available.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.simd.KernelsFactory
+ */
+class ScalarKernels implements Kernels {
+
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  @Override
+  public void add(double[] src, int srcPos, double[] dst, int dstPos, int length) {
+    for (int i = 0; i < length; i++)
+      dst[dstPos + i] += src[srcPos + i];
+  }
+
+  @Override
+  public void axpy(double a, double[] src, int srcPos, double[] dst, int dstPos, int length) {
+    for (int i = 0; i < length; i++)
+      dst[dstPos + i] += a * src[srcPos + i];
+  }
+
+  @Override
+  public double max(double[] src, int srcPos, int length) {
+    double m = src[srcPos];
+    for (int i = 1; i < length; i++)
+      if (src[srcPos + i] > m) m = src[srcPos + i];
+    return m;
+  }
+
+  @Override
+  public void gather(double[] src, int[] index, int indexPos, double[] dst, int dstPos, int length) {
+    for (int i = 0; i < length; i++) {
+      int j = index[indexPos + i];
+      dst[dstPos + i] = j < 0 ? 0 : src[j];
+    }
+  }
+
+  @Override
+  public void backprojectNearest(double[] row, double u, double du, double[] image, int offset, int length) {
+    backprojectNearest(row, u, du, image, offset, 0, length);
+  }
+
+  @Override
+  public void backprojectLinear(double[] row, double u, double du, double[] image, int offset, int length) {
+    backprojectLinear(row, u, du, image, offset, 0, length);
+  }
+
+  @Override
+  public void backprojectNearest(double[] rows, int batch, double u, double du, double[] images, int offset, int length) {
+    double limit = rows.length / batch - 0.5;
+    double xx = 0;
+    for (int x = 0; x < length; x++, xx++) {
+      double ux = u + xx * du;
+      if (ux > -0.5 && ux < limit) {
+        int src = (int) (ux + 0.5) * batch;
+        int dst = (offset + x) * batch;
+        for (int k = 0; k < batch; k++)
+          images[dst + k] += rows[src + k];
+      }
+    }
+  }
+
+  @Override
+  public void backprojectLinear(double[] rows, int batch, double u, double du, double[] images, int offset, int length) {
+    int size = rows.length / batch;
+    int last = size - 1;
+    double xx = 0;
+    for (int x = 0; x < length; x++, xx++) {
+      double ux = u + xx * du;
+      if (ux > -1 && ux < size) {
+        int i = (int) (ux + 1) - 1;
+        double f = ux - i;
+        int dst = (offset + x) * batch;
+        if (i < 0) {
+          for (int k = 0; k < batch; k++)
+            images[dst + k] += rows[k] * f;
+        } else if (i == last) {
+          int src = i * batch;
+          for (int k = 0; k < batch; k++)
+            images[dst + k] += rows[src + k] * (1 - f);
+        } else {
+          interpolate(rows, i * batch, batch, 1 - f, f, images, dst, 0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds <code>rows[src + k] * g + rows[src + batch + k] * f</code> to
+   * <code>images[dst + k]</code> for <i>k</i> from <b>from</b> to
+   * <b>batch</b> - 1.
+   */
+  static void interpolate(double[] rows, int src, int batch, double g, double f, double[] images, int dst, int from) {
+    for (int k = from; k < batch; k++)
+      images[dst + k] += rows[src + k] * g + rows[src + batch + k] * f;
+  }
+
+  /**
+   * Backprojects pixels <b>from</b> ... <b>length</b> - 1 of a run, reading
+   * the nearest detector cell.
+   */
+  static void backprojectNearest(double[] row, double u, double du, double[] image, int offset, int from, int length) {
+    double limit = row.length - 0.5;
+    double xx = from;
+    for (int x = from; x < length; x++, xx++) {
+      double ux = u + xx * du;
+      if (ux > -0.5 && ux < limit)
+        image[offset + x] += row[(int) (ux + 0.5)];
+    }
+  }
+
+  /**
+   * Backprojects pixels <b>from</b> ... <b>length</b> - 1 of a run,
+   * interpolating linearly between detector cells.
+   */
+  static void backprojectLinear(double[] row, double u, double du, double[] image, int offset, int from, int length) {
+    int size = row.length;
+    int last = size - 1;
+    double xx = from;
+    for (int x = from; x < length; x++, xx++) {
+      double ux = u + xx * du;
+      if (ux > -1 && ux < size) {
+        int i = (int) (ux + 1) - 1;
+        double f = ux - i;
+        double val = 0;
+        if (i >= 0) val = row[i] * (1 - f);
+        if (i < last) val += row[i + 1] * f;
+        image[offset + x] += val;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.simd;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorKernels is an implementation of Kernels built on the incubating
+ * Vector API, which the JIT compiles to SSE, AVX2 or AVX-512 instructions,
+ * depending on the processor. Streaming operations handle as many elements
+ * as fit in the preferred vector shape at a time and finish the remainder
+ * with the scalar code; lane operations are the same as the ones of the
+ * scalar loops, so both implementations give the same results.
+ * <p>
+ * Gathers and the single slice backprojection loops are inherited from
+ * ScalarKernels. They need lane conversions between doubles and ints and
+ * masked gathers, which Java 17 doesn't compile into vector instructions,
+ * and vector versions of them measured several times slower than the
+ * scalar loops. Batched backprojection has no such problem: slices of a
+ * batch are interleaved, so every pixel reads and updates consecutive
+ * elements and only the detector index is computed with scalar code.
+ * <p>
+ * This class needs the <code>jdk.incubator.vector</code> module at runtime
+ * and is loaded only through
+ * {@link pl.jasiowka.jcte.simd.KernelsFactory}, which falls back to
+ * ScalarKernels when the module is missing.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.simd.KernelsFactory
+ */
+class VectorKernels extends ScalarKernels {
+
+  private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+  private static final int LANES = DOUBLES.length();
+
+  @Override
+  public String getName() {
+    return "vector (" + DOUBLES.vectorBitSize() + "-bit)";
+  }
+
+  @Override
+  public void add(double[] src, int srcPos, double[] dst, int dstPos, int length) {
+    int bound = DOUBLES.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += LANES) {
+      DoubleVector a = DoubleVector.fromArray(DOUBLES, src, srcPos + i);
+      DoubleVector b = DoubleVector.fromArray(DOUBLES, dst, dstPos + i);
+      b.add(a).intoArray(dst, dstPos + i);
+    }
+    super.add(src, srcPos + i, dst, dstPos + i, length - i);
+  }
+
+  @Override
+  public void axpy(double a, double[] src, int srcPos, double[] dst, int dstPos, int length) {
+    int bound = DOUBLES.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += LANES) {
+      DoubleVector x = DoubleVector.fromArray(DOUBLES, src, srcPos + i);
+      DoubleVector y = DoubleVector.fromArray(DOUBLES, dst, dstPos + i);
+      y.add(x.mul(a)).intoArray(dst, dstPos + i);
+    }
+    super.axpy(a, src, srcPos + i, dst, dstPos + i, length - i);
+  }
+
+  @Override
+  public double max(double[] src, int srcPos, int length) {
+    int bound = DOUBLES.loopBound(length);
+    if (bound == 0) return super.max(src, srcPos, length);
+    DoubleVector m = DoubleVector.broadcast(DOUBLES, src[srcPos]);
+    for (int i = 0; i < bound; i += LANES) {
+      DoubleVector v = DoubleVector.fromArray(DOUBLES, src, srcPos + i);
+      m = m.blend(v, v.compare(VectorOperators.GT, m));
+    }
+    double result = m.lane(0);
+    for (int lane = 1; lane < LANES; lane++)
+      if (m.lane(lane) > result) result = m.lane(lane);
+    for (int i = bound; i < length; i++)
+      if (src[srcPos + i] > result) result = src[srcPos + i];
+    return result;
+  }
+
+  @Override
+  public void backprojectNearest(double[] rows, int batch, double u, double du, double[] images, int offset, int length) {
+    if (batch < LANES) {
+      super.backprojectNearest(rows, batch, u, du, images, offset, length);
+      return;
+    }
+    int bound = DOUBLES.loopBound(batch);
+    double limit = rows.length / batch - 0.5;
+    double xx = 0;
+    for (int x = 0; x < length; x++, xx++) {
+      double ux = u + xx * du;
+      if (ux > -0.5 && ux < limit) {
+        int src = (int) (ux + 0.5) * batch;
+        int dst = (offset + x) * batch;
+        int k = 0;
+        for (; k < bound; k += LANES) {
+          DoubleVector a = DoubleVector.fromArray(DOUBLES, rows, src + k);
+          DoubleVector b = DoubleVector.fromArray(DOUBLES, images, dst + k);
+          b.add(a).intoArray(images, dst + k);
+        }
+        for (; k < batch; k++)
+          images[dst + k] += rows[src + k];
+      }
+    }
+  }
+
+  @Override
+  public void backprojectLinear(double[] rows, int batch, double u, double du, double[] images, int offset, int length) {
+    if (batch < LANES) {
+      super.backprojectLinear(rows, batch, u, du, images, offset, length);
+      return;
+    }
+    int bound = DOUBLES.loopBound(batch);
+    int size = rows.length / batch;
+    int last = size - 1;
+    double xx = 0;
+    for (int x = 0; x < length; x++, xx++) {
+      double ux = u + xx * du;
+      if (ux > -1 && ux < size) {
+        int i = (int) (ux + 1) - 1;
+        if (i < 0 || i == last) {
+          // edge cells are rare, leave them to the scalar loop
+          super.backprojectLinear(rows, batch, ux, 0, images, offset + x, 1);
+          continue;
+        }
+        double f = ux - i;
+        double g = 1 - f;
+        int src = i * batch;
+        int dst = (offset + x) * batch;
+        int k = 0;
+        for (; k < bound; k += LANES) {
+          DoubleVector a = DoubleVector.fromArray(DOUBLES, rows, src + k);
+          DoubleVector b = DoubleVector.fromArray(DOUBLES, rows, src + batch + k);
+          DoubleVector c = DoubleVector.fromArray(DOUBLES, images, dst + k);
+          c.add(a.mul(g).add(b.mul(f))).intoArray(images, dst + k);
+        }
+        interpolate(rows, src, batch, g, f, images, dst, k);
+      }
+    }
+  }
+
+}
@@ -17,9 +17,7 @@
  */
 package pl.jasiowka.jcte.struct;
 
-import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
-import java.awt.image.ColorConvertOp;
 import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
@@ -66,8 +64,9 @@ class ArrayCtMatrix implements CtMatrix {
 
   /**
    * Creates a matrix from a given image file. The image will be converted to
-   * the grayscale color space and then it will be mapped into a matrix with
-   * pixels value convertion from int range [0..255] to double range [0..1].
+   * the grayscale color space (unless it is a grayscale one already) and then
+   * it will be mapped into a matrix with pixels value convertion from int
+   * range [0..255] (or [0..65535] for 16-bit images) to double range [0..1].
    * 
    * @param filename Full path and file name and an extension
    *        (i.e. "/home/wallie/images/input.png")
@@ -75,16 +74,13 @@ class ArrayCtMatrix implements CtMatrix {
    * @throws IOException If an error occurs during reading a file
    */
   ArrayCtMatrix(String filename) throws IllegalArgumentException, IOException {
-    BufferedImage im = ImageIO.read(new File(filename));
-    ColorConvertOp op = new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_GRAY), null);
-    op.filter(im, im);
-    width = im.getWidth();
-    height = im.getHeight();
+    ImageSamples im = ImageSamples.read(filename);
+    width = im.width;
+    height = im.height;
     matrix = new CtVector[height];
     for (int y = 0; y < height; y++) {
-      double[] line = im.getData().getSamples(0, y, width, 1, 0, (double[])null);
-      for (int x = 0; x < width; x++)
-        line[x] = line[x] / 255;
+      double[] line = new double[width];
+      System.arraycopy(im.data, y * width, line, 0, width);
       matrix[y] = CtVectorFactory.createArrayCtVector(line);
     }
   }
@@ -113,12 +109,10 @@ class ArrayCtMatrix implements CtMatrix {
   public void save(String filename) throws IllegalArgumentException, IOException {
     BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
     WritableRaster raster = bi.getRaster();
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        double weight = 255 / max();
+    double weight = 255 / max();
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
         raster.setSample(x, y, 0, Math.abs(matrix[y].get(x)) * weight);
-      }
-    }
     ImageIO.write(bi, "png", new File(filename));
   }
 
@@ -148,11 +142,19 @@ class ArrayCtMatrix implements CtMatrix {
   @Override
   public CtVector sumCols() {
     CtVector line = CtVectorFactory.createArrayCtVector(width);
-    for (int y = 0; y < height; y++)
-      line.sum(matrix[y]);
+    sumCols(line);
     return line;
   }
 
+  @Override
+  public void sumCols(CtVector dst) throws IllegalArgumentException {
+    if (dst == null || dst.getSize() != width) throw new IllegalArgumentException();
+    for (int x = 0; x < width; x++)
+      dst.update(x, 0);
+    for (int y = 0; y < height; y++)
+      dst.sum(matrix[y]);
+  }
+
   @Override
   public void paste(int x, int y, CtMatrix matrix) throws IndexOutOfBoundsException, IllegalArgumentException {
     if (matrix == null) throw new IllegalArgumentException();
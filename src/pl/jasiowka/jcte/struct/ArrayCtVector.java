@@ -17,6 +17,10 @@
  */
 package pl.jasiowka.jcte.struct;
 
+import java.util.Arrays;
+
+import pl.jasiowka.jcte.simd.Kernels;
+import pl.jasiowka.jcte.simd.KernelsFactory;
 import pl.jasiowka.jcte.struct.CtVectorFactory;
 
 /**
@@ -85,29 +89,110 @@ class ArrayCtVector implements CtVector {
 
   @Override
   public CtVector conv(CtVector filter) throws IllegalArgumentException {
-    if (filter == null) throw new IllegalArgumentException();
-    CtVector result = CtVectorFactory.createArrayCtVector(size + filter.getSize() - 1);
-    for (int hostPos = size - 1; hostPos >= 0; hostPos--)
-      for (int filterPos = filter.getSize() - 1; filterPos >= 0; filterPos--) {
-        double product = get(hostPos) * filter.get(filterPos);
-        result.update(hostPos + filterPos, result.get(hostPos + filterPos) + product);
+    return conv(filter, ConvStrategy.AUTO);
+  }
+
+  @Override
+  public CtVector conv(CtVector filter, ConvStrategy strategy) throws IllegalArgumentException {
+    if (filter == null || strategy == null) throw new IllegalArgumentException();
+    CtVector out = new ArrayCtVector(size + filter.getSize() - 1);
+    conv(vector, filter, strategy, out);
+    return out;
+  }
+
+  @Override
+  public void conv(CtVector filter, CtVector dst) throws IllegalArgumentException {
+    conv(filter, ConvStrategy.AUTO, dst);
+  }
+
+  @Override
+  public void conv(CtVector filter, ConvStrategy strategy, CtVector dst) throws IllegalArgumentException {
+    conv(vector, filter, strategy, dst);
+  }
+
+  /**
+   * Convolves a sequence with a filter. This is the convolution every
+   * vector implementation is built on.
+   * 
+   * @param src Sequence to convolve
+   * @param filter Filter vector
+   * @param strategy The way the convolution is computed
+   * @param dst Vector to put the convolution to
+   * @throws IllegalArgumentException If any of arguments is null or
+   *         <b>dst</b> is in a wrong size
+   */
+  static void conv(double[] src, CtVector filter, ConvStrategy strategy, CtVector dst) throws IllegalArgumentException {
+    if (filter == null || strategy == null || dst == null) throw new IllegalArgumentException();
+    int length = src.length + filter.getSize() - 1;
+    if (dst.getSize() != length) throw new IllegalArgumentException();
+    double[] f = filter instanceof ArrayCtVector ? ((ArrayCtVector) filter).vector : copy(filter, ScratchBuffers.acquire(filter.getSize()));
+    double[] out = destination(dst);
+    if (out == src || out == f) out = ScratchBuffers.acquire(length);
+    try {
+      if (strategy.useFft(src.length, f.length)) {
+        Fft.convolve(src, f, out);
+      } else {
+        Arrays.fill(out, 0);
+        Kernels kernels = KernelsFactory.getKernels();
+        for (int hostPos = 0; hostPos < src.length; hostPos++)
+          kernels.axpy(src[hostPos], f, 0, out, hostPos, f.length);
       }
-    return result;
+      commit(out, dst);
+    } finally {
+      if (!(filter instanceof ArrayCtVector)) ScratchBuffers.release(f);
+    }
+  }
+
+  /**
+   * @param vector Vector to read
+   * @param out Array of the vector size to copy the content to
+   * @return <b>out</b>
+   */
+  static double[] copy(CtVector vector, double[] out) {
+    for (int x = 0; x < out.length; x++)
+      out[x] = vector.get(x);
+    return out;
+  }
+
+  /**
+   * @param dst Vector a result is going to be put to
+   * @return Array backing <b>dst</b> if it is an ArrayCtVector, or a scratch
+   *         buffer of its size with undefined content otherwise. Pass it to
+   *         {@link #commit(double[], CtVector)} when the result is ready
+   */
+  static double[] destination(CtVector dst) {
+    if (dst instanceof ArrayCtVector) return ((ArrayCtVector) dst).vector;
+    return ScratchBuffers.acquire(dst.getSize());
+  }
+
+  /**
+   * Copies a result to its destination vector unless it was computed in
+   * place, and releases the scratch buffer it was computed in.
+   * 
+   * @param result Array taken from {@link #destination(CtVector)}
+   * @param dst Destination vector
+   */
+  static void commit(double[] result, CtVector dst) {
+    if (dst instanceof ArrayCtVector && ((ArrayCtVector) dst).vector == result) return;
+    for (int x = 0; x < result.length; x++)
+      dst.update(x, result[x]);
+    ScratchBuffers.release(result);
   }
 
   @Override
   public void sum(CtVector vector) throws IllegalArgumentException {
     if (vector == null || vector.getSize() != size) throw new IllegalArgumentException();
+    if (vector instanceof ArrayCtVector) {
+      KernelsFactory.getKernels().add(((ArrayCtVector) vector).vector, 0, this.vector, 0, size);
+      return;
+    }
     for (int p = 0; p < size; p++)
       this.vector[p] = this.vector[p] + vector.get(p);
   }
 
   @Override
   public double max() {
-    double m = vector[0];
-    for (int x = 1; x < size; x++)
-      if (vector[x] > m) m = vector[x];
-    return m;
+    return KernelsFactory.getKernels().max(vector, 0, size);
   }
 
   @Override
@@ -115,6 +200,10 @@ class ArrayCtVector implements CtVector {
     if (vector == null) throw new IllegalArgumentException();
     int pasteWidth = vector.getSize();
     if (pasteWidth > size - x) pasteWidth = size - x;
+    if (vector instanceof ArrayCtVector) {
+      System.arraycopy(((ArrayCtVector) vector).vector, 0, this.vector, x, pasteWidth);
+      return;
+    }
     for (int xx = 0; xx < pasteWidth; xx++)
       this.vector[xx + x] = vector.get(xx);
   }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+/**
+ * Describes how a convolution is computed.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.struct.CtVector#conv(CtVector, ConvStrategy)
+ */
+public enum ConvStrategy {
+
+  /** Direct summation of products, O(N * M) */
+  DIRECT {
+    @Override
+    public boolean useFft(int size, int filterSize) {
+      return false;
+    }
+  },
+
+  /** Multiplication of zero padded spectra, O(L log L) */
+  FFT {
+    @Override
+    public boolean useFft(int size, int filterSize) {
+      return true;
+    }
+  },
+
+  /**
+   * Chooses between the two above comparing an estimated cost of both. Short
+   * filters are convolved directly, long ones in the frequency domain
+   */
+  AUTO {
+    @Override
+    public boolean useFft(int size, int filterSize) {
+      int length = Fft.nextPowerOfTwo(size + filterSize - 1);
+      long fftCost = (long) FFT_COST * length * Integer.numberOfTrailingZeros(length);
+      return (long) size * filterSize > fftCost;
+    }
+  };
+
+  /**
+   * Estimated cost of a single butterfly of the transform compared with a
+   * single multiply-add of the direct convolution. It covers the forward and
+   * the inverse transform and the spectra multiplication
+   */
+  private static final int FFT_COST = 4;
+
+  /**
+   * @param size Size of a convolved vector
+   * @param filterSize Size of a filter
+   * @return Whether a convolution of given sizes is computed in the frequency
+   *         domain
+   */
+  public abstract boolean useFft(int size, int filterSize);
+
+}
@@ -32,6 +32,7 @@ import java.io.IOException;
  * 
  * @author Piotr Jasiowka
  * @see pl.jasiowka.jcte.struct.ArrayCtMatrix
+ * @see pl.jasiowka.jcte.struct.FlatCtMatrix
  * @see pl.jasiowka.jcte.struct.CtMatrixFactory
  */
 public interface CtMatrix {
@@ -96,6 +97,16 @@ public interface CtMatrix {
    */
   CtVector sumCols();
 
+  /**
+   * Puts sums of all elements in every column into a given vector, which
+   * saves allocating the result.
+   * 
+   * @param dst Vector of the matrix width to put the sums to
+   * @throws IllegalArgumentException If <b>dst</b> is null or its size
+   *         differs from the matrix width
+   */
+  void sumCols(CtVector dst) throws IllegalArgumentException;
+
   /** @return The largest element in matrix */
   double max();
 
@@ -51,4 +51,139 @@ public class CtMatrixFactory {
     return new ArrayCtMatrix(filename);
   }
 
+  /**
+   * @param width Number of columns
+   * @param height Number of rows
+   * @return New instance of FlatCtMatrix initialized with a specified
+   *         dimension and with all elements zeroed. All elements are held in
+   *         a single, contiguous array
+   * @throws IllegalArgumentException If <b>width</b> or <b>height</b> is < 1
+   */
+  public static CtMatrix createFlatCtMatrix(int width, int height) throws IllegalArgumentException {
+    return new FlatCtMatrix(width, height);
+  }
+
+  /**
+   * @param width Number of columns
+   * @param height Number of rows
+   * @param data Matrix elements in the row-major order. The array is not
+   *        copied, so the matrix and the array share their content
+   * @return New instance of FlatCtMatrix wrapping a given array
+   * @throws IllegalArgumentException If <b>width</b> or <b>height</b> is < 1
+   *         or <b>data</b> is null or its length is not <b>width</b> *
+   *         <b>height</b>
+   */
+  public static CtMatrix createFlatCtMatrix(int width, int height, double[] data) throws IllegalArgumentException {
+    return new FlatCtMatrix(width, height, data);
+  }
+
+  /**
+   * @param filename Full path and file name and an extension
+   *        (i.e. "/home/wallie/images/input.png")
+   * @return New instance of FlatCtMatrix initialized with a given image. The
+   *         image will be converted to the grayscale color space and then it
+   *         will be mapped into a matrix with pixels value convertion from int
+   *         range [0..255] to double range [0..1]
+   * @throws IllegalArgumentException If <b>filename</b> is null
+   * @throws IOException If an error occurs during reading a file
+   */
+  public static CtMatrix createFlatCtMatrix(String filename) throws IllegalArgumentException, IOException {
+    return new FlatCtMatrix(filename);
+  }
+
+  /**
+   * @param width Number of columns
+   * @param height Number of rows
+   * @return New instance of the default CtMatrix implementation (currently
+   *         FlatCtMatrix) initialized with a specified dimension and with all
+   *         elements zeroed
+   * @throws IllegalArgumentException If <b>width</b> or <b>height</b> is < 1
+   */
+  public static CtMatrix createCtMatrix(int width, int height) throws IllegalArgumentException {
+    return createFlatCtMatrix(width, height);
+  }
+
+  /**
+   * @param filename Full path and file name and an extension
+   *        (i.e. "/home/wallie/images/input.png")
+   * @return New instance of the default CtMatrix implementation (currently
+   *         FlatCtMatrix) initialized with a given image
+   * @throws IllegalArgumentException If <b>filename</b> is null
+   * @throws IOException If an error occurs during reading a file
+   */
+  public static CtMatrix createCtMatrix(String filename) throws IllegalArgumentException, IOException {
+    return createFlatCtMatrix(filename);
+  }
+
+  /**
+   * @param width Number of columns
+   * @param height Number of rows
+   * @param precision Precision in which elements are stored
+   * @return New instance of a CtMatrix initialized with a specified dimension
+   *         and with all elements zeroed. For {@link Precision#FIXED16} the
+   *         range of values is [0..1]
+   * @throws IllegalArgumentException If <b>width</b> or <b>height</b> is < 1
+   *         or <b>precision</b> is null
+   */
+  public static CtMatrix createCtMatrix(int width, int height, Precision precision) throws IllegalArgumentException {
+    if (precision == null) throw new IllegalArgumentException();
+    switch (precision) {
+    case FLOAT:
+      return new FloatCtMatrix(width, height);
+    case FIXED16:
+      return new Fixed16CtMatrix(width, height, 0, 1);
+    default:
+      return createFlatCtMatrix(width, height);
+    }
+  }
+
+  /**
+   * @param filename Full path and file name and an extension
+   *        (i.e. "/home/wallie/images/input.png")
+   * @param precision Precision in which elements are stored
+   * @return New instance of a CtMatrix initialized with a given image. The
+   *         image will be converted to the grayscale color space and then it
+   *         will be mapped into a matrix with pixels value convertion from int
+   *         range [0..255] to double range [0..1]
+   * @throws IllegalArgumentException If <b>filename</b> or <b>precision</b>
+   *         is null
+   * @throws IOException If an error occurs during reading a file
+   */
+  public static CtMatrix createCtMatrix(String filename, Precision precision) throws IllegalArgumentException, IOException {
+    if (precision == null) throw new IllegalArgumentException();
+    CtMatrix image = createFlatCtMatrix(filename);
+    if (precision == Precision.DOUBLE) return image;
+    CtMatrix out = createCtMatrix(image.getWidth(), image.getHeight(), precision);
+    out.paste(0, 0, image);
+    return out;
+  }
+
+  /**
+   * @param width Number of columns
+   * @param height Number of rows
+   * @return New instance of FloatCtMatrix initialized with a specified
+   *         dimension and with all elements zeroed. Elements are stored as
+   *         32-bit floating point numbers
+   * @throws IllegalArgumentException If <b>width</b> or <b>height</b> is < 1
+   */
+  public static CtMatrix createFloatCtMatrix(int width, int height) throws IllegalArgumentException {
+    return new FloatCtMatrix(width, height);
+  }
+
+  /**
+   * @param width Number of columns
+   * @param height Number of rows
+   * @param min Lower bound of the range of values
+   * @param max Upper bound of the range of values
+   * @return New instance of Fixed16CtMatrix initialized with a specified
+   *         dimension and with all elements set to <b>min</b>. Elements are
+   *         stored as 16-bit fixed point numbers spread evenly over a given
+   *         range, values out of the range are clamped
+   * @throws IllegalArgumentException If <b>width</b> or <b>height</b> is < 1
+   *         or the range is empty
+   */
+  public static CtMatrix createFixed16CtMatrix(int width, int height, double min, double max) throws IllegalArgumentException {
+    return new Fixed16CtMatrix(width, height, min, max);
+  }
+
 }
@@ -50,11 +50,49 @@ public interface CtVector {
    * @param filter Filter vector
    * @return A convolution with a given filter. Note that the result vector has
    *         size of [<code>this.size + filter.size - 1</code>]. This method
-   *         doesn't affect itself but returns a result vector
+   *         doesn't affect itself but returns a result vector. The way it is
+   *         computed is chosen by {@link ConvStrategy#AUTO}
    * @throws IllegalArgumentException If <b>vector</b> is null
    */
   CtVector conv(CtVector filter);
 
+  /**
+   * @param filter Filter vector
+   * @param strategy The way the convolution is computed
+   * @return A convolution with a given filter. Note that the result vector has
+   *         size of [<code>this.size + filter.size - 1</code>]. This method
+   *         doesn't affect itself but returns a result vector
+   * @throws IllegalArgumentException If <b>vector</b> or <b>strategy</b> is
+   *         null
+   */
+  CtVector conv(CtVector filter, ConvStrategy strategy);
+
+  /**
+   * Puts a convolution with a given filter into a given vector, which saves
+   * allocating the result. The way it is computed is chosen by
+   * {@link ConvStrategy#AUTO}.
+   * 
+   * @param filter Filter vector
+   * @param dst Vector to put the convolution to, of size
+   *        [<code>this.size + filter.size - 1</code>]
+   * @throws IllegalArgumentException If <b>filter</b> or <b>dst</b> is null
+   *         or <b>dst</b> is in a different size
+   */
+  void conv(CtVector filter, CtVector dst) throws IllegalArgumentException;
+
+  /**
+   * Puts a convolution with a given filter into a given vector, which saves
+   * allocating the result.
+   * 
+   * @param filter Filter vector
+   * @param strategy The way the convolution is computed
+   * @param dst Vector to put the convolution to, of size
+   *        [<code>this.size + filter.size - 1</code>]
+   * @throws IllegalArgumentException If any of arguments is null or
+   *         <b>dst</b> is in a different size
+   */
+  void conv(CtVector filter, ConvStrategy strategy, CtVector dst) throws IllegalArgumentException;
+
   /**
    * Performs an arithmetic sum of corresponding elements in both vectors. Note
    * that both of vectors have to be the same size.
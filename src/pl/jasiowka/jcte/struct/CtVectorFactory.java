@@ -45,4 +45,19 @@ public class CtVectorFactory {
     return new ArrayCtVector(array);
   }
 
+  /**
+   * @param size Number of elements in a vector
+   * @param precision Precision in which elements are stored
+   * @return New vector of a specified size with all elements initialized
+   *         with 0.0 value. For {@link Precision#FIXED16} the range of values
+   *         is [0..1]
+   * @throws IllegalArgumentException If <b>size</b> is < 1 or
+   *         <b>precision</b> is null
+   */
+  public static CtVector createCtVector(int size, Precision precision) throws IllegalArgumentException {
+    if (precision == null) throw new IllegalArgumentException();
+    if (precision == Precision.DOUBLE) return createArrayCtVector(size);
+    return CtMatrixFactory.createCtMatrix(size, 1, precision).getVector(0);
+  }
+
 }
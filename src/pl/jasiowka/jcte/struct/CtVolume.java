@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * CtVolume is a three-dimensional stack of slices of the same size, i.e. a
+ * stack of projections or a reconstructed volume. Every slice is a CtMatrix
+ * of <b>width</b> x <b>height</b> elements and slices are addressed by a
+ * <b>z</b> coordinate from [0..depth) range. A volume also knows the
+ * physical spacing between its elements.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.struct.MappedCtVolume
+ * @see pl.jasiowka.jcte.struct.CtVolumeFactory
+ */
+public interface CtVolume extends Closeable {
+
+  /** @return Width of every slice (number of columns) */
+  int getWidth();
+
+  /** @return Height of every slice (number of rows) */
+  int getHeight();
+
+  /** @return Number of slices */
+  int getDepth();
+
+  /** @return Precision in which elements are stored */
+  Precision getPrecision();
+
+  /**
+   * @return Spacing between elements along the x, y and z axis. It is a copy,
+   *         so changing it doesn't affect the volume
+   */
+  double[] getSpacing();
+
+  /**
+   * @param z Slice number
+   * @return Slice at a given position. Note it returns a view, not a copy:
+   *         changes made in the matrix are changes made in the volume
+   * @throws IndexOutOfBoundsException If <b>z</b> is out of bounds
+   * @throws IOException If an error occurs during accessing the volume
+   */
+  CtMatrix getSlice(int z) throws IndexOutOfBoundsException, IOException;
+
+  /**
+   * Writes a given matrix into a slice.
+   * 
+   * @param z Slice number
+   * @param matrix Matrix to write, it has to be of the slice size
+   * @throws IndexOutOfBoundsException If <b>z</b> is out of bounds
+   * @throws IllegalArgumentException If <b>matrix</b> is null or is in a
+   *         different size
+   * @throws IOException If an error occurs during accessing the volume
+   */
+  void setSlice(int z, CtMatrix matrix) throws IndexOutOfBoundsException, IllegalArgumentException, IOException;
+
+  /**
+   * Makes sure all changes made in the volume reached its storage.
+   * 
+   * @throws IOException If an error occurs during writing
+   */
+  void flush() throws IOException;
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+import java.io.IOException;
+
+/**
+ * Factory for CtVolume objects.
+ * 
+ * @author Piotr Jasiowka
+ */
+public class CtVolumeFactory {
+
+  /**
+   * @param filename Full path with a file name
+   *        (i.e. "/home/wallie/volumes/head.vol"). An existing file is
+   *        overwritten
+   * @param width Width of every slice
+   * @param height Height of every slice
+   * @param depth Number of slices
+   * @param precision Precision in which elements are stored. For
+   *        {@link Precision#FIXED16} the range of values is [0..1]
+   * @param spacing Spacing between elements along the x, y and z axis
+   * @return New volume backed by a memory-mapped file, with all elements
+   *         zeroed. It has to be closed after use
+   * @throws IllegalArgumentException If any of arguments is null or a
+   *         dimension is < 1 or a single slice exceeds 2 GB
+   * @throws IOException If an error occurs during creating the file
+   */
+  public static CtVolume createMappedCtVolume(String filename, int width, int height, int depth, Precision precision, double[] spacing) throws IllegalArgumentException, IOException {
+    return new MappedCtVolume(filename, width, height, depth, precision, spacing, 0, 1);
+  }
+
+  /**
+   * @param filename Full path with a file name
+   *        (i.e. "/home/wallie/volumes/head.vol"). An existing file is
+   *        overwritten
+   * @param width Width of every slice
+   * @param height Height of every slice
+   * @param depth Number of slices
+   * @param spacing Spacing between elements along the x, y and z axis
+   * @param min Lower bound of the range of values
+   * @param max Upper bound of the range of values
+   * @return New volume backed by a memory-mapped file which stores elements
+   *         as 16-bit fixed point numbers spread over a given range. All
+   *         elements are set to <b>min</b>. It has to be closed after use
+   * @throws IllegalArgumentException If any of arguments is null or a
+   *         dimension is < 1 or a single slice exceeds 2 GB or the range is
+   *         empty
+   * @throws IOException If an error occurs during creating the file
+   */
+  public static CtVolume createMappedCtVolume(String filename, int width, int height, int depth, double[] spacing, double min, double max) throws IllegalArgumentException, IOException {
+    return new MappedCtVolume(filename, width, height, depth, Precision.FIXED16, spacing, min, max);
+  }
+
+  /**
+   * @param filename Full path with a file name
+   *        (i.e. "/home/wallie/volumes/head.vol")
+   * @param readOnly Whether the volume is opened only for reading
+   * @return Volume backed by an existing memory-mapped file. It has to be
+   *         closed after use
+   * @throws IllegalArgumentException If <b>filename</b> is null
+   * @throws IOException If an error occurs during reading the file or it is
+   *         not a volume file
+   */
+  public static CtVolume openMappedCtVolume(String filename, boolean readOnly) throws IllegalArgumentException, IOException {
+    return new MappedCtVolume(filename, readOnly);
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fft shares an iterative radix-2 Fast Fourier Transform and a linear
+ * convolution built on it. Bit-reversal permutations and twiddle factors are
+ * computed once per transform length and cached, so repeated transforms of
+ * the same length (i.e. sinogram rows) don't call trigonometric functions.
+ * 
+ * @author Piotr Jasiowka
+ */
+public final class Fft {
+
+  private static final ConcurrentMap<Integer, Plan> plans = new ConcurrentHashMap<Integer, Plan>();
+
+  private Fft() {
+  }
+
+  /** Precomputed tables for a single transform length */
+  private static final class Plan {
+
+    final int[] reversed;
+
+    final double[] cos;
+
+    final double[] sin;
+
+    Plan(int n) {
+      int bits = Integer.numberOfTrailingZeros(n);
+      reversed = new int[n];
+      for (int i = 0; i < n; i++)
+        reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+      cos = new double[n / 2];
+      sin = new double[n / 2];
+      for (int k = 0; k < n / 2; k++) {
+        double alpha = 2 * Math.PI * k / n;
+        cos[k] = Math.cos(alpha);
+        sin[k] = Math.sin(alpha);
+      }
+    }
+
+  }
+
+  private static Plan plan(int n) {
+    Plan plan = plans.get(n);
+    if (plan == null) {
+      plan = new Plan(n);
+      Plan old = plans.putIfAbsent(n, plan);
+      if (old != null) plan = old;
+    }
+    return plan;
+  }
+
+  /**
+   * @param n A positive number
+   * @return The smallest power of two which is not less than <b>n</b>
+   * @throws IllegalArgumentException If <b>n</b> is < 1 or too large
+   */
+  public static int nextPowerOfTwo(int n) throws IllegalArgumentException {
+    if (n < 1 || n > (1 << 30)) throw new IllegalArgumentException();
+    return n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+  }
+
+  /**
+   * Performs an in-place complex transform. The inverse transform is scaled
+   * by <code>1 / n</code>, so it exactly reverts the forward one.
+   * 
+   * @param re Real parts
+   * @param im Imaginary parts
+   * @param inverse Whether to perform the inverse transform
+   * @throws IllegalArgumentException If arrays are null, differ in length
+   *         or their length is not a power of two
+   */
+  public static void transform(double[] re, double[] im, boolean inverse) throws IllegalArgumentException {
+    if (re == null || im == null || re.length != im.length) throw new IllegalArgumentException();
+    int n = re.length;
+    if (n == 0 || Integer.bitCount(n) != 1) throw new IllegalArgumentException();
+    Plan plan = plan(n);
+    for (int i = 0; i < n; i++) {
+      int j = plan.reversed[i];
+      if (i < j) {
+        double t = re[i]; re[i] = re[j]; re[j] = t;
+        t = im[i]; im[i] = im[j]; im[j] = t;
+      }
+    }
+    double sign = inverse ? 1 : -1;
+    for (int size = 2; size <= n; size <<= 1) {
+      int half = size >> 1;
+      int step = n / size;
+      for (int i = 0; i < n; i += size) {
+        for (int j = 0, k = 0; j < half; j++, k += step) {
+          double wr = plan.cos[k];
+          double wi = sign * plan.sin[k];
+          int a = i + j;
+          int b = a + half;
+          double tr = re[b] * wr - im[b] * wi;
+          double ti = re[b] * wi + im[b] * wr;
+          re[b] = re[a] - tr;
+          im[b] = im[a] - ti;
+          re[a] += tr;
+          im[a] += ti;
+        }
+      }
+    }
+    if (inverse) {
+      double scale = 1.0 / n;
+      for (int i = 0; i < n; i++) {
+        re[i] *= scale;
+        im[i] *= scale;
+      }
+    }
+  }
+
+  /**
+   * Computes a linear convolution of two real sequences. Both sequences are
+   * zero padded to the next power of two and transformed together as the
+   * real and imaginary part of a single complex sequence, so only one
+   * forward and one inverse transform are needed.
+   * 
+   * @param a First sequence
+   * @param b Second sequence
+   * @return Convolution of size <code>a.length + b.length - 1</code>
+   * @throws IllegalArgumentException If any of sequences is null or empty
+   */
+  public static double[] convolve(double[] a, double[] b) throws IllegalArgumentException {
+    if (a == null || b == null || a.length == 0 || b.length == 0) throw new IllegalArgumentException();
+    double[] out = new double[a.length + b.length - 1];
+    convolve(a, b, out);
+    return out;
+  }
+
+  /**
+   * Computes a linear convolution of two real sequences into a given array.
+   * Working arrays are taken from {@link ScratchBuffers}, so repeated
+   * convolutions of the same lengths allocate nothing.
+   * 
+   * @param a First sequence
+   * @param b Second sequence
+   * @param out Array of size <code>a.length + b.length - 1</code> to put the
+   *        convolution to. It can be one of the sequences
+   * @throws IllegalArgumentException If any of sequences is null or empty or
+   *         <b>out</b> is null or in a wrong size
+   */
+  public static void convolve(double[] a, double[] b, double[] out) throws IllegalArgumentException {
+    if (a == null || b == null || a.length == 0 || b.length == 0) throw new IllegalArgumentException();
+    int size = a.length + b.length - 1;
+    if (out == null || out.length != size) throw new IllegalArgumentException();
+    int n = nextPowerOfTwo(size);
+    double[] re = ScratchBuffers.acquireZeroed(n);
+    double[] im = ScratchBuffers.acquireZeroed(n);
+    double[] outRe = ScratchBuffers.acquire(n);
+    double[] outIm = ScratchBuffers.acquire(n);
+    try {
+      System.arraycopy(a, 0, re, 0, a.length);
+      System.arraycopy(b, 0, im, 0, b.length);
+      transform(re, im, false);
+      // With z = a + ib: A[k] = (Z[k] + conj(Z[n-k])) / 2 and
+      // B[k] = (Z[k] - conj(Z[n-k])) / 2i, so A[k]B[k] is computed in place
+      for (int k = 0; k < n; k++) {
+        int m = (n - k) & (n - 1);
+        double ar = (re[k] + re[m]) / 2;
+        double ai = (im[k] - im[m]) / 2;
+        double br = (im[k] + im[m]) / 2;
+        double bi = (re[m] - re[k]) / 2;
+        outRe[k] = ar * br - ai * bi;
+        outIm[k] = ar * bi + ai * br;
+      }
+      transform(outRe, outIm, true);
+      System.arraycopy(outRe, 0, out, 0, size);
+    } finally {
+      ScratchBuffers.release(re);
+      ScratchBuffers.release(im);
+      ScratchBuffers.release(outRe);
+      ScratchBuffers.release(outIm);
+    }
+  }
+
+}
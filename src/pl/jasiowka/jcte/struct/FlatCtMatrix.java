@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import pl.jasiowka.jcte.simd.Kernels;
+import pl.jasiowka.jcte.simd.KernelsFactory;
+
+/**
+ * FlatCtMatrix is an implementation of CtMatrix backed by a single,
+ * contiguous array which holds all elements in the row-major order. Rows
+ * returned by {@link #getVector(int)} are views of that array, so the whole
+ * matrix occupies one block of memory and row-wise loops run over
+ * consecutive elements.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.struct.CtMatrixFactory
+ */
+class FlatCtMatrix implements CtMatrix {
+
+  protected double[] data;
+
+  protected int width, height;
+
+  /**
+   * Creates a zeroed matrix in a given dimension. Outside this package use
+   * {@link pl.jasiowka.jcte.struct.CtMatrixFactory} static methods for
+   * creating matrices.
+   * 
+   * @param width Number of columns
+   * @param height Number of rows
+   * @throws IllegalArgumentException If <b>width</b> or <b>height</b> is < 1
+   */
+  FlatCtMatrix(int width, int height) throws IllegalArgumentException {
+    if (width < 1 || height < 1) throw new IllegalArgumentException();
+    this.width = width;
+    this.height = height;
+    data = new double[width * height];
+  }
+
+  /**
+   * Creates a matrix from a given array of elements in the row-major order.
+   * Note that no copy of a given array will be performed, changes made
+   * through the matrix are visible in the array and vice versa. Outside this
+   * package use {@link pl.jasiowka.jcte.struct.CtMatrixFactory} static
+   * methods for creating matrices.
+   * 
+   * @param width Number of columns
+   * @param height Number of rows
+   * @param data Array of <b>width</b> * <b>height</b> elements
+   * @throws IllegalArgumentException If <b>width</b> or <b>height</b> is < 1
+   *         or <b>data</b> is null or of a different size
+   */
+  FlatCtMatrix(int width, int height, double[] data) throws IllegalArgumentException {
+    if (width < 1 || height < 1 || data == null) throw new IllegalArgumentException();
+    if (data.length != (long) width * height) throw new IllegalArgumentException();
+    this.width = width;
+    this.height = height;
+    this.data = data;
+  }
+
+  /**
+   * Creates a matrix from a given image file. The image will be converted to
+   * the grayscale color space (unless it is a grayscale one already) and then
+   * it will be mapped into a matrix with pixels value convertion from int
+   * range [0..255] (or [0..65535] for 16-bit images) to double range [0..1].
+   * 
+   * @param filename Full path and file name and an extension
+   *        (i.e. "/home/wallie/images/input.png")
+   * @throws IllegalArgumentException If <b>filename</b> is null
+   * @throws IOException If an error occurs during reading a file
+   */
+  FlatCtMatrix(String filename) throws IllegalArgumentException, IOException {
+    ImageSamples im = ImageSamples.read(filename);
+    width = im.width;
+    height = im.height;
+    data = im.data;
+  }
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public void update(int x, int y, double val) throws IndexOutOfBoundsException {
+    if (x < 0 || x >= width) throw new IndexOutOfBoundsException();
+    data[y * width + x] = val;
+  }
+
+  @Override
+  public double get(int x, int y) throws IndexOutOfBoundsException {
+    if (x < 0 || x >= width) throw new IndexOutOfBoundsException();
+    return data[y * width + x];
+  }
+
+  @Override
+  public void save(String filename) throws IllegalArgumentException, IOException {
+    if (filename == null) throw new IllegalArgumentException();
+    BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    WritableRaster raster = bi.getRaster();
+    double weight = 255 / max();
+    for (int y = 0; y < height; y++) {
+      int offset = y * width;
+      for (int x = 0; x < width; x++)
+        raster.setSample(x, y, 0, Math.abs(data[offset + x]) * weight);
+    }
+    ImageIO.write(bi, "png", new File(filename));
+  }
+
+  @Override
+  public CtVector getVector(int y) throws IndexOutOfBoundsException {
+    if (y < 0 || y >= height) throw new IndexOutOfBoundsException();
+    return new StridedCtVector(data, y * width, 1, width);
+  }
+
+  @Override
+  public void sum(CtMatrix matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.getWidth() != width || matrix.getHeight() != height)
+      throw new IllegalArgumentException();
+    if (matrix instanceof FlatCtMatrix) {
+      KernelsFactory.getKernels().add(((FlatCtMatrix) matrix).data, 0, data, 0, data.length);
+    } else {
+      for (int y = 0; y < height; y++) {
+        int offset = y * width;
+        for (int x = 0; x < width; x++)
+          data[offset + x] += matrix.get(x, y);
+      }
+    }
+  }
+
+  @Override
+  public double max() {
+    return KernelsFactory.getKernels().max(data, 0, data.length);
+  }
+
+  @Override
+  public CtVector sumCols() {
+    CtVector line = CtVectorFactory.createArrayCtVector(width);
+    sumCols(line);
+    return line;
+  }
+
+  @Override
+  public void sumCols(CtVector dst) throws IllegalArgumentException {
+    if (dst == null || dst.getSize() != width) throw new IllegalArgumentException();
+    double[] line = ArrayCtVector.destination(dst);
+    Arrays.fill(line, 0);
+    Kernels kernels = KernelsFactory.getKernels();
+    for (int y = 0; y < height; y++)
+      kernels.add(data, y * width, line, 0, width);
+    ArrayCtVector.commit(line, dst);
+  }
+
+  @Override
+  public void paste(int x, int y, CtMatrix matrix) throws IndexOutOfBoundsException, IllegalArgumentException {
+    if (matrix == null) throw new IllegalArgumentException();
+    if (x < 0 || x >= width || y < 0 || y >= height) throw new IndexOutOfBoundsException();
+    int pasteWidth = matrix.getWidth();
+    int pasteHeight = matrix.getHeight();
+    if (pasteWidth > width - x) pasteWidth = width - x;
+    if (pasteHeight > height - y) pasteHeight = height - y;
+    for (int yy = 0; yy < pasteHeight; yy++) {
+      int offset = (yy + y) * width + x;
+      for (int xx = 0; xx < pasteWidth; xx++)
+        data[offset + xx] = matrix.get(xx, yy);
+    }
+  }
+
+  @Override
+  public void pasteVector(int y, CtVector vector) throws IndexOutOfBoundsException, IllegalArgumentException {
+    if (vector == null) throw new IllegalArgumentException();
+    if (vector.getSize() != width) throw new IllegalArgumentException();
+    if (y < 0 || y >= height) throw new IndexOutOfBoundsException();
+    int offset = y * width;
+    for (int x = 0; x < width; x++)
+      data[offset + x] = vector.get(x);
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+import java.util.Arrays;
+
+/**
+ * FloatCtMatrix is an implementation of CtMatrix which stores elements as
+ * 32-bit floating point numbers in a single, row-major array. It takes half
+ * of the memory of a FlatCtMatrix at the cost of precision, so it is meant
+ * for working data, not for accumulators.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.struct.CtMatrixFactory
+ */
+class FloatCtMatrix extends PackedCtMatrix {
+
+  protected final float[] data;
+
+  /**
+   * Creates a zeroed matrix in a given dimension. Outside this package use
+   * {@link pl.jasiowka.jcte.struct.CtMatrixFactory} static methods for
+   * creating matrices.
+   * 
+   * @param width Number of columns
+   * @param height Number of rows
+   * @throws IllegalArgumentException If <b>width</b> or <b>height</b> is < 1
+   */
+  FloatCtMatrix(int width, int height) throws IllegalArgumentException {
+    super(width, height);
+    data = new float[width * height];
+  }
+
+  @Override
+  Precision getPrecision() {
+    return Precision.FLOAT;
+  }
+
+  @Override
+  double load(int i) {
+    return data[i];
+  }
+
+  @Override
+  void store(int i, double val) {
+    data[i] = (float) val;
+  }
+
+  @Override
+  public void sum(CtMatrix matrix) throws IllegalArgumentException {
+    if (matrix instanceof FloatCtMatrix && matrix.getWidth() == width && matrix.getHeight() == height) {
+      float[] other = ((FloatCtMatrix) matrix).data;
+      for (int i = 0; i < data.length; i++)
+        data[i] += other[i];
+    } else {
+      super.sum(matrix);
+    }
+  }
+
+  @Override
+  public CtVector sumCols() {
+    CtVector line = CtVectorFactory.createArrayCtVector(width);
+    sumCols(line);
+    return line;
+  }
+
+  @Override
+  public void sumCols(CtVector dst) throws IllegalArgumentException {
+    if (dst == null || dst.getSize() != width) throw new IllegalArgumentException();
+    double[] line = ArrayCtVector.destination(dst);
+    Arrays.fill(line, 0);
+    for (int y = 0; y < height; y++) {
+      int offset = y * width;
+      for (int x = 0; x < width; x++)
+        line[x] += data[offset + x];
+    }
+    ArrayCtVector.commit(line, dst);
+  }
+
+}
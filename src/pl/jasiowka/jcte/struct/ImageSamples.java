@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorConvertOp;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * ImageSamples reads grayscale samples of an image file normalized to the
+ * [0..1] range. Samples of 8-bit and 16-bit grayscale images are taken
+ * straight from the image data buffer in a single pass, without copying the
+ * raster and without color conversion. Other images are converted to 8-bit
+ * grayscale first.
+ * 
+ * @author Piotr Jasiowka
+ */
+class ImageSamples {
+
+  private static final double[] BYTE_LEVELS = new double[256];
+
+  static {
+    for (int i = 0; i < BYTE_LEVELS.length; i++)
+      BYTE_LEVELS[i] = i / 255.0;
+  }
+
+  final int width, height;
+
+  /** Samples in the row-major order */
+  final double[] data;
+
+  private ImageSamples(int width, int height, double[] data) {
+    this.width = width;
+    this.height = height;
+    this.data = data;
+  }
+
+  /**
+   * @param filename Full path and file name and an extension
+   *        (i.e. "/home/wallie/images/input.png")
+   * @return Normalized grayscale samples of a given image
+   * @throws IllegalArgumentException If <b>filename</b> is null
+   * @throws IOException If an error occurs during reading a file or its
+   *         format is not supported
+   */
+  static ImageSamples read(String filename) throws IllegalArgumentException, IOException {
+    if (filename == null) throw new IllegalArgumentException();
+    BufferedImage im = ImageIO.read(new File(filename));
+    if (im == null) throw new IOException("Unsupported image format: " + filename);
+    return read(im);
+  }
+
+  /**
+   * @param im Image to read
+   * @return Normalized grayscale samples of a given image
+   */
+  static ImageSamples read(BufferedImage im) {
+    int width = im.getWidth();
+    int height = im.getHeight();
+    if (im.getType() != BufferedImage.TYPE_BYTE_GRAY && im.getType() != BufferedImage.TYPE_USHORT_GRAY) {
+      BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+      new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_GRAY), null).filter(im, gray);
+      im = gray;
+    }
+    WritableRaster raster = im.getRaster();
+    SampleModel model = raster.getSampleModel();
+    DataBuffer buffer = raster.getDataBuffer();
+    double[] data = new double[width * height];
+    if (!(model instanceof ComponentSampleModel) || buffer.getNumBanks() != 1) {
+      raster.getSamples(0, 0, width, height, 0, data);
+      double scale = buffer instanceof DataBufferUShort ? 65535.0 : 255.0;
+      for (int i = 0; i < data.length; i++)
+        data[i] = data[i] / scale;
+      return new ImageSamples(width, height, data);
+    }
+    ComponentSampleModel csm = (ComponentSampleModel) model;
+    int scanline = csm.getScanlineStride();
+    int pixel = csm.getPixelStride();
+    int base = buffer.getOffset() + csm.getOffset(raster.getMinX() - raster.getSampleModelTranslateX(), raster.getMinY() - raster.getSampleModelTranslateY(), 0);
+    if (buffer instanceof DataBufferByte) {
+      byte[] bytes = ((DataBufferByte) buffer).getData();
+      for (int y = 0, i = 0; y < height; y++) {
+        int p = base + y * scanline;
+        for (int x = 0; x < width; x++, i++, p += pixel)
+          data[i] = BYTE_LEVELS[bytes[p] & 0xff];
+      }
+    } else {
+      short[] shorts = ((DataBufferUShort) buffer).getData();
+      for (int y = 0, i = 0; y < height; y++) {
+        int p = base + y * scanline;
+        for (int x = 0; x < width; x++, i++, p += pixel)
+          data[i] = (shorts[p] & 0xffff) / 65535.0;
+      }
+    }
+    return new ImageSamples(width, height, data);
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * MappedCtMatrix is an implementation of CtMatrix which keeps its elements
+ * in a byte buffer, normally a part of a memory-mapped file. Elements are
+ * stored in the row-major order in one of available precisions.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.struct.MappedCtVolume
+ */
+class MappedCtMatrix extends PackedCtMatrix {
+
+  private static final int LEVELS = 0xffff;
+
+  private final ByteBuffer buffer;
+
+  private final Precision precision;
+
+  private final double min, step;
+
+  /**
+   * Creates a matrix over a given buffer. Outside this package use
+   * {@link pl.jasiowka.jcte.struct.CtVolumeFactory} static methods for
+   * creating volumes.
+   * 
+   * @param buffer Buffer which holds elements from its position 0
+   * @param width Number of columns
+   * @param height Number of rows
+   * @param precision Precision of stored elements
+   * @param min Lower bound of the range of {@link Precision#FIXED16} values
+   * @param max Upper bound of the range of {@link Precision#FIXED16} values
+   * @throws IllegalArgumentException If the buffer is too small
+   */
+  MappedCtMatrix(ByteBuffer buffer, int width, int height, Precision precision, double min, double max) throws IllegalArgumentException {
+    super(width, height);
+    if (buffer == null || precision == null) throw new IllegalArgumentException();
+    if (buffer.capacity() < (long) width * height * precision.getBytes()) throw new IllegalArgumentException();
+    this.buffer = buffer;
+    this.precision = precision;
+    this.min = min;
+    step = (max - min) / LEVELS;
+  }
+
+  /** Writes changes made in a memory-mapped buffer to its file */
+  void force() {
+    if (buffer instanceof MappedByteBuffer)
+      ((MappedByteBuffer) buffer).force();
+  }
+
+  @Override
+  Precision getPrecision() {
+    return precision;
+  }
+
+  @Override
+  double load(int i) {
+    switch (precision) {
+    case DOUBLE:
+      return buffer.getDouble(i << 3);
+    case FLOAT:
+      return buffer.getFloat(i << 2);
+    default:
+      return min + (buffer.getShort(i << 1) & LEVELS) * step;
+    }
+  }
+
+  @Override
+  void store(int i, double val) {
+    switch (precision) {
+    case DOUBLE:
+      buffer.putDouble(i << 3, val);
+      break;
+    case FLOAT:
+      buffer.putFloat(i << 2, (float) val);
+      break;
+    default:
+      double level = Math.rint((val - min) / step);
+      if (level < 0) level = 0;
+      else if (level > LEVELS) level = LEVELS;
+      buffer.putShort(i << 1, (short) level);
+    }
+  }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+/**
+ * MappedCtVolume is an implementation of CtVolume backed by a raw file
+ * mapped into memory. The file starts with a header of
+ * {@link #HEADER_SIZE} bytes followed by slices stored one after another,
+ * every slice in the row-major order. Slices are mapped separately and only
+ * when they are asked for, so a volume may be much larger than the heap: its
+ * working set is kept by the operating system page cache.
+ * <p>
+ * All numbers in the file are little-endian. The header holds: the magic
+ * "JCTEVOL" followed by a zero byte, the format version, width, height,
+ * depth and precision code (32-bit integers), a reserved integer, the x, y
+ * and z spacing and the range of {@link Precision#FIXED16} values (64-bit
+ * floating point numbers).
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.struct.CtVolumeFactory
+ */
+class MappedCtVolume implements CtVolume {
+
+  /** Size of the header, data starts at a page boundary */
+  static final int HEADER_SIZE = 4096;
+
+  private static final byte[] MAGIC = { 'J', 'C', 'T', 'E', 'V', 'O', 'L', 0 };
+
+  private static final int VERSION = 1;
+
+  private final RandomAccessFile file;
+
+  private final FileChannel channel;
+
+  private final boolean readOnly;
+
+  private final int width, height, depth;
+
+  private final Precision precision;
+
+  private final double[] spacing;
+
+  private final double min, max;
+
+  private final MappedCtMatrix[] slices;
+
+  /**
+   * Creates a new volume file, overwriting an existing one. All elements
+   * are zeroed. Outside this package use
+   * {@link pl.jasiowka.jcte.struct.CtVolumeFactory} static methods for
+   * creating volumes.
+   * 
+   * @param filename Full path with a file name
+   * @param width Width of every slice
+   * @param height Height of every slice
+   * @param depth Number of slices
+   * @param precision Precision of stored elements
+   * @param spacing Spacing between elements along the x, y and z axis
+   * @param min Lower bound of the range of {@link Precision#FIXED16} values
+   * @param max Upper bound of the range of {@link Precision#FIXED16} values
+   * @throws IllegalArgumentException If any of arguments is null or invalid
+   * @throws IOException If an error occurs during creating the file
+   */
+  MappedCtVolume(String filename, int width, int height, int depth, Precision precision, double[] spacing, double min, double max) throws IllegalArgumentException, IOException {
+    if (filename == null || precision == null || spacing == null || spacing.length != 3) throw new IllegalArgumentException();
+    if (width < 1 || height < 1 || depth < 1) throw new IllegalArgumentException();
+    if ((long) width * height * precision.getBytes() > Integer.MAX_VALUE) throw new IllegalArgumentException();
+    if (!(max > min)) throw new IllegalArgumentException();
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.precision = precision;
+    this.spacing = spacing.clone();
+    this.min = min;
+    this.max = max;
+    readOnly = false;
+    slices = new MappedCtMatrix[depth];
+    file = new RandomAccessFile(filename, "rw");
+    channel = file.getChannel();
+    try {
+      file.setLength(0);
+      file.setLength(HEADER_SIZE + getSliceBytes() * depth);
+      writeHeader();
+    } catch (IOException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens an existing volume file. Outside this package use
+   * {@link pl.jasiowka.jcte.struct.CtVolumeFactory} static methods for
+   * opening volumes.
+   * 
+   * @param filename Full path with a file name
+   * @param readOnly Whether the volume is opened only for reading
+   * @throws IllegalArgumentException If <b>filename</b> is null
+   * @throws IOException If an error occurs during reading the file or it is
+   *         not a volume file
+   */
+  MappedCtVolume(String filename, boolean readOnly) throws IllegalArgumentException, IOException {
+    if (filename == null) throw new IllegalArgumentException();
+    this.readOnly = readOnly;
+    file = new RandomAccessFile(new File(filename), readOnly ? "r" : "rw");
+    channel = file.getChannel();
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining())
+        if (channel.read(header, header.position()) < 0) break;
+      if (header.hasRemaining()) throw new IOException("Truncated volume header: " + filename);
+      byte[] magic = new byte[MAGIC.length];
+      header.position(0);
+      header.get(magic);
+      if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a volume file: " + filename);
+      if (header.getInt() != VERSION) throw new IOException("Unsupported volume version: " + filename);
+      width = header.getInt();
+      height = header.getInt();
+      depth = header.getInt();
+      precision = decode(header.getInt());
+      header.getInt();
+      spacing = new double[] { header.getDouble(), header.getDouble(), header.getDouble() };
+      min = header.getDouble();
+      max = header.getDouble();
+      if (width < 1 || height < 1 || depth < 1 || precision == null || !(max > min))
+        throw new IOException("Corrupted volume header: " + filename);
+      if (channel.size() < HEADER_SIZE + getSliceBytes() * depth)
+        throw new IOException("Truncated volume data: " + filename);
+      slices = new MappedCtMatrix[depth];
+    } catch (IOException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  private void writeHeader() throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.put(MAGIC);
+    header.putInt(VERSION);
+    header.putInt(width);
+    header.putInt(height);
+    header.putInt(depth);
+    header.putInt(encode(precision));
+    header.putInt(0);
+    for (double s : spacing)
+      header.putDouble(s);
+    header.putDouble(min);
+    header.putDouble(max);
+    header.clear();
+    while (header.hasRemaining())
+      channel.write(header, header.position());
+  }
+
+  private static int encode(Precision precision) {
+    switch (precision) {
+    case DOUBLE:
+      return 1;
+    case FLOAT:
+      return 2;
+    default:
+      return 3;
+    }
+  }
+
+  private static Precision decode(int code) {
+    switch (code) {
+    case 1:
+      return Precision.DOUBLE;
+    case 2:
+      return Precision.FLOAT;
+    case 3:
+      return Precision.FIXED16;
+    default:
+      return null;
+    }
+  }
+
+  private long getSliceBytes() {
+    return (long) width * height * precision.getBytes();
+  }
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public int getDepth() {
+    return depth;
+  }
+
+  @Override
+  public Precision getPrecision() {
+    return precision;
+  }
+
+  @Override
+  public double[] getSpacing() {
+    return spacing.clone();
+  }
+
+  @Override
+  public synchronized CtMatrix getSlice(int z) throws IndexOutOfBoundsException, IOException {
+    if (z < 0 || z >= depth) throw new IndexOutOfBoundsException();
+    if (!channel.isOpen()) throw new IOException("Volume is closed");
+    if (slices[z] == null) {
+      long size = getSliceBytes();
+      MappedByteBuffer buffer = channel.map(readOnly ? MapMode.READ_ONLY : MapMode.READ_WRITE, HEADER_SIZE + size * z, size);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      slices[z] = new MappedCtMatrix(buffer, width, height, precision, min, max);
+    }
+    return slices[z];
+  }
+
+  @Override
+  public void setSlice(int z, CtMatrix matrix) throws IndexOutOfBoundsException, IllegalArgumentException, IOException {
+    if (matrix == null || matrix.getWidth() != width || matrix.getHeight() != height) throw new IllegalArgumentException();
+    getSlice(z).paste(0, 0, matrix);
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    for (MappedCtMatrix slice : slices)
+      if (slice != null && !readOnly)
+        slice.force();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (!channel.isOpen()) return;
+    try {
+      flush();
+    } finally {
+      Arrays.fill(slices, null);
+      file.close();
+    }
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+/**
+ * PackedCtMatrix is a base for CtMatrix implementations which keep all
+ * elements in a single, row-major storage of a numeric type other than
+ * double. Subclasses only have to convert a single element from and to
+ * double; all the matrix operations are done here in terms of element
+ * positions in the storage. Rows returned by {@link #getVector(int)} are
+ * views of the storage.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.struct.CtMatrixFactory
+ */
+abstract class PackedCtMatrix implements CtMatrix {
+
+  protected final int width, height;
+
+  /**
+   * @param width Number of columns
+   * @param height Number of rows
+   * @throws IllegalArgumentException If <b>width</b> or <b>height</b> is < 1
+   */
+  PackedCtMatrix(int width, int height) throws IllegalArgumentException {
+    if (width < 1 || height < 1) throw new IllegalArgumentException();
+    this.width = width;
+    this.height = height;
+  }
+
+  /** @return Precision of the storage */
+  abstract Precision getPrecision();
+
+  /**
+   * @param i Position in the row-major storage
+   * @return Element at a given position
+   */
+  abstract double load(int i);
+
+  /**
+   * @param i Position in the row-major storage
+   * @param val New value, it is converted to the storage precision
+   */
+  abstract void store(int i, double val);
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public void update(int x, int y, double val) throws IndexOutOfBoundsException {
+    if (x < 0 || x >= width || y < 0 || y >= height) throw new IndexOutOfBoundsException();
+    store(y * width + x, val);
+  }
+
+  @Override
+  public double get(int x, int y) throws IndexOutOfBoundsException {
+    if (x < 0 || x >= width || y < 0 || y >= height) throw new IndexOutOfBoundsException();
+    return load(y * width + x);
+  }
+
+  @Override
+  public void save(String filename) throws IllegalArgumentException, IOException {
+    if (filename == null) throw new IllegalArgumentException();
+    BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    WritableRaster raster = bi.getRaster();
+    double weight = 255 / max();
+    for (int y = 0; y < height; y++) {
+      int offset = y * width;
+      for (int x = 0; x < width; x++)
+        raster.setSample(x, y, 0, Math.abs(load(offset + x)) * weight);
+    }
+    ImageIO.write(bi, "png", new File(filename));
+  }
+
+  @Override
+  public CtVector getVector(int y) throws IndexOutOfBoundsException {
+    if (y < 0 || y >= height) throw new IndexOutOfBoundsException();
+    return new PackedCtVector(this, y * width, 1, width);
+  }
+
+  @Override
+  public void sum(CtMatrix matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.getWidth() != width || matrix.getHeight() != height)
+      throw new IllegalArgumentException();
+    for (int y = 0; y < height; y++) {
+      int offset = y * width;
+      for (int x = 0; x < width; x++)
+        store(offset + x, load(offset + x) + matrix.get(x, y));
+    }
+  }
+
+  @Override
+  public double max() {
+    double m = load(0);
+    int size = width * height;
+    for (int i = 1; i < size; i++) {
+      double val = load(i);
+      if (val > m) m = val;
+    }
+    return m;
+  }
+
+  @Override
+  public CtVector sumCols() {
+    CtVector line = CtVectorFactory.createArrayCtVector(width);
+    sumCols(line);
+    return line;
+  }
+
+  @Override
+  public void sumCols(CtVector dst) throws IllegalArgumentException {
+    if (dst == null || dst.getSize() != width) throw new IllegalArgumentException();
+    double[] line = ArrayCtVector.destination(dst);
+    Arrays.fill(line, 0);
+    for (int y = 0; y < height; y++) {
+      int offset = y * width;
+      for (int x = 0; x < width; x++)
+        line[x] += load(offset + x);
+    }
+    ArrayCtVector.commit(line, dst);
+  }
+
+  @Override
+  public void paste(int x, int y, CtMatrix matrix) throws IndexOutOfBoundsException, IllegalArgumentException {
+    if (matrix == null) throw new IllegalArgumentException();
+    if (x < 0 || x >= width || y < 0 || y >= height) throw new IndexOutOfBoundsException();
+    int pasteWidth = matrix.getWidth();
+    int pasteHeight = matrix.getHeight();
+    if (pasteWidth > width - x) pasteWidth = width - x;
+    if (pasteHeight > height - y) pasteHeight = height - y;
+    for (int yy = 0; yy < pasteHeight; yy++) {
+      int offset = (yy + y) * width + x;
+      for (int xx = 0; xx < pasteWidth; xx++)
+        store(offset + xx, matrix.get(xx, yy));
+    }
+  }
+
+  @Override
+  public void pasteVector(int y, CtVector vector) throws IndexOutOfBoundsException, IllegalArgumentException {
+    if (vector == null) throw new IllegalArgumentException();
+    if (vector.getSize() != width) throw new IllegalArgumentException();
+    if (y < 0 || y >= height) throw new IndexOutOfBoundsException();
+    int offset = y * width;
+    for (int x = 0; x < width; x++)
+      store(offset + x, vector.get(x));
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+/**
+ * PackedCtVector is a CtVector which views a part of the storage of a
+ * PackedCtMatrix. Its elements are placed in the storage every <b>stride</b>
+ * positions starting at a given offset. Changes made through the view are
+ * visible in the matrix and vice versa.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.struct.PackedCtMatrix
+ */
+class PackedCtVector implements CtVector {
+
+  private final PackedCtMatrix matrix;
+
+  private final int offset;
+
+  private final int stride;
+
+  private final int size;
+
+  /**
+   * Creates a view of a given matrix storage. Outside this package use
+   * {@link pl.jasiowka.jcte.struct.CtVectorFactory} static methods for
+   * creating vectors.
+   * 
+   * @param matrix Viewed matrix
+   * @param offset Position of the first element in the storage
+   * @param stride Distance between consecutive elements in the storage
+   * @param size Number of elements
+   * @throws IllegalArgumentException If the view doesn't fit the storage
+   */
+  PackedCtVector(PackedCtMatrix matrix, int offset, int stride, int size) throws IllegalArgumentException {
+    if (matrix == null || size < 1 || stride < 1 || offset < 0) throw new IllegalArgumentException();
+    if (offset + (long) (size - 1) * stride >= (long) matrix.getWidth() * matrix.getHeight())
+      throw new IllegalArgumentException();
+    this.matrix = matrix;
+    this.offset = offset;
+    this.stride = stride;
+    this.size = size;
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public void update(int x, double val) throws IndexOutOfBoundsException {
+    if (x < 0 || x >= size) throw new IndexOutOfBoundsException();
+    matrix.store(offset + x * stride, val);
+  }
+
+  @Override
+  public double get(int x) throws IndexOutOfBoundsException {
+    if (x < 0 || x >= size) throw new IndexOutOfBoundsException();
+    return matrix.load(offset + x * stride);
+  }
+
+  @Override
+  public CtVector conv(CtVector filter) throws IllegalArgumentException {
+    return conv(filter, ConvStrategy.AUTO);
+  }
+
+  @Override
+  public CtVector conv(CtVector filter, ConvStrategy strategy) throws IllegalArgumentException {
+    return CtVectorFactory.createArrayCtVector(toArray()).conv(filter, strategy);
+  }
+
+  @Override
+  public void conv(CtVector filter, CtVector dst) throws IllegalArgumentException {
+    conv(filter, ConvStrategy.AUTO, dst);
+  }
+
+  @Override
+  public void conv(CtVector filter, ConvStrategy strategy, CtVector dst) throws IllegalArgumentException {
+    double[] src = copyTo(ScratchBuffers.acquire(size));
+    try {
+      ArrayCtVector.conv(src, filter, strategy, dst);
+    } finally {
+      ScratchBuffers.release(src);
+    }
+  }
+
+  @Override
+  public void sum(CtVector vector) throws IllegalArgumentException {
+    if (vector == null || vector.getSize() != size) throw new IllegalArgumentException();
+    for (int x = 0, i = offset; x < size; x++, i += stride)
+      matrix.store(i, matrix.load(i) + vector.get(x));
+  }
+
+  @Override
+  public double max() {
+    double m = matrix.load(offset);
+    for (int x = 1, i = offset + stride; x < size; x++, i += stride) {
+      double val = matrix.load(i);
+      if (val > m) m = val;
+    }
+    return m;
+  }
+
+  @Override
+  public void paste(int x, CtVector vector) throws IndexOutOfBoundsException, IllegalArgumentException {
+    if (vector == null) throw new IllegalArgumentException();
+    if (x < 0 || x >= size) throw new IndexOutOfBoundsException();
+    int pasteWidth = vector.getSize();
+    if (pasteWidth > size - x) pasteWidth = size - x;
+    for (int xx = 0, i = offset + x * stride; xx < pasteWidth; xx++, i += stride)
+      matrix.store(i, vector.get(xx));
+  }
+
+  /** @return Copy of the viewed elements */
+  double[] toArray() {
+    return copyTo(new double[size]);
+  }
+
+  /**
+   * @param out Array of the vector size to copy the viewed elements to
+   * @return <b>out</b>
+   */
+  double[] copyTo(double[] out) {
+    for (int x = 0, i = offset; x < size; x++, i += stride)
+      out[x] = matrix.load(i);
+    return out;
+  }
+
+}
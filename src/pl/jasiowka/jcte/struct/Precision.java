@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+/**
+ * Numeric precision in which elements of a matrix are stored. Whatever the
+ * storage is, elements are always read and written as doubles.
+ * 
+ * @author Piotr Jasiowka
+ * @see pl.jasiowka.jcte.struct.CtMatrixFactory#createCtMatrix(int, int, Precision)
+ */
+public enum Precision {
+
+  /** 64-bit floating point numbers */
+  DOUBLE(8),
+
+  /** 32-bit floating point numbers, suitable for working data */
+  FLOAT(4),
+
+  /**
+   * 16-bit unsigned fixed point numbers spread evenly over a given range of
+   * values, [0..1] by default. Suitable for stored projections and
+   * sinograms: an 8-bit image normalized to [0..1] is stored exactly
+   */
+  FIXED16(2);
+
+  private final int bytes;
+
+  private Precision(int bytes) {
+    this.bytes = bytes;
+  }
+
+  /** @return Number of bytes a single element occupies */
+  public int getBytes() {
+    return bytes;
+  }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2013 by Piotr Jasiowka. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pl.jasiowka.jcte.struct;
+
+import java.util.Arrays;
+
+/**
+ * ScratchBuffers hands out temporary arrays which are reused instead of
+ * being allocated on every call, so hot loops which run over and over on
+ * images of the same size - rotation, filtering, backprojection - don't
+ * produce garbage. Every thread has its own pool; a buffer is taken with
+ * one of the <code>acquire</code> methods and given back with
+ * <code>release</code> when it isn't needed any more, preferably in a
+ * <code>finally</code> block:
+ * 
+ * <pre>
+ * double[] tmp = ScratchBuffers.acquire(width);
+ * try {
+ *   ...
+ * } finally {
+ *   ScratchBuffers.release(tmp);
+ * }
+ * </pre>
+ * 
+ * Buffers have exactly the requested length and are taken from the pool if
+ * it holds one of that length; otherwise a new one is allocated, so as soon
+ * as a computation has run once, repeating it on the same sizes allocates
+ * nothing. Acquired buffers hold whatever was left in them unless they are
+ * acquired zeroed. A buffer has to be released by the thread which acquired
+ * it and mustn't be used afterwards. Every pool keeps at most
+ * {@value #POOL_SIZE} buffers of each kind, and its buffers take at most the
+ * number of bytes given by the <code>jcte.scratch.bytes</code> system
+ * property; the least recently released buffers are dropped first, and a
+ * buffer larger than the whole budget isn't kept at all. Pools live as long
+ * as their threads, so the budget bounds the memory a long-lived worker
+ * thread holds after a large computation.
+ * 
+ * @author Piotr Jasiowka
+ */
+public final class ScratchBuffers {
+
+  /** Maximum number of buffers of each kind kept by a thread */
+  public static final int POOL_SIZE = 8;
+
+  /** Name of the system property with the budget of every pool */
+  public static final String PROPERTY = "jcte.scratch.bytes";
+
+  /** Budget of every pool if the property isn't set, 64 MiB */
+  public static final long DEFAULT_BUDGET = 64L << 20;
+
+  /** Budget of every pool, -1 until the property is read */
+  private static volatile long budget = -1;
+
+  /** Buffers of a single thread, the most recently released ones last */
+  private static final class Pool {
+
+    final double[][] arrays = new double[POOL_SIZE][];
+
+    final double[][][] tables = new double[POOL_SIZE][][];
+
+    /** Release order of the buffers above */
+    final long[] arrayStamps = new long[POOL_SIZE], tableStamps = new long[POOL_SIZE];
+
+    int arrayCount, tableCount;
+
+    long bytes, stamp;
+
+  }
+
+  private static final ThreadLocal<Pool> pools = new ThreadLocal<Pool>() {
+    @Override
+    protected Pool initialValue() {
+      return new Pool();
+    }
+  };
+
+  private ScratchBuffers() {
+  }
+
+  /**
+   * @param length Length of the buffer
+   * @return Buffer of a given length with undefined content
+   * @throws IllegalArgumentException If <b>length</b> is < 0
+   */
+  public static double[] acquire(int length) throws IllegalArgumentException {
+    if (length < 0) throw new IllegalArgumentException();
+    Pool pool = pools.get();
+    for (int i = pool.arrayCount - 1; i >= 0; i--) {
+      double[] out = pool.arrays[i];
+      if (out.length == length) {
+        removeArray(pool, i);
+        return out;
+      }
+    }
+    return new double[length];
+  }
+
+  /**
+   * @param length Length of the buffer
+   * @return Buffer of a given length filled with zeros
+   * @throws IllegalArgumentException If <b>length</b> is < 0
+   */
+  public static double[] acquireZeroed(int length) throws IllegalArgumentException {
+    double[] out = acquire(length);
+    Arrays.fill(out, 0);
+    return out;
+  }
+
+  /**
+   * @param rows Number of rows
+   * @param length Length of every row
+   * @return Table of <b>rows</b> arrays of a given length with undefined
+   *         content. Rows mustn't be replaced
+   * @throws IllegalArgumentException If any of numbers is < 0
+   */
+  public static double[][] acquire(int rows, int length) throws IllegalArgumentException {
+    if (rows < 0 || length < 0) throw new IllegalArgumentException();
+    Pool pool = pools.get();
+    for (int i = pool.tableCount - 1; i >= 0; i--) {
+      double[][] out = pool.tables[i];
+      if (out.length == rows && (rows == 0 || out[0].length == length)) {
+        removeTable(pool, i);
+        return out;
+      }
+    }
+    return new double[rows][length];
+  }
+
+  /**
+   * Gives a buffer back to the pool of the current thread.
+   * 
+   * @param buffer Buffer taken with {@link #acquire(int)}, or null
+   */
+  public static void release(double[] buffer) {
+    if (buffer == null) return;
+    long size = bytes(buffer);
+    if (size > getBudget()) return;
+    Pool pool = pools.get();
+    if (pool.arrayCount == POOL_SIZE) removeArray(pool, 0);
+    pool.arrayStamps[pool.arrayCount] = pool.stamp++;
+    pool.arrays[pool.arrayCount++] = buffer;
+    pool.bytes += size;
+    trim(pool);
+  }
+
+  /**
+   * Gives a table back to the pool of the current thread.
+   * 
+   * @param table Table taken with {@link #acquire(int, int)}, or null
+   */
+  public static void release(double[][] table) {
+    if (table == null) return;
+    long size = bytes(table);
+    if (size > getBudget()) return;
+    Pool pool = pools.get();
+    if (pool.tableCount == POOL_SIZE) removeTable(pool, 0);
+    pool.tableStamps[pool.tableCount] = pool.stamp++;
+    pool.tables[pool.tableCount++] = table;
+    pool.bytes += size;
+    trim(pool);
+  }
+
+  /** Drops all buffers kept by the current thread */
+  public static void clear() {
+    pools.remove();
+  }
+
+  /**
+   * @return Maximum number of bytes of buffers kept by every thread
+   * @throws IllegalStateException If the property is not a non-negative
+   *         number
+   */
+  public static long getBudget() throws IllegalStateException {
+    long out = budget;
+    if (out < 0) {
+      out = Long.getLong(PROPERTY, DEFAULT_BUDGET);
+      if (out < 0) throw new IllegalStateException("Invalid " + PROPERTY + " value: " + out);
+      budget = out;
+    }
+    return out;
+  }
+
+  /**
+   * Sets the maximum number of bytes of buffers kept by every thread. The
+   * pool of the current thread is trimmed at once, pools of other threads
+   * when they release a buffer next time.
+   * 
+   * @param budget Maximum number of bytes, 0 disables pooling
+   * @throws IllegalArgumentException If <b>budget</b> is < 0
+   */
+  public static void setBudget(long budget) throws IllegalArgumentException {
+    if (budget < 0) throw new IllegalArgumentException();
+    ScratchBuffers.budget = budget;
+    trim(pools.get());
+  }
+
+  /** @return Number of bytes of buffers kept by the current thread */
+  public static long getBytes() {
+    return pools.get().bytes;
+  }
+
+  private static long bytes(double[] buffer) {
+    return 8L * buffer.length;
+  }
+
+  private static long bytes(double[][] table) {
+    return table.length == 0 ? 0 : 8L * table.length * table[0].length;
+  }
+
+  /** Drops the least recently released buffers until the pool fits the budget */
+  private static void trim(Pool pool) {
+    long budget = getBudget();
+    while (pool.bytes > budget) {
+      boolean array = pool.tableCount == 0 || pool.arrayCount > 0 && pool.arrayStamps[0] < pool.tableStamps[0];
+      if (array)
+        removeArray(pool, 0);
+      else
+        removeTable(pool, 0);
+    }
+  }
+
+  private static void removeArray(Pool pool, int index) {
+    pool.bytes -= bytes(pool.arrays[index]);
+    remove(pool.arrays, pool.arrayStamps, index, pool.arrayCount--);
+  }
+
+  private static void removeTable(Pool pool, int index) {
+    pool.bytes -= bytes(pool.tables[index]);
+    remove(pool.tables, pool.tableStamps, index, pool.tableCount--);
+  }
+
+  private static <T> void remove(T[] items, long[] stamps, int index, int count) {
+    System.arraycopy(items, index + 1, items, index, count - index - 1);
+    System.arraycopy(stamps, index + 1, stamps, index, count - index - 1);
+    items[count - 1] = null;
+  }
+
+}
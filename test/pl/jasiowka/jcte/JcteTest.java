@@ -17,16 +17,97 @@
  */
 package pl.jasiowka.jcte;
 
-
 import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import pl.jasiowka.jcte.projection.Interpolation;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+import pl.jasiowka.jcte.struct.CtVector;
+
 public class JcteTest {
 
+  private final Jcte jcte = new Jcte();
+
+  private static CtMatrix ramp(int width, int height) {
+    CtMatrix m = CtMatrixFactory.createCtMatrix(width, height);
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
+        m.update(x, y, y * width + x + 1);
+    return m;
+  }
+
+  @Test
+  public void rotateByZeroKeepsMatrix() {
+    CtMatrix matrix = ramp(9, 6);
+    for (Interpolation interpolation : Interpolation.values()) {
+      CtMatrix out = jcte.rotate(matrix, 0, interpolation);
+      for (int y = 0; y < 6; y++)
+        for (int x = 0; x < 9; x++)
+          assertEquals(matrix.get(x, y), out.get(x, y), 0);
+    }
+  }
+
+  @Test
+  public void rotateByRightAngleTurnsMatrix() {
+    int size = 8;
+    CtMatrix matrix = ramp(size, size);
+    CtMatrix out = jcte.rotate(matrix, 90);
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++)
+        assertEquals(matrix.get(y, size - 1 - x), out.get(x, y), 0);
+  }
+
   @Test
-  public void test() {
-    fail("Not yet implemented"); // TODO
+  public void sinogramOfZeroAngleSumsColumns() {
+    CtMatrix matrix = ramp(10, 10);
+    CtMatrix sinogram = jcte.makeSinogram(matrix, 180, 4);
+    assertEquals(10, sinogram.getWidth());
+    assertEquals(4, sinogram.getHeight());
+    for (int x = 0; x < 10; x++) {
+      double sum = 0;
+      for (int y = 0; y < 10; y++)
+        sum += matrix.get(x, y);
+      assertEquals(sum, sinogram.get(x, 0), 1e-9);
+    }
+  }
+
+  @Test
+  public void sinogramSumsNearestRotations() {
+    CtMatrix matrix = TestMatrices.random(12, 12, 1);
+    CtMatrix sinogram = jcte.makeSinogram(matrix, 180, 7);
+    for (int i = 0; i < 7; i++) {
+      CtVector expected = jcte.rotate(matrix, i * (180 / 7)).sumCols();
+      for (int x = 0; x < 12; x++)
+        assertEquals(expected.get(x), sinogram.get(x, i), 0);
+    }
+  }
+
+  @Test
+  public void reconstructionOutOfRangeIsEmpty() {
+    CtMatrix out = jcte.reconstruct(ramp(8, 4), 400);
+    assertEquals(8, out.getWidth());
+    assertEquals(8, out.getHeight());
+    assertEquals(0, out.max(), 0);
+  }
+
+  @Test
+  public void filteredBackprojectionRecoversPoint() {
+    int size = 32;
+    CtMatrix phantom = CtMatrixFactory.createCtMatrix(size, size);
+    phantom.update(20, 12, 1);
+    CtMatrix sinogram = jcte.makeSinogram(phantom, 180, 90);
+    jcte.applyFilter(sinogram);
+    CtMatrix slice = jcte.reconstruct(sinogram, 180, Interpolation.LINEAR);
+    double max = slice.max();
+    assertEquals(max, slice.get(20, 12), 0);
+    assertTrue(slice.get(5, 5) < 0.1 * max);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sinogramNeedsProjections() {
+    jcte.makeSinogram(ramp(4, 4), 180, 0);
   }
 
 }
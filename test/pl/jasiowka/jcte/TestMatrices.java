@@ -0,0 +1,27 @@
+package pl.jasiowka.jcte;
+
+import java.util.Random;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+/** Matrices shared by tests of several packages */
+public final class TestMatrices {
+
+  private TestMatrices() {
+  }
+
+  /**
+   * @return New matrix of uniformly distributed values from [0..1), the same
+   *         for the same seed
+   */
+  public static CtMatrix random(int width, int height, long seed) {
+    Random random = new Random(seed);
+    CtMatrix m = CtMatrixFactory.createArrayCtMatrix(width, height);
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
+        m.update(x, y, random.nextDouble());
+    return m;
+  }
+
+}
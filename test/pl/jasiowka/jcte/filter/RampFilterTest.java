@@ -0,0 +1,44 @@
+package pl.jasiowka.jcte.filter;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import pl.jasiowka.jcte.TestMatrices;
+import pl.jasiowka.jcte.struct.ConvStrategy;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtVector;
+import pl.jasiowka.jcte.struct.CtVectorFactory;
+
+public class RampFilterTest {
+
+  @Test
+  public void filterIsSharedPerWidth() {
+    assertSame(RampFilter.forWidth(64), RampFilter.forWidth(64));
+    assertEquals(129, RampFilter.forWidth(64).getKernel().length);
+  }
+
+  @Test
+  public void strategiesGiveTheSameResult() {
+    int width = 50;
+    CtMatrix direct = TestMatrices.random(width, 7, 11);
+    CtMatrix fft = TestMatrices.random(width, 7, 11);
+    RampFilter.forWidth(width).apply(direct, ConvStrategy.DIRECT);
+    RampFilter.forWidth(width).apply(fft, ConvStrategy.FFT);
+    for (int y = 0; y < 7; y++)
+      for (int x = 0; x < width; x++)
+        assertEquals(direct.get(x, y), fft.get(x, y), 1e-10);
+  }
+
+  @Test
+  public void filterKeepsCentralPartOfConvolution() {
+    int width = 40;
+    CtMatrix sinogram = TestMatrices.random(width, 1, 11);
+    CtVector kernel = CtVectorFactory.createArrayCtVector(RampFilter.forWidth(width).getKernel());
+    CtVector full = sinogram.getVector(0).conv(kernel, ConvStrategy.DIRECT);
+    RampFilter.forWidth(width).apply(sinogram);
+    for (int x = 0; x < width; x++)
+      assertEquals(full.get(x + width), sinogram.get(x, 0), 1e-10);
+  }
+
+}
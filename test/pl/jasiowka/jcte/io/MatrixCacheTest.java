@@ -0,0 +1,141 @@
+package pl.jasiowka.jcte.io;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.Precision;
+
+public class MatrixCacheTest {
+
+  private static final int WIDTH = 6;
+
+  private static final int HEIGHT = 5;
+
+  private static final int PROJECTIONS = 4;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String pattern;
+
+  private void write(int p, int shift) throws IOException {
+    BufferedImage bi = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+    for (int y = 0; y < HEIGHT; y++)
+      for (int x = 0; x < WIDTH; x++)
+        bi.getRaster().setSample(x, y, 0, 10 * p + 3 * x + 17 * y + shift);
+    ImageIO.write(bi, "png", new File(String.format(pattern, p)));
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    pattern = new File(folder.getRoot(), "p%02d.png").getPath();
+    for (int p = 0; p < PROJECTIONS; p++)
+      write(p, 0);
+  }
+
+  private static void assertMatrixEquals(CtMatrix expected, CtMatrix actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++)
+      for (int x = 0; x < expected.getWidth(); x++)
+        assertEquals(expected.get(x, y), actual.get(x, y), 0);
+  }
+
+  @Test
+  public void repeatedProjectionIsAHit() throws IOException {
+    MatrixCache cache = new MatrixCache(1 << 20);
+    String filename = String.format(pattern, 1);
+    CtMatrix first = cache.getProjection(filename);
+    CtMatrix second = cache.getProjection(filename);
+    assertNotSame(first, second);
+    assertMatrixEquals(first, second);
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(WIDTH * HEIGHT * 8, cache.getBytes());
+  }
+
+  @Test
+  public void cachedMatricesAreCopies() throws IOException {
+    MatrixCache cache = new MatrixCache(1 << 20);
+    String filename = String.format(pattern, 1);
+    CtMatrix first = cache.getProjection(filename);
+    double value = first.get(2, 3);
+    first.update(2, 3, 100);
+    assertEquals(value, cache.getProjection(filename).get(2, 3), 0);
+  }
+
+  @Test
+  public void changedFileIsDecodedAgain() throws IOException {
+    MatrixCache cache = new MatrixCache(1 << 20);
+    String filename = String.format(pattern, 1);
+    double value = cache.getProjection(filename).get(0, 0);
+    File file = new File(filename);
+    long modified = file.lastModified();
+    write(1, 5);
+    file.setLastModified(modified + 2000);
+    assertEquals(value + 5 / 255.0, cache.getProjection(filename).get(0, 0), 1e-9);
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void leastRecentlyUsedEntryIsEvicted() throws IOException {
+    MatrixCache cache = new MatrixCache(2 * WIDTH * HEIGHT * 8);
+    cache.getProjection(String.format(pattern, 0));
+    cache.getProjection(String.format(pattern, 1));
+    cache.getProjection(String.format(pattern, 0));
+    cache.getProjection(String.format(pattern, 2));
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictions());
+    cache.resetStatistics();
+    cache.getProjection(String.format(pattern, 0));
+    cache.getProjection(String.format(pattern, 1));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertTrue(cache.getBytes() <= cache.getBudget());
+  }
+
+  @Test
+  public void zeroBudgetCachesNothing() throws IOException {
+    MatrixCache cache = new MatrixCache(0);
+    cache.getProjection(String.format(pattern, 0));
+    cache.getProjection(String.format(pattern, 0));
+    assertEquals(0, cache.size());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void cachedSinogramsMatchBuiltOnes() throws IOException {
+    MatrixCache cache = new MatrixCache(1 << 20);
+    CtMatrix[] expected = new SinogramBuilder(pattern, PROJECTIONS).build(0, HEIGHT);
+    SinogramBuilder builder = new SinogramBuilder(pattern, PROJECTIONS, Precision.FIXED16, cache);
+    CtMatrix[] built = builder.build(1, 3);
+    assertEquals(2, cache.getMisses() - PROJECTIONS);
+    for (int s = 0; s < built.length; s++)
+      assertMatrixEquals(expected[s + 1], built[s]);
+    cache.resetStatistics();
+    filterInPlace(built[0]);
+    CtMatrix[] again = builder.build(0, HEIGHT);
+    assertEquals(2 + PROJECTIONS, cache.getHits());
+    assertEquals(HEIGHT - 2, cache.getMisses());
+    for (int s = 0; s < again.length; s++)
+      assertMatrixEquals(expected[s], again[s]);
+  }
+
+  private static void filterInPlace(CtMatrix matrix) {
+    for (int y = 0; y < matrix.getHeight(); y++)
+      for (int x = 0; x < matrix.getWidth(); x++)
+        matrix.update(x, y, -1);
+  }
+
+}
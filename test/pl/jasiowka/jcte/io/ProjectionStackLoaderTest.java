@@ -0,0 +1,74 @@
+package pl.jasiowka.jcte.io;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+public class ProjectionStackLoaderTest {
+
+  private static final int PROJECTIONS = 9;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String pattern;
+
+  @Before
+  public void setUp() throws IOException {
+    for (int p = 0; p < PROJECTIONS; p++) {
+      BufferedImage bi = new BufferedImage(3, 2, BufferedImage.TYPE_BYTE_GRAY);
+      bi.getRaster().setSample(0, 0, 0, p);
+      ImageIO.write(bi, "png", new File(folder.getRoot(), p + ".png"));
+    }
+    pattern = new File(folder.getRoot(), "%d.png").getPath();
+  }
+
+  @Test
+  public void projectionsAreHandedOutInOrder() throws IOException {
+    ProjectionStackLoader loader = new ProjectionStackLoader(pattern, PROJECTIONS, 3, 4);
+    try {
+      for (int p = 0; p < PROJECTIONS; p++) {
+        assertTrue(loader.hasNext());
+        assertEquals(p / 255.0, loader.next().get(0, 0), 1e-12);
+      }
+      assertFalse(loader.hasNext());
+    } finally {
+      loader.close();
+    }
+  }
+
+  @Test
+  public void loadAllReturnsRemainingProjections() throws IOException {
+    ProjectionStackLoader loader = new ProjectionStackLoader(pattern, PROJECTIONS, 2, 1);
+    try {
+      loader.next();
+      CtMatrix[] rest = loader.loadAll();
+      assertEquals(PROJECTIONS - 1, rest.length);
+      assertEquals(1 / 255.0, rest[0].get(0, 0), 1e-12);
+    } finally {
+      loader.close();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void missingFileIsReported() throws IOException {
+    ProjectionStackLoader loader = new ProjectionStackLoader(pattern, PROJECTIONS + 1);
+    try {
+      loader.loadAll();
+    } finally {
+      loader.close();
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+package pl.jasiowka.jcte.io;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.Precision;
+
+public class ProjectionStackTest {
+
+  private static final int WIDTH = 7;
+
+  private static final int HEIGHT = 5;
+
+  private static final int PROJECTIONS = 4;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String pattern;
+
+  private static int sample(int p, int x, int y) {
+    return (10 * p + 3 * x * x + 17 * y) % 256;
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    for (int p = 0; p < PROJECTIONS; p++) {
+      BufferedImage bi = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+      for (int y = 0; y < HEIGHT; y++)
+        for (int x = 0; x < WIDTH; x++)
+          bi.getRaster().setSample(x, y, 0, sample(p, x, y));
+      ImageIO.write(bi, "png", new File(folder.getRoot(), String.format("p%02d.png", p)));
+    }
+    pattern = new File(folder.getRoot(), "p%02d.png").getPath();
+  }
+
+  @Test
+  public void rowsAreReadBackExactly() throws IOException {
+    String filename = new File(folder.getRoot(), "stack.jcs").getPath();
+    for (int rowsPerChunk : new int[] { 1, 2, 5 }) {
+      for (boolean compressed : new boolean[] { false, true }) {
+        ProjectionStack.convert(pattern, PROJECTIONS, filename, rowsPerChunk, compressed);
+        ProjectionStack stack = new ProjectionStack(filename);
+        try {
+          assertEquals(WIDTH, stack.getWidth());
+          assertEquals(HEIGHT, stack.getHeight());
+          assertEquals(PROJECTIONS, stack.getProjections());
+          assertEquals(rowsPerChunk, stack.getRowsPerChunk());
+          assertEquals(compressed, stack.isCompressed());
+          for (int p = 0; p < PROJECTIONS; p++)
+            for (int y = 0; y < HEIGHT; y++) {
+              double[] row = stack.readRow(p, y);
+              for (int x = 0; x < WIDTH; x++)
+                assertEquals(sample(p, x, y) / 255.0, row[x], 1e-12);
+            }
+          CtMatrix[] sinograms = stack.sinograms(1, 4, Precision.DOUBLE);
+          for (int s = 0; s < sinograms.length; s++)
+            for (int p = 0; p < PROJECTIONS; p++)
+              for (int x = 0; x < WIDTH; x++)
+                assertEquals(sample(p, x, s + 1) / 255.0, sinograms[s].get(x, p), 1e-12);
+        } finally {
+          stack.close();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void builderReadsSinogramsFromStack() throws IOException {
+    String filename = new File(folder.getRoot(), "stack.jcs").getPath();
+    CtMatrix expected = new SinogramBuilder(pattern, PROJECTIONS).build(3);
+    CtMatrix actual = new SinogramBuilder(pattern, PROJECTIONS, Precision.DOUBLE, null, filename).build(3);
+    assertTrue(new File(filename).exists());
+    for (int p = 0; p < PROJECTIONS; p++)
+      for (int x = 0; x < WIDTH; x++)
+        assertEquals(expected.get(x, p), actual.get(x, p), 1e-12);
+  }
+
+  @Test
+  public void ingestConvertsOnlyStaleStacks() throws IOException {
+    File file = new File(folder.getRoot(), "stack.jcs");
+    ProjectionStack.ingest(pattern, PROJECTIONS, file.getPath()).close();
+    file.setLastModified(System.currentTimeMillis() + 60000);
+    long modified = file.lastModified();
+    ProjectionStack.ingest(pattern, PROJECTIONS, file.getPath()).close();
+    assertEquals(modified, file.lastModified());
+    new File(String.format(pattern, 2)).setLastModified(modified + 1000);
+    ProjectionStack.ingest(pattern, PROJECTIONS, file.getPath()).close();
+    assertTrue(file.lastModified() < modified);
+  }
+
+  @Test(expected = IOException.class)
+  public void foreignFileIsRejected() throws IOException {
+    File file = new File(folder.getRoot(), "foreign.jcs");
+    FileOutputStream out = new FileOutputStream(file);
+    out.write(new byte[64]);
+    out.close();
+    new ProjectionStack(file.getPath());
+  }
+
+}
@@ -0,0 +1,75 @@
+package pl.jasiowka.jcte.io;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+public class SinogramBuilderTest {
+
+  private static final int WIDTH = 6;
+
+  private static final int HEIGHT = 5;
+
+  private static final int PROJECTIONS = 4;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String pattern;
+
+  private static int sample(int p, int x, int y) {
+    return 10 * p + 3 * x + 17 * y;
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    for (int p = 0; p < PROJECTIONS; p++) {
+      BufferedImage bi = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+      for (int y = 0; y < HEIGHT; y++)
+        for (int x = 0; x < WIDTH; x++)
+          bi.getRaster().setSample(x, y, 0, sample(p, x, y));
+      ImageIO.write(bi, "png", new File(folder.getRoot(), String.format("p%02d.png", p)));
+    }
+    pattern = new File(folder.getRoot(), "p%02d.png").getPath();
+  }
+
+  @Test
+  public void sinogramRowsAreProjectionRows() throws IOException {
+    CtMatrix[] sinograms = new SinogramBuilder(pattern, PROJECTIONS).build(1, 4);
+    assertEquals(3, sinograms.length);
+    for (int s = 0; s < sinograms.length; s++) {
+      assertEquals(WIDTH, sinograms[s].getWidth());
+      assertEquals(PROJECTIONS, sinograms[s].getHeight());
+      for (int p = 0; p < PROJECTIONS; p++)
+        for (int x = 0; x < WIDTH; x++)
+          assertEquals(sample(p, x, s + 1) / 255.0, sinograms[s].get(x, p), 1e-9);
+    }
+  }
+
+  @Test
+  public void singleSliceMatchesRange() throws IOException {
+    SinogramBuilder builder = new SinogramBuilder(pattern, PROJECTIONS);
+    CtMatrix[] range = builder.build(0, HEIGHT);
+    CtMatrix single = builder.build(2);
+    for (int p = 0; p < PROJECTIONS; p++)
+      for (int x = 0; x < WIDTH; x++)
+        assertEquals(range[2].get(x, p), single.get(x, p), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rangeHasToFitProjections() throws IOException {
+    new SinogramBuilder(pattern, PROJECTIONS).build(3, HEIGHT + 1);
+  }
+
+}
@@ -0,0 +1,123 @@
+package pl.jasiowka.jcte.io;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+public class SliceWriterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static CtMatrix sample() {
+    CtMatrix m = CtMatrixFactory.createCtMatrix(3, 2);
+    m.update(0, 0, -2);
+    m.update(1, 0, 0);
+    m.update(2, 0, 2);
+    m.update(0, 1, 1);
+    m.update(1, 1, -1);
+    m.update(2, 1, 0.5);
+    return m;
+  }
+
+  private String path(String name) {
+    return new File(folder.getRoot(), name).getPath();
+  }
+
+  @Test
+  public void png8MapsRangeOfValues() throws IOException {
+    new SliceWriter(SliceWriter.Format.PNG8).write(sample(), path("a.png"));
+    BufferedImage bi = ImageIO.read(new File(path("a.png")));
+    assertEquals(BufferedImage.TYPE_BYTE_GRAY, bi.getType());
+    assertEquals(0, bi.getRaster().getSample(0, 0, 0));
+    assertEquals(128, bi.getRaster().getSample(1, 0, 0));
+    assertEquals(255, bi.getRaster().getSample(2, 0, 0));
+    assertEquals(64, bi.getRaster().getSample(1, 1, 0));
+  }
+
+  @Test
+  public void png16ClampsToWindow() throws IOException {
+    SliceWriter.withWindowLevel(SliceWriter.Format.PNG16, 0.5, 1).write(sample(), path("b.png"));
+    BufferedImage bi = ImageIO.read(new File(path("b.png")));
+    assertEquals(BufferedImage.TYPE_USHORT_GRAY, bi.getType());
+    assertEquals(0, bi.getRaster().getSample(0, 0, 0));
+    assertEquals(0, bi.getRaster().getSample(1, 0, 0));
+    assertEquals(65535, bi.getRaster().getSample(2, 0, 0));
+    assertEquals(32768, bi.getRaster().getSample(2, 1, 0));
+  }
+
+  @Test
+  public void rawKeepsValues() throws IOException {
+    new SliceWriter(SliceWriter.Format.RAW_FLOAT).write(sample(), path("c.raw"));
+    assertEquals(6 * 4, new File(path("c.raw")).length());
+    DataInputStream in = new DataInputStream(new FileInputStream(path("c.raw")));
+    try {
+      float[] expected = { -2, 0, 2, 1, -1, 0.5f };
+      for (float f : expected)
+        assertEquals(f, Float.intBitsToFloat(Integer.reverseBytes(in.readInt())), 0);
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void asyncWriterWritesEverything() throws IOException {
+    AsyncSliceWriter writer = new AsyncSliceWriter(new SliceWriter(SliceWriter.Format.PNG8), 2);
+    for (int i = 0; i < 10; i++)
+      writer.write(sample(), path(i + ".png"));
+    writer.close();
+    for (int i = 0; i < 10; i++)
+      assertTrue(new File(path(i + ".png")).isFile());
+  }
+
+  @Test(expected = IOException.class)
+  public void asyncWriterReportsErrors() throws IOException {
+    AsyncSliceWriter writer = new AsyncSliceWriter(new SliceWriter(SliceWriter.Format.RAW_FLOAT), 2);
+    writer.write(sample(), path("missing/dir/x.raw"));
+    writer.close();
+  }
+
+  @Test(timeout = 10000)
+  public void interruptedWriteDoesNotBlockFlush() throws IOException {
+    final CountDownLatch release = new CountDownLatch(1);
+    AsyncSliceWriter writer = new AsyncSliceWriter(new SliceWriter(SliceWriter.Format.PNG8) {
+      @Override
+      public void write(CtMatrix matrix, String filename) throws IOException {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        super.write(matrix, filename);
+      }
+    }, 1);
+    writer.write(sample(), path("0.png"));
+    Thread.currentThread().interrupt();
+    try {
+      writer.write(sample(), path("1.png"));
+      fail();
+    } catch (IOException e) {
+      assertTrue(Thread.interrupted());
+    }
+    release.countDown();
+    writer.flush();
+    writer.close();
+    assertTrue(new File(path("0.png")).isFile());
+    assertFalse(new File(path("1.png")).exists());
+  }
+
+}
@@ -0,0 +1,102 @@
+package pl.jasiowka.jcte.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.jasiowka.jcte.Jcte;
+import pl.jasiowka.jcte.io.SliceWriter;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+public class MetricsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final MetricsRecorder recorder = new MetricsRecorder();
+
+  private CtMatrix matrix;
+
+  @Before
+  public void setUp() {
+    matrix = CtMatrixFactory.createCtMatrix(16, 12);
+    for (int y = 0; y < 12; y++)
+      for (int x = 0; x < 16; x++)
+        matrix.update(x, y, x * y);
+    Metrics.addListener(recorder);
+  }
+
+  @After
+  public void tearDown() {
+    Metrics.removeListener(recorder);
+  }
+
+  @Test
+  public void stagesAreRecorded() throws IOException {
+    Jcte jcte = new Jcte();
+    jcte.rotate(matrix, 30);
+    jcte.applyFilter(matrix);
+    jcte.applyFilter(matrix);
+    jcte.reconstruct(matrix, 180);
+    File file = folder.newFile("slice.raw");
+    new SliceWriter(SliceWriter.Format.RAW_FLOAT).write(matrix, file.getPath());
+    assertEquals(1, recorder.getRuns(Metrics.ROTATE));
+    assertEquals(2, recorder.getRuns(Metrics.FILTER));
+    assertEquals(2, recorder.getItems(Metrics.FILTER));
+    assertEquals(1, recorder.getItems(Metrics.RECONSTRUCT));
+    assertEquals(4 * 16 * 12, recorder.getBytesWritten(Metrics.WRITE));
+    assertTrue(recorder.getNanos(Metrics.RECONSTRUCT) > 0);
+    assertTrue(recorder.getThroughput(Metrics.FILTER) > 0);
+    assertEquals(0, recorder.getRuns(Metrics.DECODE));
+    assertTrue(recorder.toString().contains(Metrics.ROTATE));
+  }
+
+  @Test
+  public void removedListenerIsNotNotified() {
+    Metrics.removeListener(recorder);
+    new Jcte().rotate(matrix, 30);
+    assertTrue(recorder.getStages().isEmpty());
+  }
+
+  @Test
+  public void disabledProbeIsShared() {
+    Metrics.removeListener(recorder);
+    assertSame(Probe.DISABLED, Metrics.start(Metrics.ROTATE));
+  }
+
+  @Test
+  public void stagesAreRecordedByFlightRecorder() throws IOException {
+    Metrics.removeListener(recorder);
+    File file = folder.newFile("jcte.jfr");
+    Recording recording = new Recording();
+    try {
+      recording.enable("pl.jasiowka.jcte.Stage");
+      recording.start();
+      new Jcte().rotate(matrix, 30);
+      recording.stop();
+      recording.dump(file.toPath());
+    } finally {
+      recording.close();
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+    int rotations = 0;
+    for (RecordedEvent event : events)
+      if (event.getEventType().getName().equals("pl.jasiowka.jcte.Stage") && Metrics.ROTATE.equals(event.getString("stage")))
+        rotations++;
+    assertEquals(1, rotations);
+  }
+
+}
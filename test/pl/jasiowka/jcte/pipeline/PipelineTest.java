@@ -0,0 +1,101 @@
+package pl.jasiowka.jcte.pipeline;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PipelineTest {
+
+  private static List<Integer> numbers(int count) {
+    List<Integer> out = new ArrayList<Integer>();
+    for (int i = 0; i < count; i++)
+      out.add(i);
+    return out;
+  }
+
+  @Test
+  public void everyItemPassesEveryStage() throws IOException {
+    final List<Integer> collected = Collections.synchronizedList(new ArrayList<Integer>());
+    Pipeline.from(numbers(100), 2).then("twice", new Stage<Integer, Integer>() {
+      @Override
+      public void process(Integer item, Emitter<? super Integer> output) throws InterruptedException {
+        output.emit(item);
+        output.emit(item + 100);
+      }
+    }, 3, false).then("square", new Stage<Integer, Integer>() {
+      @Override
+      public void process(Integer item, Emitter<? super Integer> output) throws InterruptedException {
+        output.emit(item * item);
+      }
+    }, 2, true).then("collect", new Stage<Integer, Void>() {
+      @Override
+      public void process(Integer item, Emitter<? super Void> output) {
+        collected.add(item);
+      }
+    }, 1, true).run();
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 200; i++)
+      expected.add(i * i);
+    Collections.sort(collected);
+    assertEquals(expected, collected);
+  }
+
+  @Test
+  public void queuesBoundItemsInFlight() throws IOException {
+    final AtomicInteger inFlight = new AtomicInteger(), peak = new AtomicInteger();
+    Pipeline.from(numbers(200), 1).then("produce", new Stage<Integer, Integer>() {
+      @Override
+      public void process(Integer item, Emitter<? super Integer> output) throws InterruptedException {
+        int n = inFlight.incrementAndGet();
+        synchronized (peak) {
+          if (n > peak.get()) peak.set(n);
+        }
+        output.emit(item);
+      }
+    }, 1, false).then("consume", new Stage<Integer, Void>() {
+      @Override
+      public void process(Integer item, Emitter<? super Void> output) throws InterruptedException {
+        Thread.sleep(1);
+        inFlight.decrementAndGet();
+      }
+    }, 1, false).run();
+    // one item in the queue, one being consumed, one being emitted
+    assertTrue(peak.get() <= 3);
+  }
+
+  @Test
+  public void firstFailureStopsThePipeline() {
+    final AtomicInteger processed = new AtomicInteger();
+    try {
+      Pipeline.from(numbers(10000), 4).then("fail", new Stage<Integer, Integer>() {
+        @Override
+        public void process(Integer item, Emitter<? super Integer> output) throws IOException, InterruptedException {
+          if (item == 10) throw new IOException("broken");
+          output.emit(item);
+        }
+      }, 2, true).then("slow", new Stage<Integer, Void>() {
+        @Override
+        public void process(Integer item, Emitter<? super Void> output) throws InterruptedException {
+          processed.incrementAndGet();
+          Thread.sleep(1);
+        }
+      }, 1, false).run();
+      fail();
+    } catch (IOException e) {
+      assertEquals("broken", e.getMessage());
+    }
+    assertTrue(processed.get() < 10000);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void pipelineNeedsStages() throws IOException {
+    Pipeline.from(numbers(1), 1).run();
+  }
+
+}
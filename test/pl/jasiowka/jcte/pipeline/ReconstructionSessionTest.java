@@ -0,0 +1,119 @@
+package pl.jasiowka.jcte.pipeline;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.jasiowka.jcte.filter.RampFilter;
+import pl.jasiowka.jcte.io.SinogramBuilder;
+import pl.jasiowka.jcte.metrics.Metrics;
+import pl.jasiowka.jcte.metrics.MetricsRecorder;
+import pl.jasiowka.jcte.projection.BackprojectorFactory;
+import pl.jasiowka.jcte.projection.Interpolation;
+import pl.jasiowka.jcte.projection.ProjectionGeometry;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+public class ReconstructionSessionTest {
+
+  private static final int WIDTH = 16;
+
+  private static final int HEIGHT = 6;
+
+  private static final int PROJECTIONS = 10;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String pattern;
+
+  @Before
+  public void setUp() throws IOException {
+    for (int p = 0; p < PROJECTIONS; p++) {
+      BufferedImage bi = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+      for (int y = 0; y < HEIGHT; y++)
+        for (int x = 0; x < WIDTH; x++)
+          bi.getRaster().setSample(x, y, 0, (11 * p + 7 * x * y + 2 * x) % 256);
+      ImageIO.write(bi, "png", new File(folder.getRoot(), String.format("p%02d.png", p)));
+    }
+    pattern = new File(folder.getRoot(), "p%02d.png").getPath();
+  }
+
+  @Test
+  public void completeSessionMatchesFilteredBackprojection() throws IOException {
+    ProjectionGeometry geometry = new ProjectionGeometry(WIDTH, PROJECTIONS, 180);
+    ReconstructionSession session = new ReconstructionSession(geometry, Interpolation.LINEAR, 2, 5);
+    for (int p = PROJECTIONS - 1; p >= 0; p--) {
+      if (p % 2 == 0)
+        session.addProjection(p, String.format(pattern, p));
+      else
+        session.addProjection(p, CtMatrixFactory.createCtMatrix(String.format(pattern, p)));
+    }
+    assertTrue(session.isComplete());
+    CtMatrix[] slices = session.snapshot();
+    assertEquals(3, slices.length);
+    SinogramBuilder builder = new SinogramBuilder(pattern, PROJECTIONS);
+    for (int s = 2; s < 5; s++) {
+      CtMatrix sinogram = builder.build(s);
+      RampFilter.forWidth(WIDTH).apply(sinogram);
+      CtMatrix expected = BackprojectorFactory.createPixelDrivenBackprojector(geometry, Interpolation.LINEAR).backproject(sinogram);
+      for (int y = 0; y < WIDTH; y++)
+        for (int x = 0; x < WIDTH; x++)
+          assertEquals(expected.get(x, y), slices[s - 2].get(x, y), 1e-9);
+    }
+  }
+
+  @Test
+  public void partialVolumeCanBeTaken() throws IOException {
+    ReconstructionSession session = new ReconstructionSession(new ProjectionGeometry(WIDTH, PROJECTIONS, 180), Interpolation.NEAREST, 0, HEIGHT);
+    session.addProjection(3, String.format(pattern, 3));
+    assertEquals(1, session.getAdded());
+    assertFalse(session.isComplete());
+    CtMatrix slice = session.snapshot(4);
+    assertEquals(WIDTH, slice.getWidth());
+    assertEquals(WIDTH, slice.getHeight());
+  }
+
+  @Test
+  public void duplicateIsRejectedBeforeAnyWork() throws IOException {
+    ReconstructionSession session = new ReconstructionSession(new ProjectionGeometry(WIDTH, PROJECTIONS, 180), Interpolation.NEAREST, 0, HEIGHT);
+    CtMatrix image = CtMatrixFactory.createCtMatrix(String.format(pattern, 3));
+    session.addProjection(3, image);
+    MetricsRecorder recorder = new MetricsRecorder();
+    Metrics.addListener(recorder);
+    try {
+      try {
+        session.addProjection(3, image);
+        fail();
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      try {
+        session.addProjection(3, String.format(pattern, 3));
+        fail();
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    } finally {
+      Metrics.removeListener(recorder);
+    }
+    assertEquals(0, recorder.getRuns(Metrics.DECODE));
+    assertEquals(0, recorder.getRuns(Metrics.FILTER));
+    assertEquals(1, session.getAdded());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void projectionHasToHoldSlices() throws IOException {
+    new ReconstructionSession(new ProjectionGeometry(WIDTH, PROJECTIONS, 180), Interpolation.NEAREST, 4, HEIGHT + 1).addProjection(0, String.format(pattern, 0));
+  }
+
+}
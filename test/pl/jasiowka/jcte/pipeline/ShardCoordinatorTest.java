@@ -0,0 +1,162 @@
+package pl.jasiowka.jcte.pipeline;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.jasiowka.jcte.io.SliceWriter;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtVolume;
+import pl.jasiowka.jcte.struct.CtVolumeFactory;
+
+public class ShardCoordinatorTest {
+
+  private static final int WIDTH = 16;
+
+  private static final int HEIGHT = 7;
+
+  private static final int PROJECTIONS = 12;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String input;
+
+  @Before
+  public void setUp() throws IOException {
+    for (int p = 0; p < PROJECTIONS; p++) {
+      BufferedImage bi = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+      for (int y = 0; y < HEIGHT; y++)
+        for (int x = 0; x < WIDTH; x++)
+          bi.getRaster().setSample(x, y, 0, (7 * p + 5 * x * y + 3 * x) % 256);
+      ImageIO.write(bi, "png", new File(folder.getRoot(), String.format("p%02d.png", p)));
+    }
+    input = new File(folder.getRoot(), "p%02d.png").getPath();
+  }
+
+  @Test
+  public void shardsAreAssembledIntoVolume() throws IOException {
+    String output = new File(folder.getRoot(), "s%02d.raw").getPath();
+    VolumeReconstruction reference = new VolumeReconstruction(input, PROJECTIONS, 180, output);
+    reference.setWriter(new SliceWriter(SliceWriter.Format.RAW_FLOAT));
+    reference.run(1, 6);
+    ShardCoordinator coordinator = new ShardCoordinator(input, PROJECTIONS, 180);
+    coordinator.setWorkers(2);
+    coordinator.setShardSize(2);
+    coordinator.setThreadsPerWorker(1);
+    coordinator.setHeap("64m");
+    String filename = new File(folder.getRoot(), "volume.vol").getPath();
+    coordinator.run(1, 6, filename);
+    assertEquals(5, coordinator.getTotalSlices());
+    assertEquals(5, coordinator.getCompletedSlices());
+    assertEquals(3, coordinator.getCompletedShards());
+    assertEquals(0, coordinator.getRetried());
+    assertFalse(new File(filename + ".shards").exists());
+    CtVolume volume = CtVolumeFactory.openMappedCtVolume(filename, true);
+    try {
+      assertEquals(5, volume.getDepth());
+      for (int s = 1; s < 6; s++) {
+        CtMatrix expected = ShardCoordinator.readRaw(new File(reference.getFileName(s)), WIDTH);
+        CtMatrix actual = volume.getSlice(s - 1);
+        for (int y = 0; y < WIDTH; y++)
+          for (int x = 0; x < WIDTH; x++)
+            assertEquals(expected.get(x, y), actual.get(x, y), 0);
+      }
+    } finally {
+      volume.close();
+    }
+  }
+
+  @Test
+  public void failingShardIsRetriedAndReported() throws IOException {
+    new File(String.format(input, PROJECTIONS - 1)).delete();
+    String filename = new File(folder.getRoot(), "volume.vol").getPath();
+    File directory = new File(filename + ".shards");
+    assertTrue(directory.mkdirs());
+    assertTrue(new File(directory, "000001.raw").createNewFile());
+    ShardCoordinator coordinator = new ShardCoordinator(input, PROJECTIONS, 180);
+    coordinator.setWorkers(1);
+    coordinator.setRetries(1);
+    coordinator.setThreadsPerWorker(1);
+    try {
+      coordinator.run(0, 2, filename);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().startsWith("Shard 0..2 failed"));
+    }
+    assertEquals(1, coordinator.getRetried());
+    assertEquals(0, coordinator.getCompletedSlices());
+    assertFalse(directory.exists());
+  }
+
+  @Test
+  public void workerWhichDoesNotStartIsRetried() throws IOException {
+    ShardCoordinator coordinator = new ShardCoordinator(input, PROJECTIONS, 180);
+    coordinator.setWorkers(1);
+    coordinator.setRetries(1);
+    coordinator.setThreadsPerWorker(1);
+    coordinator.setHeap("1k");
+    try {
+      coordinator.run(0, 2, new File(folder.getRoot(), "volume.vol").getPath());
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Shard 0..2 failed: Worker didn't start"));
+    }
+    assertEquals(1, coordinator.getRetried());
+  }
+
+  @Test
+  public void hangingWorkerIsStoppedAndShardRetried() throws IOException {
+    ShardCoordinator coordinator = new ShardCoordinator(input, PROJECTIONS, 180) {
+      @Override
+      List<String> command(String outputPattern) {
+        List<String> command = super.command(outputPattern);
+        command.set(command.indexOf(ShardWorker.class.getName()), HangingWorker.class.getName());
+        return command;
+      }
+    };
+    coordinator.setWorkers(1);
+    coordinator.setRetries(1);
+    coordinator.setShardTimeout(500);
+    try {
+      coordinator.run(0, 2, new File(folder.getRoot(), "volume.vol").getPath());
+      fail();
+    } catch (IOException e) {
+      assertEquals("Shard 0..2 failed: Worker timed out", e.getMessage());
+    }
+    assertEquals(1, coordinator.getRetried());
+  }
+
+  /** Worker which starts and never replies */
+  public static class HangingWorker {
+
+    public static void main(String[] args) throws InterruptedException {
+      System.out.println("READY");
+      System.out.flush();
+      Thread.sleep(Long.MAX_VALUE);
+    }
+
+  }
+
+  @Test
+  public void commandRunsWorkerWithHeap() {
+    ShardCoordinator coordinator = new ShardCoordinator(input, PROJECTIONS, 90);
+    coordinator.setHeap("2g");
+    coordinator.setJvmOptions("-XX:+UseParallelGC");
+    List<String> command = coordinator.command("out%03d.raw");
+    assertTrue(command.contains("-Xmx2g"));
+    assertTrue(command.indexOf("-XX:+UseParallelGC") < command.indexOf(ShardWorker.class.getName()));
+    assertEquals("out%03d.raw", command.get(command.size() - 2));
+  }
+
+}
@@ -0,0 +1,106 @@
+package pl.jasiowka.jcte.pipeline;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.jasiowka.jcte.filter.RampFilter;
+import pl.jasiowka.jcte.io.SinogramBuilder;
+import pl.jasiowka.jcte.io.SliceWriter;
+import pl.jasiowka.jcte.projection.BackprojectorFactory;
+import pl.jasiowka.jcte.projection.Interpolation;
+import pl.jasiowka.jcte.projection.ProjectionGeometry;
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+public class VolumeReconstructionTest {
+
+  private static final int WIDTH = 16;
+
+  private static final int HEIGHT = 6;
+
+  private static final int PROJECTIONS = 12;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String input, output;
+
+  @Before
+  public void setUp() throws IOException {
+    for (int p = 0; p < PROJECTIONS; p++) {
+      BufferedImage bi = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+      for (int y = 0; y < HEIGHT; y++)
+        for (int x = 0; x < WIDTH; x++)
+          bi.getRaster().setSample(x, y, 0, (7 * p + 5 * x * y + 3 * x) % 256);
+      ImageIO.write(bi, "png", new File(folder.getRoot(), String.format("p%02d.png", p)));
+    }
+    input = new File(folder.getRoot(), "p%02d.png").getPath();
+    output = new File(folder.getRoot(), "s%02d.raw").getPath();
+  }
+
+  @Test
+  public void slicesMatchSequentialReconstruction() throws IOException {
+    VolumeReconstruction volume = new VolumeReconstruction(input, PROJECTIONS, 180, output);
+    volume.setWriter(new SliceWriter(SliceWriter.Format.RAW_FLOAT));
+    volume.setParallelism(3, 2, 2, 2);
+    volume.setCapacity(1);
+    volume.run(1, 5);
+    SinogramBuilder builder = new SinogramBuilder(input, PROJECTIONS);
+    ProjectionGeometry geometry = new ProjectionGeometry(WIDTH, PROJECTIONS, 180);
+    for (int s = 1; s < 5; s++) {
+      CtMatrix sinogram = builder.build(s);
+      RampFilter.forWidth(WIDTH).apply(sinogram);
+      CtMatrix expected = BackprojectorFactory.createPixelDrivenBackprojector(geometry, Interpolation.LINEAR).backproject(sinogram);
+      ByteBuffer written = ByteBuffer.wrap(Files.readAllBytes(new File(volume.getFileName(s)).toPath())).order(ByteOrder.LITTLE_ENDIAN);
+      assertEquals(4 * WIDTH * WIDTH, written.remaining());
+      for (int y = 0; y < WIDTH; y++)
+        for (int x = 0; x < WIDTH; x++)
+          assertEquals((float) expected.get(x, y), written.getFloat(), 0);
+    }
+    assertFalse(new File(volume.getFileName(0)).exists());
+    assertFalse(new File(volume.getFileName(5)).exists());
+  }
+
+  @Test
+  public void slabsGiveTheSameSlices() throws IOException {
+    VolumeReconstruction whole = new VolumeReconstruction(input, PROJECTIONS, 180, output);
+    whole.setWriter(new SliceWriter(SliceWriter.Format.RAW_FLOAT));
+    whole.run(0, HEIGHT);
+    byte[][] expected = new byte[HEIGHT][];
+    for (int s = 0; s < HEIGHT; s++)
+      expected[s] = Files.readAllBytes(new File(whole.getFileName(s)).toPath());
+    for (int slabSize = 1; slabSize <= 3; slabSize++) {
+      VolumeReconstruction slabs = new VolumeReconstruction(input, PROJECTIONS, 180, new File(folder.getRoot(), "slab" + slabSize + "-%02d.raw").getPath());
+      slabs.setWriter(new SliceWriter(SliceWriter.Format.RAW_FLOAT));
+      slabs.setParallelism(3, 2, 2, 2);
+      slabs.setCapacity(2);
+      slabs.setSlabSize(slabSize);
+      slabs.run(0, HEIGHT);
+      for (int s = 0; s < HEIGHT; s++)
+        assertArrayEquals(expected[s], Files.readAllBytes(new File(slabs.getFileName(s)).toPath()));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void slicesHaveToBeWithinProjections() throws IOException {
+    new VolumeReconstruction(input, PROJECTIONS, 180, output).run(2, HEIGHT + 1);
+  }
+
+  @Test(expected = IOException.class)
+  public void missingProjectionIsReported() throws IOException {
+    new VolumeReconstruction(input, PROJECTIONS + 1, 180, output).run(0, 1);
+  }
+
+}
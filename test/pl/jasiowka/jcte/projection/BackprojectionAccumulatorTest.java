@@ -0,0 +1,76 @@
+package pl.jasiowka.jcte.projection;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+public class BackprojectionAccumulatorTest {
+
+  private static final int SIZE = 20;
+
+  private static final int PROJECTIONS = 9;
+
+  private static CtMatrix[] sinograms(int count) {
+    CtMatrix[] out = new CtMatrix[count];
+    for (int k = 0; k < count; k++) {
+      out[k] = CtMatrixFactory.createArrayCtMatrix(SIZE, PROJECTIONS);
+      for (int y = 0; y < PROJECTIONS; y++)
+        for (int x = 0; x < SIZE; x++)
+          out[k].update(x, y, Math.sin(x * 0.5 + y * 0.9 + k * 2));
+    }
+    return out;
+  }
+
+  private static double[][] rows(CtMatrix[] sinograms, int projection) {
+    double[][] out = new double[sinograms.length][SIZE];
+    for (int k = 0; k < sinograms.length; k++)
+      for (int x = 0; x < SIZE; x++)
+        out[k][x] = sinograms[k].get(x, projection);
+    return out;
+  }
+
+  @Test
+  public void projectionsInAnyOrderGiveBatchBackprojection() {
+    ProjectionGeometry geometry = new ProjectionGeometry(SIZE, PROJECTIONS, 180);
+    for (int slices : new int[] { 1, 4 }) {
+      CtMatrix[] sinograms = sinograms(slices);
+      BackprojectionAccumulator accumulator = new BackprojectionAccumulator(geometry, Interpolation.LINEAR, slices);
+      int[] order = { 4, 0, 8, 2, 6, 1, 7, 3, 5 };
+      for (int i = 0; i < order.length; i++) {
+        assertFalse(accumulator.isComplete());
+        accumulator.add(order[i], rows(sinograms, order[i]));
+        assertTrue(accumulator.isAdded(order[i]));
+      }
+      assertTrue(accumulator.isComplete());
+      CtMatrix[] expected = BackprojectorFactory.createPixelDrivenBackprojector(geometry, Interpolation.LINEAR).backproject(sinograms);
+      for (int k = 0; k < slices; k++) {
+        CtMatrix actual = accumulator.snapshot(k);
+        for (int y = 0; y < SIZE; y++)
+          for (int x = 0; x < SIZE; x++)
+            assertEquals(expected[k].get(x, y), actual.get(x, y), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void partialSnapshotIsScaled() {
+    ProjectionGeometry geometry = new ProjectionGeometry(SIZE, new double[] { 0, 0, 0 });
+    CtMatrix[] sinograms = sinograms(1);
+    BackprojectionAccumulator accumulator = new BackprojectionAccumulator(geometry, Interpolation.NEAREST, 1);
+    assertEquals(0, accumulator.snapshot(0).get(3, 3), 0);
+    accumulator.add(1, rows(sinograms, 0));
+    assertEquals(3 * sinograms[0].get(3, 0), accumulator.snapshot(0).get(3, 7), 1e-12);
+    assertEquals(1, accumulator.getAdded());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void projectionCanBeAddedOnce() {
+    BackprojectionAccumulator accumulator = new BackprojectionAccumulator(new ProjectionGeometry(SIZE, PROJECTIONS, 180), Interpolation.LINEAR, 1);
+    accumulator.add(2, rows(sinograms(1), 2));
+    accumulator.add(2, rows(sinograms(1), 2));
+  }
+
+}
@@ -0,0 +1,87 @@
+package pl.jasiowka.jcte.projection;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+public class IterativeReconstructorTest {
+
+  private static final int SIZE = 24;
+
+  private static final ProjectionGeometry GEOMETRY = new ProjectionGeometry(SIZE, 24, 180);
+
+  private static CtMatrix phantom() {
+    CtMatrix m = CtMatrixFactory.createCtMatrix(SIZE, SIZE);
+    for (int y = 0; y < SIZE; y++)
+      for (int x = 0; x < SIZE; x++) {
+        double dx = x - 11.5, dy = y - 11.5;
+        if (dx * dx + dy * dy < 64) m.update(x, y, 1);
+        if ((x - 9) * (x - 9) + (y - 12) * (y - 12) < 5) m.update(x, y, 2);
+      }
+    return m;
+  }
+
+  private static double error(CtMatrix a, CtMatrix b) {
+    double sum = 0;
+    for (int y = 0; y < SIZE; y++)
+      for (int x = 0; x < SIZE; x++) {
+        double d = a.get(x, y) - b.get(x, y);
+        sum += d * d;
+      }
+    return Math.sqrt(sum);
+  }
+
+  private static CtMatrix sinogram(CtMatrix phantom) {
+    return ProjectorFactory.createPixelDrivenProjector(GEOMETRY, Interpolation.LINEAR).project(phantom);
+  }
+
+  @Test
+  public void sartConvergesToPhantom() {
+    CtMatrix phantom = phantom();
+    IterativeReconstructor sart = IterativeReconstructorFactory.createSartReconstructor(SystemMatrix.create(GEOMETRY), 4, 1);
+    CtMatrix sinogram = sinogram(phantom);
+    double few = error(phantom, sart.reconstruct(sinogram, 1));
+    double more = error(phantom, sart.reconstruct(sinogram, 10));
+    assertTrue(more < few);
+    assertTrue(more < 0.2 * error(phantom, CtMatrixFactory.createCtMatrix(SIZE, SIZE)));
+  }
+
+  @Test
+  public void osemConvergesAndStaysNonNegative() {
+    CtMatrix phantom = phantom();
+    IterativeReconstructor osem = IterativeReconstructorFactory.createOsemReconstructor(SystemMatrix.create(GEOMETRY), 6);
+    CtMatrix sinogram = sinogram(phantom);
+    CtMatrix few = osem.reconstruct(sinogram, 1);
+    CtMatrix more = osem.reconstruct(sinogram, 10);
+    assertTrue(error(phantom, more) < error(phantom, few));
+    for (int y = 0; y < SIZE; y++)
+      for (int x = 0; x < SIZE; x++)
+        assertTrue(more.get(x, y) >= 0);
+  }
+
+  @Test
+  public void resultDoesNotDependOnPartitions() {
+    SystemMatrix matrix = SystemMatrix.create(GEOMETRY);
+    CtMatrix sinogram = sinogram(phantom());
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      CtMatrix expected = IterativeReconstructorFactory.createSartReconstructor(matrix, 3, 1, 1, executor).reconstruct(sinogram, 2);
+      CtMatrix actual = IterativeReconstructorFactory.createSartReconstructor(matrix, 3, 1, 5, executor).reconstruct(sinogram, 2);
+      assertEquals(0, error(expected, actual), 0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void subsetsCantExceedProjections() {
+    IterativeReconstructorFactory.createOsemReconstructor(SystemMatrix.create(GEOMETRY), GEOMETRY.getProjections() + 1);
+  }
+
+}
@@ -0,0 +1,136 @@
+package pl.jasiowka.jcte.projection;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.function.DoubleUnaryOperator;
+
+import org.junit.Test;
+
+import pl.jasiowka.jcte.TestMatrices;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+import pl.jasiowka.jcte.struct.CtVector;
+import pl.jasiowka.jcte.struct.CtVectorFactory;
+
+public class LazyCtMatrixTest {
+
+  private static CtMatrix rotate(CtMatrix matrix, double angle, Interpolation interpolation) {
+    return RotationPlan.forGeometry(matrix.getWidth(), matrix.getHeight(), angle, interpolation).apply(matrix);
+  }
+
+  private static void assertMatrixEquals(CtMatrix expected, CtMatrix actual, double delta) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++)
+      for (int x = 0; x < expected.getWidth(); x++)
+        assertEquals(expected.get(x, y), actual.get(x, y), delta);
+  }
+
+  @Test
+  public void rotatedColumnSumsMatchEagerOnes() {
+    CtMatrix image = TestMatrices.random(20, 14, 1);
+    for (Interpolation interpolation : Interpolation.values()) {
+      CtVector expected = rotate(image, 33, interpolation).sumCols();
+      CtVector actual = LazyCtMatrix.of(image).rotate(33, interpolation).sumCols();
+      for (int x = 0; x < image.getWidth(); x++)
+        assertEquals(expected.get(x), actual.get(x), 1e-12);
+    }
+  }
+
+  @Test
+  public void chainsMatchEagerEvaluation() {
+    CtMatrix image = TestMatrices.random(17, 17, 2);
+    final CtMatrix other = TestMatrices.random(17, 17, 3);
+    DoubleUnaryOperator square = new DoubleUnaryOperator() {
+      @Override
+      public double applyAsDouble(double v) {
+        return v * v;
+      }
+    };
+    CtMatrix expected = rotate(image, 20, Interpolation.NEAREST);
+    expected.sum(other);
+    expected = rotate(expected, -45, Interpolation.NEAREST);
+    for (int y = 0; y < 17; y++)
+      for (int x = 0; x < 17; x++)
+        expected.update(x, y, square.applyAsDouble(2 * expected.get(x, y)));
+    expected = rotate(expected, 70, Interpolation.LINEAR);
+    CtMatrix actual = LazyCtMatrix.of(image).rotate(20).add(other).rotate(-45).scale(2).map(square).rotate(70, Interpolation.LINEAR).evaluate();
+    assertMatrixEquals(expected, actual, 1e-12);
+  }
+
+  @Test
+  public void addIntoAccumulatesRotations() {
+    CtMatrix image = TestMatrices.random(16, 16, 4);
+    CtMatrix expected = CtMatrixFactory.createFlatCtMatrix(16, 16);
+    CtMatrix actual = CtMatrixFactory.createFlatCtMatrix(16, 16);
+    for (int a = 0; a < 180; a += 15) {
+      expected.sum(rotate(image, a, Interpolation.LINEAR));
+      LazyCtMatrix.of(image).rotate(a, Interpolation.LINEAR).addInto(actual);
+    }
+    assertMatrixEquals(expected, actual, 1e-12);
+    assertEquals(0, LazyCtMatrix.of(image).scale(-1).add(image).sum(), 0);
+  }
+
+  @Test
+  public void evaluateCanOverwriteSource() {
+    CtMatrix image = TestMatrices.random(12, 9, 5);
+    CtMatrix expected = rotate(image, 90, Interpolation.NEAREST);
+    LazyCtMatrix.of(image).rotate(90).evaluate(image);
+    assertMatrixEquals(expected, image, 0);
+  }
+
+  @Test
+  public void addIntoCanAccumulateIntoSource() {
+    CtMatrix image = TestMatrices.random(12, 9, 7);
+    CtMatrix expected = rotate(image, 30, Interpolation.LINEAR);
+    expected.sum(image);
+    LazyCtMatrix.of(image).rotate(30, Interpolation.LINEAR).addInto(image);
+    assertMatrixEquals(expected, image, 1e-12);
+  }
+
+  @Test
+  public void sourceIsReadOnlyAtTracedPixels() {
+    final CtMatrix image = TestMatrices.random(32, 32, 8);
+    final int[] reads = new int[1];
+    CtMatrix counted = (CtMatrix) Proxy.newProxyInstance(CtMatrix.class.getClassLoader(), new Class<?>[] { CtMatrix.class }, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().equals("get")) reads[0]++;
+        return method.invoke(image, args);
+      }
+    });
+    CtVector expected = rotate(image, 45, Interpolation.NEAREST).sumCols();
+    CtVector actual = LazyCtMatrix.of(counted).rotate(45).sumCols();
+    for (int x = 0; x < 32; x++)
+      assertEquals(expected.get(x), actual.get(x), 1e-12);
+    // corners of the rotated image lie outside the source and aren't read
+    assertTrue("reads " + reads[0], reads[0] < 32 * 32);
+  }
+
+  @Test
+  public void fusedReductionDoesNotAllocateImages() {
+    com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) return;
+    CtMatrix image = TestMatrices.random(256, 256, 6);
+    CtVector sums = CtVectorFactory.createArrayCtVector(256);
+    LazyCtMatrix expression = LazyCtMatrix.of(image).rotate(30, Interpolation.LINEAR).scale(0.5);
+    for (int i = 0; i < 5; i++)
+      expression.sumCols(sums);
+    long id = Thread.currentThread().getId();
+    long before = bean.getThreadAllocatedBytes(id);
+    for (int i = 0; i < 10; i++)
+      expression.sumCols(sums);
+    long allocated = bean.getThreadAllocatedBytes(id) - before;
+    assertTrue("allocated " + allocated, allocated < 8 * 1024);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void addedMatrixHasToMatchSize() {
+    LazyCtMatrix.of(TestMatrices.random(8, 8, 7)).add(TestMatrices.random(8, 9, 8));
+  }
+
+}
@@ -0,0 +1,104 @@
+package pl.jasiowka.jcte.projection;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import pl.jasiowka.jcte.TestMatrices;
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+public class ParallelBackprojectorTest {
+
+  private static ExecutorService single;
+
+  private static ExecutorService many;
+
+  @BeforeClass
+  public static void setUp() {
+    single = Executors.newSingleThreadExecutor();
+    many = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    single.shutdown();
+    many.shutdown();
+  }
+
+  private static void assertBitIdentical(CtMatrix expected, CtMatrix actual) {
+    for (int y = 0; y < expected.getHeight(); y++)
+      for (int x = 0; x < expected.getWidth(); x++)
+        assertEquals(Double.doubleToRawLongBits(expected.get(x, y)), Double.doubleToRawLongBits(actual.get(x, y)));
+  }
+
+  @Test
+  public void tilesMatchSerialBackprojection() {
+    ProjectionGeometry geometry = new ProjectionGeometry(33, 20, 180);
+    CtMatrix sinogram = TestMatrices.random(33, 20, 7);
+    CtMatrix serial = BackprojectorFactory.createPixelDrivenBackprojector(geometry, Interpolation.LINEAR).backproject(sinogram);
+    for (int partitions = 1; partitions <= 7; partitions++) {
+      Backprojector bp = BackprojectorFactory.createParallelBackprojector(geometry, Interpolation.LINEAR, Partitioning.TILES, partitions, many);
+      assertBitIdentical(serial, bp.backproject(sinogram));
+    }
+  }
+
+  @Test
+  public void anglesDoNotDependOnExecutor() {
+    ProjectionGeometry geometry = new ProjectionGeometry(32, 45, 180);
+    CtMatrix sinogram = TestMatrices.random(32, 45, 7);
+    for (int partitions = 1; partitions <= 7; partitions++) {
+      CtMatrix a = BackprojectorFactory.createParallelBackprojector(geometry, Interpolation.NEAREST, Partitioning.ANGLES, partitions, single).backproject(sinogram);
+      CtMatrix b = BackprojectorFactory.createParallelBackprojector(geometry, Interpolation.NEAREST, Partitioning.ANGLES, partitions, many).backproject(sinogram);
+      assertBitIdentical(a, b);
+    }
+  }
+
+  @Test
+  public void singleAnglePartitionMatchesSerialBackprojection() {
+    ProjectionGeometry geometry = new ProjectionGeometry(32, 45, 180);
+    CtMatrix sinogram = TestMatrices.random(32, 45, 7);
+    CtMatrix serial = BackprojectorFactory.createPixelDrivenBackprojector(geometry, Interpolation.NEAREST).backproject(sinogram);
+    assertBitIdentical(serial, BackprojectorFactory.createParallelBackprojector(geometry, Interpolation.NEAREST, Partitioning.ANGLES, 1, many).backproject(sinogram));
+  }
+
+  @Test
+  public void anglesAreCloseToSerialBackprojection() {
+    ProjectionGeometry geometry = new ProjectionGeometry(32, 45, 180);
+    CtMatrix sinogram = TestMatrices.random(32, 45, 7);
+    CtMatrix serial = BackprojectorFactory.createPixelDrivenBackprojector(geometry, Interpolation.LINEAR).backproject(sinogram);
+    CtMatrix parallel = BackprojectorFactory.createParallelBackprojector(geometry, Interpolation.LINEAR, Partitioning.ANGLES, 5, many).backproject(sinogram);
+    for (int y = 0; y < 32; y++)
+      for (int x = 0; x < 32; x++)
+        assertEquals(serial.get(x, y), parallel.get(x, y), 1e-9);
+  }
+
+  @Test
+  public void batchMatchesSingleSlices() {
+    ProjectionGeometry geometry = new ProjectionGeometry(32, 45, 180);
+    CtMatrix[] sinograms = new CtMatrix[10];
+    for (int k = 0; k < sinograms.length; k++)
+      sinograms[k] = TestMatrices.random(32, 45, k);
+    for (Partitioning partitioning : Partitioning.values()) {
+      Backprojector bp = BackprojectorFactory.createParallelBackprojector(geometry, Interpolation.LINEAR, partitioning, 3, many);
+      CtMatrix[] out = bp.backproject(sinograms);
+      for (int k = 0; k < sinograms.length; k++)
+        assertBitIdentical(bp.backproject(sinograms[k]), out[k]);
+    }
+  }
+
+  @Test
+  public void regionMatchesSerialBackprojection() {
+    ProjectionGeometry geometry = new ProjectionGeometry(32, 45, 180);
+    CtMatrix sinogram = TestMatrices.random(32, 45, 7);
+    Region region = new Region(3, 6, 20, 17, true);
+    CtMatrix serial = BackprojectorFactory.createPixelDrivenBackprojector(geometry, Interpolation.LINEAR).backproject(sinogram, region);
+    Backprojector bp = BackprojectorFactory.createParallelBackprojector(geometry, Interpolation.LINEAR, Partitioning.TILES, 4, many);
+    assertBitIdentical(serial, bp.backproject(sinogram, region));
+  }
+
+}
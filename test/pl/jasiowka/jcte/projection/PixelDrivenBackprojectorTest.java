@@ -0,0 +1,197 @@
+package pl.jasiowka.jcte.projection;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+public class PixelDrivenBackprojectorTest {
+
+  private static CtMatrix ramp(int width, int height) {
+    CtMatrix m = CtMatrixFactory.createArrayCtMatrix(width, height);
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
+        m.update(x, y, x + 1);
+    return m;
+  }
+
+  private static CtMatrix reversed(CtMatrix m) {
+    CtMatrix out = CtMatrixFactory.createArrayCtMatrix(m.getWidth(), m.getHeight());
+    for (int y = 0; y < m.getHeight(); y++)
+      for (int x = 0; x < m.getWidth(); x++)
+        out.update(x, m.getHeight() - 1 - y, m.get(x, y));
+    return out;
+  }
+
+  /** @return Geometry of the same angles in the reversed order */
+  static ProjectionGeometry reversed(ProjectionGeometry geometry) {
+    int projections = geometry.getProjections();
+    double[] angles = new double[projections];
+    for (int i = 0; i < projections; i++)
+      angles[projections - 1 - i] = geometry.getAngle(i);
+    return new ProjectionGeometry(geometry.getDetectors(), angles);
+  }
+
+  @Test
+  public void zeroAngleSmearsProjectionOverRows() {
+    int size = 16;
+    CtMatrix sinogram = ramp(size, 1);
+    for (Interpolation interpolation : Interpolation.values()) {
+      Backprojector bp = BackprojectorFactory.createPixelDrivenBackprojector(new ProjectionGeometry(size, new double[] { 0 }), interpolation);
+      CtMatrix out = bp.backproject(sinogram);
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++)
+          assertEquals(x + 1, out.get(x, y), 1e-9);
+    }
+  }
+
+  @Test
+  public void rightAngleSmearsProjectionOverColumns() {
+    int size = 16;
+    CtMatrix sinogram = ramp(size, 1);
+    Backprojector bp = BackprojectorFactory.createPixelDrivenBackprojector(new ProjectionGeometry(size, new double[] { 90 }), Interpolation.NEAREST);
+    CtMatrix out = bp.backproject(sinogram);
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++)
+        assertEquals(size - y, out.get(x, y), 1e-9);
+  }
+
+  @Test
+  public void backprojectAddsToOutput() {
+    int size = 8;
+    ProjectionGeometry geometry = new ProjectionGeometry(size, 4, 180);
+    Backprojector bp = BackprojectorFactory.createPixelDrivenBackprojector(geometry, Interpolation.LINEAR);
+    CtMatrix sinogram = ramp(size, 4);
+    CtMatrix once = bp.backproject(sinogram);
+    CtMatrix twice = bp.backproject(sinogram);
+    bp.backproject(sinogram, twice);
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++)
+        assertEquals(2 * once.get(x, y), twice.get(x, y), 1e-9);
+  }
+
+  @Test
+  public void batchMatchesSingleSlices() {
+    int size = 21;
+    ProjectionGeometry geometry = new ProjectionGeometry(size, 13, 180);
+    for (Interpolation interpolation : Interpolation.values()) {
+      Backprojector bp = BackprojectorFactory.createPixelDrivenBackprojector(geometry, interpolation);
+      for (int batch : new int[] { 1, 3, 11 }) {
+        CtMatrix[] sinograms = new CtMatrix[batch];
+        for (int k = 0; k < batch; k++) {
+          sinograms[k] = CtMatrixFactory.createArrayCtMatrix(size, 13);
+          for (int y = 0; y < 13; y++)
+            for (int x = 0; x < size; x++)
+              sinograms[k].update(x, y, Math.sin(x * 0.7 + y * 1.3 + k));
+        }
+        CtMatrix[] out = bp.backproject(sinograms);
+        assertEquals(batch, out.length);
+        for (int k = 0; k < batch; k++) {
+          CtMatrix expected = bp.backproject(sinograms[k]);
+          for (int y = 0; y < size; y++)
+            for (int x = 0; x < size; x++)
+              assertEquals(expected.get(x, y), out[k].get(x, y), 0);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void symmetryNeedsEvenSizesAndRightAnglePairs() {
+    assertTrue(new ProjectionGeometry(16, 12, 180).isSymmetric());
+    assertFalse(new ProjectionGeometry(15, 12, 180).isSymmetric());
+    assertFalse(new ProjectionGeometry(16, 13, 180).isSymmetric());
+    assertFalse(new ProjectionGeometry(16, 12, 120).isSymmetric());
+    assertFalse(reversed(new ProjectionGeometry(16, 12, 180)).isSymmetric());
+    assertTrue(new ProjectionGeometry(16, new double[] { 10, 55, 100, 145 }).isSymmetric());
+  }
+
+  @Test
+  public void symmetricPathMatchesPlainOne() {
+    int size = 24;
+    ProjectionGeometry geometry = new ProjectionGeometry(size, 18, 180);
+    CtMatrix[] sinograms = new CtMatrix[3];
+    CtMatrix[] plain = new CtMatrix[sinograms.length];
+    for (int k = 0; k < sinograms.length; k++) {
+      sinograms[k] = CtMatrixFactory.createArrayCtMatrix(size, 18);
+      for (int y = 0; y < 18; y++)
+        for (int x = 0; x < size; x++)
+          sinograms[k].update(x, y, Math.sin(x * 0.7 + y * 1.3 + k));
+      plain[k] = reversed(sinograms[k]);
+    }
+    for (Interpolation interpolation : Interpolation.values()) {
+      Backprojector bp = BackprojectorFactory.createPixelDrivenBackprojector(geometry, interpolation);
+      Backprojector reference = BackprojectorFactory.createPixelDrivenBackprojector(reversed(geometry), interpolation);
+      CtMatrix[] expected = reference.backproject(plain);
+      CtMatrix[] actual = bp.backproject(sinograms);
+      for (int k = 0; k < sinograms.length; k++)
+        for (int y = 0; y < size; y++)
+          for (int x = 0; x < size; x++)
+            assertEquals(expected[k].get(x, y), actual[k].get(x, y), 1e-9);
+      Region region = Region.fieldOfView(size);
+      CtMatrix fov = reference.backproject(plain[0], region);
+      CtMatrix single = bp.backproject(sinograms[0], region);
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++)
+          assertEquals(fov.get(x, y), single.get(x, y), 1e-9);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void batchNeedsOutputForEverySinogram() {
+    Backprojector bp = BackprojectorFactory.createPixelDrivenBackprojector(new ProjectionGeometry(8, 4, 180), Interpolation.LINEAR);
+    bp.backproject(new CtMatrix[] { ramp(8, 4), ramp(8, 4) }, new CtMatrix[] { CtMatrixFactory.createCtMatrix(8, 8) });
+  }
+
+  @Test
+  public void regionIsCutFromFullImage() {
+    int size = 24;
+    ProjectionGeometry geometry = new ProjectionGeometry(size, 10, 180);
+    CtMatrix sinogram = CtMatrixFactory.createArrayCtMatrix(size, 10);
+    for (int y = 0; y < 10; y++)
+      for (int x = 0; x < size; x++)
+        sinogram.update(x, y, Math.cos(x * 0.4 + y));
+    for (Interpolation interpolation : Interpolation.values()) {
+      Backprojector bp = BackprojectorFactory.createPixelDrivenBackprojector(geometry, interpolation);
+      CtMatrix full = bp.backproject(sinogram);
+      CtMatrix part = bp.backproject(sinogram, new Region(5, 3, 11, 7, false));
+      assertEquals(11, part.getWidth());
+      assertEquals(7, part.getHeight());
+      for (int y = 0; y < 7; y++)
+        for (int x = 0; x < 11; x++)
+          assertEquals(full.get(x + 5, y + 3), part.get(x, y), 1e-12);
+      CtMatrix fov = bp.backproject(sinogram, Region.fieldOfView(size));
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++) {
+          double dx = x - 11.5, dy = y - 11.5;
+          if (dx * dx + dy * dy <= 144)
+            assertEquals(full.get(x, y), fov.get(x, y), 1e-12);
+          else
+            assertEquals(0, fov.get(x, y), 0);
+        }
+    }
+  }
+
+  @Test
+  public void fieldOfViewSkipsCorners() {
+    int size = 512;
+    double ratio = (double) Region.fieldOfView(size).getPixels(size) / (size * size);
+    assertEquals(Math.PI / 4, ratio, 0.01);
+    assertEquals(size * size, Region.full(size).getPixels(size));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void regionHasToFitInImage() {
+    Backprojector bp = BackprojectorFactory.createPixelDrivenBackprojector(new ProjectionGeometry(8, 4, 180), Interpolation.LINEAR);
+    bp.backproject(ramp(8, 4), new Region(4, 0, 5, 2, false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sinogramSizeHasToMatchGeometry() {
+    Backprojector bp = BackprojectorFactory.createPixelDrivenBackprojector(new ProjectionGeometry(8, 4, 180), Interpolation.LINEAR);
+    bp.backproject(ramp(8, 5));
+  }
+
+}
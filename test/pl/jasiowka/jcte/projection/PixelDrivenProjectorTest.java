@@ -0,0 +1,92 @@
+package pl.jasiowka.jcte.projection;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import pl.jasiowka.jcte.TestMatrices;
+import pl.jasiowka.jcte.struct.CtMatrix;
+
+public class PixelDrivenProjectorTest {
+
+  private static double dot(CtMatrix a, CtMatrix b) {
+    double sum = 0;
+    for (int y = 0; y < a.getHeight(); y++)
+      for (int x = 0; x < a.getWidth(); x++)
+        sum += a.get(x, y) * b.get(x, y);
+    return sum;
+  }
+
+  @Test
+  public void zeroAngleSumsColumns() {
+    int size = 16;
+    CtMatrix image = TestMatrices.random(size, size, 1);
+    for (Interpolation interpolation : Interpolation.values()) {
+      Projector fp = ProjectorFactory.createPixelDrivenProjector(new ProjectionGeometry(size, new double[] { 0 }), interpolation);
+      CtMatrix sinogram = fp.project(image);
+      for (int x = 0; x < size; x++) {
+        double sum = 0;
+        for (int y = 0; y < size; y++)
+          sum += image.get(x, y);
+        assertEquals(sum, sinogram.get(x, 0), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void isAdjointOfBackprojector() {
+    int size = 24;
+    ProjectionGeometry geometry = new ProjectionGeometry(size, 30, 180);
+    CtMatrix image = TestMatrices.random(size, size, 2);
+    CtMatrix sinogram = TestMatrices.random(size, geometry.getProjections(), 3);
+    for (Interpolation interpolation : Interpolation.values()) {
+      Projector fp = ProjectorFactory.createPixelDrivenProjector(geometry, interpolation);
+      Backprojector bp = BackprojectorFactory.createPixelDrivenBackprojector(geometry, interpolation);
+      double lhs = dot(fp.project(image), sinogram);
+      double rhs = dot(image, bp.backproject(sinogram));
+      assertEquals(lhs, rhs, 1e-9 * Math.abs(lhs));
+    }
+  }
+
+  @Test
+  public void symmetricPathMatchesPlainOne() {
+    int size = 24;
+    ProjectionGeometry geometry = new ProjectionGeometry(size, 18, 180);
+    ProjectionGeometry reversed = PixelDrivenBackprojectorTest.reversed(geometry);
+    CtMatrix image = TestMatrices.random(size, size, 5);
+    for (Interpolation interpolation : Interpolation.values()) {
+      CtMatrix expected = ProjectorFactory.createPixelDrivenProjector(reversed, interpolation).project(image);
+      CtMatrix actual = ProjectorFactory.createPixelDrivenProjector(geometry, interpolation).project(image);
+      for (int y = 0; y < geometry.getProjections(); y++)
+        for (int x = 0; x < size; x++)
+          assertEquals(expected.get(x, geometry.getProjections() - 1 - y), actual.get(x, y), 1e-9);
+    }
+  }
+
+  @Test
+  public void resultDoesNotDependOnPartitions() throws Exception {
+    int size = 20;
+    ProjectionGeometry geometry = new ProjectionGeometry(size, 17, 180);
+    CtMatrix image = TestMatrices.random(size, size, 4);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      CtMatrix expected = ProjectorFactory.createPixelDrivenProjector(geometry, Interpolation.LINEAR, 1, executor).project(image);
+      CtMatrix actual = ProjectorFactory.createPixelDrivenProjector(geometry, Interpolation.LINEAR, 5, executor).project(image);
+      for (int y = 0; y < geometry.getProjections(); y++)
+        for (int x = 0; x < size; x++)
+          assertEquals(expected.get(x, y), actual.get(x, y), 0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void imageWidthHasToMatchGeometry() {
+    Projector fp = ProjectorFactory.createPixelDrivenProjector(new ProjectionGeometry(8, 4, 180), Interpolation.LINEAR);
+    fp.project(TestMatrices.random(9, 8, 5));
+  }
+
+}
@@ -0,0 +1,81 @@
+package pl.jasiowka.jcte.projection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import pl.jasiowka.jcte.filter.RampFilter;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+public class ProgressiveReconstructorTest {
+
+  private static final int SIZE = 64;
+
+  private static CtMatrix filteredSinogram(ProjectionGeometry geometry) {
+    CtMatrix phantom = CtMatrixFactory.createCtMatrix(SIZE, SIZE);
+    for (int y = 0; y < SIZE; y++)
+      for (int x = 0; x < SIZE; x++) {
+        double dx = x - 28, dy = y - 34;
+        if (dx * dx + dy * dy < 15 * 15) phantom.update(x, y, 1);
+      }
+    CtMatrix sinogram = ProjectorFactory.createPixelDrivenProjector(geometry, Interpolation.LINEAR).project(phantom);
+    RampFilter.forWidth(SIZE).apply(sinogram);
+    return sinogram;
+  }
+
+  @Test
+  public void previewsComeBeforeFinalImage() {
+    ProjectionGeometry geometry = new ProjectionGeometry(SIZE, 60, 180);
+    CtMatrix sinogram = filteredSinogram(geometry);
+    Backprojector bp = BackprojectorFactory.createPixelDrivenBackprojector(geometry, Interpolation.LINEAR);
+    final List<Integer> factors = new ArrayList<Integer>();
+    final List<CtMatrix> images = new ArrayList<CtMatrix>();
+    CtMatrix out = new ProgressiveReconstructor(bp, 3).reconstruct(sinogram, new PreviewListener() {
+      @Override
+      public void previewReady(CtMatrix image, int factor) {
+        factors.add(factor);
+        images.add(image);
+      }
+    });
+    assertEquals(3, factors.size());
+    assertEquals(4, (int) factors.get(0));
+    assertEquals(2, (int) factors.get(1));
+    assertEquals(1, (int) factors.get(2));
+    assertSame(out, images.get(2));
+    CtMatrix full = bp.backproject(sinogram);
+    for (int y = 0; y < SIZE; y++)
+      for (int x = 0; x < SIZE; x++)
+        assertEquals(full.get(x, y), out.get(x, y), 0);
+  }
+
+  @Test
+  public void previewIsCloseToFinalImage() {
+    ProjectionGeometry geometry = new ProjectionGeometry(SIZE, 60, 180);
+    CtMatrix sinogram = filteredSinogram(geometry);
+    ProgressiveReconstructor reconstructor = new ProgressiveReconstructor(BackprojectorFactory.createPixelDrivenBackprojector(geometry, Interpolation.LINEAR), 2);
+    CtMatrix full = reconstructor.getBackprojector().backproject(sinogram);
+    CtMatrix preview = reconstructor.preview(sinogram, 2);
+    // compare inside and outside of the disc, away from its edge
+    double inside = 0, outside = 0, fullInside = 0, fullOutside = 0;
+    for (int y = 0; y < SIZE; y++)
+      for (int x = 0; x < SIZE; x++) {
+        double dx = x - 28, dy = y - 34;
+        double r2 = dx * dx + dy * dy;
+        if (r2 < 10 * 10) {
+          inside += preview.get(x, y);
+          fullInside += full.get(x, y);
+        } else if (r2 > 20 * 20 && r2 < 26 * 26) {
+          outside += preview.get(x, y);
+          fullOutside += full.get(x, y);
+        }
+      }
+    assertEquals(1, inside / fullInside, 0.1);
+    assertTrue(Math.abs(outside) < 0.1 * Math.abs(inside));
+    assertTrue(Math.abs(fullOutside) < 0.1 * Math.abs(fullInside));
+  }
+
+}
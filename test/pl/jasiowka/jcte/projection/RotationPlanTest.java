@@ -0,0 +1,112 @@
+package pl.jasiowka.jcte.projection;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import pl.jasiowka.jcte.TestMatrices;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+public class RotationPlanTest {
+
+  /** The per-pixel rotation the plans replaced */
+  private static double rotated(CtMatrix matrix, double angle, int x, int y) {
+    int inXCenter = matrix.getWidth() / 2;
+    int inYCenter = matrix.getHeight() / 2;
+    double alpha = (-angle) * Math.PI / 180;
+    int elX = 2 * (x - inXCenter) + 1;
+    int elY = 2 * (y - inYCenter) + 1;
+    int rotX = (int) Math.round(elX * Math.cos(alpha) - elY * Math.sin(alpha));
+    int rotY = (int) Math.round(elX * Math.sin(alpha) + elY * Math.cos(alpha));
+    int orgX = (rotX - 1) / 2 + inXCenter;
+    int orgY = (rotY - 1) / 2 + inYCenter;
+    if (orgX >= 0 && orgX < matrix.getWidth() && orgY >= 0 && orgY < matrix.getHeight())
+      return matrix.get(orgX, orgY);
+    return 0;
+  }
+
+  @Test
+  public void nearestMatchesPerPixelRotation() {
+    CtMatrix matrix = TestMatrices.random(31, 24, 1);
+    for (double angle = 0; angle < 360; angle += 17.5) {
+      CtMatrix out = RotationPlan.forGeometry(31, 24, angle, Interpolation.NEAREST).apply(matrix);
+      for (int y = 0; y < 24; y++)
+        for (int x = 0; x < 31; x++)
+          assertEquals(rotated(matrix, angle, x, y), out.get(x, y), 0);
+    }
+  }
+
+  @Test
+  public void rotationIntoDestinationMatchesNewMatrix() {
+    CtMatrix matrix = TestMatrices.random(31, 24, 2);
+    for (Interpolation interpolation : Interpolation.values()) {
+      RotationPlan plan = RotationPlan.forGeometry(31, 24, 33, interpolation);
+      CtMatrix expected = plan.apply(matrix);
+      CtMatrix dst = CtMatrixFactory.createFlatCtMatrix(31, 24);
+      plan.apply(matrix, dst);
+      CtMatrix inPlace = CtMatrixFactory.createFlatCtMatrix(31, 24);
+      inPlace.paste(0, 0, matrix);
+      plan.apply(inPlace, inPlace);
+      for (int y = 0; y < 24; y++)
+        for (int x = 0; x < 31; x++) {
+          assertEquals(expected.get(x, y), dst.get(x, y), 0);
+          assertEquals(expected.get(x, y), inPlace.get(x, y), 0);
+        }
+    }
+  }
+
+  @Test
+  public void linearKeepsImageAtZeroAngle() {
+    CtMatrix matrix = TestMatrices.random(16, 11, 2);
+    CtMatrix out = RotationPlan.forGeometry(16, 11, 0, Interpolation.LINEAR).apply(matrix);
+    for (int y = 0; y < 11; y++)
+      for (int x = 0; x < 16; x++)
+        assertEquals(matrix.get(x, y), out.get(x, y), 0);
+  }
+
+  @Test
+  public void linearRightAngleMovesPixels() {
+    int size = 12;
+    CtMatrix matrix = TestMatrices.random(size, size, 3);
+    CtMatrix linear = RotationPlan.forGeometry(size, size, 90, Interpolation.LINEAR).apply(matrix);
+    CtMatrix nearest = RotationPlan.forGeometry(size, size, 90, Interpolation.NEAREST).apply(matrix);
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++)
+        assertEquals(nearest.get(x, y), linear.get(x, y), 1e-9);
+  }
+
+  @Test
+  public void plansAreCachedAndBounded() {
+    long budget = RotationPlan.getCacheBudget();
+    try {
+      RotationPlan.setCacheBudget(0);
+      RotationPlan first = RotationPlan.forGeometry(8, 8, 10, Interpolation.LINEAR);
+      assertEquals(21 * 64, first.getBytes());
+      assertEquals(4 * 64, RotationPlan.forGeometry(8, 8, 10, Interpolation.NEAREST).getBytes());
+      RotationPlan.setCacheBudget(2 * first.getBytes());
+      first = RotationPlan.forGeometry(8, 8, 10, Interpolation.LINEAR);
+      assertSame(first, RotationPlan.forGeometry(8, 8, 10, Interpolation.LINEAR));
+      assertNotSame(first, RotationPlan.forGeometry(8, 8, 10, Interpolation.NEAREST));
+      RotationPlan.forGeometry(8, 8, 20, Interpolation.LINEAR);
+      assertTrue(RotationPlan.getCacheBytes() <= 2 * first.getBytes());
+      assertNotSame(first, RotationPlan.forGeometry(8, 8, 10, Interpolation.LINEAR));
+    } finally {
+      RotationPlan.setCacheBudget(budget);
+    }
+  }
+
+  @Test
+  public void planLargerThanBudgetIsNotCached() {
+    long budget = RotationPlan.getCacheBudget();
+    try {
+      RotationPlan.setCacheBudget(21 * 64 - 1);
+      RotationPlan first = RotationPlan.forGeometry(8, 8, 30, Interpolation.LINEAR);
+      assertNotSame(first, RotationPlan.forGeometry(8, 8, 30, Interpolation.LINEAR));
+      assertSame(RotationPlan.forGeometry(8, 8, 30, Interpolation.NEAREST), RotationPlan.forGeometry(8, 8, 30, Interpolation.NEAREST));
+    } finally {
+      RotationPlan.setCacheBudget(budget);
+    }
+  }
+
+}
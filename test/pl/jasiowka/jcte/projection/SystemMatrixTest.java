@@ -0,0 +1,81 @@
+package pl.jasiowka.jcte.projection;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.jasiowka.jcte.TestMatrices;
+import pl.jasiowka.jcte.struct.CtMatrix;
+import pl.jasiowka.jcte.struct.CtMatrixFactory;
+
+public class SystemMatrixTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static double[] multiply(SystemMatrix matrix, CtMatrix image) {
+    int size = matrix.getGeometry().getDetectors();
+    double[] out = new double[matrix.getGeometry().getProjections() * size];
+    for (int a = 0; a < matrix.getGeometry().getProjections(); a++)
+      for (int j = 0; j < matrix.pixels; j++) {
+        int row = a * matrix.pixels + j;
+        for (int k = matrix.rowPtr[row]; k < matrix.rowPtr[row + 1]; k++)
+          out[a * size + matrix.cols[k]] += matrix.vals[k] * image.get(j % size, j / size);
+      }
+    return out;
+  }
+
+  @Test
+  public void matchesLinearProjector() {
+    int size = 20;
+    ProjectionGeometry geometry = new ProjectionGeometry(size, 13, 180);
+    CtMatrix image = TestMatrices.random(size, size, 1);
+    double[] product = multiply(SystemMatrix.create(geometry), image);
+    CtMatrix sinogram = ProjectorFactory.createPixelDrivenProjector(geometry, Interpolation.LINEAR).project(image);
+    for (int a = 0; a < geometry.getProjections(); a++)
+      for (int d = 0; d < size; d++)
+        assertEquals(sinogram.get(d, a), product[a * size + d], 1e-4);
+  }
+
+  @Test
+  public void savedMatrixIsLoadedBack() throws IOException {
+    ProjectionGeometry geometry = new ProjectionGeometry(9, 7, 180);
+    SystemMatrix matrix = SystemMatrix.create(geometry);
+    File file = folder.newFile();
+    matrix.save(file);
+    SystemMatrix loaded = SystemMatrix.load(file);
+    assertEquals(matrix.getEntries(), loaded.getEntries());
+    assertEquals(geometry.getAngle(3), loaded.getGeometry().getAngle(3), 0);
+    assertArrayEquals(matrix.rowPtr, loaded.rowPtr);
+    assertArrayEquals(matrix.cols, loaded.cols);
+    assertArrayEquals(matrix.vals, loaded.vals, 0);
+  }
+
+  @Test
+  public void matricesAreCachedPerGeometry() throws IOException {
+    File directory = new File(folder.getRoot(), "cache");
+    ProjectionGeometry geometry = new ProjectionGeometry(8, 5, 180);
+    SystemMatrix first = SystemMatrix.forGeometry(geometry, directory);
+    File file = new File(directory, SystemMatrix.getFileName(geometry));
+    assertTrue(file.isFile());
+    long modified = file.lastModified();
+    SystemMatrix second = SystemMatrix.forGeometry(geometry, directory);
+    assertEquals(modified, file.lastModified());
+    assertArrayEquals(first.vals, second.vals, 0);
+    SystemMatrix other = SystemMatrix.forGeometry(new ProjectionGeometry(8, 5, 90), directory);
+    assertEquals(90.0 * 4 / 5, other.getGeometry().getAngle(4), 1e-12);
+  }
+
+  @Test(expected = IOException.class)
+  public void foreignFileIsRejected() throws IOException {
+    File file = folder.newFile();
+    CtMatrixFactory.createFlatCtMatrix(4, 4).save(file.getPath());
+    SystemMatrix.load(file);
+  }
+
+}
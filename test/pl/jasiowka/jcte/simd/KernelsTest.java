@@ -0,0 +1,112 @@
+package pl.jasiowka.jcte.simd;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class KernelsTest {
+
+  private static final int[] LENGTHS = { 1, 3, 8, 17, 64, 203 };
+
+  private final Kernels scalar = KernelsFactory.createScalarKernels();
+
+  private Kernels vector;
+
+  private final Random random = new Random(7);
+
+  @Before
+  public void setUp() {
+    assumeTrue(KernelsFactory.isVectorAvailable());
+    vector = KernelsFactory.createVectorKernels();
+  }
+
+  private double[] random(int length) {
+    double[] out = new double[length];
+    for (int i = 0; i < length; i++)
+      out[i] = random.nextDouble() * 2 - 1;
+    return out;
+  }
+
+  @Test
+  public void addAndAxpyMatchScalar() {
+    for (int length : LENGTHS) {
+      double[] src = random(length + 5);
+      double[] expected = random(length + 3);
+      double[] actual = expected.clone();
+      scalar.add(src, 5, expected, 3, length);
+      vector.add(src, 5, actual, 3, length);
+      assertArrayEquals(expected, actual, 0);
+      scalar.axpy(0.3, src, 2, expected, 1, length);
+      vector.axpy(0.3, src, 2, actual, 1, length);
+      assertArrayEquals(expected, actual, 0);
+    }
+  }
+
+  @Test
+  public void maxMatchesScalar() {
+    for (int length : LENGTHS) {
+      double[] src = random(length + 2);
+      assertEquals(scalar.max(src, 2, length), vector.max(src, 2, length), 0);
+    }
+  }
+
+  @Test
+  public void gatherMatchesScalar() {
+    double[] src = random(50);
+    for (int length : LENGTHS) {
+      int[] index = new int[length + 1];
+      for (int i = 0; i < index.length; i++)
+        index[i] = random.nextInt(src.length + 10) - 10;
+      double[] expected = new double[length + 4];
+      double[] actual = new double[length + 4];
+      scalar.gather(src, index, 1, expected, 4, length);
+      vector.gather(src, index, 1, actual, 4, length);
+      assertArrayEquals(expected, actual, 0);
+    }
+  }
+
+  @Test
+  public void backprojectionMatchesScalar() {
+    double[] row = random(40);
+    for (int length : LENGTHS) {
+      for (int k = 0; k < 20; k++) {
+        double du = random.nextDouble() * 2 - 1;
+        double u = random.nextDouble() * 60 - 10;
+        double[] expected = random(length + 2);
+        double[] actual = expected.clone();
+        scalar.backprojectNearest(row, u, du, expected, 2, length);
+        vector.backprojectNearest(row, u, du, actual, 2, length);
+        assertArrayEquals(expected, actual, 0);
+        scalar.backprojectLinear(row, u, du, expected, 2, length);
+        vector.backprojectLinear(row, u, du, actual, 2, length);
+        assertArrayEquals(expected, actual, 0);
+      }
+    }
+  }
+
+  @Test
+  public void batchedBackprojectionMatchesScalar() {
+    for (int batch : new int[] { 2, 8, 13 }) {
+      double[] rows = random(40 * batch);
+      for (int length : LENGTHS) {
+        for (int k = 0; k < 20; k++) {
+          double du = random.nextDouble() * 2 - 1;
+          double u = random.nextDouble() * 60 - 10;
+          double[] expected = random((length + 2) * batch);
+          double[] actual = expected.clone();
+          scalar.backprojectNearest(rows, batch, u, du, expected, 2, length);
+          vector.backprojectNearest(rows, batch, u, du, actual, 2, length);
+          assertArrayEquals(expected, actual, 0);
+          scalar.backprojectLinear(rows, batch, u, du, expected, 2, length);
+          vector.backprojectLinear(rows, batch, u, du, actual, 2, length);
+          assertArrayEquals(expected, actual, 0);
+        }
+      }
+    }
+  }
+
+}
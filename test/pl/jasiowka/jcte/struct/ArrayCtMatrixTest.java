@@ -6,9 +6,52 @@ import org.junit.Test;
 
 public class ArrayCtMatrixTest {
 
+  private static CtMatrix ramp(int width, int height) {
+    CtMatrix m = CtMatrixFactory.createArrayCtMatrix(width, height);
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
+        m.update(x, y, y * width + x);
+    return m;
+  }
+
   @Test
-  public void test() {
-    fail("Not yet implemented"); // TODO
+  public void sumColsAddsRows() {
+    CtVector cols = ramp(3, 4).sumCols();
+    assertEquals(3, cols.getSize());
+    assertEquals(0 + 3 + 6 + 9, cols.get(0), 0);
+    assertEquals(2 + 5 + 8 + 11, cols.get(2), 0);
+  }
+
+  @Test
+  public void sumAndMax() {
+    CtMatrix m = ramp(3, 2);
+    m.sum(ramp(3, 2));
+    assertEquals(10, m.max(), 0);
+    assertEquals(8, m.get(1, 1), 0);
+  }
+
+  @Test
+  public void pasteIsClippedToMatrix() {
+    CtMatrix m = CtMatrixFactory.createArrayCtMatrix(4, 4);
+    m.paste(2, 3, ramp(3, 3));
+    assertEquals(0, m.get(2, 3), 0);
+    assertEquals(1, m.get(3, 3), 0);
+    assertEquals(0, m.get(1, 3), 0);
+    assertEquals(0, m.get(2, 2), 0);
+  }
+
+  @Test
+  public void rowsAreViewsOfMatrix() {
+    CtMatrix m = ramp(3, 2);
+    m.getVector(1).update(0, -5);
+    assertEquals(-5, m.get(0, 1), 0);
+    m.pasteVector(0, CtVectorFactory.createArrayCtVector(new double[] { 7, 8, 9 }));
+    assertEquals(8, m.get(1, 0), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void pastedVectorHasToFitRow() {
+    ramp(3, 2).pasteVector(0, CtVectorFactory.createArrayCtVector(2));
   }
 
 }
@@ -6,9 +6,73 @@ import org.junit.Test;
 
 public class ArrayCtVectorTest {
 
+  private static CtVector vector(double... values) {
+    return CtVectorFactory.createArrayCtVector(values.clone());
+  }
+
+  @Test
+  public void sumAddsElements() {
+    CtVector v = vector(1, 2, 3);
+    v.sum(vector(10, 20, 30));
+    v.sum(CtMatrixFactory.createFlatCtMatrix(3, 1, new double[] { 1, 1, 1 }).getVector(0));
+    assertArrayEquals(new double[] { 12, 23, 34 }, new double[] { v.get(0), v.get(1), v.get(2) }, 0);
+  }
+
+  @Test
+  public void maxFindsLargestElement() {
+    assertEquals(7, vector(-3, 7, 2, 7, -10).max(), 0);
+    assertEquals(-1, vector(-1).max(), 0);
+  }
+
+  @Test
+  public void pasteIsClippedToVector() {
+    CtVector v = vector(0, 0, 0, 0);
+    v.paste(2, vector(5, 6, 7));
+    assertArrayEquals(new double[] { 0, 0, 5, 6 }, new double[] { v.get(0), v.get(1), v.get(2), v.get(3) }, 0);
+  }
+
   @Test
-  public void test() {
-    fail("Not yet implemented"); // TODO
+  public void convolutionStrategiesAgree() {
+    CtVector v = vector(1, 2, 3, 4, 5, 6, 7);
+    CtVector f = vector(0.5, -1, 2);
+    double[] expected = { 0.5, 0, 1.5, 3, 4.5, 6, 7.5, 5, 14 };
+    for (ConvStrategy strategy : ConvStrategy.values()) {
+      CtVector c = v.conv(f, strategy);
+      assertEquals(expected.length, c.getSize());
+      for (int i = 0; i < expected.length; i++)
+        assertEquals(expected[i], c.get(i), 1e-9);
+    }
+  }
+
+  @Test
+  public void convolutionIntoDestinationMatchesNewVector() {
+    CtVector v = vector(1, 2, 3, 4, 5, 6, 7);
+    CtVector f = vector(0.5, -1, 2);
+    for (ConvStrategy strategy : ConvStrategy.values()) {
+      CtVector expected = v.conv(f, strategy);
+      CtVector[] targets = { CtVectorFactory.createArrayCtVector(9), CtMatrixFactory.createFlatCtMatrix(9, 2).getVector(1), CtVectorFactory.createCtVector(9, Precision.FLOAT) };
+      for (CtVector dst : targets) {
+        dst.update(0, 100);
+        v.conv(f, strategy, dst);
+        for (int i = 0; i < 9; i++)
+          assertEquals(expected.get(i), dst.get(i), 1e-6);
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void convolutionDestinationHasToFit() {
+    vector(1, 2, 3).conv(vector(1, 1), CtVectorFactory.createArrayCtVector(3));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sumNeedsEqualSizes() {
+    vector(1, 2).sum(vector(1, 2, 3));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyVectorIsRejected() {
+    CtVectorFactory.createArrayCtVector(0);
   }
 
 }
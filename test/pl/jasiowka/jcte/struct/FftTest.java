@@ -0,0 +1,69 @@
+package pl.jasiowka.jcte.struct;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FftTest {
+
+  private static double[] random(Random random, int size) {
+    double[] out = new double[size];
+    for (int i = 0; i < size; i++)
+      out[i] = random.nextDouble() - 0.5;
+    return out;
+  }
+
+  @Test
+  public void nextPowerOfTwo() {
+    assertEquals(1, Fft.nextPowerOfTwo(1));
+    assertEquals(2, Fft.nextPowerOfTwo(2));
+    assertEquals(4, Fft.nextPowerOfTwo(3));
+    assertEquals(1024, Fft.nextPowerOfTwo(769));
+    assertEquals(1024, Fft.nextPowerOfTwo(1024));
+  }
+
+  @Test
+  public void inverseRevertsForwardTransform() {
+    Random random = new Random(3);
+    double[] re = random(random, 64);
+    double[] im = random(random, 64);
+    double[] re0 = re.clone();
+    double[] im0 = im.clone();
+    Fft.transform(re, im, false);
+    Fft.transform(re, im, true);
+    assertArrayEquals(re0, re, 1e-12);
+    assertArrayEquals(im0, im, 1e-12);
+  }
+
+  @Test
+  public void transformOfImpulseIsFlat() {
+    double[] re = new double[16];
+    double[] im = new double[16];
+    re[0] = 1;
+    Fft.transform(re, im, false);
+    for (int k = 0; k < 16; k++) {
+      assertEquals(1, re[k], 1e-12);
+      assertEquals(0, im[k], 1e-12);
+    }
+  }
+
+  @Test
+  public void convolveMatchesDirectConvolution() {
+    Random random = new Random(5);
+    double[] a = random(random, 37);
+    double[] b = random(random, 75);
+    double[] expected = new double[a.length + b.length - 1];
+    for (int i = 0; i < a.length; i++)
+      for (int j = 0; j < b.length; j++)
+        expected[i + j] += a[i] * b[j];
+    assertArrayEquals(expected, Fft.convolve(a, b), 1e-12);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void lengthHasToBePowerOfTwo() {
+    Fft.transform(new double[12], new double[12], false);
+  }
+
+}
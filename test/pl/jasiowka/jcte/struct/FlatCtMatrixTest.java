@@ -0,0 +1,103 @@
+package pl.jasiowka.jcte.struct;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FlatCtMatrixTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static CtMatrix sample(int width, int height) {
+    CtMatrix m = CtMatrixFactory.createFlatCtMatrix(width, height);
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
+        m.update(x, y, 10 * y + x);
+    return m;
+  }
+
+  @Test
+  public void vectorIsViewOfRow() {
+    CtMatrix m = sample(4, 3);
+    CtVector row = m.getVector(1);
+    assertEquals(4, row.getSize());
+    assertEquals(12, row.get(2), 0);
+    row.update(3, -1);
+    assertEquals(-1, m.get(3, 1), 0);
+    m.update(0, 1, 7);
+    assertEquals(7, row.get(0), 0);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void columnOutOfBoundsDoesNotWrap() {
+    sample(4, 3).get(4, 0);
+  }
+
+  @Test
+  public void sumAndSumCols() {
+    CtMatrix m = sample(3, 2);
+    m.sum(sample(3, 2));
+    assertEquals(2 * 12, m.get(2, 1), 0);
+    m.sum(CtMatrixFactory.createArrayCtMatrix(3, 2));
+    CtVector cols = m.sumCols();
+    assertEquals(2 * (0 + 10), cols.get(0), 0);
+    assertEquals(2 * (2 + 12), cols.get(2), 0);
+    assertEquals(24, m.max(), 0);
+  }
+
+  @Test
+  public void pasteIsClippedToMatrix() {
+    CtMatrix m = CtMatrixFactory.createFlatCtMatrix(4, 4);
+    m.paste(2, 3, sample(3, 3));
+    assertEquals(0, m.get(2, 3), 0);
+    assertEquals(1, m.get(3, 3), 0);
+    assertEquals(0, m.get(1, 3), 0);
+    m.pasteVector(0, sample(4, 1).getVector(0));
+    assertEquals(3, m.get(3, 0), 0);
+  }
+
+  @Test
+  public void sumColsIntoDestinationMatchesNewVector() {
+    CtMatrix[] matrices = { sample(4, 3), CtMatrixFactory.createArrayCtMatrix(4, 3) };
+    matrices[1].paste(0, 0, matrices[0]);
+    for (CtMatrix m : matrices) {
+      CtVector expected = m.sumCols();
+      CtVector[] targets = { CtVectorFactory.createArrayCtVector(4), sample(4, 2).getVector(1) };
+      for (CtVector dst : targets) {
+        m.sumCols(dst);
+        for (int x = 0; x < 4; x++)
+          assertEquals(expected.get(x), dst.get(x), 0);
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sumColsDestinationHasToFit() {
+    sample(4, 3).sumCols(CtVectorFactory.createArrayCtVector(3));
+  }
+
+  @Test
+  public void imageIsLoadedLikeArrayCtMatrix() throws IOException {
+    BufferedImage bi = new BufferedImage(5, 3, BufferedImage.TYPE_BYTE_GRAY);
+    for (int y = 0; y < 3; y++)
+      for (int x = 0; x < 5; x++)
+        bi.getRaster().setSample(x, y, 0, 40 * y + 7 * x);
+    File file = new File(folder.getRoot(), "image.png");
+    ImageIO.write(bi, "png", file);
+    CtMatrix flat = CtMatrixFactory.createFlatCtMatrix(file.getPath());
+    CtMatrix array = CtMatrixFactory.createArrayCtMatrix(file.getPath());
+    for (int y = 0; y < 3; y++)
+      for (int x = 0; x < 5; x++)
+        assertEquals(array.get(x, y), flat.get(x, y), 0);
+  }
+
+}
@@ -0,0 +1,73 @@
+package pl.jasiowka.jcte.struct;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ImageSamplesTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static BufferedImage gradient(int type, int width, int height, int scale) {
+    BufferedImage bi = new BufferedImage(width, height, type);
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
+        bi.getRaster().setSample(x, y, 0, (x + width * y) * scale);
+    return bi;
+  }
+
+  @Test
+  public void byteGrayIsReadDirectly() throws IOException {
+    File file = new File(folder.getRoot(), "gray.png");
+    ImageIO.write(gradient(BufferedImage.TYPE_BYTE_GRAY, 7, 5, 7), "png", file);
+    ImageSamples im = ImageSamples.read(file.getPath());
+    assertEquals(7, im.width);
+    assertEquals(5, im.height);
+    for (int i = 0; i < 35; i++)
+      assertEquals(i * 7 / 255.0, im.data[i], 1e-12);
+  }
+
+  @Test
+  public void ushortGrayIsNormalizedToOne() throws IOException {
+    File file = new File(folder.getRoot(), "gray16.png");
+    ImageIO.write(gradient(BufferedImage.TYPE_USHORT_GRAY, 4, 3, 5000), "png", file);
+    ImageSamples im = ImageSamples.read(file.getPath());
+    for (int i = 0; i < 12; i++)
+      assertEquals(i * 5000 / 65535.0, im.data[i], 1e-12);
+  }
+
+  @Test
+  public void subimageOffsetsAreRespected() {
+    BufferedImage bi = gradient(BufferedImage.TYPE_BYTE_GRAY, 8, 6, 3);
+    ImageSamples im = ImageSamples.read(bi.getSubimage(2, 1, 4, 3));
+    for (int y = 0; y < 3; y++)
+      for (int x = 0; x < 4; x++)
+        assertEquals(((x + 2) + 8 * (y + 1)) * 3 / 255.0, im.data[x + 4 * y], 1e-12);
+  }
+
+  @Test
+  public void colorImagesAreConvertedToGray() {
+    BufferedImage bi = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+    bi.setRGB(1, 1, 0xffffff);
+    ImageSamples im = ImageSamples.read(bi);
+    assertEquals(0, im.data[0], 1e-12);
+    assertEquals(1, im.data[4], 1e-12);
+  }
+
+  @Test(expected = IOException.class)
+  public void unsupportedFilesAreRejected() throws IOException {
+    File file = new File(folder.getRoot(), "text.png");
+    file.createNewFile();
+    ImageSamples.read(file.getPath());
+  }
+
+}
@@ -0,0 +1,80 @@
+package pl.jasiowka.jcte.struct;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCtVolumeTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String path(String name) {
+    return new File(folder.getRoot(), name).getPath();
+  }
+
+  @Test
+  public void slicesSurviveReopening() throws IOException {
+    for (Precision precision : Precision.values()) {
+      String path = path("volume-" + precision + ".vol");
+      CtVolume volume = CtVolumeFactory.createMappedCtVolume(path, 5, 3, 4, precision, new double[] { 0.5, 0.5, 2 });
+      for (int z = 0; z < 4; z++) {
+        CtMatrix slice = CtMatrixFactory.createCtMatrix(5, 3);
+        for (int y = 0; y < 3; y++)
+          for (int x = 0; x < 5; x++)
+            slice.update(x, y, (x + 5 * y + 15 * z) / 60.0);
+        volume.setSlice(z, slice);
+      }
+      volume.close();
+      volume = CtVolumeFactory.openMappedCtVolume(path, true);
+      assertEquals(5, volume.getWidth());
+      assertEquals(3, volume.getHeight());
+      assertEquals(4, volume.getDepth());
+      assertEquals(precision, volume.getPrecision());
+      assertArrayEquals(new double[] { 0.5, 0.5, 2 }, volume.getSpacing(), 0);
+      for (int z = 0; z < 4; z++)
+        for (int y = 0; y < 3; y++)
+          for (int x = 0; x < 5; x++)
+            assertEquals((x + 5 * y + 15 * z) / 60.0, volume.getSlice(z).get(x, y), 1e-5);
+      volume.close();
+    }
+  }
+
+  @Test
+  public void sliceIsViewOfVolume() throws IOException {
+    CtVolume volume = CtVolumeFactory.createMappedCtVolume(path("view.vol"), 4, 4, 2, new double[] { 1, 1, 1 }, -1, 1);
+    assertEquals(-1, volume.getSlice(1).get(2, 2), 0);
+    volume.getSlice(1).update(2, 2, 0.5);
+    assertEquals(0.5, volume.getSlice(1).getVector(2).get(2), 1e-4);
+    volume.close();
+  }
+
+  @Test(expected = ReadOnlyBufferException.class)
+  public void readOnlyVolumeCannotBeChanged() throws IOException {
+    String path = path("ro.vol");
+    CtVolumeFactory.createMappedCtVolume(path, 2, 2, 1, Precision.FLOAT, new double[] { 1, 1, 1 }).close();
+    CtVolume volume = CtVolumeFactory.openMappedCtVolume(path, true);
+    try {
+      volume.getSlice(0).update(0, 0, 1);
+    } finally {
+      volume.close();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void otherFilesAreRejected() throws IOException {
+    File file = new File(folder.getRoot(), "other.vol");
+    FileOutputStream out = new FileOutputStream(file);
+    out.write(new byte[MappedCtVolume.HEADER_SIZE]);
+    out.close();
+    CtVolumeFactory.openMappedCtVolume(file.getPath(), true);
+  }
+
+}
@@ -0,0 +1,96 @@
+package pl.jasiowka.jcte.struct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PackedCtMatrixTest {
+
+  @Test
+  public void factoryHonoursPrecision() {
+    assertTrue(CtMatrixFactory.createCtMatrix(2, 2, Precision.DOUBLE) instanceof FlatCtMatrix);
+    assertTrue(CtMatrixFactory.createCtMatrix(2, 2, Precision.FLOAT) instanceof FloatCtMatrix);
+    assertTrue(CtMatrixFactory.createCtMatrix(2, 2, Precision.FIXED16) instanceof Fixed16CtMatrix);
+  }
+
+  @Test
+  public void floatKeepsSinglePrecision() {
+    CtMatrix m = CtMatrixFactory.createFloatCtMatrix(3, 2);
+    m.update(1, 1, 0.1);
+    assertEquals((float) 0.1, m.get(1, 1), 0);
+    m.sum(m);
+    assertEquals(2 * (float) 0.1, m.getVector(1).get(1), 1e-7);
+    assertEquals(2 * (float) 0.1, m.sumCols().get(1), 1e-7);
+  }
+
+  @Test
+  public void fixed16StoresEightBitLevelsExactly() {
+    CtMatrix m = CtMatrixFactory.createCtMatrix(256, 1, Precision.FIXED16);
+    for (int x = 0; x < 256; x++)
+      m.update(x, 0, x / 255.0);
+    for (int x = 0; x < 256; x++)
+      assertEquals(x / 255.0, m.get(x, 0), 1e-15);
+  }
+
+  @Test
+  public void fixed16ClampsToRange() {
+    CtMatrix m = CtMatrixFactory.createFixed16CtMatrix(2, 2, -1, 3);
+    assertEquals(-1, m.get(0, 0), 0);
+    m.update(0, 0, 5);
+    m.update(1, 0, -7);
+    m.update(0, 1, 1);
+    assertEquals(3, m.get(0, 0), 0);
+    assertEquals(-1, m.get(1, 0), 0);
+    assertEquals(1, m.get(0, 1), 4.0 / 0xffff);
+    assertEquals(3, m.max(), 0);
+  }
+
+  @Test
+  public void vectorIsViewOfRow() {
+    for (Precision precision : Precision.values()) {
+      CtMatrix m = CtMatrixFactory.createCtMatrix(4, 2, precision);
+      CtVector row = m.getVector(1);
+      row.update(2, 0.5);
+      assertEquals(0.5, m.get(2, 1), 1e-4);
+      row.paste(0, CtVectorFactory.createArrayCtVector(new double[] { 0.25, 0.75 }));
+      assertEquals(0.75, m.get(1, 1), 1e-4);
+      assertEquals(0.75, row.max(), 1e-4);
+      CtVector conv = row.conv(CtVectorFactory.createArrayCtVector(new double[] { 1, 1 }));
+      assertEquals(5, conv.getSize());
+      assertEquals(1.0, conv.get(1), 1e-4);
+    }
+  }
+
+  @Test
+  public void sumColsIntoDestinationMatchesNewVector() {
+    for (Precision precision : Precision.values()) {
+      CtMatrix m = CtMatrixFactory.createCtMatrix(3, 4, precision);
+      for (int y = 0; y < 4; y++)
+        for (int x = 0; x < 3; x++)
+          m.update(x, y, (x + 2 * y) / 64.0);
+      CtVector expected = m.sumCols();
+      CtVector dst = CtVectorFactory.createCtVector(3, precision);
+      dst.update(1, 0.5);
+      m.sumCols(dst);
+      for (int x = 0; x < 3; x++)
+        assertEquals(expected.get(x), dst.get(x), 1e-4);
+      CtVector view = m.getVector(0);
+      CtVector conv = CtVectorFactory.createArrayCtVector(4);
+      view.conv(CtVectorFactory.createArrayCtVector(new double[] { 1, 1 }), conv);
+      assertEquals(m.get(0, 0) + m.get(1, 0), conv.get(1), 1e-9);
+    }
+  }
+
+  @Test
+  public void vectorFactoryHonoursPrecision() {
+    CtVector v = CtVectorFactory.createCtVector(3, Precision.FLOAT);
+    v.update(0, 1.0 / 3);
+    assertEquals((float) (1.0 / 3), v.get(0), 0);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void columnOutOfBoundsDoesNotWrap() {
+    CtMatrixFactory.createFloatCtMatrix(4, 3).get(4, 0);
+  }
+
+}
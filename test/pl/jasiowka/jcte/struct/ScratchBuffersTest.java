@@ -0,0 +1,99 @@
+package pl.jasiowka.jcte.struct;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ScratchBuffersTest {
+
+  @After
+  public void tearDown() {
+    ScratchBuffers.clear();
+  }
+
+  @Test
+  public void releasedBufferIsReused() {
+    double[] a = ScratchBuffers.acquire(10);
+    ScratchBuffers.release(a);
+    assertSame(a, ScratchBuffers.acquire(10));
+    assertNotSame(a, ScratchBuffers.acquire(10));
+  }
+
+  @Test
+  public void buffersHaveRequestedLength() {
+    ScratchBuffers.release(ScratchBuffers.acquire(10));
+    assertEquals(12, ScratchBuffers.acquire(12).length);
+    double[][] table = ScratchBuffers.acquire(3, 5);
+    assertEquals(3, table.length);
+    assertEquals(5, table[2].length);
+    ScratchBuffers.release(table);
+    assertSame(table, ScratchBuffers.acquire(3, 5));
+  }
+
+  @Test
+  public void zeroedBufferIsCleared() {
+    double[] a = ScratchBuffers.acquire(4);
+    a[2] = 7;
+    ScratchBuffers.release(a);
+    assertArrayEquals(new double[4], ScratchBuffers.acquireZeroed(4), 0);
+  }
+
+  @Test
+  public void poolIsBounded() {
+    double[][] buffers = new double[ScratchBuffers.POOL_SIZE + 1][];
+    for (int i = 0; i < buffers.length; i++)
+      buffers[i] = ScratchBuffers.acquire(1);
+    for (double[] b : buffers)
+      ScratchBuffers.release(b);
+    for (int i = buffers.length - 1; i > 0; i--)
+      assertSame(buffers[i], ScratchBuffers.acquire(1));
+    assertNotSame(buffers[0], ScratchBuffers.acquire(1));
+  }
+
+  @Test
+  public void poolIsBoundedByBytes() {
+    long budget = ScratchBuffers.getBudget();
+    try {
+      ScratchBuffers.setBudget(8 * 100);
+      double[] large = ScratchBuffers.acquire(101);
+      ScratchBuffers.release(large);
+      assertEquals(0, ScratchBuffers.getBytes());
+      assertNotSame(large, ScratchBuffers.acquire(101));
+      double[] first = ScratchBuffers.acquire(60);
+      double[][] second = ScratchBuffers.acquire(2, 20);
+      ScratchBuffers.release(first);
+      ScratchBuffers.release(second);
+      assertEquals(8 * 100, ScratchBuffers.getBytes());
+      double[] third = ScratchBuffers.acquire(30);
+      ScratchBuffers.release(third);
+      assertEquals(8 * 70, ScratchBuffers.getBytes());
+      assertNotSame(first, ScratchBuffers.acquire(60));
+      assertSame(second, ScratchBuffers.acquire(2, 20));
+      assertSame(third, ScratchBuffers.acquire(30));
+      assertEquals(0, ScratchBuffers.getBytes());
+    } finally {
+      ScratchBuffers.setBudget(budget);
+    }
+  }
+
+  @Test
+  public void repeatedConvolutionDoesNotAllocate() {
+    com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) return;
+    double[] a = new double[300];
+    double[] b = new double[601];
+    double[] out = new double[900];
+    for (int i = 0; i < 10; i++)
+      Fft.convolve(a, b, out);
+    long id = Thread.currentThread().getId();
+    long before = bean.getThreadAllocatedBytes(id);
+    for (int i = 0; i < 20; i++)
+      Fft.convolve(a, b, out);
+    long allocated = bean.getThreadAllocatedBytes(id) - before;
+    assertTrue("allocated " + allocated, allocated < 1024 * 8);
+  }
+
+}